@@ -43,11 +43,13 @@ import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import com.shulie.instrument.simulator.api.util.StringUtil;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -59,6 +61,9 @@ import java.util.Set;
 public class DruidInjectGetConnectionInterceptor extends CutoffInterceptorAdaptor {
     private static Logger logger = LoggerFactory.getLogger(DruidInjectGetConnectionInterceptor.class.getName());
 
+    @Resource
+    protected DynamicFieldManager manager;
+
     public DruidInjectGetConnectionInterceptor() {
         addListener();
     }
@@ -97,10 +102,20 @@ public class DruidInjectGetConnectionInterceptor extends CutoffInterceptorAdapto
     @Override
     public CutOffResult cutoff0(Advice advice) throws SQLException {
         DruidDataSource target1 = (DruidDataSource) advice.getTarget();
-        addAttachment(advice);
-        DataSourceMeta<DruidDataSource> dataSourceMeta = new DataSourceMeta<DruidDataSource>(target1.getUrl(), target1.getUsername(), target1);
-        ClusterTestUtils.validateClusterTest();
-        DbDruidMediatorDataSource mediatorDataSource = DataSourceWrapUtil.doWrap(dataSourceMeta);
+        /**
+         * 路由解析过之后缓存在数据源上，只有影子数据源相关的事件会让缓存失效
+         */
+        DbDruidMediatorDataSource mediatorDataSource = DataSourceWrapUtil.routeCache.get(manager, target1);
+        if (mediatorDataSource == null) {
+            final int version = DataSourceWrapUtil.routeCache.version();
+            addAttachment(advice);
+            DataSourceMeta<DruidDataSource> dataSourceMeta = new DataSourceMeta<DruidDataSource>(target1.getUrl(), target1.getUsername(), target1);
+            ClusterTestUtils.validateClusterTest();
+            mediatorDataSource = DataSourceWrapUtil.doWrap(dataSourceMeta);
+            DataSourceWrapUtil.routeCache.put(manager, target1, version, mediatorDataSource);
+        } else {
+            ClusterTestUtils.validateClusterTest();
+        }
         //判断带有压测标示，是否初始化
         //初始化
         Connection connection = null;
@@ -175,6 +190,7 @@ public class DruidInjectGetConnectionInterceptor extends CutoffInterceptorAdapto
                             }
 
                         }
+                        DataSourceWrapUtil.routeCache.invalidate();
                         return EventResult.success("module-alibaba-druid: destroyed shadow table datasource success.");
                     }
 
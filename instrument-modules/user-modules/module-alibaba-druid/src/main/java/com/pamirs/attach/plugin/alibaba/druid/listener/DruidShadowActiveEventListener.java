@@ -71,6 +71,8 @@ public class DruidShadowActiveEventListener implements PradarEventListener {
         } catch (Exception e) {
             LOGGER.error("[druid]: handler shadow datasource active event occur exception", e);
             return EventResult.error("active-shadow-datasource-event", "module-alibaba-druid: handler shadow datasource active event occur exception.");
+        } finally {
+            DataSourceWrapUtil.routeCache.invalidate();
         }
     }
 
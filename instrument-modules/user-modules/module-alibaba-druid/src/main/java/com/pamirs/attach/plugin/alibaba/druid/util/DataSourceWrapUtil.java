@@ -16,6 +16,7 @@ package com.pamirs.attach.plugin.alibaba.druid.util;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.pamirs.attach.plugin.alibaba.druid.obj.DbDruidMediatorDataSource;
+import com.pamirs.attach.plugin.common.datasource.DataSourceRouteCache;
 import com.pamirs.pradar.ConfigNames;
 import com.pamirs.pradar.ErrorTypeEnum;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
@@ -42,6 +43,11 @@ public class DataSourceWrapUtil {
 
     public static final ConcurrentHashMap<DataSourceMeta, DbDruidMediatorDataSource> pressureDataSources = new ConcurrentHashMap<DataSourceMeta, DbDruidMediatorDataSource>();
 
+    /**
+     * 业务数据源上缓存的路由，pressureDataSources 变更后需要失效
+     */
+    public static final DataSourceRouteCache<DbDruidMediatorDataSource> routeCache = new DataSourceRouteCache<DbDruidMediatorDataSource>("druid.route");
+
     public static void destroy() {
         Iterator<Map.Entry<DataSourceMeta, DbDruidMediatorDataSource>> it = pressureDataSources.entrySet().iterator();
         while (it.hasNext()) {
@@ -51,6 +57,7 @@ public class DataSourceWrapUtil {
         }
         pressureDataSources.clear();
         pressureDatasourceSet.clear();
+        routeCache.invalidate();
     }
 
     public static DbDruidMediatorDataSource doWrap(DataSourceMeta<DruidDataSource> dataSourceMeta) {
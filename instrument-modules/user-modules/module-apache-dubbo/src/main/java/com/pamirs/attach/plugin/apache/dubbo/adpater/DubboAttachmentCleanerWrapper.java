@@ -20,11 +20,9 @@ public class DubboAttachmentCleanerWrapper {
         }
     }
 
-    public static void removeAttachment(String key, RpcInvocation invocation) {
-        getAttachmentsCleaner().removeAttachment(key, invocation);
-    }
+    private static final AttachmentCleaner attachmentCleaner = isDubboHigher ? new DubboHigherAttachmentCleaner() : new DubboLowerAttachmentCleaner();
 
-    private static AttachmentCleaner getAttachmentsCleaner() {
-        return isDubboHigher ? new DubboHigherAttachmentCleaner() : new DubboLowerAttachmentCleaner();
+    public static void removeAttachment(String key, RpcInvocation invocation) {
+        attachmentCleaner.removeAttachment(key, invocation);
     }
 }
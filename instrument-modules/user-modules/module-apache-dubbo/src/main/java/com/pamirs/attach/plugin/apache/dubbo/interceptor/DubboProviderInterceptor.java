@@ -19,6 +19,7 @@ import com.pamirs.attach.plugin.apache.dubbo.adpater.DubboAttachmentCleanerWrapp
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarCoreUtils;
 import com.pamirs.pradar.ResultCode;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -26,7 +27,6 @@ import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import org.apache.dubbo.rpc.*;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -78,15 +78,16 @@ public class DubboProviderInterceptor extends TraceInterceptorAdaptor {
 
         List<String> traceKeys = Pradar.getInvokeContextTransformKeys();
         final Map<String, String> attachments = invocation.getAttachments();
-        Map<String, String> ctx = new HashMap<String, String>();
-        for (String traceKey : traceKeys) {
-            final String value = attachments.get(traceKey);
-            if (value != null) {
-                ctx.put(traceKey, value);
-            }
-            DubboAttachmentCleanerWrapper.removeAttachment(traceKey, invocation);
+        // 只清理 RpcContext 中的附件，invocation 中的附件仍然可以直接读取
+        for (int i = 0, size = traceKeys.size(); i < size; i++) {
+            DubboAttachmentCleanerWrapper.removeAttachment(traceKeys.get(i), invocation);
         }
-        record.setContext(ctx);
+        record.setContext(new ContextReader() {
+            @Override
+            public String read(String key) {
+                return attachments.get(key);
+            }
+        });
 
         RpcContext context = RpcContext.getContext();
         String remoteHost = context.getRemoteHost();
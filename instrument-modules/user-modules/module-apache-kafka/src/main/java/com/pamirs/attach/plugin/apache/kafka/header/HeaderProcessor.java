@@ -15,11 +15,11 @@
 package com.pamirs.attach.plugin.apache.kafka.header;
 
 import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.interceptor.ContextReader;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author xiaobin.zfb|xiaobin@shulie.io
@@ -29,12 +29,12 @@ public interface HeaderProcessor {
     List<String> TRACE_HEADERS = Pradar.getInvokeContextTransformKeys();
 
     /**
-     * get headers from consumer record
+     * get trace context reader from consumer record, headers are read on demand
      *
      * @param consumerRecord
      * @return
      */
-    Map<String, String> getHeaders(ConsumerRecord consumerRecord);
+    ContextReader getContextReader(ConsumerRecord consumerRecord);
 
     /**
      * set header to producer record
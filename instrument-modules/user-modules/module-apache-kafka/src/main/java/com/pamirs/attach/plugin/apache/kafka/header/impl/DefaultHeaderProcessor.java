@@ -15,37 +15,32 @@
 package com.pamirs.attach.plugin.apache.kafka.header.impl;
 
 import com.pamirs.attach.plugin.apache.kafka.header.HeaderProcessor;
+import com.pamirs.pradar.interceptor.ContextReader;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.header.internals.RecordHeader;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2021/8/6 5:31 下午
  */
 public class DefaultHeaderProcessor implements HeaderProcessor {
     @Override
-    public Map<String, String> getHeaders(ConsumerRecord consumerRecord) {
-        Headers headers = consumerRecord.headers();
-        Header[] headersArr = headers.toArray();
-        if (headersArr == null || headersArr.length == 0) {
-            return Collections.EMPTY_MAP;
-        }
-        Map<String, String> ctx = new HashMap<String, String>();
-        for (Header header : headersArr) {
-            if (!TRACE_HEADERS.contains(header.key())) {
-                continue;
+    public ContextReader getContextReader(ConsumerRecord consumerRecord) {
+        final Headers headers = consumerRecord.headers();
+        return new ContextReader() {
+            @Override
+            public String read(String key) {
+                // 与之前复制成 Map 时一致，同名的 header 取最后一个
+                Header header = headers.lastHeader(key);
+                if (header == null || header.value() == null) {
+                    return null;
+                }
+                return new String(header.value());
             }
-            ctx.put(header.key(), new String(header.value()));
-        }
-
-        return ctx;
+        };
     }
 
     @Override
@@ -15,18 +15,17 @@
 package com.pamirs.attach.plugin.apache.kafka.header.impl;
 
 import com.pamirs.attach.plugin.apache.kafka.header.HeaderProcessor;
+import com.pamirs.pradar.interceptor.ContextReader;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
-import java.util.Map;
-
 /**
  * @author xiaobin.zfb|xiaobin@shulie.io
  * @since 2021/8/6 5:32 下午
  */
 public class DisabledHeaderProcessor implements HeaderProcessor {
     @Override
-    public Map<String, String> getHeaders(ConsumerRecord consumerRecord) {
+    public ContextReader getContextReader(ConsumerRecord consumerRecord) {
         return null;
     }
 
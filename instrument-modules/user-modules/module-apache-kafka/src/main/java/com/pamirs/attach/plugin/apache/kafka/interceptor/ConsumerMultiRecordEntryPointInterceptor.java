@@ -25,6 +25,7 @@ import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.PradarSwitcher;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.BytesUtils;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -38,7 +39,6 @@ import org.apache.kafka.common.header.Headers;
 
 import javax.annotation.Resource;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @Author <a href="tangyuhan@shulie.io">yuhan.tang</a>
@@ -107,7 +107,7 @@ public class ConsumerMultiRecordEntryPointInterceptor extends TraceInterceptorAd
         spanRecord.setRemoteIp(remoteAddress);
         if (PradarSwitcher.isKafkaMessageHeadersEnabled()) {
             HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(consumerRecord);
-            Map<String, String> ctx = headerProcessor.getHeaders(consumerRecord);
+            ContextReader ctx = headerProcessor.getContextReader(consumerRecord);
             spanRecord.setContext(ctx);
         }
         spanRecord.setRequest(consumerRecord);
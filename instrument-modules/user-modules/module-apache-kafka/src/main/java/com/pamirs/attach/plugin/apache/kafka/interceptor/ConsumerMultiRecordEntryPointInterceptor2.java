@@ -24,6 +24,7 @@ import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.PradarSwitcher;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.BytesUtils;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -37,7 +38,6 @@ import org.apache.kafka.common.header.Headers;
 
 import javax.annotation.Resource;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @Auther: vernon
@@ -91,7 +91,7 @@ public class ConsumerMultiRecordEntryPointInterceptor2 extends TraceInterceptorA
         spanRecord.setRemoteIp(remoteAddress);
         if (PradarSwitcher.isKafkaMessageHeadersEnabled()) {
             HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(consumerRecord);
-            Map<String, String> ctx = headerProcessor.getHeaders(consumerRecord);
+            ContextReader ctx = headerProcessor.getContextReader(consumerRecord);
             spanRecord.setContext(ctx);
         }
         spanRecord.setRequest(consumerRecord);
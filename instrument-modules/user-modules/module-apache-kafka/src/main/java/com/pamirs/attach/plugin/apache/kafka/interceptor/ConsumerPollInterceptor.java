@@ -25,6 +25,7 @@ import com.pamirs.attach.plugin.dynamic.reflect.ReflectionUtils;
 import com.pamirs.pradar.*;
 import com.pamirs.pradar.common.BytesUtils;
 import com.pamirs.pradar.exception.PressureMeasureError;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import com.pamirs.pradar.pressurement.agent.shared.service.ErrorReporter;
@@ -45,7 +46,6 @@ import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @Author <a href="tangyuhan@shulie.io">yuhan.tang</a>
@@ -176,7 +176,7 @@ public class ConsumerPollInterceptor extends AroundInterceptor {
             String topic = record.topic();
 
             String group = null;
-            Map<String, String> ctx = null;
+            ContextReader ctx = null;
             if (ReflectionUtils.existsField(consumer, "groupId")) {
                 Object groupIdValue = ReflectionUtils.get(consumer, "groupId");
                 if (groupIdValue.getClass().getName().equals("java.util.Optional")) {
@@ -191,7 +191,7 @@ public class ConsumerPollInterceptor extends AroundInterceptor {
 
             if (PradarSwitcher.isKafkaMessageHeadersEnabled()) {
                 HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(record);
-                ctx = headerProcessor.getHeaders(record);
+                ctx = headerProcessor.getContextReader(record);
 
             }
             Pradar.startServerInvoke(topic, group, null, ctx);
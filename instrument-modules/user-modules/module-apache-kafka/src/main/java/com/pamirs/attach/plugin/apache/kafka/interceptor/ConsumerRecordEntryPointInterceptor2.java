@@ -25,6 +25,7 @@ import com.pamirs.pradar.PradarSwitcher;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.common.BytesUtils;
 import com.pamirs.pradar.exception.PressureMeasureError;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
@@ -37,7 +38,6 @@ import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.Headers;
 
 import javax.annotation.Resource;
-import java.util.Map;
 
 /**
  * @Auther: vernon
@@ -88,7 +88,7 @@ public class ConsumerRecordEntryPointInterceptor2 extends TraceInterceptorAdapto
         spanRecord.setRemoteIp(remoteAddress == null ? "127.0.0.1:9092" : remoteAddress);
         if (PradarSwitcher.isKafkaMessageHeadersEnabled()) {
             HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(consumerRecord);
-            Map<String, String> ctx = headerProcessor.getHeaders(consumerRecord);
+            ContextReader ctx = headerProcessor.getContextReader(consumerRecord);
             spanRecord.setContext(ctx);
         }
         spanRecord.setRequest(consumerRecord);
@@ -23,6 +23,7 @@ import com.pamirs.attach.plugin.apache.kafka.origin.ConsumerMetaData;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarSwitcher;
 import com.pamirs.pradar.ResultCode;
+import com.pamirs.pradar.interceptor.ContextReader;
 import com.pamirs.pradar.interceptor.ReversedTraceInterceptorAdaptor;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
@@ -36,7 +37,6 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 
 import javax.annotation.Resource;
 import java.util.Iterator;
-import java.util.Map;
 
 /**
  * @author jirenhe | jirenhe@shulie.io
@@ -91,7 +91,7 @@ public class ConsumerTraceInterceptor extends ReversedTraceInterceptorAdaptor {
         SpanRecord spanRecord = new SpanRecord();
         if (PradarSwitcher.isKafkaMessageHeadersEnabled()) {
             HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(consumerRecord);
-            Map<String, String> ctx = headerProcessor.getHeaders(consumerRecord);
+            ContextReader ctx = headerProcessor.getContextReader(consumerRecord);
             spanRecord.setContext(ctx);
         }
         //TODO 原生这里的kafka服务器信息 和通过spring获取的服务器信息，集群节点顺序不一致
@@ -126,10 +126,10 @@ public class ProducerSendInterceptor extends TraceInterceptorAdaptor {
         Object[] args = advice.getParameterArray();
         final ProducerRecord producerRecord = (ProducerRecord)args[0];
         if (PradarSwitcher.isKafkaMessageHeadersEnabled() && !isHeadReadOnly(producerRecord)) {
+            final HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(producerRecord);
             return new ContextTransfer() {
                 @Override
                 public void transfer(String key, String value) {
-                    HeaderProcessor headerProcessor = HeaderProvider.getHeaderProcessor(producerRecord);
                     headerProcessor.setHeader(producerRecord, key, value);
                 }
             };
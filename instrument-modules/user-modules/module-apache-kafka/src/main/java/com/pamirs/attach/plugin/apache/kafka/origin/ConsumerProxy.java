@@ -66,6 +66,16 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     private final long currentPollTime;
 
+    /**
+     * 影子 consumer 独立线程模式下的影子 consumer，未开启时为 null
+     */
+    private final DedicatedShadowConsumer dedicatedShadowConsumer;
+
+    /**
+     * 独立线程模式下上一次 poll 返回的是否是影子批次，业务和影子批次交替返回
+     */
+    private boolean lastPollShadow;
+
     public ConsumerProxy(KafkaConsumer consumer, ConsumerMetaData topicAndGroup, long maxLagMillSecond, long timeout) {
         this(consumer, topicAndGroup, maxLagMillSecond, new RecordsRatioPollSelector(), timeout);
     }
@@ -80,6 +90,14 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         this.consumerSelector = consumerSelector;
         this.bizHeartbeat = extractHeartbeat(bizConsumer);
         this.ptHeartbeat = extractHeartbeat(ptConsumer);
+        if (DedicatedShadowConsumer.isEnabled()) {
+            this.dedicatedShadowConsumer = new DedicatedShadowConsumer(ptConsumer, topicAndGroup.getPtGroupId(),
+                    isAutoCommitEnabled(ptConsumer));
+            this.ptConsumer = dedicatedShadowConsumer;
+            this.dedicatedShadowConsumer.start();
+        } else {
+            this.dedicatedShadowConsumer = null;
+        }
     }
 
     private Heartbeat extractHeartbeat(Consumer consumer) {
@@ -93,6 +111,22 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         return ReflectionUtils.get(coordinator,"heartbeat");
     }
 
+    /**
+     * 影子 consumer 是否开启了自动提交，读取失败时按开启处理
+     */
+    private boolean isAutoCommitEnabled(Consumer consumer) {
+        try {
+            if (consumer instanceof WithTryCatchConsumerProxy) {
+                consumer = ReflectionUtils.get(consumer, "consumer");
+            }
+            Object coordinator = ReflectionUtils.get(consumer, "coordinator");
+            Object autoCommitEnabled = ReflectionUtils.get(coordinator, "autoCommitEnabled");
+            return autoCommitEnabled == null || Boolean.parseBoolean(autoCommitEnabled.toString());
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
     public Consumer getPtConsumer() {
         return ptConsumer;
     }
@@ -101,6 +135,18 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         return bizConsumer;
     }
 
+    /**
+     * 影子 consumer 独立线程模式下各分区堆积的位点数，未开启时返回空
+     *
+     * @return topic-partition -> 堆积位点数
+     */
+    public Map<TopicPartition, Long> getShadowOffsetLags() {
+        if (dedicatedShadowConsumer == null) {
+            return Collections.emptyMap();
+        }
+        return dedicatedShadowConsumer.getOffsetLags();
+    }
+
     @Override
     public Set<TopicPartition> assignment() {
         Set<TopicPartition> set1 = this.bizConsumer.assignment();
@@ -165,6 +211,9 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
 
     @Override
     public ConsumerRecords<K, V> poll(long timeout) {
+        if (dedicatedShadowConsumer != null) {
+            return doDedicatedPoll(timeout);
+        }
         if (consumerSelector.select() == PollConsumerSelector.ConsumerType.SHADOW) {
             return doShadowPoll(timeout);
         } else {
@@ -185,8 +234,30 @@ public class ConsumerProxy<K, V> implements Consumer<K, V> {
         }
     }
 
+    /**
+     * 影子 consumer 由专属线程拉取，这里只取已经拉到的批次，不会阻塞。
+     * 业务消费延迟超过允许值时只拉业务；否则业务和影子批次交替返回，有影子批次等待时业务 poll 不再等待。
+     * 业务再次 poll 说明上一次返回的批次已经处理完，先通知影子 consumer
+     */
+    private ConsumerRecords doDedicatedPoll(long timeout) {
+        dedicatedShadowConsumer.onApplicationPoll();
+        if (!lastPollShadow && lag <= allowMaxLag) {
+            ConsumerRecords consumerRecords = dedicatedShadowConsumer.pollBuffered();
+            if (consumerRecords != null) {
+                lastPollShadow = true;
+                Pradar.setClusterTest(true);
+                this.bizHeartbeat.poll(System.currentTimeMillis());
+                return consumerRecords;
+            }
+        }
+        lastPollShadow = false;
+        return doBizPoll(dedicatedShadowConsumer.hasBuffered() ? 0 : timeout);
+    }
+
     private void heartbeatPoll() {
-        this.ptHeartbeat.poll(System.currentTimeMillis());
+        if (dedicatedShadowConsumer == null) {
+            this.ptHeartbeat.poll(System.currentTimeMillis());
+        }
         this.bizHeartbeat.poll(System.currentTimeMillis());
     }
 
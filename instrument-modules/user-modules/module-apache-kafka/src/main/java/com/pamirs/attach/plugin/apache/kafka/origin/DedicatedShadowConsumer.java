@@ -0,0 +1,846 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.apache.kafka.origin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 独立线程运行的影子 consumer
+ * <p>
+ * KafkaConsumer 非线程安全，所以影子 consumer 交给一个专属线程持有：专属线程持续 poll，把拉到的批次放进缓冲区，
+ * 业务线程调用 {@link ConsumerProxy#poll(long)} 时直接取缓冲区中的批次，不再占用业务 poll 的等待时间。
+ * 业务线程对影子 consumer 的其他调用(提交位点、seek、pause 等)都转交给专属线程执行并等待结果，
+ * 转交时唤醒专属线程正在进行的 poll，不需要等 poll 超时。
+ * <p>
+ * 缓冲区的批次数达到上限时暂停所有已分配分区的拉取，消费到一半以下再恢复，形成背压；
+ * 同时按 topic-partition 记录堆积的位点数和最早消息的时间延迟。
+ * <p>
+ * 不带位点的提交只提交已经交给业务的消息位点，缓冲区中还没交出去的消息不会被提交；
+ * seek、重新分配以及再平衡回收分区时，缓冲区中对应分区的消息会被丢弃，避免业务拿到过期或不再属于自己的消息。
+ * 业务的再平衡监听器不在专属线程中执行，而是在业务线程下一次 poll 时执行，此时再平衡已经完成。
+ * <p>
+ * 开启了自动提交时，位点由专属线程在 poll 时提交，所以缓冲区只保留一个批次，批次交给业务之后，
+ * 要等业务再次 poll (即上一批已经处理完)才继续 poll，保证自动提交的位点不超过业务已经处理完的消息
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class DedicatedShadowConsumer implements Consumer {
+
+    private static final Logger log = LoggerFactory.getLogger(DedicatedShadowConsumer.class);
+
+    /**
+     * 是否开启影子 consumer 独立线程模式
+     */
+    public static final String ENABLED = "shadow.kafka.dedicatedConsumer";
+
+    /**
+     * 缓冲区最大批次数
+     */
+    public static final String BUFFER_BATCHES = "shadow.kafka.dedicatedConsumer.bufferBatches";
+
+    private static final int DEFAULT_BUFFER_BATCHES = 4;
+
+    /**
+     * 专属线程单次 poll 的超时时间，同时也是空闲时转交的调用最长的等待时间
+     */
+    private static final long POLL_TIMEOUT = 100;
+
+    /**
+     * 刷新分区堆积位点数的间隔
+     */
+    private static final long LAG_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private final Consumer consumer;
+    private final boolean autoCommit;
+    private final int bufferBatches;
+    private final LinkedBlockingQueue<ConsumerRecords> buffer = new LinkedBlockingQueue<ConsumerRecords>();
+    private final ConcurrentLinkedQueue<FutureTask> tasks = new ConcurrentLinkedQueue<FutureTask>();
+    private final ConcurrentHashMap<TopicPartition, PartitionLag> lags = new ConcurrentHashMap<TopicPartition, PartitionLag>();
+    /**
+     * 各分区已经交给业务的下一个位点，不带位点的提交只提交这些位点
+     */
+    private final ConcurrentHashMap<TopicPartition, Long> delivered = new ConcurrentHashMap<TopicPartition, Long>();
+    /**
+     * 等待在业务线程中执行的再平衡回调
+     */
+    private final ConcurrentLinkedQueue<RebalanceEvent> rebalanceEvents = new ConcurrentLinkedQueue<RebalanceEvent>();
+    private final Thread thread;
+    private volatile boolean running;
+    /**
+     * 专属线程是否正在 poll，转交调用时只唤醒正在进行的 poll
+     */
+    private volatile boolean polling;
+    /**
+     * 自动提交时，交出去的批次还没被确认处理完
+     */
+    private volatile boolean awaitingNextPoll;
+
+    /**
+     * 由于背压暂停的分区，只在专属线程中访问
+     */
+    private final Set<TopicPartition> backPressured = new HashSet<TopicPartition>();
+    private long lastLagRefreshTime;
+
+    /**
+     * @param consumer   影子 consumer
+     * @param groupId    影子消费组，用于线程命名
+     * @param autoCommit 影子 consumer 是否开启了自动提交
+     */
+    public DedicatedShadowConsumer(Consumer consumer, String groupId, boolean autoCommit) {
+        this.consumer = consumer;
+        this.autoCommit = autoCommit;
+        this.bufferBatches = autoCommit ? 1 : getBufferBatches();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                DedicatedShadowConsumer.this.run();
+            }
+        }, "kafka-shadow-consumer-" + groupId);
+        this.thread.setDaemon(true);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED));
+    }
+
+    private static int getBufferBatches() {
+        String value = System.getProperty(BUFFER_BATCHES);
+        if (!StringUtils.isEmpty(value)) {
+            try {
+                int batches = Integer.parseInt(value);
+                if (batches > 0) {
+                    return batches;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return DEFAULT_BUFFER_BATCHES;
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * 取出一个已经拉到的批次，不会阻塞
+     *
+     * @return 批次，缓冲区为空时返回 null
+     */
+    public ConsumerRecords pollBuffered() {
+        ConsumerRecords records = buffer.poll();
+        if (records != null) {
+            recordDelivered(records);
+            if (autoCommit) {
+                awaitingNextPoll = true;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 业务线程每次 poll 时调用，说明上一次交出去的批次已经处理完，同时在业务线程中执行再平衡回调
+     */
+    public void onApplicationPoll() {
+        awaitingNextPoll = false;
+        RebalanceEvent event;
+        while ((event = rebalanceEvents.poll()) != null) {
+            try {
+                if (event.revoked) {
+                    event.listener.onPartitionsRevoked(event.partitions);
+                } else {
+                    event.listener.onPartitionsAssigned(event.partitions);
+                }
+            } catch (Throwable e) {
+                log.error("shadow consumer rebalance listener fail!", e);
+            }
+        }
+    }
+
+    public boolean hasBuffered() {
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * 各分区堆积的位点数，即最新位点与当前消费位点的差值
+     *
+     * @return topic-partition -> 堆积位点数
+     */
+    public Map<TopicPartition, Long> getOffsetLags() {
+        Map<TopicPartition, Long> result = new HashMap<TopicPartition, Long>();
+        for (Map.Entry<TopicPartition, PartitionLag> entry : lags.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().offsetLag);
+        }
+        return result;
+    }
+
+    /**
+     * 各分区最近一次拉到的批次中最早一条消息的延迟
+     *
+     * @return topic-partition -> 延迟毫秒数
+     */
+    public Map<TopicPartition, Long> getTimeLags() {
+        Map<TopicPartition, Long> result = new HashMap<TopicPartition, Long>();
+        for (Map.Entry<TopicPartition, PartitionLag> entry : lags.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().timeLag);
+        }
+        return result;
+    }
+
+    private void run() {
+        while (running) {
+            runTasks();
+            if (!running) {
+                break;
+            }
+            if (autoCommit && (awaitingNextPoll || !buffer.isEmpty())) {
+                // 自动提交在 poll 时进行，业务处理完上一批之前 poll 会把还没处理完的消息位点提交掉
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(POLL_TIMEOUT));
+                continue;
+            }
+            try {
+                applyBackPressure();
+                ConsumerRecords records;
+                polling = true;
+                try {
+                    records = consumer.poll(POLL_TIMEOUT);
+                } finally {
+                    polling = false;
+                }
+                if (records != null && !records.isEmpty()) {
+                    recordTimeLags(records);
+                    buffer.offer(records);
+                }
+                refreshOffsetLags();
+            } catch (WakeupException e) {
+                // 转交调用时唤醒，直接执行转交的调用
+            } catch (Throwable e) {
+                log.error("shadow consumer dedicated poll fail!", e);
+            }
+        }
+        runTasks();
+    }
+
+    private void runTasks() {
+        FutureTask task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * 缓冲区满时暂停已分配的分区，消费到一半以下时恢复。再平衡后新分配的分区在下一轮会重新判断
+     */
+    private void applyBackPressure() {
+        int size = buffer.size();
+        if (size >= bufferBatches) {
+            Set<TopicPartition> assignment = consumer.assignment();
+            Set<TopicPartition> paused = consumer.paused();
+            List<TopicPartition> toPause = new ArrayList<TopicPartition>();
+            for (TopicPartition partition : assignment) {
+                if (!paused.contains(partition)) {
+                    toPause.add(partition);
+                }
+            }
+            if (!toPause.isEmpty()) {
+                consumer.pause(toPause);
+                if (backPressured.isEmpty()) {
+                    log.warn("shadow consumer buffer is full, pause fetching {}, offset lags : {}", toPause, getOffsetLags());
+                }
+                backPressured.addAll(toPause);
+            }
+        } else if (!backPressured.isEmpty() && size <= bufferBatches / 2) {
+            List<TopicPartition> toResume = new ArrayList<TopicPartition>();
+            Set<TopicPartition> assignment = consumer.assignment();
+            for (TopicPartition partition : backPressured) {
+                if (assignment.contains(partition)) {
+                    toResume.add(partition);
+                }
+            }
+            backPressured.clear();
+            if (!toResume.isEmpty()) {
+                consumer.resume(toResume);
+            }
+        }
+    }
+
+    private void recordDelivered(ConsumerRecords records) {
+        for (TopicPartition partition : (Set<TopicPartition>) records.partitions()) {
+            List<ConsumerRecord> partitionRecords = records.records(partition);
+            if (!partitionRecords.isEmpty()) {
+                delivered.put(partition, partitionRecords.get(partitionRecords.size() - 1).offset() + 1);
+            }
+        }
+    }
+
+    /**
+     * 已经交给业务且仍然分配给当前 consumer 的分区位点，只在专属线程中调用
+     */
+    private Map<TopicPartition, OffsetAndMetadata> deliveredOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+        Set<TopicPartition> assignment = consumer.assignment();
+        for (Map.Entry<TopicPartition, Long> entry : delivered.entrySet()) {
+            if (assignment.contains(entry.getKey())) {
+                offsets.put(entry.getKey(), new OffsetAndMetadata(entry.getValue()));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * 丢弃缓冲区中指定分区的消息，同时清除这些分区已交出的位点，只在专属线程中调用
+     */
+    private void purge(Collection<TopicPartition> partitions) {
+        purgeBuffer(partitions);
+        delivered.keySet().removeAll(partitions);
+    }
+
+    /**
+     * 丢弃缓冲区中指定分区的消息，只在专属线程中调用
+     */
+    private void purgeBuffer(Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty() || buffer.isEmpty()) {
+            return;
+        }
+        Set<TopicPartition> purged = new HashSet<TopicPartition>(partitions);
+        List<ConsumerRecords> batches = new ArrayList<ConsumerRecords>();
+        buffer.drainTo(batches);
+        for (ConsumerRecords records : batches) {
+            Set<TopicPartition> batchPartitions = records.partitions();
+            Map<TopicPartition, List<ConsumerRecord>> remaining = new HashMap<TopicPartition, List<ConsumerRecord>>();
+            for (TopicPartition partition : batchPartitions) {
+                if (!purged.contains(partition)) {
+                    remaining.put(partition, records.records(partition));
+                }
+            }
+            if (remaining.size() == batchPartitions.size()) {
+                buffer.offer(records);
+            } else if (!remaining.isEmpty()) {
+                buffer.offer(new ConsumerRecords(remaining));
+            }
+        }
+    }
+
+    private void recordTimeLags(ConsumerRecords records) {
+        long now = System.currentTimeMillis();
+        for (TopicPartition partition : (Set<TopicPartition>) records.partitions()) {
+            List<ConsumerRecord> partitionRecords = records.records(partition);
+            if (partitionRecords.isEmpty()) {
+                continue;
+            }
+            long timestamp = partitionRecords.get(0).timestamp();
+            if (timestamp > 0) {
+                getLag(partition).timeLag = Math.max(0, now - timestamp);
+            }
+        }
+    }
+
+    private void refreshOffsetLags() {
+        long now = System.currentTimeMillis();
+        if (now - lastLagRefreshTime < LAG_REFRESH_INTERVAL) {
+            return;
+        }
+        lastLagRefreshTime = now;
+        Set<TopicPartition> assignment = consumer.assignment();
+        lags.keySet().retainAll(assignment);
+        if (assignment.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(assignment);
+        for (TopicPartition partition : assignment) {
+            Long endOffset = endOffsets.get(partition);
+            if (endOffset == null) {
+                continue;
+            }
+            getLag(partition).offsetLag = Math.max(0, endOffset - consumer.position(partition));
+        }
+    }
+
+    private PartitionLag getLag(TopicPartition partition) {
+        PartitionLag lag = lags.get(partition);
+        if (lag == null) {
+            lag = new PartitionLag();
+            PartitionLag old = lags.putIfAbsent(partition, lag);
+            if (old != null) {
+                lag = old;
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * 在专属线程中执行调用并等待结果，专属线程已经退出时在当前线程执行
+     */
+    private <T> T execute(final Callable<T> callable) {
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                while (true) {
+                    try {
+                        return callable.call();
+                    } catch (WakeupException e) {
+                        // 业务的 wakeup 不会传给影子 consumer，这里只可能是转交调用时的唤醒，重新执行即可
+                    }
+                }
+            }
+        });
+        if (!running || Thread.currentThread() == thread) {
+            task.run();
+        } else {
+            tasks.offer(task);
+            LockSupport.unpark(thread);
+            if (polling) {
+                consumer.wakeup();
+            }
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!thread.isAlive()) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void execute(final Runnable runnable) {
+        execute(new Callable<Object>() {
+            @Override
+            public Object call() {
+                runnable.run();
+                return null;
+            }
+        });
+    }
+
+    private void stop() {
+        running = false;
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        if (polling) {
+            consumer.wakeup();
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public Set<TopicPartition> assignment() {
+        return execute(new Callable<Set<TopicPartition>>() {
+            @Override
+            public Set<TopicPartition> call() {
+                return consumer.assignment();
+            }
+        });
+    }
+
+    @Override
+    public Set<String> subscription() {
+        return execute(new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() {
+                return consumer.subscription();
+            }
+        });
+    }
+
+    @Override
+    public void assign(final Collection collection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                List<TopicPartition> removed = new ArrayList<TopicPartition>(consumer.assignment());
+                removed.removeAll(collection);
+                consumer.assign(collection);
+                purge(removed);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(final Collection topics) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.subscribe(topics, new PurgeOnRevokeListener(null));
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(final Collection topics, final ConsumerRebalanceListener callback) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.subscribe(topics, new PurgeOnRevokeListener(callback));
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(final Pattern pattern, final ConsumerRebalanceListener callback) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.subscribe(pattern, new PurgeOnRevokeListener(callback));
+            }
+        });
+    }
+
+    @Override
+    public void unsubscribe() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.unsubscribe();
+                buffer.clear();
+                delivered.clear();
+            }
+        });
+    }
+
+    /**
+     * 独立线程模式下由专属线程拉取，这里只返回缓冲区中的批次
+     */
+    @Override
+    public ConsumerRecords poll(long timeout) {
+        onApplicationPoll();
+        ConsumerRecords records = pollBuffered();
+        return records == null ? ConsumerRecords.empty() : records;
+    }
+
+    /**
+     * 只提交已经交给业务的位点，缓冲区中的消息不提交
+     */
+    @Override
+    public void commitSync() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.commitSync(deliveredOffsets());
+            }
+        });
+    }
+
+    @Override
+    public void commitSync(final Map offsets) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.commitSync(offsets);
+            }
+        });
+    }
+
+    @Override
+    public void commitAsync() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.commitAsync(deliveredOffsets(), null);
+            }
+        });
+    }
+
+    @Override
+    public void commitAsync(final OffsetCommitCallback callback) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.commitAsync(deliveredOffsets(), callback);
+            }
+        });
+    }
+
+    @Override
+    public void commitAsync(final Map offsets, final OffsetCommitCallback callback) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.commitAsync(offsets, callback);
+            }
+        });
+    }
+
+    @Override
+    public void seek(final TopicPartition partition, final long offset) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.seek(partition, offset);
+                purge(Collections.singletonList(partition));
+            }
+        });
+    }
+
+    @Override
+    public void seekToBeginning(final Collection collection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.seekToBeginning(collection);
+                purge(collection.isEmpty() ? consumer.assignment() : collection);
+            }
+        });
+    }
+
+    @Override
+    public void seekToEnd(final Collection collection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.seekToEnd(collection);
+                purge(collection.isEmpty() ? consumer.assignment() : collection);
+            }
+        });
+    }
+
+    @Override
+    public long position(final TopicPartition partition) {
+        return execute(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return consumer.position(partition);
+            }
+        });
+    }
+
+    @Override
+    public OffsetAndMetadata committed(final TopicPartition partition) {
+        return execute(new Callable<OffsetAndMetadata>() {
+            @Override
+            public OffsetAndMetadata call() {
+                return consumer.committed(partition);
+            }
+        });
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return execute(new Callable<Map<MetricName, ? extends Metric>>() {
+            @Override
+            public Map<MetricName, ? extends Metric> call() {
+                return consumer.metrics();
+            }
+        });
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(final String topic) {
+        return execute(new Callable<List<PartitionInfo>>() {
+            @Override
+            public List<PartitionInfo> call() {
+                return consumer.partitionsFor(topic);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, List<PartitionInfo>> listTopics() {
+        return execute(new Callable<Map<String, List<PartitionInfo>>>() {
+            @Override
+            public Map<String, List<PartitionInfo>> call() {
+                return consumer.listTopics();
+            }
+        });
+    }
+
+    @Override
+    public Set<TopicPartition> paused() {
+        return execute(new Callable<Set<TopicPartition>>() {
+            @Override
+            public Set<TopicPartition> call() {
+                return consumer.paused();
+            }
+        });
+    }
+
+    /**
+     * 业务主动暂停的分区不会被背压恢复
+     */
+    @Override
+    public void pause(final Collection collection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.pause(collection);
+                backPressured.removeAll(collection);
+            }
+        });
+    }
+
+    @Override
+    public void resume(final Collection collection) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                consumer.resume(collection);
+                backPressured.removeAll(collection);
+            }
+        });
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(final Map timestampsToSearch) {
+        return execute(new Callable<Map<TopicPartition, OffsetAndTimestamp>>() {
+            @Override
+            public Map<TopicPartition, OffsetAndTimestamp> call() {
+                return consumer.offsetsForTimes(timestampsToSearch);
+            }
+        });
+    }
+
+    @Override
+    public Map<TopicPartition, Long> beginningOffsets(final Collection collection) {
+        return execute(new Callable<Map<TopicPartition, Long>>() {
+            @Override
+            public Map<TopicPartition, Long> call() {
+                return consumer.beginningOffsets(collection);
+            }
+        });
+    }
+
+    @Override
+    public Map<TopicPartition, Long> endOffsets(final Collection collection) {
+        return execute(new Callable<Map<TopicPartition, Long>>() {
+            @Override
+            public Map<TopicPartition, Long> call() {
+                return consumer.endOffsets(collection);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        stop();
+        consumer.close();
+        lags.clear();
+    }
+
+    @Override
+    public void close(long timeout, TimeUnit unit) {
+        stop();
+        consumer.close(timeout, unit);
+        lags.clear();
+    }
+
+    /**
+     * 专属线程每次 poll 的超时时间很短，不需要唤醒；唤醒反而会让随后的调用抛出 WakeupException
+     */
+    @Override
+    public void wakeup() {
+    }
+
+    /**
+     * 再平衡回收分区时在专属线程中丢弃缓冲区中这些分区的消息和已交出的位点，
+     * 业务的监听器放到业务线程下一次 poll 时执行
+     */
+    private final class PurgeOnRevokeListener implements ConsumerRebalanceListener {
+        private final ConsumerRebalanceListener delegate;
+
+        PurgeOnRevokeListener(ConsumerRebalanceListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            purge(partitions);
+            if (delegate != null) {
+                rebalanceEvents.offer(new RebalanceEvent(delegate, true, new ArrayList<TopicPartition>(partitions)));
+            }
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            if (delegate != null) {
+                rebalanceEvents.offer(new RebalanceEvent(delegate, false, new ArrayList<TopicPartition>(partitions)));
+            }
+        }
+    }
+
+    private static final class RebalanceEvent {
+        private final ConsumerRebalanceListener listener;
+        private final boolean revoked;
+        private final Collection<TopicPartition> partitions;
+
+        RebalanceEvent(ConsumerRebalanceListener listener, boolean revoked, Collection<TopicPartition> partitions) {
+            this.listener = listener;
+            this.revoked = revoked;
+            this.partitions = partitions;
+        }
+    }
+
+    private static final class PartitionLag {
+        private volatile long offsetLag;
+        private volatile long timeLag;
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.apache.kafka.origin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class DedicatedShadowConsumerTest {
+
+    private static final String TOPIC = "PT_test";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    private CapturingMockConsumer mock;
+    private DedicatedShadowConsumer shadow;
+
+    @Before
+    public void setUp() {
+        mock = new CapturingMockConsumer();
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<TopicPartition, Long>();
+        beginningOffsets.put(PARTITION, 0L);
+        mock.updateBeginningOffsets(beginningOffsets);
+    }
+
+    @After
+    public void tearDown() {
+        if (shadow != null) {
+            shadow.close();
+        }
+    }
+
+    @Test
+    public void commitSyncOnlyCommitsDeliveredOffsets() throws Exception {
+        shadow = new DedicatedShadowConsumer(mock, "test", false);
+        shadow.assign(Collections.singletonList(PARTITION));
+        addRecords(0, 5);
+        shadow.start();
+        awaitPosition(5);
+        addRecords(5, 10);
+        awaitPosition(10);
+
+        ConsumerRecords records = shadow.poll(0);
+        Assert.assertEquals(5, records.count());
+        shadow.commitSync();
+
+        Assert.assertEquals(5, mock.committed(PARTITION).offset());
+        Assert.assertTrue(shadow.hasBuffered());
+    }
+
+    @Test
+    public void seekPurgesBufferedRecords() throws Exception {
+        shadow = new DedicatedShadowConsumer(mock, "test", false);
+        shadow.assign(Collections.singletonList(PARTITION));
+        addRecords(0, 5);
+        shadow.start();
+        awaitPosition(5);
+        shadow.poll(0);
+        addRecords(5, 10);
+        awaitPosition(10);
+
+        shadow.seek(PARTITION, 2);
+
+        Assert.assertFalse(shadow.hasBuffered());
+        shadow.commitSync();
+        Assert.assertNull(mock.committed(PARTITION));
+    }
+
+    @Test
+    public void autoCommitWaitsForApplicationPoll() throws Exception {
+        shadow = new DedicatedShadowConsumer(mock, "test", true);
+        shadow.assign(Collections.singletonList(PARTITION));
+        addRecords(0, 5);
+        shadow.start();
+        awaitBuffered();
+
+        Assert.assertEquals(5, shadow.pollBuffered().count());
+        addRecords(5, 10);
+        Thread.sleep(300);
+        Assert.assertEquals(5, mock.position(PARTITION));
+
+        shadow.onApplicationPoll();
+        awaitPosition(10);
+    }
+
+    @Test
+    public void rebalanceListenerRunsOnApplicationPoll() throws Exception {
+        final List<Thread> callers = new CopyOnWriteArrayList<Thread>();
+        final List<TopicPartition> revoked = new CopyOnWriteArrayList<TopicPartition>();
+        shadow = new DedicatedShadowConsumer(mock, "test", false);
+        shadow.subscribe(Collections.singletonList(TOPIC), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                callers.add(Thread.currentThread());
+                revoked.addAll(partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                callers.add(Thread.currentThread());
+            }
+        });
+        mock.rebalance(Collections.singletonList(PARTITION));
+        addRecords(0, 5);
+        shadow.start();
+        awaitBuffered();
+
+        final AtomicBoolean rebalanced = new AtomicBoolean();
+        mock.schedulePollTask(new Runnable() {
+            @Override
+            public void run() {
+                mock.listener.onPartitionsRevoked(Collections.singletonList(PARTITION));
+                rebalanced.set(true);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!rebalanced.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(rebalanced.get());
+        Assert.assertFalse(shadow.hasBuffered());
+        Assert.assertTrue(callers.isEmpty());
+
+        shadow.poll(0);
+        Assert.assertEquals(Collections.singletonList(Thread.currentThread()), callers);
+        Assert.assertEquals(Collections.singletonList(PARTITION), revoked);
+    }
+
+    private void addRecords(long from, long to) {
+        for (long offset = from; offset < to; offset++) {
+            mock.addRecord(new ConsumerRecord(TOPIC, PARTITION.partition(), offset, "key", "value"));
+        }
+    }
+
+    private void awaitPosition(long position) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mock.position(PARTITION) < position && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(position, mock.position(PARTITION));
+    }
+
+    private void awaitBuffered() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!shadow.hasBuffered() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(shadow.hasBuffered());
+    }
+
+    /**
+     * MockConsumer 的 rebalance 不会回调监听器，这里记下影子 consumer 注册的监听器，由测试自己触发
+     */
+    private static class CapturingMockConsumer extends MockConsumer {
+
+        private volatile ConsumerRebalanceListener listener;
+
+        CapturingMockConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void subscribe(Collection topics, ConsumerRebalanceListener listener) {
+            this.listener = listener;
+            super.subscribe(topics, listener);
+        }
+    }
+}
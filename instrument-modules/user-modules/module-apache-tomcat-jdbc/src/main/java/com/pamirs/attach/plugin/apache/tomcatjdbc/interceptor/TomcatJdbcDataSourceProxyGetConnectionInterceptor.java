@@ -38,11 +38,13 @@ import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import org.apache.commons.lang.StringUtils;
 import org.apache.tomcat.jdbc.pool.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -58,6 +60,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class TomcatJdbcDataSourceProxyGetConnectionInterceptor extends CutoffInterceptorAdaptor {
     private final static Logger logger = LoggerFactory.getLogger(TomcatJdbcDataSourceProxyGetConnectionInterceptor.class.getName());
 
+    @Resource
+    protected DynamicFieldManager manager;
+
     private static AtomicBoolean isInited = new AtomicBoolean(false);
 
     public TomcatJdbcDataSourceProxyGetConnectionInterceptor() {
@@ -66,15 +71,26 @@ public class TomcatJdbcDataSourceProxyGetConnectionInterceptor extends CutoffInt
 
     @Override
     public CutOffResult cutoff0(Advice advice) {
-        attachment(advice);
         Object target = advice.getTarget();
         DataSource dataSource = (DataSource) target;
-        DataSourceMeta<DataSource> dataSourceMeta = new DataSourceMeta<DataSource>(dataSource.getUrl(), dataSource.getUsername(), dataSource);
         /**
-         * 压测状态为关闭,如果当前为压测流量则直接报错
+         * 路由解析过之后缓存在数据源上，只有影子数据源相关的事件会让缓存失效
          */
-        ClusterTestUtils.validateClusterTest();
-        DataSourceWrapUtil.doWrap(dataSourceMeta);
+        TomcatJdbcMediatorDataSource mediatorDataSource = DataSourceWrapUtil.routeCache.get(manager, dataSource);
+        if (mediatorDataSource == null) {
+            final int version = DataSourceWrapUtil.routeCache.version();
+            attachment(advice);
+            DataSourceMeta<DataSource> dataSourceMeta = new DataSourceMeta<DataSource>(dataSource.getUrl(), dataSource.getUsername(), dataSource);
+            /**
+             * 压测状态为关闭,如果当前为压测流量则直接报错
+             */
+            ClusterTestUtils.validateClusterTest();
+            DataSourceWrapUtil.doWrap(dataSourceMeta);
+            mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
+            DataSourceWrapUtil.routeCache.put(manager, dataSource, version, mediatorDataSource);
+        } else {
+            ClusterTestUtils.validateClusterTest();
+        }
         Connection connection = null;
 
         /**
@@ -82,18 +98,11 @@ public class TomcatJdbcDataSourceProxyGetConnectionInterceptor extends CutoffInt
          * 如果未找到配置情况下则当前流量为压测流量时返回null,非压测流量则执行业务连接池正常逻辑,此种情况可能由于数据源未配置的情况
          * 如果获取连接出错时如果流量为压测流量则返回null，非压测流量则执行业务连接池正常逻辑
          */
-        if (DataSourceWrapUtil.pressureDataSources.containsKey(dataSourceMeta)) {
-            TomcatJdbcMediatorDataSource mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
-            if (mediatorDataSource != null) {
-                try {
-                    connection = mediatorDataSource.getConnection();
-                } catch (SQLException e) {
-                    throw new PressureMeasureError(e);
-                }
-            } else {
-                if (!Pradar.isClusterTest()) {
-                    return CutOffResult.passed();
-                }
+        if (mediatorDataSource != null) {
+            try {
+                connection = mediatorDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new PressureMeasureError(e);
             }
             return CutOffResult.cutoff(connection);
         } else {
@@ -155,6 +164,7 @@ public class TomcatJdbcDataSourceProxyGetConnectionInterceptor extends CutoffInt
                     }
 
                 }
+                DataSourceWrapUtil.routeCache.invalidate();
                 return EventResult.success("module-tomcat-jdbc: destroyed shadow table datasource success.");
             }
 
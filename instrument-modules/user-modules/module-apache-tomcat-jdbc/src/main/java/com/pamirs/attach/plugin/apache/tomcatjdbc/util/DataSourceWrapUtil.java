@@ -15,6 +15,7 @@
 package com.pamirs.attach.plugin.apache.tomcatjdbc.util;
 
 import com.pamirs.attach.plugin.apache.tomcatjdbc.obj.TomcatJdbcMediatorDataSource;
+import com.pamirs.attach.plugin.common.datasource.DataSourceRouteCache;
 import com.pamirs.pradar.ErrorTypeEnum;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
 import com.pamirs.pradar.pressurement.agent.shared.service.ErrorReporter;
@@ -39,6 +40,11 @@ public class DataSourceWrapUtil {
 
     public static final ConcurrentHashMap<DataSourceMeta, TomcatJdbcMediatorDataSource> pressureDataSources = new ConcurrentHashMap<DataSourceMeta, TomcatJdbcMediatorDataSource>();
 
+    /**
+     * 业务数据源上缓存的路由，pressureDataSources 变更后需要失效
+     */
+    public static final DataSourceRouteCache<TomcatJdbcMediatorDataSource> routeCache = new DataSourceRouteCache<TomcatJdbcMediatorDataSource>("tomcat-jdbc.route");
+
     public static void destroy() {
         Iterator<Map.Entry<DataSourceMeta, TomcatJdbcMediatorDataSource>> it = pressureDataSources.entrySet().iterator();
         while (it.hasNext()) {
@@ -47,6 +53,7 @@ public class DataSourceWrapUtil {
             entry.getValue().close();
         }
         pressureDataSources.clear();
+        routeCache.invalidate();
     }
 
     public static void doWrap(DataSourceMeta<DataSource> dataSourceMeta) {
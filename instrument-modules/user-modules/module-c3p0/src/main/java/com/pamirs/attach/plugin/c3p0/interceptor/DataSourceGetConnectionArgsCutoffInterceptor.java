@@ -178,6 +178,7 @@ public class DataSourceGetConnectionArgsCutoffInterceptor extends CutoffIntercep
                     }
 
                 }
+                DataSourceWrapUtil.routeCache.invalidate();
                 return EventResult.success("module-c3p0: destroyed shadow table datasource success.");
             }
 
@@ -39,10 +39,12 @@ import com.pamirs.pradar.pressurement.agent.shared.service.EventRouter;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -59,6 +61,9 @@ import java.util.Set;
 public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorAdaptor {
     private final static Logger logger = LoggerFactory.getLogger(DataSourceGetConnectionCutoffInterceptor.class.getName());
 
+    @Resource
+    protected DynamicFieldManager manager;
+
     public DataSourceGetConnectionCutoffInterceptor() {
         addListener();
     }
@@ -87,13 +92,24 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
 
     @Override
     public CutOffResult cutoff0(Advice advice) throws SQLException {
-        attachment(advice);
         Object target = advice.getTarget();
         ComboPooledDataSource dataSource = (ComboPooledDataSource) target;
-        DataSourceMeta<ComboPooledDataSource> dataSourceMeta = new DataSourceMeta<ComboPooledDataSource>(dataSource.getJdbcUrl(), dataSource.getUser(), dataSource);
-        ClusterTestUtils.validateClusterTest();
+        /**
+         * 路由解析过之后缓存在数据源上，只有影子数据源相关的事件会让缓存失效
+         */
+        C3p0MediaDataSource mediatorDataSource = DataSourceWrapUtil.routeCache.get(manager, dataSource);
+        if (mediatorDataSource == null) {
+            final int version = DataSourceWrapUtil.routeCache.version();
+            attachment(advice);
+            DataSourceMeta<ComboPooledDataSource> dataSourceMeta = new DataSourceMeta<ComboPooledDataSource>(dataSource.getJdbcUrl(), dataSource.getUser(), dataSource);
+            ClusterTestUtils.validateClusterTest();
 
-        DataSourceWrapUtil.init(dataSourceMeta);
+            DataSourceWrapUtil.init(dataSourceMeta);
+            mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
+            DataSourceWrapUtil.routeCache.put(manager, dataSource, version, mediatorDataSource);
+        } else {
+            ClusterTestUtils.validateClusterTest();
+        }
 
         Connection connection = null;
 
@@ -104,21 +120,14 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
          *
          * 如果配置初始化异常或者没有对应配置
          */
-        if (DataSourceWrapUtil.pressureDataSources.containsKey(dataSourceMeta)) {
-            C3p0MediaDataSource mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
-            if (mediatorDataSource != null) {
-                try {
-                    connection = mediatorDataSource.getConnection();
-                } catch (SQLException e) {
-                    if (Pradar.isClusterTest()) {
-                        throw new PressureMeasureError(e);
-                    }
-                    throw e;
-                }
-            } else {
-                if (!Pradar.isClusterTest()) {
-                    return CutOffResult.passed();
+        if (mediatorDataSource != null) {
+            try {
+                connection = mediatorDataSource.getConnection();
+            } catch (SQLException e) {
+                if (Pradar.isClusterTest()) {
+                    throw new PressureMeasureError(e);
                 }
+                throw e;
             }
             return CutOffResult.cutoff(connection);
         } else {
@@ -180,6 +189,7 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
                     }
 
                 }
+                DataSourceWrapUtil.routeCache.invalidate();
                 return EventResult.success("module-c3p0: destroyed shadow table datasource success.");
             }
 
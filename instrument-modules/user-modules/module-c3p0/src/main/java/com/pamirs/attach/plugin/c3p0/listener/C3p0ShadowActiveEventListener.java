@@ -72,6 +72,8 @@ public class C3p0ShadowActiveEventListener implements PradarEventListener {
         } catch (Exception e) {
             LOGGER.error("[c3p0]: handler shadow datasource active event occur exception", e);
             return EventResult.error("active-shadow-datasource-event", "module-alibaba-druid: handler shadow datasource active event occur exception.");
+        } finally {
+            DataSourceWrapUtil.routeCache.invalidate();
         }
     }
 
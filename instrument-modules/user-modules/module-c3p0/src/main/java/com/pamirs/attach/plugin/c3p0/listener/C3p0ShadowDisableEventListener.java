@@ -55,6 +55,7 @@ public class C3p0ShadowDisableEventListener implements PradarEventListener {
                 logger.error("[dbcp]: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
             }
         }
+        DataSourceWrapUtil.routeCache.invalidate();
         SqlParser.clear();
         return EventResult.success("[dbcp]: handler shadow datasource disable event success,  destroyed shadow table datasource success.");
     }
@@ -15,6 +15,7 @@
 package com.pamirs.attach.plugin.c3p0.utils;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.pamirs.attach.plugin.common.datasource.DataSourceRouteCache;
 import com.pamirs.pradar.*;
 import com.pamirs.pradar.internal.config.ShadowDatabaseConfig;
 import com.pamirs.pradar.pressurement.agent.shared.service.DataSourceMeta;
@@ -44,6 +45,11 @@ public class DataSourceWrapUtil {
 
     public static final ConcurrentHashMap<DataSourceMeta, C3p0MediaDataSource> pressureDataSources = new ConcurrentHashMap<DataSourceMeta, C3p0MediaDataSource>();
 
+    /**
+     * 业务数据源上缓存的路由，pressureDataSources 变更后需要失效
+     */
+    public static final DataSourceRouteCache<C3p0MediaDataSource> routeCache = new DataSourceRouteCache<C3p0MediaDataSource>("c3p0.route");
+
     public static void destroy() {
         Iterator<Map.Entry<DataSourceMeta, C3p0MediaDataSource>> it = pressureDataSources.entrySet().iterator();
         while (it.hasNext()) {
@@ -52,6 +58,7 @@ public class DataSourceWrapUtil {
             entry.getValue().close();
         }
         pressureDataSources.clear();
+        routeCache.invalidate();
     }
 
     public static boolean validate(ComboPooledDataSource sourceDataSource) {
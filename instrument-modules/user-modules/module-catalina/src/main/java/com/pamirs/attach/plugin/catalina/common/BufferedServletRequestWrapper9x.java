@@ -15,7 +15,6 @@
 package com.pamirs.attach.plugin.catalina.common;
 
 import com.pamirs.attach.plugin.catalina.CatalinaConstans;
-import com.pamirs.attach.plugin.catalina.utils.Constants;
 import com.pamirs.attach.plugin.common.web.IBufferedServletRequestWrapper;
 import com.pamirs.attach.plugin.dynamic.reflect.ReflectionUtils;
 import com.pamirs.pradar.Pradar;
@@ -53,10 +52,9 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
 
     private final static Logger logger = LoggerFactory.getLogger(BufferedServletRequestWrapper.class);
 
-    private byte[] buffer;
     private final Request request;
     protected RequestFacade facade;
-    private ServletInputStream inputStream;
+    private ClusterFlagScanningInputStream inputStream;
 
     private boolean isClusterTest = false;
 
@@ -70,68 +68,28 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
         this.facade = new RequestFacade(this);
     }
 
-    private void initBuffer() {
-        try {
-            InputStream is = request.getInputStream();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buff = new byte[1024];
-            int read;
-            while ((read = is.read(buff)) != -1) {
-                baos.write(buff, 0, read);
-            }
-            byte[] reqBuffer = baos.toByteArray();
-
-            if (reqBuffer != null && reqBuffer.length > 0) {
-                String paramData = new String(reqBuffer);
-                if (paramData.contains(com.pamirs.attach.plugin.catalina.utils.Constants.PRADAR_CLUSTER_FLAG_GW)) {
-                    isClusterTest = true;
-                    int startIndex = paramData.indexOf(Constants.PRADAR_CLUSTER_FLAG_GW);
-                    int endIndex = paramData.indexOf(Constants.extendParamEnd);
-                    String agentParam = paramData.substring(startIndex + Constants.PRADAR_CLUSTER_FLAG_GW.length(), endIndex);
-
-                    String businessParam = paramData.substring(0, startIndex) + paramData.substring(endIndex + Constants.extendParamEnd.length());
-//                    logger.info("[gw-catalina] businessParam: {}", businessParam);
-
-                    businessParam = restoreParamData(businessParam);
-//                    logger.info("[gw-catalina] restored businessParam: {}", businessParam);
-
-                    String[] rpcInfo = agentParam.split(",");
-                    traceContext.put(PradarService.PRADAR_TRACE_APPNAME_KEY, rpcInfo[0]);
-                    traceContext.put(PradarService.PRADAR_UPSTREAM_APPNAME_KEY, rpcInfo[1]);
-                    traceContext.put(PradarService.PRADAR_TRACE_ID_KEY, rpcInfo[2]);
-                    traceContext.put(PradarService.PRADAR_INVOKE_ID_KEY, rpcInfo[3]);
-                    traceContext.put(PradarService.PRADAR_TRACE_NODE_KEY, rpcInfo[4]);
-
-                    ReflectionUtils.set(Pradar.getInvokeContext(),"traceId", rpcInfo[2]);
-                    // 内网的invokeId是否重置
-                    String property = System.getProperty(CatalinaConstans.INTRANET_CROSS_INVOKE_ID_RESET_KEY);
-                    if("false".equals(property)){
-                        ReflectionUtils.set(Pradar.getInvokeContext(),"invokeId", rpcInfo[3]);
-                    }
-                    Pradar.getInvokeContext().setClusterTest(true);
-                    Pradar.getInvokeContextMap().putAll(traceContext);
-                    this.buffer = businessParam.getBytes();
-                } else {
-                    this.buffer = reqBuffer;
-                }
-            } else {
-                this.buffer = reqBuffer;
-            }
-        } catch (IOException e) {
-            //ignore
-        }
-    }
-
     /**
-     * 如果paramData是一个数组，还原成对象
+     * 网关透传过来的压测参数，设置到当前的调用上下文
      *
-     * @return
+     * @param agentParam 两个标记之间的压测参数
      */
-    private String restoreParamData(String businessParam) {
-        if (businessParam.startsWith("[")) {
-            return businessParam.substring(1, businessParam.length() - 1);
+    private void applyAgentParam(String agentParam) {
+        isClusterTest = true;
+        String[] rpcInfo = agentParam.split(",");
+        traceContext.put(PradarService.PRADAR_TRACE_APPNAME_KEY, rpcInfo[0]);
+        traceContext.put(PradarService.PRADAR_UPSTREAM_APPNAME_KEY, rpcInfo[1]);
+        traceContext.put(PradarService.PRADAR_TRACE_ID_KEY, rpcInfo[2]);
+        traceContext.put(PradarService.PRADAR_INVOKE_ID_KEY, rpcInfo[3]);
+        traceContext.put(PradarService.PRADAR_TRACE_NODE_KEY, rpcInfo[4]);
+
+        ReflectionUtils.set(Pradar.getInvokeContext(),"traceId", rpcInfo[2]);
+        // 内网的invokeId是否重置
+        String property = System.getProperty(CatalinaConstans.INTRANET_CROSS_INVOKE_ID_RESET_KEY);
+        if("false".equals(property)){
+            ReflectionUtils.set(Pradar.getInvokeContext(),"invokeId", rpcInfo[3]);
         }
-        return businessParam;
+        Pradar.getInvokeContext().setClusterTest(true);
+        Pradar.getInvokeContextMap().putAll(traceContext);
     }
 
 
@@ -752,22 +710,22 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        if (this.buffer == null) {
-            initBuffer();
-        }
         if (this.inputStream == null) {
-            this.inputStream = new BufferedServletInputStream(this.buffer);
+            ClusterFlagScanningInputStream inputStream = new ClusterFlagScanningInputStream(request.getInputStream(),
+                new ClusterFlagScanningInputStream.Listener() {
+                    @Override
+                    public void onAgentParam(String agentParam) {
+                        applyAgentParam(agentParam);
+                    }
+                }, ClusterFlagScanningInputStream.captureLimit());
+            inputStream.prefetch();
+            this.inputStream = inputStream;
         }
-
         return this.inputStream;
-//        return new BufferedServletInputStream(this.buffer);
     }
 
     @Override
     public BufferedReader getReader() throws IOException {
-        if (buffer == null) {
-            initBuffer();
-        }
         String characterEncoding = request.getCharacterEncoding();
         if (characterEncoding == null) {
             characterEncoding = "ISO8859-1";
@@ -777,10 +735,10 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
 
     @Override
     public byte[] getBody() {
-        if (null == this.buffer) {
+        if (null == this.inputStream) {
             return null;
         }
-        return this.buffer;
+        return this.inputStream.getCaptured();
     }
 
     @Override
@@ -793,45 +751,6 @@ public class BufferedServletRequestWrapper9x extends Request implements IBuffere
         return request.upgrade(handlerClass);
     }
 
-    static class BufferedServletInputStream extends ServletInputStream {
-        private ByteArrayInputStream inputStream;
-
-        public BufferedServletInputStream(byte[] buffer) {
-            this.inputStream = new ByteArrayInputStream(buffer);
-        }
-
-        @Override
-        public int available() throws IOException {
-            return inputStream.available();
-        }
-
-        @Override
-        public int read() throws IOException {
-            return inputStream.read();
-        }
-
-        @Override
-        public int read(byte[] b, int off, int len) throws IOException {
-            return inputStream.read(b, off, len);
-        }
-
-        @Override
-        public boolean isFinished() {
-            return false;
-        }
-
-        @Override
-        public boolean isReady() {
-            return false;
-        }
-
-        @Override
-        public void setReadListener(ReadListener readListener) {
-
-        }
-
-    }
-
     public boolean isClusterTest() {
         return isClusterTest;
     }
@@ -0,0 +1,400 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.catalina.common;
+
+import com.pamirs.attach.plugin.catalina.utils.Constants;
+import com.pamirs.pradar.Pradar;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 边读边识别网关压测标记的请求体输入流
+ * <p>
+ * 网关会把压测参数以 {@link Constants#PRADAR_CLUSTER_FLAG_GW} 开头、{@link Constants#extendParamEnd} 结尾
+ * 插入请求体中。这里直接在字节上查找标记，业务数据读到即可交给业务方，只有标记之间的参数会被转成字符串，
+ * 找到参数后通过 {@link Listener} 回调，标记本身从业务数据中去掉，只处理第一次出现的标记。
+ * <p>
+ * 和原来整段读取的处理保持一致：找到标记时，如果剩下的业务数据以 [ 开头，则去掉首尾各一个字节。
+ * 创建后先预读到找到标记或者读完请求体为止，保证业务方读到第一个字节之前压测上下文已经设置好；
+ * 标记一般在请求体开头，找到之后剩下的数据边读边交给业务方，没有标记时和原来一样整段读入。
+ * <p>
+ * 非线程安全，和普通的 {@link ServletInputStream} 一样只能由一个线程读取
+ */
+class ClusterFlagScanningInputStream extends ServletInputStream {
+
+    /**
+     * 压测参数的最大长度，超过后认为不是网关加上的标记，原样交给业务方
+     */
+    private static final int MAX_AGENT_PARAM_LENGTH = 4 * 1024;
+
+    private static final byte[] FLAG = Constants.PRADAR_CLUSTER_FLAG_GW.getBytes();
+    private static final byte[] FLAG_END = Constants.extendParamEnd.getBytes();
+
+    private static final int STATE_SCAN = 0;
+    private static final int STATE_AGENT_PARAM = 1;
+    private static final int STATE_PASS = 2;
+
+    private static final int RESTORE_UNKNOWN = 0;
+    private static final int RESTORE_HOLD = 1;
+    private static final int RESTORE_STRIP = 2;
+    private static final int RESTORE_NONE = 3;
+
+    private final InputStream in;
+    private final Listener listener;
+    private final int captureLimit;
+
+    private final byte[] chunk = new byte[1024];
+    /**
+     * 已读取、还不能确定是否属于标记的数据
+     */
+    private final ByteQueue pending = new ByteQueue();
+    /**
+     * 已确定的业务数据
+     */
+    private final ByteQueue ready = new ByteQueue();
+    private ByteQueue captured;
+
+    private int state = STATE_SCAN;
+    private int restore = RESTORE_UNKNOWN;
+    private boolean eof;
+
+    /**
+     * @param in           原始输入流
+     * @param listener     找到压测参数时的回调
+     * @param captureLimit 保留下来供 {@link #getCaptured()} 返回的业务数据最大字节数，0 表示不保留
+     */
+    ClusterFlagScanningInputStream(InputStream in, Listener listener, int captureLimit) {
+        this.in = in;
+        this.listener = listener;
+        this.captureLimit = captureLimit;
+    }
+
+    /**
+     * 请求日志需要保留的业务数据长度，日志按字符截断，这里按一个字符最多 4 个字节保留
+     *
+     * @return 最大字节数，请求日志关闭时返回 0
+     */
+    static int captureLimit() {
+        return Pradar.isRequestOn() ? Pradar.getPluginRequestSize() * 4 : 0;
+    }
+
+    /**
+     * 预读到找到标记或者读完请求体为止，找到标记时会回调 {@link Listener}
+     *
+     * @throws IOException 读取失败
+     */
+    void prefetch() throws IOException {
+        while (!eof && state != STATE_PASS) {
+            readChunk();
+        }
+    }
+
+    /**
+     * 已经交给业务方的业务数据，最多 captureLimit 个字节
+     *
+     * @return 业务数据，不保留时返回 null
+     */
+    byte[] getCaptured() {
+        return captured == null ? null : captured.toByteArray();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        final int b = ready.poll() & 0xFF;
+        capture(b);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int read = Math.min(len, readable());
+        ready.poll(b, off, read);
+        capture(b, off, read);
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return readable();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public boolean isReady() {
+        return false;
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+
+    }
+
+    private boolean fill() throws IOException {
+        while (readable() == 0) {
+            if (eof) {
+                return false;
+            }
+            readChunk();
+        }
+        return true;
+    }
+
+    /**
+     * 可以交给业务方的字节数，去掉首尾时最后一个字节要等到读完才能确定
+     */
+    private int readable() {
+        switch (restore) {
+            case RESTORE_HOLD:
+                return 0;
+            case RESTORE_STRIP:
+                return eof ? ready.length() : Math.max(0, ready.length() - 1);
+            default:
+                return ready.length();
+        }
+    }
+
+    private void readChunk() throws IOException {
+        final int read = in.read(chunk, 0, chunk.length);
+        if (read == -1) {
+            finish();
+            return;
+        }
+        if (state == STATE_PASS) {
+            business(chunk, 0, read);
+        } else {
+            pending.add(chunk, 0, read);
+            scan();
+        }
+        if (restore == RESTORE_HOLD && state == STATE_PASS) {
+            restore = RESTORE_NONE;
+        }
+    }
+
+    private void scan() {
+        if (state == STATE_SCAN) {
+            final int index = pending.indexOf(FLAG);
+            if (index == -1) {
+                // 末尾可能是标记的前半段，先留下
+                final int release = pending.length() - (FLAG.length - 1);
+                if (release > 0) {
+                    business(pending, release);
+                }
+                return;
+            }
+            business(pending, index);
+            pending.skip(FLAG.length);
+            state = STATE_AGENT_PARAM;
+        }
+        if (state == STATE_AGENT_PARAM) {
+            final int index = pending.indexOf(FLAG_END);
+            if (index == -1) {
+                if (pending.length() > MAX_AGENT_PARAM_LENGTH + FLAG_END.length) {
+                    giveUp();
+                }
+                return;
+            }
+            final String agentParam = pending.toString(index);
+            pending.skip(index + FLAG_END.length);
+            state = STATE_PASS;
+            if (restore == RESTORE_HOLD) {
+                ready.skip(1);
+                restore = RESTORE_STRIP;
+            }
+            listener.onAgentParam(agentParam);
+            business(pending, pending.length());
+        }
+    }
+
+    /**
+     * 标记后面一直没有结束标记，按普通业务数据处理
+     */
+    private void giveUp() {
+        state = STATE_PASS;
+        business(FLAG, 0, FLAG.length);
+        business(pending, pending.length());
+    }
+
+    private void finish() {
+        eof = true;
+        if (state == STATE_AGENT_PARAM) {
+            giveUp();
+        } else if (state == STATE_SCAN) {
+            business(pending, pending.length());
+        }
+        if (restore == RESTORE_HOLD) {
+            restore = RESTORE_NONE;
+        } else if (restore == RESTORE_STRIP && ready.length() > 0) {
+            ready.truncate(1);
+        }
+    }
+
+    private void business(ByteQueue queue, int len) {
+        business(queue.data, queue.start, len);
+        queue.skip(len);
+    }
+
+    private void business(byte[] b, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        if (restore == RESTORE_UNKNOWN) {
+            if (b[off] != '[') {
+                restore = RESTORE_NONE;
+            } else if (state == STATE_PASS) {
+                // 已经找到标记，直接去掉开头的 [
+                restore = RESTORE_STRIP;
+                off++;
+                len--;
+            } else {
+                restore = RESTORE_HOLD;
+            }
+        }
+        ready.add(b, off, len);
+    }
+
+    private void capture(int b) {
+        if (captureLimit <= 0) {
+            return;
+        }
+        if (captured == null) {
+            captured = new ByteQueue();
+        }
+        if (captured.length() < captureLimit) {
+            captured.add(new byte[]{(byte) b}, 0, 1);
+        }
+    }
+
+    private void capture(byte[] b, int off, int len) {
+        if (captureLimit <= 0) {
+            return;
+        }
+        if (captured == null) {
+            captured = new ByteQueue();
+        }
+        final int remaining = captureLimit - captured.length();
+        if (remaining > 0) {
+            captured.add(b, off, Math.min(remaining, len));
+        }
+    }
+
+    /**
+     * 压测参数回调
+     */
+    interface Listener {
+        /**
+         * 找到压测参数
+         *
+         * @param agentParam 两个标记之间的压测参数，使用默认字符集解码
+         */
+        void onAgentParam(String agentParam);
+    }
+
+    /**
+     * 简单的字节队列，有效数据为 [start, end)
+     */
+    private static final class ByteQueue {
+        private byte[] data = new byte[1024];
+        private int start;
+        private int end;
+
+        int length() {
+            return end - start;
+        }
+
+        void add(byte[] b, int off, int len) {
+            if (end + len > data.length) {
+                final int length = length();
+                byte[] target = data;
+                if (length + len > data.length) {
+                    target = new byte[Math.max(data.length << 1, length + len)];
+                }
+                System.arraycopy(data, start, target, 0, length);
+                data = target;
+                start = 0;
+                end = length;
+            }
+            System.arraycopy(b, off, data, end, len);
+            end += len;
+        }
+
+        byte poll() {
+            return data[start++];
+        }
+
+        void poll(byte[] b, int off, int len) {
+            System.arraycopy(data, start, b, off, len);
+            start += len;
+        }
+
+        void skip(int len) {
+            start += len;
+            if (start == end) {
+                start = end = 0;
+            }
+        }
+
+        /**
+         * 去掉末尾的 len 个字节
+         */
+        void truncate(int len) {
+            end -= len;
+        }
+
+        int indexOf(byte[] target) {
+            final int last = end - target.length;
+            outer:
+            for (int i = start; i <= last; i++) {
+                for (int j = 0; j < target.length; j++) {
+                    if (data[i + j] != target[j]) {
+                        continue outer;
+                    }
+                }
+                return i - start;
+            }
+            return -1;
+        }
+
+        String toString(int len) {
+            return new String(data, start, len);
+        }
+
+        byte[] toByteArray() {
+            final byte[] bytes = new byte[length()];
+            System.arraycopy(data, start, bytes, 0, bytes.length);
+            return bytes;
+        }
+    }
+}
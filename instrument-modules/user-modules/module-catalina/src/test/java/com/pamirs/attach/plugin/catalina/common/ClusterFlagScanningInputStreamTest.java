@@ -0,0 +1,109 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.catalina.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pamirs.attach.plugin.catalina.utils.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterFlagScanningInputStreamTest {
+
+    private static final String AGENT_PARAM = "{\"p-pradar-cluster-test\":\"1\"}";
+    private static final String MARKER = Constants.PRADAR_CLUSTER_FLAG_GW + AGENT_PARAM + Constants.extendParamEnd;
+
+    private final List<String> agentParams = new ArrayList<String>();
+
+    @Test
+    public void markerAtStartIsFoundBeforeRead() throws IOException {
+        ClusterFlagScanningInputStream in = prefetched(MARKER + "{\"name\":\"a\"}");
+
+        Assert.assertEquals(1, agentParams.size());
+        Assert.assertEquals(AGENT_PARAM, agentParams.get(0));
+        Assert.assertEquals("{\"name\":\"a\"}", readAll(in));
+    }
+
+    @Test
+    public void markerAfterLargeBodyIsFoundBeforeRead() throws IOException {
+        String body = repeat('a', 64 * 1024);
+        ClusterFlagScanningInputStream in = prefetched(body + MARKER + "tail");
+
+        Assert.assertEquals(1, agentParams.size());
+        Assert.assertEquals(AGENT_PARAM, agentParams.get(0));
+        Assert.assertEquals(body + "tail", readAll(in));
+    }
+
+    @Test
+    public void bracketsAroundLargeBodyAreStripped() throws IOException {
+        String body = repeat('a', 64 * 1024);
+        ClusterFlagScanningInputStream in = prefetched("[" + body + MARKER + "]");
+
+        Assert.assertEquals(1, agentParams.size());
+        Assert.assertEquals(body, readAll(in));
+    }
+
+    @Test
+    public void bodyWithoutMarkerIsUnchanged() throws IOException {
+        String body = "[" + repeat('a', 64 * 1024) + "]";
+        ClusterFlagScanningInputStream in = prefetched(body);
+
+        Assert.assertTrue(agentParams.isEmpty());
+        Assert.assertEquals(body, readAll(in));
+    }
+
+    @Test
+    public void unterminatedMarkerIsPassedThrough() throws IOException {
+        String body = "a" + Constants.PRADAR_CLUSTER_FLAG_GW + repeat('b', 8 * 1024);
+        ClusterFlagScanningInputStream in = prefetched(body);
+
+        Assert.assertTrue(agentParams.isEmpty());
+        Assert.assertEquals(body, readAll(in));
+    }
+
+    private ClusterFlagScanningInputStream prefetched(String body) throws IOException {
+        ClusterFlagScanningInputStream in = new ClusterFlagScanningInputStream(
+            new ByteArrayInputStream(body.getBytes("UTF-8")), new ClusterFlagScanningInputStream.Listener() {
+            @Override
+            public void onAgentParam(String agentParam) {
+                agentParams.add(agentParam);
+            }
+        }, 0);
+        in.prefetch();
+        return in;
+    }
+
+    private static String readAll(ClusterFlagScanningInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[333];
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
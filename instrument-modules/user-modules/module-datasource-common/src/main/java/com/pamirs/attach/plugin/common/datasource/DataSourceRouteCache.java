@@ -0,0 +1,100 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.common.datasource;
+
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
+
+/**
+ * 数据源的路由缓存
+ * <p>
+ * 每次获取连接都需要根据业务数据源找到对应的影子路由，包括构造 DataSourceMeta、计算 url 的 hash 以及查询 map。
+ * 路由解析一次后作为动态属性缓存在业务数据源对象上，之后获取连接只需要读取一次动态属性。
+ * <p>
+ * 影子数据源配置变更、影子数据源启用/禁用、压测开关关闭等会改变路由的事件处理完成后调用 {@link #invalidate()}，
+ * 所有已缓存的路由一起失效，下次获取连接时重新解析
+ *
+ * @param <M> 路由到的数据源类型
+ */
+public class DataSourceRouteCache<M> {
+
+    private final String fieldName;
+    private volatile int version;
+
+    /**
+     * @param fieldName 动态属性名称，不同的连接池使用不同的名称
+     */
+    public DataSourceRouteCache(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * 当前的版本，解析路由前先获取版本，缓存时使用该版本，解析期间发生的失效不会被覆盖
+     *
+     * @return 版本
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * 获取缓存的路由
+     *
+     * @param manager    动态属性管理器
+     * @param dataSource 业务数据源
+     * @return 路由到的数据源，没有缓存或者已经失效时返回 null
+     */
+    public M get(DynamicFieldManager manager, Object dataSource) {
+        if (manager == null || dataSource == null) {
+            return null;
+        }
+        Route<M> route = manager.getDynamicField(dataSource, fieldName);
+        if (route == null || route.version != version) {
+            return null;
+        }
+        return route.target;
+    }
+
+    /**
+     * 缓存路由
+     *
+     * @param manager    动态属性管理器
+     * @param dataSource 业务数据源
+     * @param version    解析前获取的版本
+     * @param target     路由到的数据源，为 null 时不缓存
+     */
+    public void put(DynamicFieldManager manager, Object dataSource, int version, M target) {
+        if (manager == null || dataSource == null || target == null || version != this.version) {
+            return;
+        }
+        manager.setDynamicField(dataSource, fieldName, new Route<M>(version, target));
+    }
+
+    /**
+     * 使所有缓存的路由失效，需要在路由变更完成后调用
+     */
+    public synchronized void invalidate() {
+        version++;
+    }
+
+    private static class Route<M> {
+        private final int version;
+        private final M target;
+
+        Route(int version, M target) {
+            this.version = version;
+            this.target = target;
+        }
+    }
+}
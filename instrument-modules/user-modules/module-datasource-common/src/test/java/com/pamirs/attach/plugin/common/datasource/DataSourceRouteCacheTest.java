@@ -0,0 +1,125 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.common.datasource;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataSourceRouteCacheTest {
+
+    private final DynamicFieldManager manager = new MapDynamicFieldManager();
+    private final DataSourceRouteCache<String> cache = new DataSourceRouteCache<String>("test$route");
+    private final Object dataSource = new Object();
+
+    @Test
+    public void resolvedRouteIsCachedOnTheDataSource() {
+        Assert.assertNull(cache.get(manager, dataSource));
+
+        cache.put(manager, dataSource, cache.version(), "shadow");
+        Assert.assertEquals("shadow", cache.get(manager, dataSource));
+        Assert.assertNull(cache.get(manager, new Object()));
+    }
+
+    @Test
+    public void invalidateDropsEveryCachedRoute() {
+        final Object other = new Object();
+        cache.put(manager, dataSource, cache.version(), "shadow");
+        cache.put(manager, other, cache.version(), "other-shadow");
+
+        cache.invalidate();
+        Assert.assertNull(cache.get(manager, dataSource));
+        Assert.assertNull(cache.get(manager, other));
+
+        cache.put(manager, dataSource, cache.version(), "new-shadow");
+        Assert.assertEquals("new-shadow", cache.get(manager, dataSource));
+    }
+
+    @Test
+    public void routeResolvedBeforeAnInvalidationIsNotCached() {
+        final int version = cache.version();
+        // 解析期间影子数据源配置发生了变更
+        cache.invalidate();
+        cache.put(manager, dataSource, version, "stale");
+
+        Assert.assertNull(cache.get(manager, dataSource));
+    }
+
+    @Test
+    public void missingRouteOrContextIsNotCached() {
+        cache.put(manager, dataSource, cache.version(), null);
+        Assert.assertFalse(manager.hasDynamicField(dataSource, "test$route"));
+
+        cache.put(null, dataSource, cache.version(), "shadow");
+        cache.put(manager, null, cache.version(), "shadow");
+        Assert.assertNull(cache.get(null, dataSource));
+        Assert.assertNull(cache.get(manager, null));
+    }
+
+    private static class MapDynamicFieldManager implements DynamicFieldManager {
+        private final Map<Object, Map<String, Object>> fields = new IdentityHashMap<Object, Map<String, Object>>();
+
+        @Override
+        public boolean hasDynamicField(Object target, String fieldName) {
+            return fields.containsKey(target) && fields.get(target).containsKey(fieldName);
+        }
+
+        @Override
+        public <T> T getDynamicField(Object target, String fieldName) {
+            return getDynamicField(target, fieldName, null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getDynamicField(Object target, String fieldName, T defaultValue) {
+            final Map<String, Object> values = fields.get(target);
+            if (values == null || !values.containsKey(fieldName)) {
+                return defaultValue;
+            }
+            return (T) values.get(fieldName);
+        }
+
+        @Override
+        public void removeAll(Object target) {
+            fields.remove(target);
+        }
+
+        @Override
+        public void setDynamicField(Object target, String fieldName, Object value) {
+            Map<String, Object> values = fields.get(target);
+            if (values == null) {
+                values = new HashMap<String, Object>();
+                fields.put(target, values);
+            }
+            values.put(fieldName, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T removeField(Object target, String fieldName) {
+            final Map<String, Object> values = fields.get(target);
+            return values == null ? null : (T) values.remove(fieldName);
+        }
+
+        @Override
+        public void destroy() {
+            fields.clear();
+        }
+    }
+}
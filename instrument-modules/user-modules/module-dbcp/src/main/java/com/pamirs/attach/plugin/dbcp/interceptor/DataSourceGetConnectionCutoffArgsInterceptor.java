@@ -152,6 +152,7 @@ public class DataSourceGetConnectionCutoffArgsInterceptor extends CutoffIntercep
                     }
 
                 }
+                DataSourceWrapUtil.routeCache.invalidate();
                 return EventResult.success("module-dbcp: destroyed shadow table datasource success.");
             }
 
@@ -35,11 +35,13 @@ import com.pamirs.pradar.pressurement.datasource.DbMediatorDataSource;
 import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -56,19 +58,33 @@ import java.util.Set;
 public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorAdaptor {
     private final static Logger logger = LoggerFactory.getLogger(DataSourceGetConnectionCutoffInterceptor.class.getName());
 
+    @Resource
+    protected DynamicFieldManager manager;
+
     public DataSourceGetConnectionCutoffInterceptor() {
         addListener();
     }
 
     @Override
     public CutOffResult cutoff0(Advice advice) throws SQLException {
-        DataSourceWrapUtil.attachment(advice);
         Object target = advice.getTarget();
         BasicDataSource dataSource = (BasicDataSource) target;
-        DataSourceMeta<BasicDataSource> dataSourceMeta = new DataSourceMeta<BasicDataSource>(dataSource.getUrl(), dataSource.getUsername(), dataSource);
-        ClusterTestUtils.validateClusterTest();
+        /**
+         * 路由解析过之后缓存在数据源上，只有影子数据源相关的事件会让缓存失效
+         */
+        DbcpMediaDataSource mediatorDataSource = DataSourceWrapUtil.routeCache.get(manager, dataSource);
+        if (mediatorDataSource == null) {
+            final int version = DataSourceWrapUtil.routeCache.version();
+            DataSourceWrapUtil.attachment(advice);
+            DataSourceMeta<BasicDataSource> dataSourceMeta = new DataSourceMeta<BasicDataSource>(dataSource.getUrl(), dataSource.getUsername(), dataSource);
+            ClusterTestUtils.validateClusterTest();
 
-        DataSourceWrapUtil.init(dataSourceMeta);
+            DataSourceWrapUtil.init(dataSourceMeta);
+            mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
+            DataSourceWrapUtil.routeCache.put(manager, dataSource, version, mediatorDataSource);
+        } else {
+            ClusterTestUtils.validateClusterTest();
+        }
         Connection connection = null;
 
         /**
@@ -76,21 +92,14 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
          * 如果未找到配置情况下则当前流量为压测流量时返回null,非压测流量则执行业务连接池正常逻辑,此种情况可能由于数据源未配置的情况
          * 如果获取连接出错时如果流量为压测流量则返回null，非压测流量则执行业务连接池正常逻辑
          */
-        if (DataSourceWrapUtil.pressureDataSources.containsKey(dataSourceMeta)) {
-            DbMediatorDataSource<?> mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
-            if (mediatorDataSource != null) {
-                try {
-                    connection = mediatorDataSource.getConnection();
-                } catch (SQLException e) {
-                    if (Pradar.isClusterTest()) {
-                        throw new PressureMeasureError(e);
-                    } else {
-                        throw e;
-                    }
-                }
-            } else {
-                if (!Pradar.isClusterTest()) {
-                    return CutOffResult.passed();
+        if (mediatorDataSource != null) {
+            try {
+                connection = mediatorDataSource.getConnection();
+            } catch (SQLException e) {
+                if (Pradar.isClusterTest()) {
+                    throw new PressureMeasureError(e);
+                } else {
+                    throw e;
                 }
             }
             return CutOffResult.cutoff(connection);
@@ -153,6 +162,7 @@ public class DataSourceGetConnectionCutoffInterceptor extends CutoffInterceptorA
                     }
 
                 }
+                DataSourceWrapUtil.routeCache.invalidate();
                 return EventResult.success("module-dbcp: destroyed shadow table datasource success.");
             }
 
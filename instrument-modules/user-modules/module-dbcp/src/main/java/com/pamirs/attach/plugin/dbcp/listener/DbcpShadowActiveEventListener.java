@@ -70,6 +70,8 @@ public class DbcpShadowActiveEventListener implements PradarEventListener {
         } catch (Exception e) {
             LOGGER.error("[dbcp]: handler shadow datasource active event occur exception", e);
             return EventResult.error("active-shadow-datasource-event", "module-alibaba-druid: handler shadow datasource active event occur exception.");
+        } finally {
+            DataSourceWrapUtil.routeCache.invalidate();
         }
     }
 
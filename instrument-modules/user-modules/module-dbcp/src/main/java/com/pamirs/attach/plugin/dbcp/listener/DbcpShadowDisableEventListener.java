@@ -53,6 +53,7 @@ public class DbcpShadowDisableEventListener implements PradarEventListener {
                 logger.error("[dbcp]: closed datasource err! target:{}, url:{} username:{}", entry.getKey().getDataSource().hashCode(), entry.getKey().getUrl(), entry.getKey().getUsername(), e);
             }
         }
+        DataSourceWrapUtil.routeCache.invalidate();
         SqlParser.clear();
         return EventResult.success("[dbcp]: handler shadow datasource disable event success,  destroyed shadow table datasource success.");
     }
@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.dbcp.utils;
 
+import com.pamirs.attach.plugin.common.datasource.DataSourceRouteCache;
 import com.pamirs.attach.plugin.dynamic.Attachment;
 import com.pamirs.attach.plugin.dynamic.ResourceManager;
 import com.pamirs.attach.plugin.dynamic.Type;
@@ -45,6 +46,11 @@ public class DataSourceWrapUtil {
 
     public static final ConcurrentHashMap<DataSourceMeta, DbcpMediaDataSource> pressureDataSources = new ConcurrentHashMap<DataSourceMeta, DbcpMediaDataSource>();
 
+    /**
+     * 业务数据源上缓存的路由，pressureDataSources 变更后需要失效
+     */
+    public static final DataSourceRouteCache<DbcpMediaDataSource> routeCache = new DataSourceRouteCache<DbcpMediaDataSource>("dbcp.route");
+
     public static void destroy() {
         Iterator<Map.Entry<DataSourceMeta, DbcpMediaDataSource>> it = pressureDataSources.entrySet().iterator();
         while (it.hasNext()) {
@@ -53,6 +59,7 @@ public class DataSourceWrapUtil {
             entry.getValue().close();
         }
         pressureDataSources.clear();
+        routeCache.invalidate();
     }
 
     public static boolean validate(BasicDataSource sourceDataSource) {
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.attach.plugin.grpc;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.interceptor.ContextReader;
+import com.pamirs.pradar.interceptor.ContextTransfer;
+import io.grpc.Metadata;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在 grpc 的 {@link Metadata} 中读写调用上下文
+ * <p>
+ * 上下文字段对应的 {@link Metadata.Key} 在类加载时创建好，读写时不再每次创建 key
+ */
+public final class GrpcMetadataContext {
+
+    private static final Map<String, Metadata.Key<String>> KEYS = new HashMap<String, Metadata.Key<String>>();
+
+    static {
+        for (String traceKey : Pradar.getInvokeContextTransformKeys()) {
+            KEYS.put(traceKey, Metadata.Key.of(traceKey, Metadata.ASCII_STRING_MARSHALLER));
+        }
+    }
+
+    private GrpcMetadataContext() {
+    }
+
+    private static Metadata.Key<String> key(String keyName) {
+        Metadata.Key<String> key = KEYS.get(keyName);
+        return key != null ? key : Metadata.Key.of(keyName, Metadata.ASCII_STRING_MARSHALLER);
+    }
+
+    /**
+     * 写入上下文
+     *
+     * @param metadata 请求的 metadata
+     * @return 上下文写出
+     */
+    public static ContextTransfer transfer(final Metadata metadata) {
+        return new ContextTransfer() {
+            @Override
+            public void transfer(String keyName, String value) {
+                if (null != value) {
+                    metadata.put(key(keyName), value);
+                }
+            }
+        };
+    }
+
+    /**
+     * 读取上下文，空白的值视为不存在
+     *
+     * @param metadata 请求的 metadata
+     * @return 上下文读取
+     */
+    public static ContextReader reader(final Metadata metadata) {
+        return new ContextReader() {
+            @Override
+            public String read(String keyName) {
+                final Metadata.Key<String> key = KEYS.get(keyName);
+                if (key == null) {
+                    return null;
+                }
+                final String value = metadata.get(key);
+                return StringUtils.isNotBlank(value) ? value : null;
+            }
+        };
+    }
+
+    /**
+     * 把上下文复制到 Map 中，用于需要在后续的调用中修改上下文的场景
+     *
+     * @param metadata 请求的 metadata
+     * @return 上下文
+     */
+    public static Map<String, String> toMap(Metadata metadata) {
+        List<String> traceKeys = Pradar.getInvokeContextTransformKeys();
+        Map<String, String> context = new HashMap<String, String>(traceKeys.size());
+        for (String traceKey : traceKeys) {
+            final String value = metadata.get(key(traceKey));
+            if (StringUtils.isNotBlank(value)) {
+                context.put(traceKey, value);
+            }
+        }
+        return context;
+    }
+}
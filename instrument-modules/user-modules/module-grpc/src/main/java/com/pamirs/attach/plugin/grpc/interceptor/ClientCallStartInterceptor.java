@@ -16,6 +16,7 @@ package com.pamirs.attach.plugin.grpc.interceptor;
 
 import com.pamirs.attach.plugin.dynamic.reflect.ReflectionUtils;
 import com.pamirs.attach.plugin.grpc.GrpcConstants;
+import com.pamirs.attach.plugin.grpc.GrpcMetadataContext;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.ResultCode;
@@ -123,16 +124,7 @@ public class ClientCallStartInterceptor extends TraceInterceptorAdaptor {
         if (!(args[1] instanceof Metadata)) {
             return null;
         }
-        final Metadata metadata = (Metadata) args[1];
-        return new ContextTransfer() {
-            @Override
-            public void transfer(String keyName, String value) {
-                Metadata.Key<String> key = Metadata.Key.of(keyName, Metadata.ASCII_STRING_MARSHALLER);
-                if (null != value) {
-                    metadata.put(key, value);
-                }
-            }
-        };
+        return GrpcMetadataContext.transfer((Metadata) args[1]);
     }
 
     @Override
@@ -15,6 +15,7 @@
 package com.pamirs.attach.plugin.grpc.interceptor;
 
 import com.pamirs.attach.plugin.grpc.GrpcConstants;
+import com.pamirs.attach.plugin.grpc.GrpcMetadataContext;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarCoreUtils;
 import com.pamirs.pradar.ResultCode;
@@ -22,12 +23,8 @@ import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import io.grpc.Metadata;
-import org.apache.commons.lang.StringUtils;
 
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * GRPC服务端接收处理请求
@@ -68,15 +65,7 @@ public class ServerStreamCreatedInterceptor extends TraceInterceptorAdaptor {
 
         Metadata metadata = (Metadata) args[2];
 
-        List<String> traceKeys = Pradar.getInvokeContextTransformKeys();
-        Map<String, String> context = new HashMap<String, String>(traceKeys.size());
-        for (String traceKey : traceKeys) {
-            final String value = metadata.get(Metadata.Key.of(traceKey, Metadata.ASCII_STRING_MARSHALLER));
-            if (StringUtils.isNotBlank(value)) {
-                context.put(traceKey, value);
-            }
-        }
-        record.setContext(context);
+        record.setContext(GrpcMetadataContext.reader(metadata));
 
         final String fullMethodName = String.valueOf(args[1]);
         String method = fullMethodName;
@@ -14,7 +14,7 @@
  */
 package com.pamirs.attach.plugin.grpc.interceptor;
 import com.pamirs.attach.plugin.grpc.GrpcConstants;
-import com.pamirs.pradar.Pradar;
+import com.pamirs.attach.plugin.grpc.GrpcMetadataContext;
 import com.pamirs.pradar.ResultCode;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
@@ -22,13 +22,9 @@ import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import io.grpc.Metadata;
 import io.grpc.internal.ServerStreamListener;
-import org.apache.commons.lang.StringUtils;
 
 import javax.annotation.Resource;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * @author angju
@@ -73,7 +69,7 @@ public class ServerTransportListenerImplStartCallInterceptor extends TraceInterc
         final String fullMethodName = (String) advice.getParameterArray()[1];
         Metadata headers = (Metadata) advice.getParameterArray()[3];
         SpanRecord record = new SpanRecord();
-        record.setContext(generateInvokeContext(headers));
+        record.setContext(GrpcMetadataContext.reader(headers));
         String method = fullMethodName;
         String service = "";
         if (fullMethodName.indexOf("/") != -1) {
@@ -85,18 +81,6 @@ public class ServerTransportListenerImplStartCallInterceptor extends TraceInterc
         return record;
     }
 
-    private Map<String, String> generateInvokeContext(Metadata headers){
-        List<String> traceKeys = Pradar.getInvokeContextTransformKeys();
-        Map<String, String> context = new HashMap<String, String>(traceKeys.size());
-        for (String traceKey : traceKeys) {
-            final String value = headers.get(Metadata.Key.of(traceKey, Metadata.ASCII_STRING_MARSHALLER));
-            if (StringUtils.isNotBlank(value)) {
-                context.put(traceKey, value);
-            }
-        }
-        return context;
-    }
-
     @Override
     public void afterFirst(Advice advice) {
 
@@ -107,7 +91,7 @@ public class ServerTransportListenerImplStartCallInterceptor extends TraceInterc
         final String fullMethodName = (String) advice.getParameterArray()[1];
         Metadata headers = (Metadata) advice.getParameterArray()[3];
         ServerStreamListener serverStreamListener = (ServerStreamListener) advice.getReturnObj();
-        manager.setDynamicField(serverStreamListener, GrpcConstants.DYNAMIC_FIELD_INVOKE_CONTEXT, generateInvokeContext(headers));
+        manager.setDynamicField(serverStreamListener, GrpcConstants.DYNAMIC_FIELD_INVOKE_CONTEXT, GrpcMetadataContext.toMap(headers));
         manager.setDynamicField(serverStreamListener, GrpcConstants.DYNAMIC_FIELD_FULL_METHOD_NAME, fullMethodName);
     }
 
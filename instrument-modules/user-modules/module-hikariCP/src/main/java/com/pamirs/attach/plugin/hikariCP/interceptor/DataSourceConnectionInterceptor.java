@@ -41,11 +41,13 @@ import com.pamirs.pradar.pressurement.datasource.util.DbUrlUtils;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import com.shulie.instrument.simulator.api.resource.DynamicFieldManager;
 import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Resource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Iterator;
@@ -62,6 +64,9 @@ import java.util.Set;
 public class DataSourceConnectionInterceptor extends CutoffInterceptorAdaptor {
     private static Logger logger = LoggerFactory.getLogger(DataSourceConnectionInterceptor.class.getName());
 
+    @Resource
+    protected DynamicFieldManager manager;
+
     public DataSourceConnectionInterceptor() {
         addListener();
     }
@@ -94,14 +99,24 @@ public class DataSourceConnectionInterceptor extends CutoffInterceptorAdaptor {
 
     @Override
     public CutOffResult cutoff0(Advice advice) throws SQLException {
-        Object target = advice.getTarget();
-        addListener();
-        attachment(advice);
-        ClusterTestUtils.validateClusterTest();
-        HikariDataSource dataSource = (HikariDataSource) target;
+        HikariDataSource dataSource = (HikariDataSource) advice.getTarget();
+        /**
+         * 路由解析过之后缓存在数据源上，只有影子数据源相关的事件会让缓存失效
+         */
+        HikariMediaDataSource mediatorDataSource = DataSourceWrapUtil.routeCache.get(manager, dataSource);
+        if (mediatorDataSource == null) {
+            final int version = DataSourceWrapUtil.routeCache.version();
+            addListener();
+            attachment(advice);
+            ClusterTestUtils.validateClusterTest();
 
-        DataSourceMeta<HikariDataSource> dataSourceMeta = new DataSourceMeta<HikariDataSource>(dataSource.getJdbcUrl(), dataSource.getUsername(), dataSource);
-        DataSourceWrapUtil.init(dataSourceMeta);
+            DataSourceMeta<HikariDataSource> dataSourceMeta = new DataSourceMeta<HikariDataSource>(dataSource.getJdbcUrl(), dataSource.getUsername(), dataSource);
+            DataSourceWrapUtil.init(dataSourceMeta);
+            mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
+            DataSourceWrapUtil.routeCache.put(manager, dataSource, version, mediatorDataSource);
+        } else {
+            ClusterTestUtils.validateClusterTest();
+        }
 
         Connection connection = null;
         /**
@@ -109,7 +124,6 @@ public class DataSourceConnectionInterceptor extends CutoffInterceptorAdaptor {
          * 如果未找到配置情况下则当前流量为压测流量时返回null,非压测流量则执行业务连接池正常逻辑,此种情况可能由于数据源未配置的情况
          * 如果获取连接出错时如果流量为压测流量则返回null，非压测流量则执行业务连接池正常逻辑
          */
-        HikariMediaDataSource mediatorDataSource = DataSourceWrapUtil.pressureDataSources.get(dataSourceMeta);
         if (mediatorDataSource != null) {
             try {
                 connection = mediatorDataSource.getConnection();
@@ -180,6 +194,7 @@ public class DataSourceConnectionInterceptor extends CutoffInterceptorAdaptor {
                             }
 
                         }
+                        DataSourceWrapUtil.routeCache.invalidate();
                         return EventResult.success("module-hikariCP: destroyed shadow table datasource success.");
                     }
 
@@ -68,6 +68,8 @@ public class HikaricpShadowActiveEventListener implements PradarEventListener {
         } catch (Exception e) {
             LOGGER.error("[module-hikariCP]: handler shadow datasource active event occur exception", e);
             return EventResult.error("active-shadow-hikaricp-event", "[module-hikariCP]: handler shadow datasource active event occur exception");
+        } finally {
+            DataSourceWrapUtil.routeCache.invalidate();
         }
     }
 
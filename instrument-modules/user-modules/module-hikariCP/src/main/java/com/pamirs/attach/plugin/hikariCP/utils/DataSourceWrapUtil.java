@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.hikariCP.utils;
 
+import com.pamirs.attach.plugin.common.datasource.DataSourceRouteCache;
 import com.pamirs.pradar.ConfigNames;
 import com.pamirs.pradar.ErrorTypeEnum;
 import com.pamirs.pradar.Throwables;
@@ -45,6 +46,11 @@ public class DataSourceWrapUtil {
 
     public static final ConcurrentHashMap<DataSourceMeta, HikariMediaDataSource> pressureDataSources = new ConcurrentHashMap<DataSourceMeta, HikariMediaDataSource>();
 
+    /**
+     * 业务数据源上缓存的路由，pressureDataSources 变更后需要失效
+     */
+    public static final DataSourceRouteCache<HikariMediaDataSource> routeCache = new DataSourceRouteCache<HikariMediaDataSource>("hikari.route");
+
     private final static Object lock = new Object();
 
     public static void destroy() {
@@ -55,6 +61,7 @@ public class DataSourceWrapUtil {
             entry.getValue().close();
         }
         pressureDataSources.clear();
+        routeCache.invalidate();
     }
 
     public static boolean validate(HikariDataSource sourceDataSource) {
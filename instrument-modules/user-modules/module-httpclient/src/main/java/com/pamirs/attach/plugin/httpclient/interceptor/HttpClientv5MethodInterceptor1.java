@@ -297,13 +297,14 @@ public class HttpClientv5MethodInterceptor1 extends TraceInterceptorAdaptor {
         if (advice.hasMark(BlackHostChecker.BLACK_HOST_MARK)) {
             return null;
         }
+        // 带有不允许修改请求头标记时不传递上下文，只需要判断一次
+        if (request.containsHeader(HeaderMark.DONT_MODIFY_HEADER)) {
+            return null;
+        }
         return new ContextTransfer() {
             @Override
             public void transfer(String key, String value) {
-                if (request.getHeaders(HeaderMark.DONT_MODIFY_HEADER) == null || request.getHeaders(
-                    HeaderMark.DONT_MODIFY_HEADER).length == 0) {
-                    request.setHeader(key, value);
-                }
+                request.setHeader(key, value);
             }
         };
     }
@@ -108,6 +108,7 @@ public class LogDataPusherModule extends ModuleLifecycleAdapter implements Exten
         pusherOptions.setSessionTimeoutMillis(simulatorConfig.getZkSessionTimeout());
         pusherOptions.setProtocolCode(
                 simulatorConfig.getIntProperty("pradar.push.serialize.protocol.code", ProtocolCode.NONE));
+        pusherOptions.setWindowSize(simulatorConfig.getIntProperty("pradar.data.pusher.tcp.window.size", 1));
         HttpPushOptions httpPushOptions = new HttpPushOptions();
         httpPushOptions.setMaxHttpPoolSize(simulatorConfig.getIntProperty("pradar.max.httpPool.size", 10));
         httpPushOptions.setHttpPath(simulatorConfig.getProperty("pradar.push.server.http.path", ""));
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.module.log.data.pusher.log.callback;
+
+
+import java.io.File;
+
+/**
+ * 支持流水线推送的日志回调，同一个文件最多允许 {@link #getWindowSize()} 段数据
+ * 同时处于已发送、未确认的状态，推送结果通过 {@link Listener} 异步通知。
+ * 读取方按发送顺序确认，只有连续确认的数据才会推进位点
+ */
+public interface AsyncLogCallback extends LogCallback {
+
+    /**
+     * 单个文件同时未确认的最大发送数
+     *
+     * @return 窗口大小
+     */
+    int getWindowSize();
+
+    /**
+     * 单次发送的超时时间，超过该时间仍未收到结果的发送视为失败
+     *
+     * @return 超时时间，单位毫秒
+     */
+    long getTimeout();
+
+    /**
+     * 异步发送
+     *
+     * @param file     日志文件，每次发送单独打开文件，发送完成后关闭，不会影响读取方持有的文件句柄
+     * @param position 开始位置
+     * @param length   长度
+     * @param dataType 数据类型
+     * @param version  版本
+     * @param listener 发送结果监听，可能在 IO 线程中回调
+     * @return 是否已经发出，返回 false 时 listener 不保证会被回调
+     */
+    boolean callAsync(File file, long position, long length, byte dataType, int version, Listener listener);
+
+    /**
+     * 发送结果监听
+     */
+    interface Listener {
+        /**
+         * 发送完成
+         *
+         * @param success 服务端是否确认成功
+         */
+        void onComplete(boolean success);
+    }
+}
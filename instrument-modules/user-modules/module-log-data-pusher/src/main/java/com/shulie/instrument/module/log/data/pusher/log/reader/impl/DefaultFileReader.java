@@ -15,6 +15,7 @@
 package com.shulie.instrument.module.log.data.pusher.log.reader.impl;
 
 import com.pamirs.pradar.Pradar;
+import com.shulie.instrument.module.log.data.pusher.log.callback.AsyncLogCallback;
 import com.shulie.instrument.module.log.data.pusher.log.callback.LogCallback;
 import com.shulie.instrument.module.log.data.pusher.log.reader.FileFetcher;
 import com.shulie.instrument.module.log.data.pusher.log.reader.FileReader;
@@ -28,6 +29,7 @@ import java.io.*;
 import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -44,13 +46,40 @@ class DefaultFileReader implements FileReader {
      * 默认连续推送失败时的最大休眠间隔时长
      */
     private final static int DEFAULT_MAX_FAILURE_SLEEP_INTERVAL = 10000;
+    /**
+     * 流水线推送窗口已满时，等待确认的最长时间
+     */
+    private final static long ACK_WAIT_MILLIS = 100L;
+    private final static int CHUNK_PENDING = 0;
+    private final static int CHUNK_ACKED = 1;
+    private final static int CHUNK_FAILED = 2;
     public static final long[] ZERO = {0L, 0L};
     private String path;
+    /**
+     * 已经确认推送成功的位点，保存到 idx 文件中的也是这个位点
+     */
     private volatile long position = -1;
+    /**
+     * 下一次推送的开始位点。同步推送时与 position 一致，
+     * 流水线推送时 position 只推进到连续确认的位置，sendPosition 则是已经发出的位置
+     */
+    private long sendPosition = -1;
     /**
      * 回调信息
      */
     private LogCallback callback;
+
+    /**
+     * 流水线推送的回调，窗口大小不超过 1 时为 null，走同步推送
+     */
+    private final AsyncLogCallback asyncCallback;
+
+    /**
+     * 已发出、尚未确认的日志段，按发送顺序排列，只在推送线程中访问
+     */
+    private final LinkedList<PendingChunk> pendingChunks = new LinkedList<PendingChunk>();
+
+    private final Object ackLock = new Object();
     /**
      * 是否启动
      */
@@ -90,6 +119,11 @@ class DefaultFileReader implements FileReader {
      */
     private int maxFailureSleepInterval;
 
+    /**
+     * 单次推送的最大字节数
+     */
+    private final int pushMaxSize;
+
     /**
      * 推送日志线程使用单独的线程，避免公共线程池被占满时导致日志无法推送
      */
@@ -115,11 +149,22 @@ class DefaultFileReader implements FileReader {
     }
 
     public DefaultFileReader(byte dataType, int version, String path, LogCallback callback, int maxFailureSleepInterval) {
+        this(dataType, version, path, callback, maxFailureSleepInterval, Pradar.PUSH_MAX_SIZE);
+    }
+
+    DefaultFileReader(byte dataType, int version, String path, LogCallback callback, int maxFailureSleepInterval,
+                      int pushMaxSize) {
         this.path = path;
+        this.pushMaxSize = pushMaxSize;
         this.version = version;
         this.callback = callback;
         this.dataType = dataType;
         this.maxFailureSleepInterval = maxFailureSleepInterval;
+        if (callback instanceof AsyncLogCallback && ((AsyncLogCallback) callback).getWindowSize() > 1) {
+            this.asyncCallback = (AsyncLogCallback) callback;
+        } else {
+            this.asyncCallback = null;
+        }
     }
 
     @Override
@@ -174,7 +219,7 @@ class DefaultFileReader implements FileReader {
     private boolean resetFileFetcher() {
         File target = new File(path);
         if (!target.exists() || !target.isFile()) {
-            target = getTarget(path, this.position);
+            target = getTarget(path, this.sendPosition);
             if (target == null) {
                 return false;
             }
@@ -198,7 +243,7 @@ class DefaultFileReader implements FileReader {
             initPosition(idxFile);
             target = new File(path);
             if (!target.exists() || !target.isFile()) {
-                target = getTarget(path, this.position);
+                target = getTarget(path, this.sendPosition);
                 if (target == null) {
                     return false;
                 }
@@ -231,6 +276,9 @@ class DefaultFileReader implements FileReader {
      */
     private boolean push() {
         try {
+            if (asyncCallback != null && !reapPendingChunks()) {
+                return false;
+            }
             if (fileRange == null) {
                 this.fileRange = getFileRange();
                 lastTime = System.currentTimeMillis();
@@ -242,8 +290,8 @@ class DefaultFileReader implements FileReader {
             /**
              * 如果位点比最小位点还小，重置读取的文件并且将位点置为当前最小位点,返回true则让其赶紧拉取
              */
-            if (this.position < fileRange[0]) {
-                this.position = fileRange[0];
+            if (this.sendPosition < fileRange[0]) {
+                resetPosition(fileRange[0]);
                 resetFileFetcher();
                 return true;
             }
@@ -251,17 +299,24 @@ class DefaultFileReader implements FileReader {
             /**
              * 如果位点已经超过了最大位点则将位点重置，并且重置读取的文件
              */
-            if (this.position > fileRange[1]) {
-                this.position = fileRange[1];
+            if (this.sendPosition > fileRange[1]) {
+                resetPosition(fileRange[1]);
                 resetFileFetcher();
                 return false;
             }
             /**
              * 没有新的内容则先不推
              */
-            if (position == fileRange[1]) {
+            if (sendPosition == fileRange[1]) {
                 return false;
             }
+            /**
+             * 流水线推送的窗口已满，等待最早发出的一段确认后再继续
+             */
+            if (asyncCallback != null && pendingChunks.size() >= asyncCallback.getWindowSize()) {
+                awaitAck(pendingChunks.peekFirst());
+                return true;
+            }
             /**
              * 检查一下是否是开启状态
              */
@@ -269,7 +324,7 @@ class DefaultFileReader implements FileReader {
                 resetFileFetcher();
             }
 
-            long length = this.fileFetcher.readAvailableLength(position, Pradar.PUSH_MAX_SIZE);
+            long length = this.fileFetcher.readAvailableLength(sendPosition, pushMaxSize);
             /**
              * 如果未读取内容
              */
@@ -277,16 +332,16 @@ class DefaultFileReader implements FileReader {
                 /**
                  * 如果位点比最小位点还小，重置读取的文件并且将位点置为当前最小位点,返回true则让其赶紧拉取
                  */
-                if (this.position < fileRange[0]) {
-                    this.position = fileRange[0];
+                if (this.sendPosition < fileRange[0]) {
+                    resetPosition(fileRange[0]);
                     resetFileFetcher();
                     return true;
                 }
                 /**
                  * 如果位点已经超过了最大位点则将位点重置，并且重置读取的文件
                  */
-                if (this.position > fileRange[1]) {
-                    this.position = fileRange[1];
+                if (this.sendPosition > fileRange[1]) {
+                    resetPosition(fileRange[1]);
                     resetFileFetcher();
                     return false;
                 }
@@ -294,7 +349,7 @@ class DefaultFileReader implements FileReader {
                 /**
                  * 如果位点还是在当前位点区间内,那可能是由于当前文件数据已经读取完了，则需要滚动到下一个文件
                  */
-                if (this.position > fileRange[0] && this.position < fileRange[1]) {
+                if (this.sendPosition > fileRange[0] && this.sendPosition < fileRange[1]) {
                     resetFileFetcher();
                 }
 
@@ -304,21 +359,25 @@ class DefaultFileReader implements FileReader {
                     /**
                      * 当前文件的位点为 全局位点 - 当前文件开始的全局位点
                      */
-                    long begin = position - this.fileFetcher.getBegin();
+                    long begin = sendPosition - this.fileFetcher.getBegin();
                     if (begin < 0) {
                         LOGGER.warn("push log data with a illegal start pos={}, file={}", begin, fileFetcher.getName());
                         return false;
                     }
+                    if (asyncCallback != null) {
+                        return pushAsync(begin, length);
+                    }
                     boolean isSuccess = this.callback.call(this.fileFetcher.getFc(), begin, length, dataType, version);
                     if (isSuccess) {
                         /**
                          * 位点前进
                          */
-                        position += length;
+                        sendPosition += length;
+                        position = sendPosition;
                         /**
                          * 如果推送不满最大推送字节数,则返回false,告诉外部调用可以休眠一会
                          */
-                        if (length < ((Pradar.PUSH_MAX_SIZE * 2) / 3)) {
+                        if (length < ((pushMaxSize * 2) / 3)) {
                             return false;
                         }
                         return true;
@@ -338,6 +397,80 @@ class DefaultFileReader implements FileReader {
         }
     }
 
+    /**
+     * 流水线推送，发出后位点不前进，等确认后由 {@link #reapPendingChunks()} 推进
+     *
+     * @param begin  当前文件中的开始位置
+     * @param length 长度
+     * @return 返回是否下次不休眠继续推
+     */
+    private boolean pushAsync(long begin, long length) {
+        PendingChunk chunk = new PendingChunk(sendPosition + length,
+                System.currentTimeMillis() + asyncCallback.getTimeout() * 2);
+        boolean isSuccess = asyncCallback.callAsync(this.fileFetcher.getFile(), begin, length, dataType, version,
+                chunk);
+        if (!isSuccess) {
+            return false;
+        }
+        pendingChunks.addLast(chunk);
+        sendPosition += length;
+        /**
+         * 如果推送不满最大推送字节数,则返回false,告诉外部调用可以休眠一会
+         */
+        return length >= ((pushMaxSize * 2) / 3);
+    }
+
+    /**
+     * 按发送顺序收割已经确认的日志段，位点只推进到连续确认的位置。
+     * 遇到失败或者超时仍未确认的段，丢弃整个窗口并从已确认的位点重新推送，
+     * 失败段之后已经推送成功的数据会被重复推送一次
+     *
+     * @return 是否没有失败的段
+     */
+    private boolean reapPendingChunks() {
+        final long now = System.currentTimeMillis();
+        PendingChunk chunk;
+        while ((chunk = pendingChunks.peekFirst()) != null) {
+            final int state = chunk.state;
+            if (state == CHUNK_ACKED) {
+                pendingChunks.pollFirst();
+                this.position = chunk.end;
+            } else if (state == CHUNK_FAILED || now > chunk.deadline) {
+                pendingChunks.clear();
+                this.sendPosition = this.position;
+                resetFileFetcher();
+                return false;
+            } else {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 等待指定日志段的推送结果
+     *
+     * @param chunk 日志段
+     */
+    private void awaitAck(PendingChunk chunk) throws InterruptedException {
+        synchronized (ackLock) {
+            if (chunk.state == CHUNK_PENDING) {
+                ackLock.wait(ACK_WAIT_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * 位点跳转，比如文件被滚动删除，未确认的日志段已经没有意义，直接丢弃
+     *
+     * @param newPosition 新的位点
+     */
+    private void resetPosition(long newPosition) {
+        pendingChunks.clear();
+        this.sendPosition = newPosition;
+        this.position = newPosition;
+    }
+
     private File getTarget(String path, long begin) {
         File file = new File(path);
         final String fileName = file.getName();
@@ -424,6 +557,8 @@ class DefaultFileReader implements FileReader {
         if (this.position < positionRange[0] || this.position > positionRange[1]) {
             this.position = positionRange[0];
         }
+        pendingChunks.clear();
+        this.sendPosition = this.position;
     }
 
     @Override
@@ -574,6 +709,34 @@ class DefaultFileReader implements FileReader {
         }
     }
 
+    /**
+     * 流水线推送中已发出、等待确认的日志段
+     */
+    private final class PendingChunk implements AsyncLogCallback.Listener {
+        /**
+         * 日志段结束的全局位点，确认后位点推进到这里
+         */
+        private final long end;
+        /**
+         * 超过该时间仍未收到结果则视为失败
+         */
+        private final long deadline;
+        private volatile int state = CHUNK_PENDING;
+
+        PendingChunk(long end, long deadline) {
+            this.end = end;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void onComplete(boolean success) {
+            state = success ? CHUNK_ACKED : CHUNK_FAILED;
+            synchronized (ackLock) {
+                ackLock.notifyAll();
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -32,6 +32,19 @@ public class ServerOptions {
      */
     private int protocolCode = ProtocolCode.JAVA;
 
+    /**
+     * 单个日志文件同时未确认的最大推送数，不超过 1 时为同步推送
+     */
+    private int windowSize = 1;
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
     public int getProtocolCode() {
         return protocolCode;
     }
@@ -116,6 +116,7 @@ public class DefaultDataPushManager implements DataPushManager {
             final ServerOptions serverOptions = new ServerOptions();
             serverOptions.setTimeout(this.pusherOptions.getTimeout());
             serverOptions.setProtocolCode(this.pusherOptions.getProtocolCode());
+            serverOptions.setWindowSize(this.pusherOptions.getWindowSize());
             dataPusher.setServerAddrProvider(provider);
             boolean isSuccess = dataPusher.init(serverOptions);
             if (!isSuccess) {
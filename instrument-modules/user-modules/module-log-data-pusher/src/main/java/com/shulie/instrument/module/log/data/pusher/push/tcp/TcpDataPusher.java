@@ -15,6 +15,7 @@
 package com.shulie.instrument.module.log.data.pusher.push.tcp;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
@@ -23,8 +24,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarCoreUtils;
+import com.pamirs.pradar.remoting.RemotingCallback;
 import com.pamirs.pradar.remoting.RemotingClient;
 import com.pamirs.pradar.remoting.exception.RemotingConnectException;
+import com.pamirs.pradar.remoting.exception.RemotingException;
 import com.pamirs.pradar.remoting.exception.RemotingSendRequestException;
 import com.pamirs.pradar.remoting.exception.RemotingTimeoutException;
 import com.pamirs.pradar.remoting.netty.NettyClientConfigurator;
@@ -36,6 +39,7 @@ import com.pamirs.pradar.remoting.protocol.EncoderType;
 import com.pamirs.pradar.remoting.protocol.ProtocolFactorySelector;
 import com.pamirs.pradar.remoting.protocol.RemotingCommand;
 import com.shulie.instrument.module.log.data.pusher.enums.DataPushEnum;
+import com.shulie.instrument.module.log.data.pusher.log.callback.AsyncLogCallback;
 import com.shulie.instrument.module.log.data.pusher.log.callback.LogCallback;
 import com.shulie.instrument.module.log.data.pusher.push.DataPusher;
 import com.shulie.instrument.module.log.data.pusher.push.ServerOptions;
@@ -58,7 +62,10 @@ public class TcpDataPusher implements DataPusher {
      */
     private RemotingClient client;
     private ServerAddrProvider provider;
-    private ConnectInfo currentConnectInfo;
+    /**
+     * 流水线推送时会在 IO 线程中切换
+     */
+    private volatile ConnectInfo currentConnectInfo;
 
     private SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
@@ -96,6 +103,16 @@ public class TcpDataPusher implements DataPusher {
 
     @Override
     public LogCallback buildLogCallback() {
+        if (serverOptions.getWindowSize() > 1) {
+            return new PipelinedLogCallback(buildSyncLogCallback());
+        }
+        return buildSyncLogCallback();
+    }
+
+    /**
+     * 同步推送，每次推送等待服务端响应后才返回
+     */
+    private LogCallback buildSyncLogCallback() {
         return new LogCallback() {
             /**
              * 请求参数可以复用,因为这个不存在并发的问题，可以减少一些请求对象的产生
@@ -109,39 +126,12 @@ public class TcpDataPusher implements DataPusher {
                     return false;
                 }
                 try {
-                    requestCommand.refreshOpaque();
-                    requestCommand.setCode(CommandCode.SUCCESS);
-                    requestCommand.setVersion(CommandVersion.V2);
-                    requestCommand.setProtocolCode(serverOptions.getProtocolCode());
-                    requestCommand.setDataType(dataType);
-                    requestCommand.setIp(PradarCoreUtils.getLocalAddressNumber());
-                    requestCommand.setDataVersion(version);
-                    requestCommand.setEncodeType(EncoderType.of(Pradar.DEFAULT_CHARSET.name()).getEncoderType());
-                    requestCommand.setLength((int)length);
+                    buildRequest(requestCommand, length, dataType, version);
                     requestCommand.setFile(new DefaultFileRegion(fc, position, length));
-                    RemotingCommand responseCommand = client.invokeSync(currentConnectInfo.getAddr(), requestCommand,
+                    ConnectInfo connectInfo = currentConnectInfo;
+                    RemotingCommand responseCommand = client.invokeSync(connectInfo.getAddr(), requestCommand,
                         serverOptions.getTimeout());
-                    if (responseCommand.getCode() == CommandCode.SUCCESS) {
-                        return true;
-                    } else if (responseCommand.getCode() == CommandCode.SYSTEM_ERROR) {
-                        return false;
-                    } else if (responseCommand.getCode() == CommandCode.SYSTEM_BUSY) {
-                        provider.errorConnectInfo(currentConnectInfo);
-                        if (LOGGER.isInfoEnabled()) {
-                            LOGGER.info("log server is busy {}. attempt to choose another log server.",
-                                currentConnectInfo.getAddr());
-                        }
-                        ConnectInfo c = provider.selectConnectInfo();
-                        if (c != null) {
-                            currentConnectInfo = c;
-                        }
-                        if (LOGGER.isInfoEnabled()) {
-                            LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
-                        }
-                        return false;
-                    } else if (responseCommand.getCode() == CommandCode.COMMAND_CODE_NOT_SUPPORTED) {
-                        return false;
-                    }
+                    return processResponse(responseCommand, connectInfo);
                 } catch (InterruptedException e) {
                     return false;
                 } catch (RemotingConnectException e) {
@@ -151,14 +141,7 @@ public class TcpDataPusher implements DataPusher {
                                 + " log server.",
                             currentConnectInfo.getAddr(), e);
                     }
-                    provider.errorConnectInfo(currentConnectInfo);
-                    ConnectInfo connectInfo = provider.selectConnectInfo();
-                    if (connectInfo != null) {
-                        currentConnectInfo = connectInfo;
-                    }
-                    if (LOGGER.isInfoEnabled()) {
-                        LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
-                    }
+                    changeLogServer(currentConnectInfo);
                     return false;
                 } catch (RemotingSendRequestException e) {
                     if (LOGGER.isInfoEnabled()) {
@@ -167,14 +150,7 @@ public class TcpDataPusher implements DataPusher {
                                 + "choose another log server.",
                             currentConnectInfo.getAddr(), e);
                     }
-                    provider.errorConnectInfo(currentConnectInfo);
-                    ConnectInfo connectInfo = provider.selectConnectInfo();
-                    if (connectInfo != null) {
-                        currentConnectInfo = connectInfo;
-                    }
-                    if (LOGGER.isInfoEnabled()) {
-                        LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
-                    }
+                    changeLogServer(currentConnectInfo);
                     return false;
                 } catch (RemotingTimeoutException e) {
                     if (LOGGER.isInfoEnabled()) {
@@ -182,14 +158,7 @@ public class TcpDataPusher implements DataPusher {
                             "client send request to log server {} timeout. attempt to choose another log server.",
                             currentConnectInfo.getAddr(), e);
                     }
-                    provider.errorConnectInfo(currentConnectInfo);
-                    ConnectInfo connectInfo = provider.selectConnectInfo();
-                    if (connectInfo != null) {
-                        currentConnectInfo = connectInfo;
-                    }
-                    if (LOGGER.isInfoEnabled()) {
-                        LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
-                    }
+                    changeLogServer(currentConnectInfo);
                     return false;
                 } finally {
                     requestCommand.setFile(null);
@@ -199,11 +168,132 @@ public class TcpDataPusher implements DataPusher {
                     //    String.format("date:%s, time:%d, type:%d, length:%d\n", sdf.format(new Date()),
                     //        end - start, dataType, length), dataType);
                 }
-                return false;
             }
         };
     }
 
+    /**
+     * 处理日志服务端的响应
+     *
+     * @param responseCommand 响应，为空时表示超时或者发送失败
+     * @param connectInfo     发送请求时使用的服务端
+     * @return 是否推送成功
+     */
+    private boolean processResponse(RemotingCommand responseCommand, ConnectInfo connectInfo) {
+        if (responseCommand == null) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("client send request to log server {} failed or timeout. attempt to choose another log server.",
+                    connectInfo.getAddr());
+            }
+            changeLogServer(connectInfo);
+            return false;
+        }
+        if (responseCommand.getCode() == CommandCode.SUCCESS) {
+            return true;
+        } else if (responseCommand.getCode() == CommandCode.SYSTEM_BUSY) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("log server is busy {}. attempt to choose another log server.", connectInfo.getAddr());
+            }
+            changeLogServer(connectInfo);
+        }
+        return false;
+    }
+
+    /**
+     * 切换日志服务端。流水线推送时同一个窗口内的多个请求可能同时失败，
+     * 只有发送请求时使用的服务端仍然是当前服务端时才切换，避免连续跳过多个服务端
+     *
+     * @param connectInfo 出现异常的服务端
+     */
+    private synchronized void changeLogServer(ConnectInfo connectInfo) {
+        if (connectInfo != currentConnectInfo) {
+            return;
+        }
+        provider.errorConnectInfo(connectInfo);
+        ConnectInfo c = provider.selectConnectInfo();
+        if (c != null) {
+            currentConnectInfo = c;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("log server changed to connect host {}.", currentConnectInfo.getAddr());
+        }
+    }
+
+    /**
+     * 构建推送请求
+     */
+    private RemotingCommand buildRequest(RemotingCommand requestCommand, long length, byte dataType, int version) {
+        requestCommand.refreshOpaque();
+        requestCommand.setCode(CommandCode.SUCCESS);
+        requestCommand.setVersion(CommandVersion.V2);
+        requestCommand.setProtocolCode(serverOptions.getProtocolCode());
+        requestCommand.setDataType(dataType);
+        requestCommand.setIp(PradarCoreUtils.getLocalAddressNumber());
+        requestCommand.setDataVersion(version);
+        requestCommand.setEncodeType(EncoderType.of(Pradar.DEFAULT_CHARSET.name()).getEncoderType());
+        requestCommand.setLength((int)length);
+        return requestCommand;
+    }
+
+    /**
+     * 流水线推送的回调，每个文件最多同时有 windowSize 个请求未收到响应，
+     * 推送吞吐不再受限于单次请求的往返时间
+     */
+    private class PipelinedLogCallback implements AsyncLogCallback {
+
+        private final LogCallback syncLogCallback;
+
+        PipelinedLogCallback(LogCallback syncLogCallback) {
+            this.syncLogCallback = syncLogCallback;
+        }
+
+        @Override
+        public int getWindowSize() {
+            return serverOptions.getWindowSize();
+        }
+
+        @Override
+        public long getTimeout() {
+            return serverOptions.getTimeout();
+        }
+
+        @Override
+        public boolean call(FileChannel fc, long position, long length, byte dataType, int version) {
+            return syncLogCallback.call(fc, position, length, dataType, version);
+        }
+
+        @Override
+        public boolean callAsync(File file, long position, long length, byte dataType, int version,
+            final Listener listener) {
+            if (!isStarted.get()) {
+                return false;
+            }
+            final ConnectInfo connectInfo = currentConnectInfo;
+            RemotingCommand requestCommand = buildRequest(new RemotingCommand(), length, dataType, version);
+            // 每个请求单独打开文件，DefaultFileRegion 发送完成释放时会关闭文件，不影响读取方持有的 FileChannel
+            requestCommand.setFile(new DefaultFileRegion(file, position, length));
+            try {
+                client.invokeAsync(connectInfo.getAddr(), requestCommand, serverOptions.getTimeout(),
+                    new RemotingCallback() {
+                        @Override
+                        public void onComplete(com.pamirs.pradar.remoting.ResponseFuture responseFuture) {
+                            listener.onComplete(processResponse(responseFuture.getResponse(), connectInfo));
+                        }
+                    });
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            } catch (RemotingException e) {
+                if (LOGGER.isInfoEnabled()) {
+                    LOGGER.info("client send request to log server {} err. attempt to choose another log server.",
+                        connectInfo.getAddr(), e);
+                }
+                changeLogServer(connectInfo);
+                return false;
+            }
+        }
+    }
+
     @Override
     public boolean start() {
         if (!isStarted.compareAndSet(false, true)) {
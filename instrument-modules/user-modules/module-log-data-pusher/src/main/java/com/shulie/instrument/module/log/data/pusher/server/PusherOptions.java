@@ -60,6 +60,19 @@ public class PusherOptions {
      */
     private int protocolCode = ProtocolCode.JAVA;
 
+    /**
+     * tcp 推送时单个日志文件同时未确认的最大推送数
+     */
+    private int windowSize = 1;
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
     public HttpPushOptions getHttpPushOptions() {
         return httpPushOptions;
     }
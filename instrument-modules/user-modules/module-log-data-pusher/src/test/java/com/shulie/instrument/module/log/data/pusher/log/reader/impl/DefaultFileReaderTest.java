@@ -0,0 +1,162 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.module.log.data.pusher.log.reader.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.shulie.instrument.module.log.data.pusher.log.callback.AsyncLogCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultFileReaderTest {
+
+    private static final int WINDOW_SIZE = 3;
+
+    private File dir;
+    private DefaultFileReader reader;
+    private final RecordingCallback callback = new RecordingCallback();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("log-pusher", "");
+        Assert.assertTrue(dir.delete() && dir.mkdirs());
+        FileOutputStream out = new FileOutputStream(new File(dir, "test.log.0"));
+        try {
+            for (int i = 0; i < 100; i++) {
+                out.write(String.format("line-%03d\n", i).getBytes("UTF-8"));
+            }
+        } finally {
+            out.close();
+        }
+        // 每次只推送很少的字节，让一个文件被切成多段
+        reader = new DefaultFileReader((byte)1, 1, new File(dir, "test.log").getAbsolutePath(), callback, 10, 20);
+        Assert.assertTrue(reader.start());
+    }
+
+    @After
+    public void tearDown() {
+        reader.stop();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void positionOnlyFollowsContiguousAcks() throws Exception {
+        Call first = callback.next();
+        Call second = callback.next();
+        Call third = callback.next();
+        Assert.assertEquals(0L, first.position);
+        Assert.assertEquals(first.end(), second.position);
+        Assert.assertEquals(second.end(), third.position);
+        // 窗口已满，不会再发出新的日志段
+        Assert.assertNull(callback.poll(300));
+
+        second.listener.onComplete(true);
+        Assert.assertNull(callback.poll(300));
+        Assert.assertEquals(0L, reader.getPosition());
+
+        first.listener.onComplete(true);
+        Call fourth = callback.next();
+        Assert.assertEquals(third.end(), fourth.position);
+        awaitPosition(second.end());
+    }
+
+    @Test
+    public void failedChunkRewindsToAckedPosition() throws Exception {
+        Call first = callback.next();
+        Call second = callback.next();
+        callback.next();
+
+        second.listener.onComplete(false);
+        first.listener.onComplete(true);
+
+        Call retry = callback.next();
+        Assert.assertEquals(second.position, retry.position);
+        awaitPosition(first.end());
+    }
+
+    private void awaitPosition(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (reader.getPosition() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, reader.getPosition());
+    }
+
+    private static class Call {
+        private final long position;
+        private final long length;
+        private final AsyncLogCallback.Listener listener;
+
+        Call(long position, long length, AsyncLogCallback.Listener listener) {
+            this.position = position;
+            this.length = length;
+            this.listener = listener;
+        }
+
+        long end() {
+            return position + length;
+        }
+    }
+
+    private static class RecordingCallback implements AsyncLogCallback {
+        private final BlockingQueue<Call> calls = new LinkedBlockingQueue<Call>();
+
+        Call next() throws InterruptedException {
+            Call call = poll(5000);
+            Assert.assertNotNull("no chunk was pushed", call);
+            return call;
+        }
+
+        Call poll(long timeoutMillis) throws InterruptedException {
+            return calls.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int getWindowSize() {
+            return WINDOW_SIZE;
+        }
+
+        @Override
+        public long getTimeout() {
+            return 60000L;
+        }
+
+        @Override
+        public boolean callAsync(File file, long position, long length, byte dataType, int version,
+            Listener listener) {
+            calls.add(new Call(position, length, listener));
+            return true;
+        }
+
+        @Override
+        public boolean call(FileChannel fc, long position, long length, byte dataType, int version) {
+            return false;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.pamirs.attach.plugin.okhttp.OKHttpConstants;
 import com.pamirs.pradar.MiddlewareType;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarService;
+import com.pamirs.pradar.interceptor.ContextTransfer;
 import com.pamirs.pradar.interceptor.SpanRecord;
 import com.pamirs.pradar.interceptor.TraceInterceptorAdaptor;
 import com.pamirs.pradar.internal.config.MatchConfig;
@@ -30,8 +31,6 @@ import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 
-import java.util.Map;
-
 /**
  * @Description
  * @Author xiaobin.zfb
@@ -53,14 +52,16 @@ public class RequestBuilderBuildMethodV3Interceptor extends TraceInterceptorAdap
     @Override
     public SpanRecord beforeTrace(Advice advice) {
         Object target = advice.getTarget();
-        Request.Builder builder = (Request.Builder) target;
-        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-            if(entry.getKey() != null && entry.getValue() != null){
-                builder.removeHeader(entry.getKey());
-                builder.addHeader(entry.getKey(), entry.getValue());
+        final Request.Builder builder = (Request.Builder) target;
+        Pradar.transferInvokeContext(new ContextTransfer() {
+            @Override
+            public void transfer(String key, String value) {
+                if (key != null && value != null) {
+                    builder.removeHeader(key);
+                    builder.addHeader(key, value);
+                }
             }
-        }
+        });
         return null;
     }
 }
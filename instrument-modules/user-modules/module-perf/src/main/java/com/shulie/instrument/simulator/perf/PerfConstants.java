@@ -39,4 +39,9 @@ public final class PerfConstants {
      * 是否允许业务流量采集明细信息
      */
     public final static String BIZ_REQUEST_ENABLE_PERF_KEY = "pradar.biz.perf.push.enabled";
+
+    /**
+     * 推送的拦截器耗时统计数量，按累计耗时取前 N 个
+     */
+    public final static int INTERCEPTOR_COST_PUSH_LIMIT = 50;
 }
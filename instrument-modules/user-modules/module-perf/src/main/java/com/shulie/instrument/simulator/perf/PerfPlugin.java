@@ -35,6 +35,7 @@ import io.shulie.takin.sdk.kafka.HttpSender;
 import io.shulie.takin.sdk.kafka.MessageSendCallBack;
 import io.shulie.takin.sdk.kafka.MessageSendService;
 import io.shulie.takin.sdk.pinpoint.impl.PinpointSendServiceFactory;
+import org.apache.commons.lang.math.NumberUtils;
 import org.kohsuke.MetaInfServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -206,6 +207,22 @@ public class PerfPlugin extends ModuleLifecycleAdapter implements ExtensionModul
         }
     }
 
+    /**
+     * 拦截器耗时统计，参数 limit 指定按累计耗时返回前多少个拦截器，不传时返回全部
+     *
+     * @param args 参数
+     * @return 拦截器耗时统计
+     */
+    @Command("interceptor")
+    public CommandResponse interceptor(Map<String, String> args) {
+        try {
+            String limit = args == null ? null : args.get("limit");
+            return CommandResponse.success(Pradar.getInterceptorCostMetrics(NumberUtils.toInt(limit, 0)));
+        } catch (Throwable e) {
+            logger.error("Perf: collect interceptor cost occurred a unknow error. ", e);
+            return CommandResponse.failure(e);
+        }
+    }
 
     @Override
     public void onFrozen() throws Throwable {
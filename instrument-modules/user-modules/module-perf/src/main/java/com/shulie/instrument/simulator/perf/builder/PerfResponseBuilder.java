@@ -18,12 +18,14 @@ import com.pamirs.pradar.AppNameUtils;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.PradarCoreUtils;
 import com.pamirs.pradar.common.RuntimeUtils;
+import com.pamirs.pradar.pressurement.datasource.SqlParser;
 import com.shulie.instrument.simulator.api.util.CollectionUtils;
 import com.shulie.instrument.simulator.module.model.gc.GcInfo;
 import com.shulie.instrument.simulator.module.model.memory.MemoryEntry;
 import com.shulie.instrument.simulator.module.model.memory.MemoryInfo;
 import com.shulie.instrument.simulator.module.model.thread.ThreadInfo;
 import com.shulie.instrument.simulator.module.model.thread.ThreadStack;
+import com.shulie.instrument.simulator.perf.PerfConstants;
 import com.shulie.instrument.simulator.perf.entity.PerfResponse;
 import com.shulie.instrument.simulator.perf.entity.ThreadVO;
 import org.apache.commons.lang.StringUtils;
@@ -48,6 +50,12 @@ public class PerfResponseBuilder {
         response.setAppName(AppNameUtils.appName());
         response.setProcessId(RuntimeUtils.getPid());
         response.setTimestamp(System.currentTimeMillis());
+        response.setTraceAppenderMetrics(Pradar.getTraceAppenderMetrics());
+        response.setMonitorAppenderMetrics(Pradar.getMonitorAppenderMetrics());
+        response.setTailSamplingMetrics(Pradar.getTailSamplingMetrics());
+        response.setSqlParserCacheMetrics(SqlParser.getCacheMetrics());
+        response.setSqlParseMetrics(SqlParser.getParseMetrics());
+        response.setInterceptorCostMetrics(Pradar.getInterceptorCostMetrics(PerfConstants.INTERCEPTOR_COST_PUSH_LIMIT));
 
         if (gcInfo != null) {
             response.setFullGcCost(gcInfo.getOldGcTime());
@@ -14,6 +14,11 @@
  */
 package com.shulie.instrument.simulator.perf.entity;
 
+import com.pamirs.pradar.AsyncAppenderMetrics;
+import com.pamirs.pradar.TailSamplingMetrics;
+import com.pamirs.pradar.interceptor.InterceptorCostMetrics;
+import com.pamirs.pradar.pressurement.datasource.SqlParseMetrics;
+import com.pamirs.pradar.pressurement.datasource.SqlParserCacheMetrics;
 import com.shulie.instrument.simulator.module.model.memory.MemoryEntry;
 
 import java.io.Serializable;
@@ -145,6 +150,84 @@ public class PerfResponse implements Serializable {
      */
     private List<MemoryEntry> bufferPoolMemories;
 
+    /**
+     * trace 日志异步队列统计
+     */
+    private AsyncAppenderMetrics traceAppenderMetrics;
+
+    /**
+     * monitor 日志异步队列统计
+     */
+    private AsyncAppenderMetrics monitorAppenderMetrics;
+
+    /**
+     * trace 尾部采样统计，未开启时为空
+     */
+    private TailSamplingMetrics tailSamplingMetrics;
+
+    /**
+     * sql 解析缓存统计
+     */
+    private List<SqlParserCacheMetrics> sqlParserCacheMetrics;
+
+    /**
+     * sql 解析线程池统计
+     */
+    private SqlParseMetrics sqlParseMetrics;
+
+    /**
+     * 拦截器耗时统计，按累计耗时从高到低排序
+     */
+    private List<InterceptorCostMetrics> interceptorCostMetrics;
+
+    public List<InterceptorCostMetrics> getInterceptorCostMetrics() {
+        return interceptorCostMetrics;
+    }
+
+    public void setInterceptorCostMetrics(List<InterceptorCostMetrics> interceptorCostMetrics) {
+        this.interceptorCostMetrics = interceptorCostMetrics;
+    }
+
+    public SqlParseMetrics getSqlParseMetrics() {
+        return sqlParseMetrics;
+    }
+
+    public void setSqlParseMetrics(SqlParseMetrics sqlParseMetrics) {
+        this.sqlParseMetrics = sqlParseMetrics;
+    }
+
+    public List<SqlParserCacheMetrics> getSqlParserCacheMetrics() {
+        return sqlParserCacheMetrics;
+    }
+
+    public void setSqlParserCacheMetrics(List<SqlParserCacheMetrics> sqlParserCacheMetrics) {
+        this.sqlParserCacheMetrics = sqlParserCacheMetrics;
+    }
+
+    public AsyncAppenderMetrics getTraceAppenderMetrics() {
+        return traceAppenderMetrics;
+    }
+
+    public void setTraceAppenderMetrics(AsyncAppenderMetrics traceAppenderMetrics) {
+        this.traceAppenderMetrics = traceAppenderMetrics;
+    }
+
+    public TailSamplingMetrics getTailSamplingMetrics() {
+        return tailSamplingMetrics;
+    }
+
+    public void setTailSamplingMetrics(TailSamplingMetrics tailSamplingMetrics) {
+        this.tailSamplingMetrics = tailSamplingMetrics;
+    }
+
+    public AsyncAppenderMetrics getMonitorAppenderMetrics() {
+        return monitorAppenderMetrics;
+    }
+
+    public void setMonitorAppenderMetrics(AsyncAppenderMetrics monitorAppenderMetrics) {
+        this.monitorAppenderMetrics = monitorAppenderMetrics;
+    }
+
     public long getTotalBufferPoolMemory() {
         return totalBufferPoolMemory;
     }
@@ -54,6 +54,16 @@ abstract class AbstractContext extends BaseContext {
 
     private Boolean isUseTraceIdSample = "true".equals(System.getProperty("use.traceid.sample"));
 
+    private static final byte SAMPLED_UNKNOWN = 0;
+    private static final byte SAMPLED_YES = 1;
+    private static final byte SAMPLED_NO = 2;
+
+    /**
+     * 业务流量、压测流量各自的采样结果，见 {@link #isTraceSampled()}
+     */
+    private byte businessSampled = SAMPLED_UNKNOWN;
+    private byte clusterTestSampled = SAMPLED_UNKNOWN;
+
     /**
      * 是否有错误
      */
@@ -136,6 +146,9 @@ abstract class AbstractContext extends BaseContext {
 
     /**
      * 检查当前上下文是否被采样，有效范围在 [1, 9999] 之间，超出范围的数值都作为全采样处理。
+     * <p>
+     * traceId 创建或者收到之后不会再变，采样结果按业务流量和压测流量各只计算一次，
+     * 拦截器在 trace 开始时就可以根据结果跳过请求、响应内容的采集，提交时也不需要重新计算
      *
      * @return <code>true</code> 则需要输出日志，<code>false</code> 不输出
      */
@@ -144,16 +157,40 @@ abstract class AbstractContext extends BaseContext {
             return false;
         }
 
-        if (Pradar.isDebug()) {
+        if (isDebug) {
             return true;
         }
 
-        boolean clusterTest = Pradar.isClusterTest();
+        if (isClusterTest) {
+            if (clusterTestSampled == SAMPLED_UNKNOWN) {
+                clusterTestSampled = computeTraceSampled(PradarSwitcher.getClusterTestSamplingInterval());
+            }
+            return clusterTestSampled == SAMPLED_YES;
+        }
+        if (businessSampled == SAMPLED_UNKNOWN) {
+            businessSampled = computeTraceSampled(PradarSwitcher.getSamplingInterval());
+        }
+        return businessSampled == SAMPLED_YES;
+    }
+
+    /**
+     * 复用其他上下文已经计算好的采样结果，只在 traceId 相同时有效
+     *
+     * @param context 同一个 trace 的上下文
+     */
+    void copySampled(AbstractContext context) {
+        if (context.traceId != null && context.traceId.equals(traceId)) {
+            this.businessSampled = context.businessSampled;
+            this.clusterTestSampled = context.clusterTestSampled;
+        }
+    }
 
-        if (clusterTest) {
-            return isTraceSampled(PradarSwitcher.getClusterTestSamplingInterval());
+    private byte computeTraceSampled(int si) {
+        // nextId 为 0 的 traceId 不做过滤
+        if (TraceIdGenerator.getNextId(traceId) == 0 || isTraceSampled(si)) {
+            return SAMPLED_YES;
         }
-        return isTraceSampled(PradarSwitcher.getSamplingInterval());
+        return SAMPLED_NO;
     }
 
     private boolean isTraceSampled(int si) {
@@ -234,6 +271,38 @@ abstract class AbstractContext extends BaseContext {
         }
     }
 
+    /**
+     * 与 {@link #logContextData(StringBuilder)} 输出相同的内容，直接写成字节
+     */
+    void logContextData(TraceByteBuffer buffer) {
+        final boolean appendAttributes = this.attributes != null && !this.attributes.isEmpty();
+        final boolean appendLocalAttributes = this.localAttributes != null && !this.localAttributes.isEmpty();
+        if (!appendAttributes && !appendLocalAttributes) {
+            return;
+        }
+        buffer.append('|').append('@');
+        if (appendAttributes) {
+            for (Entry<String, String> entry : attributes.entrySet()) {
+                String key = entry.getKey();
+                String value = entry.getValue();
+                if (PradarCoreUtils.isNotBlank(key) && value != null) {
+                    buffer.append(key).append('@').appendSafe(value).append('@');
+                }
+            }
+        }
+        buffer.append('|').append('@');
+        if (appendLocalAttributes) {
+            for (Entry<String, String> entry : localAttributes.entrySet()) {
+                String key = entry.getKey();
+                String value = entry.getValue();
+                if (PradarCoreUtils.isNotBlank(key) && value != null) {
+                    buffer.append('@').appendSafe(key).append(Pradar.KV_SEPARATOR2).appendSafe(value)
+                        .append(Pradar.ENTRY_SEPARATOR);
+                }
+            }
+        }
+    }
+
     /**
      * 一组 user data 的 key 和 value 加起来总长度不超过64,其中 key 长度不超过16，value 长度不超过48
      */
@@ -22,16 +22,19 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.LockSupport;
-import java.util.concurrent.locks.ReentrantLock;
 
-import com.shulie.instrument.simulator.api.executors.ExecutorServiceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 异步提交日志，避免影响主线程
+ * <p>
+ * 内部是一个多生产者单消费者的 RingBuffer，每个槽位有独立的发布序号：
+ * 生产者 CAS 抢占 putIndex 后写入日志对象，再发布该槽位的序号，
+ * 消费者只消费序号已经发布的连续槽位，不会读到尚未写入完成的槽位。
+ * 生产者全程无锁，消费者按批次取出日志后统一写入 {@link PradarAppender}
  */
 class AsyncAppender extends PradarAppender {
 
@@ -42,6 +45,11 @@ class AsyncAppender extends PradarAppender {
      */
     private static final int DEFAULT_CONSUMER_THRESHOLD = 512;
 
+    /**
+     * 消费者每一批最多取出的日志条数
+     */
+    private static final int DEFAULT_DRAIN_BATCH_SIZE = 512;
+
     /**
      * 用于内部控制刷新日志的命令
      */
@@ -59,22 +67,33 @@ class AsyncAppender extends PradarAppender {
 
     // RingBuffer 实现，size 必须为 2 的 n 次方
     private final Object[] entries;
+    // 每个槽位已发布的序号，等于 put 时说明该槽位的日志对象已经写入完成
+    private final AtomicLongArray sequences;
     private final int queueSize;
     private final int indexMask;
     private final int consumerThreshold;
+    private final int drainBatchSize;
     // 在队列满的时候，业务线程最长尝试时间
     private final int maxWaitMillis;
-
-    private final ReentrantLock lock;
-    private final Condition notEmpty;
+    // 消费者空闲时的等待策略
+    private final WaitStrategy waitStrategy;
 
     // 下一个写的位置，一直递增
     private AtomicLong putIndex;
     // 最近丢弃的日志条数
     private AtomicLong discardCount;
+    // 累计丢弃的日志条数
+    private AtomicLong totalDiscardCount;
     // 下一个读的位置，一直递增，不能大于 putIndex
     private AtomicLong takeIndex;
 
+    // 消费者统计，只由消费者线程写入
+    private volatile long drainCount;
+    private volatile long drainedTotal;
+    private volatile int lastDrainBatchSize;
+    private volatile int maxDrainBatchSize;
+    private volatile long failCount;
+
     private PradarAppender appender;
     private TraceEncoder encoder;
     private String workerName;
@@ -82,26 +101,36 @@ class AsyncAppender extends PradarAppender {
     private Future future;
     private ExecutorService asyncAppenderService;
     private AsyncRunnable task;
+    // 消费者是否处于处理状态，false 时表示消费者可能已经进入等待
     private AtomicBoolean running;
+    private volatile Thread consumerThread;
 
     public AsyncAppender(int queueSize, int maxWaitMillis) {
+        this(queueSize, maxWaitMillis, WaitStrategy.of(Pradar.getAsyncAppenderWaitStrategy()));
+    }
+
+    public AsyncAppender(int queueSize, int maxWaitMillis, WaitStrategy waitStrategy) {
         // queueSize 取大于或等于 value 的 2 的 n 次方数
         queueSize = 1 << (32 - Integer.numberOfLeadingZeros(queueSize - 1));
 
         this.queueSize = queueSize;
         this.maxWaitMillis = maxWaitMillis;
+        this.waitStrategy = waitStrategy;
         this.entries = new Object[queueSize];
+        this.sequences = new AtomicLongArray(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            sequences.set(i, -1L);
+        }
         this.indexMask = queueSize - 1;
         this.consumerThreshold = queueSize >= DEFAULT_CONSUMER_THRESHOLD ? DEFAULT_CONSUMER_THRESHOLD : queueSize;
+        this.drainBatchSize = queueSize >= DEFAULT_DRAIN_BATCH_SIZE ? DEFAULT_DRAIN_BATCH_SIZE : queueSize;
 
         this.putIndex = new AtomicLong(0L);
         this.discardCount = new AtomicLong(0L);
+        this.totalDiscardCount = new AtomicLong(0L);
         this.takeIndex = new AtomicLong(0L);
 
         this.running = new AtomicBoolean(false);
-
-        this.lock = new ReentrantLock(false);
-        this.notEmpty = lock.newCondition();
     }
 
     void start(PradarAppender appender, TraceEncoder encoder, String workerName) {
@@ -128,50 +157,44 @@ class AsyncAppender extends PradarAppender {
         return (int)(putIndex.get() - takeIndex.get());
     }
 
+    /**
+     * 获取当前的统计信息
+     *
+     * @return 统计信息
+     */
+    public AsyncAppenderMetrics getMetrics() {
+        AsyncAppenderMetrics metrics = new AsyncAppenderMetrics();
+        metrics.setName(workerName);
+        metrics.setQueueSize(queueSize);
+        metrics.setQueueDepth(size());
+        metrics.setDiscardCount(totalDiscardCount.get());
+        final long drainCount = this.drainCount;
+        metrics.setDrainCount(drainCount);
+        metrics.setAvgDrainBatchSize(drainCount == 0 ? 0 : drainedTotal / drainCount);
+        metrics.setLastDrainBatchSize(lastDrainBatchSize);
+        metrics.setMaxDrainBatchSize(maxDrainBatchSize);
+        metrics.setFailCount(failCount);
+        metrics.setWaitStrategy(waitStrategy.name());
+        return metrics;
+    }
+
     public boolean append(Object ctx) {
-        final long qsize = queueSize;
-        long startTime = 0;
-        for (; ; ) {
-            final long put = putIndex.get();
-            final long size = put - takeIndex.get();
-            if (size >= qsize) {
-                if (maxWaitMillis <= 0) {
-                    discardCount.incrementAndGet();
-                    return false;
-                } else {
-                    long now = System.currentTimeMillis();
-                    if (startTime == 0) {
-                        startTime = now;
-                    } else if (now - startTime >= maxWaitMillis) {
-                        discardCount.incrementAndGet();
-                        return false;
-                    }
-                    LockSupport.parkNanos(1000);
-                    continue;
-                }
-            }
-            if (putIndex.compareAndSet(put, put + 1)) {
-                entries[(int)put & indexMask] = ctx;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
-                // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
-                }
-                return true;
-            }
-        }
+        return offer(ctx);
     }
 
     /**
      * 队列满时直接丢弃日志，不阻塞业务线程，返回日志是否被接受
      */
     public boolean append(BaseContext ctx) {
+        return offer(ctx);
+    }
+
+    @Override
+    public void append(String log) {
+        offer(log);
+    }
+
+    private boolean offer(Object ctx) {
         final long qsize = queueSize;
         long startTime = 0;
         for (; ; ) {
@@ -179,14 +202,14 @@ class AsyncAppender extends PradarAppender {
             final long size = put - takeIndex.get();
             if (size >= qsize) {
                 if (maxWaitMillis <= 0) {
-                    discardCount.incrementAndGet();
+                    discard();
                     return false;
                 } else {
                     long now = System.currentTimeMillis();
                     if (startTime == 0) {
                         startTime = now;
                     } else if (now - startTime >= maxWaitMillis) {
-                        discardCount.incrementAndGet();
+                        discard();
                         return false;
                     }
                     LockSupport.parkNanos(1000);
@@ -194,62 +217,23 @@ class AsyncAppender extends PradarAppender {
                 }
             }
             if (putIndex.compareAndSet(put, put + 1)) {
-                entries[(int)put & indexMask] = ctx;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
+                final int idx = (int)put & indexMask;
+                entries[idx] = ctx;
+                // 发布槽位，lazySet 保证日志对象的写入先于序号对消费者可见
+                sequences.lazySet(idx, put);
+                // 仅仅在队列的日志数超过阈值，且消费者不在运行时才唤醒消费者
                 // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
+                if (size >= consumerThreshold && !running.get()) {
+                    waitStrategy.signal(consumerThread);
                 }
                 return true;
             }
         }
     }
 
-    @Override
-    public void append(String log) {
-        final long qsize = queueSize;
-        long startTime = 0;
-        for (; ; ) {
-            final long put = putIndex.get();
-            final long size = put - takeIndex.get();
-            if (size >= qsize) {
-                if (maxWaitMillis <= 0) {
-                    discardCount.incrementAndGet();
-                    return;
-                } else {
-                    long now = System.currentTimeMillis();
-                    if (startTime == 0) {
-                        startTime = now;
-                    } else if (now - startTime >= maxWaitMillis) {
-                        discardCount.incrementAndGet();
-                        return;
-                    }
-                    LockSupport.parkNanos(1000);
-                    continue;
-                }
-            }
-            if (putIndex.compareAndSet(put, put + 1)) {
-                entries[(int)put & indexMask] = log;
-                // 仅仅在队列的日志数超过阈值，且消费者不在运行，且获得锁，才唤醒消费者
-                // 这个做法能保证只有必要时才立即通知消费者，减少上下文切换的开销
-                if (size >= consumerThreshold && !running.get() && lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
-                }
-                return;
-            }
-        }
+    private void discard() {
+        discardCount.incrementAndGet();
+        totalDiscardCount.incrementAndGet();
     }
 
     @Override
@@ -298,15 +282,8 @@ class AsyncAppender extends PradarAppender {
                     break;
                 }
             } else {
-                if (lock.tryLock()) {
-                    try {
-                        notEmpty.signal();
-                    } catch (Throwable e) {
-                        LOGGER.error("fail to signal notEmpty: {}", workerName, e);
-                    } finally {
-                        lock.unlock();
-                    }
-                }
+                waitStrategy.signal(consumerThread);
+                Thread.yield();
             }
         }
     }
@@ -319,6 +296,78 @@ class AsyncAppender extends PradarAppender {
         this.appender = PradarCoreUtils.checkNotNull(appender, "appender");
     }
 
+    /**
+     * 消费者空闲时的等待策略
+     */
+    enum WaitStrategy {
+        /**
+         * 忙等，延迟最低，但会一直占用一个 CPU
+         */
+        BUSY_SPIN {
+            @Override
+            void idle(int idleCount) {
+            }
+        },
+        /**
+         * 让出 CPU，空闲时仍有一定的 CPU 消耗
+         */
+        YIELD {
+            @Override
+            void idle(int idleCount) {
+                Thread.yield();
+            }
+        },
+        /**
+         * 短暂自旋后挂起，队列积压超过阈值时由生产者唤醒，CPU 消耗最低
+         */
+        PARK {
+            @Override
+            void idle(int idleCount) {
+                if (idleCount < SPIN_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(MAX_PARK_NANOS);
+                }
+            }
+
+            @Override
+            void signal(Thread consumer) {
+                if (consumer != null) {
+                    LockSupport.unpark(consumer);
+                }
+            }
+        };
+
+        private static final int SPIN_TRIES = 100;
+        private static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        /**
+         * 消费者没有可消费的日志时调用
+         *
+         * @param idleCount 连续空闲的次数
+         */
+        abstract void idle(int idleCount);
+
+        /**
+         * 生产者唤醒消费者
+         *
+         * @param consumer 消费者线程
+         */
+        void signal(Thread consumer) {
+        }
+
+        static WaitStrategy of(String name) {
+            if (name != null) {
+                for (WaitStrategy strategy : values()) {
+                    if (strategy.name().equalsIgnoreCase(name.trim().replace('-', '_'))) {
+                        return strategy;
+                    }
+                }
+            }
+            return PARK;
+        }
+    }
+
     class AsyncRunnable implements Runnable {
         private volatile boolean isRunning = true;
 
@@ -334,59 +383,75 @@ class AsyncAppender extends PradarAppender {
             final TraceEncoder encoder = parent.encoder;
             final String workerName = parent.workerName;
             final Object[] entries = parent.entries;
-            final AtomicLong putIndex = parent.putIndex;
+            final AtomicLongArray sequences = parent.sequences;
             final AtomicLong takeIndex = parent.takeIndex;
             final AtomicLong discardCount = parent.discardCount;
             final AtomicBoolean running = parent.running;
-            final ReentrantLock lock = parent.lock;
-            final Condition notEmpty = parent.notEmpty;
+            final WaitStrategy waitStrategy = parent.waitStrategy;
+            final Object[] batch = new Object[parent.drainBatchSize];
+            parent.consumerThread = Thread.currentThread();
 
             // 输出丢弃的日志数
             final long outputSpan = TimeUnit.MINUTES.toMillis(1);
             long lastOutputTime = System.currentTimeMillis();
             long now;
+            long take = takeIndex.get();
+            int idleCount = 0;
 
             while (isRunning) {
                 try {
                     running.set(true);
-                    long take = takeIndex.get();
-                    long size = putIndex.get() - take;
-                    if (size > 0) {
-                        // 直接批量处理掉 size 个日志对象
-                        do {
-                            final int idx = (int)take & indexMask;
-                            Object ctx = entries[idx];
-                            // 从生产者 claim 到 putIndex 位置，到生产者把日志对象放入队列之间，有可能存在间隙
-                            while (ctx == null) {
-                                Thread.yield();
-                                ctx = entries[idx];
+                    // 批量取出已发布的连续槽位，遇到未发布的槽位即停止，保证顺序
+                    int batchSize = 0;
+                    while (batchSize < batch.length) {
+                        final int idx = (int)take & indexMask;
+                        if (sequences.get(idx) != take) {
+                            break;
+                        }
+                        batch[batchSize++] = entries[idx];
+                        entries[idx] = null;
+                        take++;
+                    }
+                    if (batchSize > 0) {
+                        // 单个消费者，整批释放槽位，无需用 CAS
+                        takeIndex.lazySet(take);
+                        idleCount = 0;
+                        for (int i = 0; i < batchSize; i++) {
+                            final Object ctx = batch[i];
+                            batch[i] = null;
+                            // 槽位已经整批释放，单条写入失败不能影响同一批的其他日志
+                            try {
+                                processContext(ctx, parent.appender, encoder);
+                            } catch (Throwable e) {
+                                parent.failCount = parent.failCount + 1;
+                                LOGGER.error("Fail to async write log {}", workerName, e);
                             }
-                            entries[idx] = null;
-                            takeIndex.set(++take); // 单个消费者，无需用 CAS
-                            --size;
-                            processContext(ctx, parent.appender, encoder);
-                        } while (size > 0);
+                        }
+                        recordDrain(batchSize);
 
                         long discardNum = discardCount.get();
                         if (discardNum > 0 &&
                             (now = System.currentTimeMillis()) - lastOutputTime > outputSpan) {
                             discardNum = discardCount.get();
                             discardCount.lazySet(0); // 无需内存屏障，统计的数量稍微丢失一点
-                            LOGGER.warn("{} discarded {} logs, queueSize={}" + queueSize, workerName, discardNum,
-                                queueSize);
+                            LOGGER.warn("{} discarded {} logs, queueSize={}, queueDepth={}", workerName, discardNum,
+                                queueSize, parent.size());
                             lastOutputTime = now;
                         }
 
                         // 写完一批日志之后，做一次刷新
                         parent.appender.flush();
+                    } else if (parent.putIndex.get() > take) {
+                        // 生产者已经抢占了槽位但还没有发布，很快就会写入完成
+                        Thread.yield();
                     } else {
-                        if (lock.tryLock()) {
-                            try {
-                                running.set(false);
-                                notEmpty.await(1, TimeUnit.SECONDS);
-                            } finally {
-                                lock.unlock();
-                            }
+                        running.set(false);
+                        // 再检查一次，避免生产者在 running 置为 false 之前发布后没有唤醒消费者
+                        if (parent.putIndex.get() == take) {
+                            waitStrategy.idle(idleCount++);
+                        }
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
                         }
                     }
                 } catch (InterruptedException e) {
@@ -399,6 +464,16 @@ class AsyncAppender extends PradarAppender {
             running.set(false);
         }
 
+        private void recordDrain(int batchSize) {
+            final AsyncAppender parent = AsyncAppender.this;
+            parent.drainCount = parent.drainCount + 1;
+            parent.drainedTotal = parent.drainedTotal + batchSize;
+            parent.lastDrainBatchSize = batchSize;
+            if (batchSize > parent.maxDrainBatchSize) {
+                parent.maxDrainBatchSize = batchSize;
+            }
+        }
+
         private final void processContext(final Object ctx,
             final PradarAppender appender, final TraceEncoder encoder) throws IOException {
             if (ctx == EVENT_LOG_FLUSH) {
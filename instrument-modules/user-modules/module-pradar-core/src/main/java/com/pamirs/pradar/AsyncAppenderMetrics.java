@@ -0,0 +1,169 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.io.Serializable;
+
+/**
+ * 异步日志队列的统计信息
+ */
+public class AsyncAppenderMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 队列名称
+     */
+    private String name;
+
+    /**
+     * 队列容量
+     */
+    private int queueSize;
+
+    /**
+     * 当前积压的日志条数
+     */
+    private int queueDepth;
+
+    /**
+     * 累计丢弃的日志条数
+     */
+    private long discardCount;
+
+    /**
+     * 累计消费批次数
+     */
+    private long drainCount;
+
+    /**
+     * 平均每批消费的日志条数
+     */
+    private long avgDrainBatchSize;
+
+    /**
+     * 最近一批消费的日志条数
+     */
+    private int lastDrainBatchSize;
+
+    /**
+     * 单批消费的最大日志条数
+     */
+    private int maxDrainBatchSize;
+
+    /**
+     * 累计写入失败的日志条数
+     */
+    private long failCount;
+
+    /**
+     * 消费者等待策略
+     */
+    private String waitStrategy;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public long getDiscardCount() {
+        return discardCount;
+    }
+
+    public void setDiscardCount(long discardCount) {
+        this.discardCount = discardCount;
+    }
+
+    public long getDrainCount() {
+        return drainCount;
+    }
+
+    public void setDrainCount(long drainCount) {
+        this.drainCount = drainCount;
+    }
+
+    public long getAvgDrainBatchSize() {
+        return avgDrainBatchSize;
+    }
+
+    public void setAvgDrainBatchSize(long avgDrainBatchSize) {
+        this.avgDrainBatchSize = avgDrainBatchSize;
+    }
+
+    public int getLastDrainBatchSize() {
+        return lastDrainBatchSize;
+    }
+
+    public void setLastDrainBatchSize(int lastDrainBatchSize) {
+        this.lastDrainBatchSize = lastDrainBatchSize;
+    }
+
+    public int getMaxDrainBatchSize() {
+        return maxDrainBatchSize;
+    }
+
+    public void setMaxDrainBatchSize(int maxDrainBatchSize) {
+        this.maxDrainBatchSize = maxDrainBatchSize;
+    }
+
+    public long getFailCount() {
+        return failCount;
+    }
+
+    public void setFailCount(long failCount) {
+        this.failCount = failCount;
+    }
+
+    public String getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(String waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncAppenderMetrics{" +
+            "name='" + name + '\'' +
+            ", queueSize=" + queueSize +
+            ", queueDepth=" + queueDepth +
+            ", discardCount=" + discardCount +
+            ", drainCount=" + drainCount +
+            ", avgDrainBatchSize=" + avgDrainBatchSize +
+            ", lastDrainBatchSize=" + lastDrainBatchSize +
+            ", maxDrainBatchSize=" + maxDrainBatchSize +
+            ", waitStrategy='" + waitStrategy + '\'' +
+            '}';
+    }
+}
@@ -15,6 +15,9 @@
 package com.pamirs.pradar;
 
 import com.alibaba.ttl.TransmittableThreadLocal;
+import com.pamirs.pradar.common.UrlTemplateTrie;
+import com.pamirs.pradar.interceptor.ContextReader;
+import com.pamirs.pradar.interceptor.ContextTransfer;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import org.apache.commons.lang.StringUtils;
@@ -190,6 +193,11 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         return threadLocal.get();
     }
 
+    /**
+     * 编译好的入口规则，规则的配置版本变化后第一次使用时重新编译
+     */
+    private static volatile CompiledTraceRules compiledTraceRules;
+
     /**
      * 获取被规则处理后的服务名称
      *
@@ -197,64 +205,101 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
      * @return
      */
     private static String getRegularServiceName(String serviceName, String methodName) {
-        Set<String> traceRules = GlobalConfig.getInstance().getTraceRules();
-        for (String rule : traceRules) {
-            if (matches(serviceName, methodName, rule)) {
-                return rule;
-            }
+        final UrlTemplateTrie<String> rules = getCompiledTraceRules();
+        if (rules.isEmpty()) {
+            return serviceName;
+        }
+        /**
+         * 去除schema 和域名等，只匹配 path，与 toPath 的处理一致
+         */
+        int start = 0;
+        if (serviceName.startsWith("http://")) {
+            start = pathStart(serviceName, 8);
+        } else if (serviceName.startsWith("https://")) {
+            start = pathStart(serviceName, 9);
+        }
+        int end = serviceName.length();
+        final int indexOfQuestion = serviceName.indexOf('?', start);
+        if (indexOfQuestion != -1) {
+            end = indexOfQuestion;
+        }
+        final int indexOfx = serviceName.indexOf('#', start);
+        if (indexOfx != -1 && indexOfx < end) {
+            end = indexOfx;
+        }
+        final String rule = rules.match(serviceName, start, end, methodName);
+        return rule == null ? serviceName : rule;
+    }
+
+    private static int pathStart(String name, int offset) {
+        if (offset >= name.length()) {
+            return name.length();
+        }
+        final int index = name.indexOf('/', offset);
+        return index == -1 ? offset : index;
+    }
+
+    private static UrlTemplateTrie<String> getCompiledTraceRules() {
+        final GlobalConfig config = GlobalConfig.getInstance();
+        final int version = config.getTraceRulesVersion();
+        CompiledTraceRules compiled = compiledTraceRules;
+        if (compiled == null || compiled.version != version) {
+            compiled = new CompiledTraceRules(config.getTraceRules(), version);
+            compiledTraceRules = compiled;
         }
-        return serviceName;
+        return compiled.rules;
     }
 
     /**
-     * 比较目标是否匹配
-     *
-     * @param serviceName
-     * @param pattern
-     * @return
+     * 入口规则编译成的 path 模板树，规则格式为 path#METHOD，方法忽略大小写。
+     * path 中同时包含 { 和 } 的段视为变量，可以匹配任意一段
      */
-    private static boolean matches(String serviceName, String methodName, String pattern) {
-        String patternMethod = "";
-        if (pattern != null) {
-            final int index = pattern.lastIndexOf('#');
-            if (index != -1) {
-                patternMethod = pattern.substring(index + 1);
+    private static final class CompiledTraceRules {
+        private final int version;
+        private final UrlTemplateTrie<String> rules = new UrlTemplateTrie<String>();
+
+        CompiledTraceRules(Set<String> source, int version) {
+            this.version = version;
+            if (source == null) {
+                return;
+            }
+            for (String rule : source) {
+                if (rule == null) {
+                    continue;
+                }
+                String method = "";
+                final int index = rule.lastIndexOf('#');
+                if (index != -1) {
+                    method = rule.substring(index + 1);
+                }
+                rules.put(toTemplate(toPath(rule)), method, rule);
             }
-        }
-        if (!StringUtils.equalsIgnoreCase(patternMethod, methodName)) {
-            return false;
-        }
-        /**
-         * 去除schema 和域名等
-         * 这个地方是为了取出 path
-         */
-        serviceName = toPath(serviceName);
-        pattern = toPath(pattern);
-        if (StringUtils.indexOf(pattern, '{') == -1) {
-            return StringUtils.equals(serviceName, pattern);
         }
 
-        String[] segs = StringUtils.split(serviceName, '/');
-        String[] patternSegs = StringUtils.split(pattern, ',');
-        if (segs.length != patternSegs.length) {
-            return false;
-        }
-        for (int i = 0, len = patternSegs.length; i < len; i++) {
-            /**
-             * 如果是这种匹配符则直接跳过不需要匹配
-             */
-            if (patternSegs[i].indexOf('{') != -1 && patternSegs[i].indexOf('}') != -1) {
-                continue;
-            } else {
-                /**
-                 * 否则需要匹配是否相等，如果不相等则直接返回 false
-                 */
-                if (!StringUtils.equals(patternSegs[i], segs[i])) {
-                    return false;
+        private static String toTemplate(String path) {
+            if (path.indexOf('{') == -1) {
+                return path;
+            }
+            StringBuilder builder = new StringBuilder(path.length());
+            int pos = 0;
+            while (pos <= path.length()) {
+                int segmentEnd = path.indexOf('/', pos);
+                if (segmentEnd == -1) {
+                    segmentEnd = path.length();
+                }
+                if (pos > 0) {
+                    builder.append('/');
                 }
+                final String segment = path.substring(pos, segmentEnd);
+                if (segment.indexOf('{') != -1 && segment.indexOf('}') != -1) {
+                    builder.append("{}");
+                } else {
+                    builder.append(segment);
+                }
+                pos = segmentEnd + 1;
             }
+            return builder.toString();
         }
-        return true;
     }
 
     private static byte[] md5(String data) {
@@ -325,28 +370,58 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
      * @param parent
      * @return
      */
-    static InvokeContext fromMap(Map<String, String> map, InvokeContext parent) {
-        String traceId = map.get(PradarService.PRADAR_TRACE_ID_KEY);
-        String traceAppName = map.get(PradarService.PRADAR_TRACE_APPNAME_KEY);
-        String invokeId = map.get(PradarService.PRADAR_INVOKE_ID_KEY);
-        String userData = map.get(PradarService.PRADAR_USER_DATA_KEY);
-        String logType = map.get(PradarService.PRADAR_LOG_TYPE_KEY);
-        String remoteAppName = map.get(PradarService.PRADAR_REMOTE_APPNAME_KEY);
-        String startTime = map.get(PradarService.PRADAR_START_TIME_KEY);
-        String remoteIp = map.get(PradarService.PRADAR_REMOTE_IP);
-        String upAppName = map.get(PradarService.PRADAR_UPSTREAM_APPNAME_KEY);
-        String serviceName = map.get(PradarService.PRADAR_SERVICE_NAME);
-        String methodName = map.get(PradarService.PRADAR_METHOD_NAME);
-        String middlewareName = map.get(PradarService.PRADAR_MIDDLEWARE_NAME);
+    static InvokeContext fromMap(final Map<String, String> map, InvokeContext parent) {
+        return fromReader(new ContextReader() {
+            @Override
+            public String read(String key) {
+                return map.get(key);
+            }
+        }, parent, false);
+    }
+
+    /**
+     * 从远程传输的上下文中构建 InvokeContext，只读取 {@link Pradar#getInvokeContextTransformKeys()} 中的字段
+     *
+     * @param reader 上下文读取
+     * @param parent 父上下文
+     * @return
+     */
+    static InvokeContext fromReader(ContextReader reader, InvokeContext parent) {
+        return fromReader(reader, parent, true);
+    }
+
+    /**
+     * @param transformOnly 是否只读取远程传输的字段，Map 中还可能包含日志类型、开始时间等本地传递的字段
+     */
+    private static InvokeContext fromReader(ContextReader reader, InvokeContext parent, boolean transformOnly) {
+        String traceId = reader.read(PradarService.PRADAR_TRACE_ID_KEY);
+        String traceAppName = reader.read(PradarService.PRADAR_TRACE_APPNAME_KEY);
+        String invokeId = reader.read(PradarService.PRADAR_INVOKE_ID_KEY);
+        String userData = reader.read(PradarService.PRADAR_USER_DATA_KEY);
+        String remoteAppName = reader.read(PradarService.PRADAR_REMOTE_APPNAME_KEY);
+        String remoteIp = reader.read(PradarService.PRADAR_REMOTE_IP);
+        String upAppName = reader.read(PradarService.PRADAR_UPSTREAM_APPNAME_KEY);
+        String logType = null;
+        String startTime = null;
+        String serviceName = null;
+        String methodName = null;
+        String middlewareName = null;
+        if (!transformOnly) {
+            logType = reader.read(PradarService.PRADAR_LOG_TYPE_KEY);
+            startTime = reader.read(PradarService.PRADAR_START_TIME_KEY);
+            serviceName = reader.read(PradarService.PRADAR_SERVICE_NAME);
+            methodName = reader.read(PradarService.PRADAR_METHOD_NAME);
+            middlewareName = reader.read(PradarService.PRADAR_MIDDLEWARE_NAME);
+        }
 
 /*      //  ！！！！！！！这个不要放开！！！！！！！！！ passcheck不要进行远程传输..........
         boolean passedCheck = Boolean.parseBoolean(map.get(PradarService.PRADAR_WHITE_LIST_CHECK));
 */
-        boolean isClusterTest = ClusterTestUtils.isClusterTestRequest(map.get(PradarService.PRADAR_CLUSTER_TEST_KEY));
-        if (!isClusterTest) {
-            isClusterTest = ClusterTestUtils.isClusterTestRequest(map.get(PradarService.PRADAR_HTTP_CLUSTER_TEST_KEY));
+        boolean isClusterTest = ClusterTestUtils.isClusterTestRequest(reader.read(PradarService.PRADAR_CLUSTER_TEST_KEY));
+        if (!isClusterTest && !transformOnly) {
+            isClusterTest = ClusterTestUtils.isClusterTestRequest(reader.read(PradarService.PRADAR_HTTP_CLUSTER_TEST_KEY));
         }
-        boolean isDebug = ClusterTestUtils.isDebugRequest(map.get(PradarService.PRADAR_DEBUG_KEY));
+        boolean isDebug = ClusterTestUtils.isDebugRequest(reader.read(PradarService.PRADAR_DEBUG_KEY));
         /**
          * 解决rpcId过长的问题，如果上游传下来的rpcId过长,则将rpcId重置为9
          */
@@ -474,6 +549,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         clone.response = this.response;
         clone.isClusterTest = this.isClusterTest();
         clone.isDebug = this.isDebug();
+        clone.copySampled(this);
         return clone;
     }
 
@@ -498,6 +574,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         ctx.attributes = this.attributes;
         ctx.setClusterTest(this.isClusterTest());
         ctx.setDebug(this.isDebug());
+        ctx.copySampled(this);
         return ctx;
     }
 
@@ -707,6 +784,34 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         return context;
     }
 
+    /**
+     * 直接写出远程传输的上下文字段，写出的内容与 {@link Pradar#getInvokeContextTransformMap()} 一致，
+     * 不需要先导出成 Map 再过滤
+     *
+     * @param transfer 上下文写出
+     */
+    void transfer(ContextTransfer transfer) {
+        if (StringUtils.isNotBlank(traceId)) {
+            transfer.transfer(PradarService.PRADAR_TRACE_ID_KEY, traceId);
+        }
+        transfer.transfer(PradarService.PRADAR_TRACE_APPNAME_KEY, traceAppName == null ? appName() : traceAppName);
+        if (StringUtils.isNotBlank(invokeId)) {
+            transfer.transfer(PradarService.PRADAR_INVOKE_ID_KEY, invokeId);
+        }
+        String userData = exportUserData();
+        if (StringUtils.isNotBlank(userData)) {
+            transfer.transfer(PradarService.PRADAR_USER_DATA_KEY, userData);
+        }
+        final String appName = appName();
+        transfer.transfer(PradarService.PRADAR_REMOTE_APPNAME_KEY, appName);
+        transfer.transfer(PradarService.PRADAR_UPSTREAM_APPNAME_KEY,
+                StringUtils.isNotBlank(appName) || upAppName == null ? appName : upAppName);
+        transfer.transfer(PradarService.PRADAR_REMOTE_IP, PradarCoreUtils.getLocalAddress());
+        transfer.transfer(PradarService.PRADAR_CLUSTER_TEST_KEY,
+                isClusterTest() ? Pradar.PRADAR_CLUSTER_TEST_ON : Pradar.PRADAR_CLUSTER_TEST_OFF);
+        transfer.transfer(PradarService.PRADAR_DEBUG_KEY, isDebug() ? Pradar.PRADAR_DEBUG_ON : Pradar.PRADAR_DEBUG_OFF);
+    }
+
     protected String generateNodeId(String traceNode, String serviceName, String methodName, String middlewareName) {
         if (StringUtils.startsWith(serviceName, "http://") || StringUtils.startsWith(serviceName, "https://")) {
             return hash(
@@ -794,6 +899,7 @@ public final class InvokeContext extends AbstractContext implements Cloneable {
         invokeContext.invokeType = this.invokeType;
         invokeContext.isClusterTest = this.isClusterTest;
         invokeContext.isDebug = this.isDebug;
+        invokeContext.copySampled(this);
         invokeContext.logTime = this.logTime;
         invokeContext.passCheck = this.passCheck;
         invokeContext.port = this.port;
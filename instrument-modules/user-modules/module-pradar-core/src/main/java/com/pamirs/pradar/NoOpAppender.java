@@ -20,6 +20,10 @@ class NoOpAppender extends PradarAppender {
     public void append(String log) {
     }
 
+    @Override
+    public void append(byte[] bytes, int offset, int length) {
+    }
+
     @Override
     public void flush() {
     }
@@ -22,6 +22,10 @@ import com.pamirs.pradar.common.RuntimeUtils;
 import com.pamirs.pradar.debug.DebugHelper;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.gson.GsonFactory;
+import com.pamirs.pradar.interceptor.ContextReader;
+import com.pamirs.pradar.interceptor.ContextTransfer;
+import com.pamirs.pradar.interceptor.InterceptorCost;
+import com.pamirs.pradar.interceptor.InterceptorCostMetrics;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import org.apache.commons.lang.StringUtils;
@@ -72,6 +76,10 @@ public final class Pradar {
      */
     static final public String INTERCEPTOR_COST_ENABLED_KEY = "pradar.interceptor.cost.enabled";
     static final public String MIN_INTERCEPTOR_COST_KEY = "pradar.min.interceptor.cost";
+    /**
+     * 是否统计拦截器耗时分布的 key，默认开启
+     */
+    static final public String INTERCEPTOR_METRICS_ENABLED_KEY = "pradar.interceptor.metrics.enabled";
     /**
      * Pradar日志放置的位置 ~/pradarlogs/，统一使用 SIMULATOR_LOG_PATH 系统变量配置
      */
@@ -161,6 +169,11 @@ public final class Pradar {
 
     static AsyncCollectorAppender collectorMonitorAppender;
 
+    /**
+     * 尾部采样缓冲区，未开启时为 null
+     */
+    static final TailSamplingBuffer tailSamplingBuffer = TailSamplingBuffer.create();
+
     /**
      * 正常 TRACE 开始的 InvokeId
      */
@@ -227,6 +240,10 @@ public final class Pradar {
      * monitor 日志的队列长度大小
      */
     static public final String MONITOR_QUEUE_SIZE = "pradar.monitor.queue.size";
+    /**
+     * 异步日志消费者空闲时的等待策略，可选 park、yield、busy-spin
+     */
+    static public final String ASYNC_APPENDER_WAIT_STRATEGY = "pradar.async.appender.wait.strategy";
     /**
      * 是否影子库里用影子表模式
      */
@@ -353,6 +370,15 @@ public final class Pradar {
         return Boolean.parseBoolean(System.getProperty(INTERCEPTOR_COST_ENABLED_KEY));
     }
 
+    /**
+     * 是否统计拦截器耗时分布
+     *
+     * @return
+     */
+    public static boolean isInterceptorMetricsEnabled() {
+        return Boolean.parseBoolean(System.getProperty(INTERCEPTOR_METRICS_ENABLED_KEY, "true"));
+    }
+
     /**
      * 获取打印拦截器耗时的最小时间
      *
@@ -453,6 +479,19 @@ public final class Pradar {
         return DEFAULT_TRACE_QUEUE_SIZE;
     }
 
+    /**
+     * 获取异步日志消费者空闲时的等待策略
+     *
+     * @return 默认返回 park
+     */
+    public static String getAsyncAppenderWaitStrategy() {
+        String value = getSystemProperty(ASYNC_APPENDER_WAIT_STRATEGY);
+        if (StringUtils.isBlank(value)) {
+            return "park";
+        }
+        return value;
+    }
+
     /**
      * 获取 monitor 的列队的大小
      *
@@ -774,6 +813,46 @@ public final class Pradar {
         return strBuilder.toString();
     }
 
+    /**
+     * 获取 trace 日志异步队列的统计信息
+     *
+     * @return 未使用本地日志文件输出时返回 null
+     */
+    public static AsyncAppenderMetrics getTraceAppenderMetrics() {
+        AsyncAppender appender = rpcAppender;
+        return appender == null ? null : appender.getMetrics();
+    }
+
+    /**
+     * 获取尾部采样缓冲区的统计信息
+     *
+     * @return 未开启尾部采样时返回 null
+     */
+    public static TailSamplingMetrics getTailSamplingMetrics() {
+        TailSamplingBuffer buffer = tailSamplingBuffer;
+        return buffer == null ? null : buffer.getMetrics();
+    }
+
+    /**
+     * 获取拦截器耗时统计，按累计耗时从高到低排序
+     *
+     * @param limit 最多返回的拦截器数量，小于等于 0 时返回全部
+     * @return 拦截器耗时统计
+     */
+    public static List<InterceptorCostMetrics> getInterceptorCostMetrics(int limit) {
+        return InterceptorCost.getMetrics(limit);
+    }
+
+    /**
+     * 获取 monitor 日志异步队列的统计信息
+     *
+     * @return 未使用本地日志文件输出时返回 null
+     */
+    public static AsyncAppenderMetrics getMonitorAppenderMetrics() {
+        AsyncAppender appender = serverMonitorAppender;
+        return appender == null ? null : appender.getMetrics();
+    }
+
     /**
      * 获取monitor appender
      *
@@ -1158,13 +1237,23 @@ public final class Pradar {
 
     }
 
+    /**
+     * 文件日志使用的编码器，字符集兼容 ASCII 时直接编码成字节写入文件
+     */
+    static private TraceEncoder createInvokeContextFileEncoder() {
+        if (TraceByteBuffer.isAsciiCompatible(DEFAULT_CHARSET)) {
+            return new TraceInvokeContextByteEncoder(DEFAULT_CHARSET);
+        }
+        return new TraceInvokeContextEncoder();
+    }
+
     static private final PradarRollingFileAppender createPradarLoggers() {
         // 配置日志输出
         rpcAppender = new AsyncAppender(getTraceQueueSize(), 0);
 
         PradarRollingFileAppender rpcLogger = new PradarRollingFileAppender(
             PRADAR_INVOKE_LOG_FILE, Pradar.MAX_RPC_LOG_FILE_SIZE, false);
-        rpcAppender.start(rpcLogger, new TraceInvokeContextEncoder(), "RpcLog");
+        rpcAppender.start(rpcLogger, createInvokeContextFileEncoder(), "RpcLog");
         PradarLogDaemon.watch(rpcAppender);
         return rpcLogger;
 
@@ -1177,7 +1266,7 @@ public final class Pradar {
 
         PradarRollingFileAppender rpcLogger = new PradarRollingFileAppender(
             PRADAR_MONITOR_LOG_FILE, Pradar.MAX_MONITOR_LOG_FILE_SIZE, false);
-        serverMonitorAppender.start(rpcLogger, new TraceInvokeContextEncoder(), "MonitorLog");
+        serverMonitorAppender.start(rpcLogger, createInvokeContextFileEncoder(), "MonitorLog");
         PradarLogDaemon.watch(serverMonitorAppender);
         return rpcLogger;
     }
@@ -1306,6 +1395,21 @@ public final class Pradar {
         }
     }
 
+    /**
+     * 判断当前 trace 是否会被采样，采样结果在 traceId 生成或者收到后就已经确定。
+     * 没有被采样的 trace 不会输出日志，不需要再采集请求、响应内容，上下文仍然正常向下游传递。
+     * 没有调用上下文时返回 true
+     *
+     * @return 是否采样
+     */
+    static public boolean isTraceSampled() {
+        InvokeContext ctx = InvokeContext.get();
+        if (ctx == null || ctx.isEmpty()) {
+            return true;
+        }
+        return ctx.isTraceSampled();
+    }
+
     /**
      * 判断当前流量是否为调试压测流量
      *
@@ -1614,17 +1718,47 @@ public final class Pradar {
      * @return
      */
     static public Map<String, String> getInvokeContextTransformMap() {
-        Map<String, String> ctx = getInvokeContextMap();
-        Iterator<Map.Entry<String, String>> it = ctx.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, String> entry = it.next();
-            if (!getInvokeContextTransformKeys().contains(entry.getKey())) {
-                it.remove();
+        final Map<String, String> ctx = new HashMap<String, String>();
+        transferInvokeContext(new ContextTransfer() {
+            @Override
+            public void transfer(String key, String value) {
+                ctx.put(key, value);
             }
-        }
+        });
         return ctx;
     }
 
+    /**
+     * 把需要远程传输的上下文字段逐个写出，写出的内容与 {@link #getInvokeContextTransformMap()} 一致，
+     * 客户端直接写入 rpc 附件、请求头或者消息头，不再构建完整的上下文 Map 再过滤
+     *
+     * @param transfer 上下文写出
+     */
+    static public void transferInvokeContext(ContextTransfer transfer) {
+        InvokeContext invokeContext = InvokeContext.get();
+        if (invokeContext != null) {
+            invokeContext.transfer(transfer);
+            return;
+        }
+        final boolean isClusterTest = isClusterTest();
+        final boolean isDebug = isDebug();
+        if (!isClusterTest && !isDebug) {
+            return;
+        }
+        if (isClusterTest) {
+            transfer.transfer(PradarService.PRADAR_CLUSTER_TEST_KEY, Boolean.TRUE.toString());
+        }
+        if (isDebug) {
+            transfer.transfer(PradarService.PRADAR_DEBUG_KEY, Boolean.TRUE.toString());
+        }
+        final String appName = AppNameUtils.appName();
+        if (StringUtils.isNotBlank(appName)) {
+            transfer.transfer(PradarService.PRADAR_UPSTREAM_APPNAME_KEY, appName);
+            transfer.transfer(PradarService.PRADAR_REMOTE_APPNAME_KEY, appName);
+        }
+        transfer.transfer(PradarService.PRADAR_REMOTE_IP, PradarCoreUtils.getLocalAddress());
+    }
+
     /**
      * 获取数据传输上下文的key
      *
@@ -1692,6 +1826,8 @@ public final class Pradar {
         InvokeContext ctx = null;
         if (rpcCtx instanceof Map) {
             ctx = InvokeContext.fromMap((Map<String, String>)rpcCtx, parent);
+        } else if (rpcCtx instanceof ContextReader) {
+            ctx = InvokeContext.fromReader((ContextReader)rpcCtx, parent);
         } else if (rpcCtx instanceof InvokeContext) {
             ctx = (InvokeContext)rpcCtx;
         }
@@ -1729,6 +1865,8 @@ public final class Pradar {
 
             isClusterTest = Boolean.valueOf((context).get(PradarService.PRADAR_CLUSTER_TEST_KEY));
             isDebug = Boolean.valueOf((context).get(PradarService.PRADAR_DEBUG_KEY));
+        } else if (rpcCtx instanceof ContextReader) {
+            ctx = InvokeContext.fromReader((ContextReader)rpcCtx, null);
         } else if (rpcCtx instanceof InvokeContext) {
             ctx = (InvokeContext)rpcCtx;
         }
@@ -1974,6 +2112,14 @@ public final class Pradar {
         if (ctxObj instanceof InvokeContext) {
             return ((InvokeContext)ctxObj).isEmpty();
         }
+        if (ctxObj instanceof ContextReader) {
+            ContextReader reader = (ContextReader)ctxObj;
+            for (int i = 0, size = RPC_TRANSFORM_KEYS.size(); i < size; i++) {
+                if (reader.read(RPC_TRANSFORM_KEYS.get(i)) != null) {
+                    return false;
+                }
+            }
+        }
         return true;
     }
 
@@ -2041,14 +2187,14 @@ public final class Pradar {
                     childCtx = ctx.createChildInvoke();
                     // 设置上游appName。如没有设置本应用名称
                     childCtx.setUpAppName(ctx.getUpAppName());
-                    if (ctxObj instanceof Map) {
+                    if (ctxObj instanceof Map || ctxObj instanceof ContextReader) {
                         isClusterTest = isClusterTest | ClusterTestUtils.isClusterTestRequest(
-                            ((Map<String, String>)ctxObj).get(PradarService.PRADAR_CLUSTER_TEST_KEY));
+                            getContextValue(ctxObj, PradarService.PRADAR_CLUSTER_TEST_KEY));
                         if (isClusterTest) {
                             childCtx.setClusterTest(true);
                         }
                         isDebug = isDebug | ClusterTestUtils.isDebugRequest(
-                            ((Map<String, String>)ctxObj).get(PradarService.PRADAR_DEBUG_KEY));
+                            getContextValue(ctxObj, PradarService.PRADAR_DEBUG_KEY));
                         if (isDebug) {
                             childCtx.setDebug(true);
                         }
@@ -2091,6 +2237,14 @@ public final class Pradar {
         return null;
     }
 
+    @SuppressWarnings("unchecked")
+    private static String getContextValue(Object ctxObj, String key) {
+        if (ctxObj instanceof Map) {
+            return ((Map<String, String>)ctxObj).get(key);
+        }
+        return ((ContextReader)ctxObj).read(key);
+    }
+
     /**
      * 服务端收到请求，兼容多个插件埋点重复的问题，兼容服务端与客户端均为本地的问题
      *
@@ -2302,7 +2456,7 @@ public final class Pradar {
      */
     static public void request(Object request) {
         InvokeContext ctx = InvokeContext.get();
-        if (ctx != null && GlobalConfig.getInstance().allowTraceRequestResponse()) {
+        if (ctx != null && GlobalConfig.getInstance().allowTraceRequestResponse() && ctx.isTraceSampled()) {
             ctx.request = request;
         }
     }
@@ -2314,7 +2468,7 @@ public final class Pradar {
      */
     static public void response(Object response) {
         InvokeContext ctx = InvokeContext.get();
-        if (ctx != null && GlobalConfig.getInstance().allowTraceRequestResponse()) {
+        if (ctx != null && GlobalConfig.getInstance().allowTraceRequestResponse() && ctx.isTraceSampled()) {
             ctx.response = response;
         }
     }
@@ -2624,11 +2778,9 @@ public final class Pradar {
         }
 
         if (!isFilterContext(ctx)) {
-            if (COLLECTOR_PUSH) {
-                collectorAppender.append(ctx);
-            } else {
-                rpcAppender.append(ctx);
-            }
+            appendInvokeContext(ctx);
+        } else if (tailSamplingBuffer != null && isTailSamplingCandidate(ctx)) {
+            tailSamplingBuffer.offer(ctx);
         }
         /**
          * 如果是压测流量，则设置有压测流量
@@ -2638,6 +2790,30 @@ public final class Pradar {
         }
     }
 
+    /**
+     * 输出调用上下文
+     */
+    static void appendInvokeContext(InvokeContext ctx) {
+        if (COLLECTOR_PUSH) {
+            collectorAppender.append(ctx);
+        } else {
+            rpcAppender.append(ctx);
+        }
+    }
+
+    /**
+     * 只因为没有被采样而被过滤的上下文才交给尾部采样，其他过滤条件见 {@link #isFilterContext(InvokeContext)}
+     */
+    static private boolean isTailSamplingCandidate(InvokeContext ctx) {
+        if (ctx.logType < 0 || ctx.isTraceSampled()) {
+            return false;
+        }
+        if (!ctx.isClusterTest() && !PradarSwitcher.isSwitchSaveBusinessTrace()) {
+            return false;
+        }
+        return !PradarSwitcher.isRpcOff() && PradarSwitcher.isTraceEnabled();
+    }
+
     /**
      * 清理是否有压测流量请求标记，用于收集性能数据时使用
      */
@@ -2701,7 +2877,7 @@ public final class Pradar {
      * @return true/false
      */
     public static boolean isRequestOn() {
-        return getBooleanProperty("plugin.request.on", true);
+        return PradarRuntimeConfig.get().isRequestOn();
     }
 
     /**
@@ -2710,7 +2886,7 @@ public final class Pradar {
      * @return true/false
      */
     public static boolean isResponseOn() {
-        return getBooleanProperty("plugin.response.on", true);
+        return PradarRuntimeConfig.get().isResponseOn();
     }
 
     /**
@@ -2719,7 +2895,7 @@ public final class Pradar {
      * @return true/false
      */
     public static boolean isExceptionOn() {
-        return getBooleanProperty("plugin.exception.on", true);
+        return PradarRuntimeConfig.get().isExceptionOn();
     }
 
     /**
@@ -2728,7 +2904,7 @@ public final class Pradar {
      * @return
      */
     public static Integer getPluginRequestSize() {
-        return getIntProperty("plugin.request.size", 1000);
+        return PradarRuntimeConfig.get().getPluginRequestSize();
     }
 
     /**
@@ -2737,7 +2913,7 @@ public final class Pradar {
      * @return
      */
     public static Integer getPluginResponseSize() {
-        return getIntProperty("plugin.response.size", 1000);
+        return PradarRuntimeConfig.get().getPluginResponseSize();
     }
 
     /**
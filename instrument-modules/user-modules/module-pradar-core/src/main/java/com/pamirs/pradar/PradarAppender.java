@@ -31,6 +31,18 @@ public abstract class PradarAppender {
      */
     public abstract void append(String log);
 
+    /**
+     * 写入已经编码好的日志字节，默认按 {@link Pradar#DEFAULT_CHARSET} 还原成字符串后写入，
+     * 直接输出字节的 Appender 应覆盖此方法，避免再做一次编解码
+     *
+     * @param bytes  日志字节
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public void append(byte[] bytes, int offset, int length) {
+        append(new String(bytes, offset, length, Pradar.DEFAULT_CHARSET));
+    }
+
     /**
      * 刷新输出缓冲区
      */
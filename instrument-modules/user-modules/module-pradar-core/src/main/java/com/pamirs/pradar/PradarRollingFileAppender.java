@@ -216,18 +216,28 @@ class PradarRollingFileAppender extends PradarAppender {
 
     @Override
     public void append(String log) {
+        if (this.bos != null) {
+            byte[] bytes = log.getBytes(Pradar.DEFAULT_CHARSET);
+            append(bytes, 0, bytes.length);
+        }
+    }
+
+    @Override
+    public void append(byte[] bytes, int offset, int length) {
         BufferedOutputStream bos = this.bos;
         if (bos != null) {
             try {
                 waitUntilRollFinish();
 
-                byte[] bytes = log.getBytes(Pradar.DEFAULT_CHARSET);
-                int len = bytes.length;
+                int len = length;
                 if (len > DEFAULT_BUFFER_SIZE && this.multiProcessDetected) {
+                    // 截断到 4KB，调用方的缓冲区可能被复用，不能直接改写最后一个字节
                     len = DEFAULT_BUFFER_SIZE;
-                    bytes[len - 1] = '\n';
+                    bos.write(bytes, offset, len - 1);
+                    bos.write('\n');
+                } else {
+                    bos.write(bytes, offset, len);
                 }
-                bos.write(bytes, 0, len);
                 outputByteSize += len;
 
                 if (outputByteSize >= maxFileSize) {
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
+import org.apache.commons.lang.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 运行时配置快照
+ * <p>
+ * 埋点热路径上频繁读取的配置统一放在这个不可变对象里，通过一个 volatile 引用发布，
+ * 读取时只是普通的字段访问，不再每次查询属性缓存、解析字符串。启动参数来自系统属性和环境变量，
+ * 动态参数来自 {@link SimulatorDynamicConfig}。
+ * <p>
+ * 控制台动态参数更新({@link GlobalConfig#setSimulatorDynamicConfig(SimulatorDynamicConfig)})时会自动刷新，
+ * 修改了相关系统属性的地方需要调用 {@link #refresh()}。配置有变化时依次回调 {@link Listener}，
+ * 模块可以借此预先计算依赖配置的状态
+ */
+public final class PradarRuntimeConfig {
+    private final static Logger LOGGER = LoggerFactory.getLogger(PradarRuntimeConfig.class);
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private static volatile PradarRuntimeConfig current = build();
+
+    private final SimulatorDynamicConfig dynamicConfig;
+    private final boolean requestOn;
+    private final boolean responseOn;
+    private final boolean exceptionOn;
+    /**
+     * 保存装箱后的值，兼容返回 Integer 的旧接口，不用每次重新装箱
+     */
+    private final Integer pluginRequestSize;
+    private final Integer pluginResponseSize;
+    private final int traceSamplingInterval;
+    private final int clusterTestTraceSamplingInterval;
+    private final boolean switchSaveBusinessTrace;
+    private final boolean busRequestResponseDataAllowTrace;
+    private final boolean shadowRequestResponseDataAllowTrace;
+
+    private PradarRuntimeConfig(SimulatorDynamicConfig dynamicConfig) {
+        this.dynamicConfig = dynamicConfig;
+        this.requestOn = getBoolean("plugin.request.on", true);
+        this.responseOn = getBoolean("plugin.response.on", true);
+        this.exceptionOn = getBoolean("plugin.exception.on", true);
+        this.pluginRequestSize = getInt("plugin.request.size", 1000);
+        this.pluginResponseSize = getInt("plugin.response.size", 1000);
+        this.traceSamplingInterval = dynamicConfig.getTraceSamplingInterval();
+        this.clusterTestTraceSamplingInterval = dynamicConfig.getClusterTestTraceSamplingInterval();
+        this.switchSaveBusinessTrace = dynamicConfig.isSwitchSaveBusinessTrace();
+        this.busRequestResponseDataAllowTrace = dynamicConfig.isBusRequestResponseDataAllowTrace();
+        this.shadowRequestResponseDataAllowTrace = dynamicConfig.isShadowRequestResponseDataAllowTrace();
+    }
+
+    /**
+     * 当前的配置快照，不会返回 null
+     *
+     * @return 配置快照
+     */
+    public static PradarRuntimeConfig get() {
+        return current;
+    }
+
+    /**
+     * 重新读取系统属性和动态参数，有变化时发布新的快照并通知监听器
+     */
+    public static void refresh() {
+        PradarRuntimeConfig previous;
+        PradarRuntimeConfig next;
+        synchronized (PradarRuntimeConfig.class) {
+            previous = current;
+            next = build();
+            if (next.isSameAs(previous)) {
+                return;
+            }
+            current = next;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(previous, next);
+            } catch (Throwable e) {
+                LOGGER.error("notify runtime config change err, listener: {}", listener, e);
+            }
+        }
+    }
+
+    /**
+     * 注册配置变更监听器，注册时不会回调，需要初始状态的可以直接读取 {@link #get()}
+     *
+     * @param listener 监听器
+     */
+    public static void addListener(Listener listener) {
+        if (listener != null) {
+            listeners.addIfAbsent(listener);
+        }
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static PradarRuntimeConfig build() {
+        return new PradarRuntimeConfig(GlobalConfig.getInstance().getSimulatorDynamicConfig());
+    }
+
+    private boolean isSameAs(PradarRuntimeConfig other) {
+        return dynamicConfig == other.dynamicConfig
+            && requestOn == other.requestOn
+            && responseOn == other.responseOn
+            && exceptionOn == other.exceptionOn
+            && pluginRequestSize.equals(other.pluginRequestSize)
+            && pluginResponseSize.equals(other.pluginResponseSize);
+    }
+
+    /**
+     * 与 {@link Pradar#getProperty(String)} 一致，系统属性优先，其次是环境变量
+     */
+    private static String getProperty(String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key);
+        }
+        return value;
+    }
+
+    private static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getProperty(key);
+        return value == null ? defaultValue : Boolean.valueOf(value);
+    }
+
+    private static Integer getInt(String key, int defaultValue) {
+        String value = getProperty(key);
+        if (NumberUtils.isDigits(value)) {
+            return Integer.valueOf(value);
+        }
+        return defaultValue;
+    }
+
+    public SimulatorDynamicConfig getDynamicConfig() {
+        return dynamicConfig;
+    }
+
+    public boolean isRequestOn() {
+        return requestOn;
+    }
+
+    public boolean isResponseOn() {
+        return responseOn;
+    }
+
+    public boolean isExceptionOn() {
+        return exceptionOn;
+    }
+
+    public Integer getPluginRequestSize() {
+        return pluginRequestSize;
+    }
+
+    public Integer getPluginResponseSize() {
+        return pluginResponseSize;
+    }
+
+    public int getTraceSamplingInterval() {
+        return traceSamplingInterval;
+    }
+
+    public int getClusterTestTraceSamplingInterval() {
+        return clusterTestTraceSamplingInterval;
+    }
+
+    public boolean isSwitchSaveBusinessTrace() {
+        return switchSaveBusinessTrace;
+    }
+
+    /**
+     * 是否允许记录请求、响应内容
+     *
+     * @param clusterTest 是否是压测流量
+     * @return 是否允许
+     */
+    public boolean allowTraceRequestResponse(boolean clusterTest) {
+        return clusterTest ? shadowRequestResponseDataAllowTrace : busRequestResponseDataAllowTrace;
+    }
+
+    @Override
+    public String toString() {
+        return "PradarRuntimeConfig{" +
+            "requestOn=" + requestOn +
+            ", responseOn=" + responseOn +
+            ", exceptionOn=" + exceptionOn +
+            ", pluginRequestSize=" + pluginRequestSize +
+            ", pluginResponseSize=" + pluginResponseSize +
+            ", traceSamplingInterval=" + traceSamplingInterval +
+            ", clusterTestTraceSamplingInterval=" + clusterTestTraceSamplingInterval +
+            ", switchSaveBusinessTrace=" + switchSaveBusinessTrace +
+            ", busRequestResponseDataAllowTrace=" + busRequestResponseDataAllowTrace +
+            ", shadowRequestResponseDataAllowTrace=" + shadowRequestResponseDataAllowTrace +
+            '}';
+    }
+
+    /**
+     * 配置变更监听器
+     */
+    public interface Listener {
+        /**
+         * 新的快照发布之后回调，回调在触发刷新的线程中执行
+         *
+         * @param previous 之前的快照
+         * @param current  新的快照
+         */
+        void onChange(PradarRuntimeConfig previous, PradarRuntimeConfig current);
+    }
+}
@@ -363,18 +363,18 @@ public class PradarSwitcher {
      * @return 采样频率 1/x
      */
     static public int getSamplingInterval() {
-        return GlobalConfig.getInstance().getSimulatorDynamicConfig().getTraceSamplingInterval();
+        return PradarRuntimeConfig.get().getTraceSamplingInterval();
     }
 
     /**
      * @return 压测采样频率 1/x
      */
     static public int getClusterTestSamplingInterval() {
-        return GlobalConfig.getInstance().getSimulatorDynamicConfig().getClusterTestTraceSamplingInterval();
+        return PradarRuntimeConfig.get().getClusterTestTraceSamplingInterval();
     }
 
     static public boolean isSwitchSaveBusinessTrace() {
-        return GlobalConfig.getInstance().getSimulatorDynamicConfig().isSwitchSaveBusinessTrace();
+        return PradarRuntimeConfig.get().isSwitchSaveBusinessTrace();
     }
 
     /**
@@ -30,6 +30,11 @@ class SyncAppender extends PradarAppender {
         delegate.append(log);
     }
 
+    @Override
+    public synchronized void append(byte[] bytes, int offset, int length) {
+        delegate.append(bytes, offset, length);
+    }
+
     @Override
     public synchronized void flush() {
         delegate.flush();
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 尾部采样缓冲区
+ * <p>
+ * 头部采样按 traceId 决定是否输出，慢请求和出错的请求会和正常请求一样被丢掉。开启后没有被采样的 trace
+ * 不再直接丢弃，而是按 traceId 暂存下来，等根 span 结束时再决定：只要有一个 span 出错或者耗时超过阈值，
+ * 整个 trace 都会输出，否则丢弃。
+ * <p>
+ * 暂存的是提交时的上下文对象，只有最终输出的 trace 才会编码，丢弃的 trace 不产生编码开销。
+ * 没有被采样的 trace 本身不采集请求、响应内容，所以暂存的上下文都比较小，内存按 span 数限制。
+ * 提交 span 时只锁住所属的 trace，暂存的总数达到上限后新的 span 直接丢弃；后台线程定期按暂存的先后顺序
+ * 淘汰超时的 trace，总数达到上限时淘汰最早暂存的 trace 腾出空间，淘汰时按策略决定是直接丢弃还是照常判断是否输出。
+ * 根 span 结束之后才提交的 span 会重新暂存，最终由超时淘汰处理。
+ */
+final class TailSamplingBuffer {
+    private final static Logger LOGGER = LoggerFactory.getLogger(TailSamplingBuffer.class);
+
+    /**
+     * 是否开启尾部采样
+     */
+    static final String TAIL_SAMPLING_KEY = "pradar.trace.tail.sampling";
+    /**
+     * 耗时阈值，单位毫秒
+     */
+    static final String LATENCY_THRESHOLD_KEY = "pradar.trace.tail.sampling.latency";
+    /**
+     * 最多暂存的 span 数
+     */
+    static final String MAX_SPANS_KEY = "pradar.trace.tail.sampling.max.spans";
+    /**
+     * 单个 trace 最多暂存的 span 数
+     */
+    static final String MAX_TRACE_SPANS_KEY = "pradar.trace.tail.sampling.max.trace.spans";
+    /**
+     * 单个 trace 最长暂存时间，单位毫秒
+     */
+    static final String TIMEOUT_KEY = "pradar.trace.tail.sampling.timeout";
+    /**
+     * 淘汰策略，decide 淘汰时照常判断是否输出，drop 淘汰时直接丢弃
+     */
+    static final String EVICT_POLICY_KEY = "pradar.trace.tail.sampling.evict.policy";
+
+    static final String EVICT_POLICY_DECIDE = "decide";
+    static final String EVICT_POLICY_DROP = "drop";
+
+    /**
+     * 后台淘汰的间隔，单位毫秒
+     */
+    private static final long EVICT_INTERVAL = 1000L;
+
+    private final long latencyThreshold;
+    private final int maxSpans;
+    private final int maxTraceSpans;
+    private final long timeout;
+    private final String evictPolicy;
+
+    private final ConcurrentHashMap<String, HeldTrace> traces = new ConcurrentHashMap<String, HeldTrace>(256);
+    /**
+     * 按暂存顺序排列，只有后台淘汰时遍历，已经结束的 trace 在遍历时移除
+     */
+    private final ConcurrentLinkedQueue<HeldTrace> order = new ConcurrentLinkedQueue<HeldTrace>();
+    private final AtomicInteger heldSpans = new AtomicInteger();
+
+    private final AtomicLong flushedTraces = new AtomicLong();
+    private final AtomicLong flushedSpans = new AtomicLong();
+    private final AtomicLong droppedTraces = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong evictedTraces = new AtomicLong();
+
+    TailSamplingBuffer(long latencyThreshold, int maxSpans, int maxTraceSpans, long timeout, String evictPolicy) {
+        this.latencyThreshold = latencyThreshold;
+        this.maxSpans = maxSpans;
+        this.maxTraceSpans = maxTraceSpans;
+        this.timeout = timeout;
+        this.evictPolicy = evictPolicy;
+    }
+
+    /**
+     * 根据启动参数创建
+     *
+     * @return 未开启时返回 null
+     */
+    static TailSamplingBuffer create() {
+        if (!"true".equals(System.getProperty(TAIL_SAMPLING_KEY))) {
+            return null;
+        }
+        String evictPolicy = System.getProperty(EVICT_POLICY_KEY);
+        if (!EVICT_POLICY_DROP.equals(evictPolicy)) {
+            evictPolicy = EVICT_POLICY_DECIDE;
+        }
+        TailSamplingBuffer buffer = new TailSamplingBuffer(getLong(LATENCY_THRESHOLD_KEY, 1000L),
+            (int) getLong(MAX_SPANS_KEY, 10000L), (int) getLong(MAX_TRACE_SPANS_KEY, 200L),
+            getLong(TIMEOUT_KEY, 60000L), evictPolicy);
+        LOGGER.info("trace tail sampling enabled, latency threshold: {}ms, max spans: {}, max trace spans: {}, "
+            + "timeout: {}ms, evict policy: {}", buffer.latencyThreshold, buffer.maxSpans, buffer.maxTraceSpans,
+            buffer.timeout, buffer.evictPolicy);
+        buffer.startEvictor();
+        return buffer;
+    }
+
+    private static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (NumberUtils.isDigits(value)) {
+            long l = Long.parseLong(value);
+            if (l > 0) {
+                return l;
+            }
+        }
+        return defaultValue;
+    }
+
+    private void startEvictor() {
+        ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Pradar-Tail-Sampling-Evictor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        service.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evict(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    LOGGER.error("trace tail sampling evict fail!", e);
+                }
+            }
+        }, EVICT_INTERVAL, EVICT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 暂存一个没有被采样的 span，根 span 提交时决定整个 trace 是否输出
+     *
+     * @param ctx 已经结束的上下文
+     */
+    void offer(InvokeContext ctx) {
+        final String traceId = ctx.getTraceId();
+        final boolean root = ctx.getParentInvokeContext() == null;
+        final boolean interesting = isInteresting(ctx);
+        while (true) {
+            HeldTrace trace = traces.get(traceId);
+            if (trace == null) {
+                trace = new HeldTrace(traceId, System.currentTimeMillis());
+                if (root) {
+                    trace.closed = true;
+                    trace.spans.add(ctx);
+                    trace.interesting = interesting;
+                    complete(trace);
+                    return;
+                }
+                HeldTrace old = traces.putIfAbsent(traceId, trace);
+                if (old == null) {
+                    order.offer(trace);
+                } else {
+                    trace = old;
+                }
+            }
+            synchronized (trace) {
+                // 并发结束或者被淘汰的 trace 已经从 map 中移除，重新获取
+                if (trace.closed) {
+                    continue;
+                }
+                trace.interesting |= interesting;
+                if (root) {
+                    close(trace);
+                    trace.spans.add(ctx);
+                } else if (trace.spans.size() < maxTraceSpans && heldSpans.get() < maxSpans) {
+                    trace.spans.add(ctx);
+                    heldSpans.incrementAndGet();
+                    return;
+                } else {
+                    droppedSpans.incrementAndGet();
+                    return;
+                }
+            }
+            complete(trace);
+            return;
+        }
+    }
+
+    /**
+     * 结束 trace 并从 map 中移除，调用方持有 trace 的锁
+     */
+    private void close(HeldTrace trace) {
+        trace.closed = true;
+        traces.remove(trace.traceId, trace);
+        heldSpans.addAndGet(-trace.spans.size());
+    }
+
+    /**
+     * 按暂存的先后顺序淘汰超时的 trace，暂存的总数达到上限时淘汰最早暂存的 trace 腾出空间，由后台线程调用
+     *
+     * @param now 当前时间
+     */
+    void evict(long now) {
+        Iterator<HeldTrace> it = order.iterator();
+        while (it.hasNext()) {
+            HeldTrace trace = it.next();
+            boolean evicted = false;
+            synchronized (trace) {
+                if (!trace.closed) {
+                    if (now - trace.createTime < timeout && heldSpans.get() < maxSpans) {
+                        continue;
+                    }
+                    close(trace);
+                    evicted = true;
+                }
+            }
+            it.remove();
+            if (evicted) {
+                evictedTraces.incrementAndGet();
+                if (EVICT_POLICY_DROP.equals(evictPolicy)) {
+                    drop(trace);
+                } else {
+                    complete(trace);
+                }
+            }
+        }
+    }
+
+    private void complete(HeldTrace trace) {
+        if (!trace.interesting) {
+            drop(trace);
+            return;
+        }
+        flushedTraces.incrementAndGet();
+        flushedSpans.addAndGet(trace.spans.size());
+        for (InvokeContext ctx : trace.spans) {
+            Pradar.appendInvokeContext(ctx);
+        }
+    }
+
+    private void drop(HeldTrace trace) {
+        droppedTraces.incrementAndGet();
+        droppedSpans.addAndGet(trace.spans.size());
+    }
+
+    /**
+     * 出错或者耗时超过阈值的 span
+     */
+    private boolean isInteresting(InvokeContext ctx) {
+        if (ctx.hasError) {
+            return true;
+        }
+        final String resultCode = ctx.getResultCode();
+        if (ResultCode.INVOKE_RESULT_FAILED.equals(resultCode)
+            || ResultCode.INVOKE_RESULT_BIZ_ERR.equals(resultCode)
+            || ResultCode.INVOKE_RESULT_TIMEOUT.equals(resultCode)
+            || ResultCode.INVOKE_ASSERT_RESULT_FAILED.equals(resultCode)) {
+            return true;
+        }
+        // http 5xx
+        if (resultCode != null && resultCode.length() == 3 && resultCode.charAt(0) == '5') {
+            return true;
+        }
+        return ctx.getLogTime() - ctx.getStartTime() >= latencyThreshold;
+    }
+
+    TailSamplingMetrics getMetrics() {
+        TailSamplingMetrics metrics = new TailSamplingMetrics();
+        metrics.setHeldTraces(traces.size());
+        metrics.setHeldSpans(heldSpans.get());
+        metrics.setMaxSpans(maxSpans);
+        metrics.setFlushedTraces(flushedTraces.get());
+        metrics.setFlushedSpans(flushedSpans.get());
+        metrics.setDroppedTraces(droppedTraces.get());
+        metrics.setDroppedSpans(droppedSpans.get());
+        metrics.setEvictedTraces(evictedTraces.get());
+        metrics.setEvictPolicy(evictPolicy);
+        return metrics;
+    }
+
+    /**
+     * 一个 trace 暂存的 span，所有访问都在自身的锁内
+     */
+    private static final class HeldTrace {
+        private final String traceId;
+        private final long createTime;
+        private final List<InvokeContext> spans = new ArrayList<InvokeContext>(4);
+        private boolean interesting;
+        /**
+         * 已经结束或者被淘汰，不再接收新的 span
+         */
+        private boolean closed;
+
+        HeldTrace(String traceId, long createTime) {
+            this.traceId = traceId;
+            this.createTime = createTime;
+        }
+    }
+}
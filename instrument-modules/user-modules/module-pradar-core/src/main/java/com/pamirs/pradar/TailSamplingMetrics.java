@@ -0,0 +1,156 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.io.Serializable;
+
+/**
+ * 尾部采样缓冲区的统计信息
+ */
+public class TailSamplingMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 缓冲区最多暂存的 span 数
+     */
+    private int maxSpans;
+
+    /**
+     * 当前暂存的 trace 数
+     */
+    private int heldTraces;
+
+    /**
+     * 当前暂存的 span 数
+     */
+    private int heldSpans;
+
+    /**
+     * 累计输出的 trace 数
+     */
+    private long flushedTraces;
+
+    /**
+     * 累计输出的 span 数
+     */
+    private long flushedSpans;
+
+    /**
+     * 累计丢弃的 trace 数
+     */
+    private long droppedTraces;
+
+    /**
+     * 累计丢弃的 span 数，包含单个 trace 超出上限被直接丢弃的 span
+     */
+    private long droppedSpans;
+
+    /**
+     * 累计因为缓冲区满或者超时被提前淘汰的 trace 数
+     */
+    private long evictedTraces;
+
+    /**
+     * 淘汰策略
+     */
+    private String evictPolicy;
+
+    public int getMaxSpans() {
+        return maxSpans;
+    }
+
+    public void setMaxSpans(int maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    public int getHeldTraces() {
+        return heldTraces;
+    }
+
+    public void setHeldTraces(int heldTraces) {
+        this.heldTraces = heldTraces;
+    }
+
+    public int getHeldSpans() {
+        return heldSpans;
+    }
+
+    public void setHeldSpans(int heldSpans) {
+        this.heldSpans = heldSpans;
+    }
+
+    public long getFlushedTraces() {
+        return flushedTraces;
+    }
+
+    public void setFlushedTraces(long flushedTraces) {
+        this.flushedTraces = flushedTraces;
+    }
+
+    public long getFlushedSpans() {
+        return flushedSpans;
+    }
+
+    public void setFlushedSpans(long flushedSpans) {
+        this.flushedSpans = flushedSpans;
+    }
+
+    public long getDroppedTraces() {
+        return droppedTraces;
+    }
+
+    public void setDroppedTraces(long droppedTraces) {
+        this.droppedTraces = droppedTraces;
+    }
+
+    public long getDroppedSpans() {
+        return droppedSpans;
+    }
+
+    public void setDroppedSpans(long droppedSpans) {
+        this.droppedSpans = droppedSpans;
+    }
+
+    public long getEvictedTraces() {
+        return evictedTraces;
+    }
+
+    public void setEvictedTraces(long evictedTraces) {
+        this.evictedTraces = evictedTraces;
+    }
+
+    public String getEvictPolicy() {
+        return evictPolicy;
+    }
+
+    public void setEvictPolicy(String evictPolicy) {
+        this.evictPolicy = evictPolicy;
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingMetrics{" +
+            "maxSpans=" + maxSpans +
+            ", heldTraces=" + heldTraces +
+            ", heldSpans=" + heldSpans +
+            ", flushedTraces=" + flushedTraces +
+            ", flushedSpans=" + flushedSpans +
+            ", droppedTraces=" + droppedTraces +
+            ", droppedSpans=" + droppedSpans +
+            ", evictedTraces=" + evictedTraces +
+            ", evictPolicy='" + evictPolicy + '\'' +
+            '}';
+    }
+}
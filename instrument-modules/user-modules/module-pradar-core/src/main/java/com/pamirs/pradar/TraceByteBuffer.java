@@ -0,0 +1,232 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 日志行的字节缓冲区
+ * <p>
+ * 编码器直接把各个字段写成字节，省掉 StringBuilder -> String -> byte[] 的两次整行拷贝，
+ * {@link PradarCoreUtils#makeLogSafe(String)} 的转义也在写入时完成。ASCII 字符直接写入，
+ * 只有非 ASCII 的字符片段才交给 {@link CharsetEncoder} 编码，所以要求字符集兼容 ASCII，
+ * 见 {@link #isAsciiCompatible(Charset)}。
+ * <p>
+ * 缓冲区在单个编码器内复用，非线程安全
+ */
+final class TraceByteBuffer {
+
+    private static final byte[] TRUE_BYTES = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE_BYTES = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL_BYTES = {'n', 'u', 'l', 'l'};
+    private static final byte[] MIN_LONG_BYTES = {'-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4',
+        '7', '7', '5', '8', '0', '8'};
+
+    /**
+     * 复用时保留的最大容量，偶尔出现的超长日志行撑大的缓冲区不长期持有
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final int initialCapacity;
+    private final CharsetEncoder encoder;
+    private final byte[] digits = new byte[20];
+    private ByteBuffer buffer;
+
+    TraceByteBuffer(Charset charset, int initialCapacity) {
+        // 和 String.getBytes(Charset) 保持一致，无法编码的字符替换成字符集默认的替换字节
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.initialCapacity = initialCapacity;
+        this.buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /**
+     * 判断字符集对 ASCII 字符的编码是否和单字节 ASCII 一致，UTF-8、GBK、GB18030 都满足
+     *
+     * @param charset 字符集
+     * @return 是否兼容 ASCII
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        try {
+            char[] chars = new char[128];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) i;
+            }
+            byte[] bytes = new String(chars).getBytes(charset);
+            if (bytes.length != chars.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != i) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * 清空缓冲区，准备写下一行
+     */
+    void clear() {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = ByteBuffer.allocate(initialCapacity);
+        } else {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 底层数组，有效内容为 [0, {@link #length()})
+     */
+    byte[] array() {
+        return buffer.array();
+    }
+
+    int length() {
+        return buffer.position();
+    }
+
+    /**
+     * 写入单个 ASCII 字符
+     */
+    TraceByteBuffer append(char c) {
+        ensureCapacity(1);
+        buffer.put((byte) c);
+        return this;
+    }
+
+    TraceByteBuffer append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    TraceByteBuffer append(boolean value) {
+        return append(value ? TRUE_BYTES : FALSE_BYTES);
+    }
+
+    TraceByteBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(MIN_LONG_BYTES);
+        }
+        ensureCapacity(digits.length + 1);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        final byte[] digits = this.digits;
+        int index = digits.length;
+        do {
+            digits[--index] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, index, digits.length - index);
+        return this;
+    }
+
+    /**
+     * 原样写入字符串，null 写成 "null"，与 StringBuilder 的行为一致
+     */
+    TraceByteBuffer append(String value) {
+        if (value == null) {
+            return append(NULL_BYTES);
+        }
+        write(value, false);
+        return this;
+    }
+
+    /**
+     * 写入转义后的字符串，转义规则与 {@link PradarCoreUtils#makeLogSafe(String)} 一致
+     */
+    TraceByteBuffer appendSafe(String value) {
+        if (value == null) {
+            return append(NULL_BYTES);
+        }
+        write(value, true);
+        return this;
+    }
+
+    private void write(String value, boolean escape) {
+        final int len = value.length();
+        // ASCII 字符每个只占一个字节，转义只会让内容变短
+        ensureCapacity(len);
+        int i = 0;
+        while (i < len) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                final int start = i;
+                while (i < len && value.charAt(i) >= 0x80) {
+                    i++;
+                }
+                encode(value, start, i);
+                ensureCapacity(len - i);
+                continue;
+            }
+            if (escape) {
+                if (c == '\r' && i + 1 < len && value.charAt(i + 1) == '\n') {
+                    c = '\t';
+                    i++;
+                } else if (c == '\n') {
+                    c = '\t';
+                } else if (c == '|') {
+                    c = '\\';
+                }
+            }
+            buffer.put((byte) c);
+            i++;
+        }
+    }
+
+    private void encode(String value, int start, int end) {
+        final CharBuffer in = CharBuffer.wrap(value, start, end);
+        final CharsetEncoder encoder = this.encoder;
+        encoder.reset();
+        CoderResult result = encoder.encode(in, buffer, true);
+        while (result.isOverflow()) {
+            ensureCapacity((int) (in.remaining() * encoder.maxBytesPerChar()) + 1);
+            result = encoder.encode(in, buffer, true);
+        }
+        result = encoder.flush(buffer);
+        while (result.isOverflow()) {
+            ensureCapacity(16);
+            result = encoder.flush(buffer);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer.remaining() >= extra) {
+            return;
+        }
+        final int required = buffer.position() + extra;
+        int newCapacity = buffer.capacity() << 1;
+        if (newCapacity < required) {
+            newCapacity = required;
+        }
+        final ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        this.buffer = newBuffer;
+    }
+}
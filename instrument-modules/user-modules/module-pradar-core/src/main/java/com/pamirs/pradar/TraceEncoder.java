@@ -25,6 +25,7 @@ import io.shulie.takin.pinpoint.thrift.dto.TStressTestTracePayloadData;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * @Auther: vernon
@@ -166,6 +167,116 @@ class TraceInvokeContextEncoder extends TraceEncoder {
     }
 }
 
+/**
+ * Pradar RPC 日志的输出，输出格式与 {@link TraceInvokeContextEncoder} 相同，
+ * 直接编码成字节写入 {@link PradarAppender#append(byte[], int, int)}，
+ * 不再生成整行的 String。要求字符集兼容 ASCII，见 {@link TraceByteBuffer#isAsciiCompatible}
+ */
+class TraceInvokeContextByteEncoder extends TraceInvokeContextEncoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final char INNER_SPLIT = '~';
+
+    private final Charset charset;
+    private final TraceByteBuffer buffer;
+
+    /**
+     * tenant|env|userId|agentId| 在进程内不会变化，只编码一次
+     */
+    private final byte[] agentPrefix;
+
+    /**
+     * 应用名来自系统属性，缓存最近一次的编码结果，属性被修改时重新编码
+     */
+    private String appName;
+    private byte[] appNameBytes;
+
+    TraceInvokeContextByteEncoder(Charset charset) {
+        this.charset = charset;
+        this.buffer = new TraceByteBuffer(charset, DEFAULT_BUFFER_SIZE);
+        StringBuilder prefix = new StringBuilder();
+        // 新版本兼容老版本的控制台和大数据
+        if (StringUtils.isNotBlank(Pradar.PRADAR_ENV_CODE)) {
+            prefix.append(StringUtils.isBlank(Pradar.PRADAR_TENANT_KEY) ? "" : Pradar.PRADAR_TENANT_KEY).append('|')
+                    .append(StringUtils.isBlank(Pradar.PRADAR_ENV_CODE) ? "" : Pradar.PRADAR_ENV_CODE).append('|')
+                    .append(StringUtils.isBlank(Pradar.PRADAR_USER_ID) ? "" : Pradar.PRADAR_USER_ID).append('|');
+        }
+        prefix.append(Pradar.AGENT_ID_NOT_CONTAIN_USER_INFO).append('|');
+        this.agentPrefix = prefix.toString().getBytes(charset);
+    }
+
+    @Override
+    public void encode(BaseContext base, PradarAppender eea) throws IOException {
+        AbstractContext ctx;
+        if (base instanceof AbstractContext) {
+            ctx = (AbstractContext) base;
+        } else {
+            return;
+        }
+        attachment(ctx);
+        TraceByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.append(ctx.getTraceId() == null ? "" : ctx.getTraceId()).append('|')
+                .append(ctx.getStartTime()).append('|')
+                .append(agentPrefix)
+                .append(ctx.getInvokeId() == null ? "" : ctx.getInvokeId()).append('|')
+                .append(ctx.getInvokeType()).append('|')
+                .append(appNameBytes())
+                .append(ctx.getLogTime() - ctx.getStartTime()).append('|')
+                .appendSafe(ctx.getMiddlewareName() == null ? "" : ctx.getMiddlewareName()).append('|')
+                .appendSafe(ctx.getServiceName() == null ? "" : ctx.getServiceName()).append('|')
+                .appendSafe(ctx.getMethodName() == null ? "" : ctx.getMethodName()).append('|')
+                .append(ctx.getResultCode() == null ? "" : ctx.getResultCode()).append('|')
+                .appendSafe(ResultSerializer.serializeRequest(ctx.getRequest() == null ? "" : ctx.getRequest(),
+                        Pradar.getPluginRequestSize())).append('|')
+                .appendSafe(ResultSerializer.serializeRequest(ctx.getMockResponse() != null ? ctx.getMockResponse() : ctx.getResponse() != null ? ctx.getResponse() : "",
+                        Pradar.getPluginRequestSize())).append('|')
+                .append(ctx.isClusterTest()).append(INNER_SPLIT)
+                .append(ctx.isDebug()).append(INNER_SPLIT)
+                .append("0".equals(ctx.invokeId)).append(INNER_SPLIT)
+                .append(TraceCoreUtils.isServer(ctx))
+                .append('|')
+                .appendSafe(ctx.getCallBackMsg() == null ? "" : ctx.getCallBackMsg());
+        int samplingInterval;
+        if (ctx.isClusterTest()) {
+            samplingInterval = PradarSwitcher.getClusterTestSamplingInterval();
+        } else {
+            samplingInterval = PradarSwitcher.getSamplingInterval();
+        }
+        buffer.append('|').append('#').append(samplingInterval);
+        // attributes 与 TraceCoreUtils.attributes 输出一致
+        buffer.append('|').append('@')
+                .appendSafe(ctx.traceAppName == null ? "" : ctx.traceAppName).append(INNER_SPLIT)
+                .appendSafe(ctx.traceServiceName == null ? "" : ctx.traceServiceName).append(INNER_SPLIT)
+                .appendSafe(ctx.traceMethod == null ? "" : ctx.traceMethod);
+        // localAttributes 与 TraceCoreUtils.localAttributes 输出一致
+        buffer.append('|').append('@')
+                .appendSafe(ctx.upAppName == null ? "" : ctx.upAppName).append(INNER_SPLIT)
+                .appendSafe(ctx.remoteIp == null ? "" : ctx.remoteIp).append(INNER_SPLIT)
+                .appendSafe(ctx.getPort() == null ? "" : ctx.getPort()).append(INNER_SPLIT)
+                .append(ctx.requestSize).append(INNER_SPLIT)
+                .append(ctx.responseSize);
+        if (ctx.mockResponse != null) {
+            buffer.append(INNER_SPLIT).append('M');
+        }
+        buffer.append('|')
+                .append(ctx.ext == null ? "" : String.valueOf(ctx.ext));
+        ctx.logContextData(buffer);
+        buffer.append(PradarCoreUtils.NEWLINE);
+        eea.append(buffer.array(), 0, buffer.length());
+        ctx.destroy();
+    }
+
+    private byte[] appNameBytes() {
+        String appName = AppNameUtils.appName();
+        if (appName != this.appName) {
+            this.appNameBytes = (PradarCoreUtils.makeLogSafe(appName) + '|').getBytes(charset);
+            this.appName = appName;
+        }
+        return appNameBytes;
+    }
+}
+
 /**
  * 业务跟踪日志的输出
  */
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.common;
+
+/**
+ * 字节前缀树，用来判断一个 key 是否以某个已添加的前缀开头
+ * <p>
+ * 前缀按字节存储，匹配时直接在 key 的字节上逐个走树，耗时只与 key 命中的前缀深度相关，
+ * 与前缀数量无关。空前缀可以匹配任意 key，与 {@link String#startsWith(String)} 一致。
+ * <p>
+ * 规则变更时重新构建一棵树，构建完成后只读，可以被多个线程同时匹配；构建过程非线程安全
+ */
+public final class BytePrefixTrie {
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * 添加前缀，重复添加会被忽略
+     *
+     * @param prefix 前缀
+     * @return 是否添加成功
+     */
+    public boolean add(byte[] prefix) {
+        if (prefix == null) {
+            return false;
+        }
+        Node node = root;
+        for (int i = 0; i < prefix.length; i++) {
+            node = node.putChild(prefix[i]);
+        }
+        if (node.terminal) {
+            return false;
+        }
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * 判断 key 是否以任意一个前缀开头
+     *
+     * @param key key
+     * @return 是否命中
+     */
+    public boolean matches(byte[] key) {
+        if (key == null || size == 0) {
+            return false;
+        }
+        Node node = root;
+        for (int i = 0; ; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i == key.length) {
+                return false;
+            }
+            node = node.getChild(key[i]);
+            if (node == null) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 判断字符串 key 是否以任意一个前缀开头，字符串按 ASCII 逐个字符走树，
+     * 遇到非 ASCII 字符时无法直接对应到字节，返回 null 由调用方自行编码后再匹配
+     *
+     * @param key key
+     * @return 是否命中，无法判断时返回 null
+     */
+    public Boolean matchesAscii(String key) {
+        if (key == null || size == 0) {
+            return Boolean.FALSE;
+        }
+        Node node = root;
+        for (int i = 0, len = key.length(); ; i++) {
+            if (node.terminal) {
+                return Boolean.TRUE;
+            }
+            if (i == len) {
+                return Boolean.FALSE;
+            }
+            final char c = key.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            node = node.getChild((byte) c);
+            if (node == null) {
+                return Boolean.FALSE;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Node {
+        private static final byte[] EMPTY_LABELS = new byte[0];
+
+        /**
+         * 子节点的字节，白名单前缀的分叉通常很少，顺序查找即可
+         */
+        private byte[] labels = EMPTY_LABELS;
+        private Node[] children;
+        private boolean terminal;
+
+        Node getChild(byte label) {
+            final byte[] labels = this.labels;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node putChild(byte label) {
+            final Node exists = getChild(label);
+            if (exists != null) {
+                return exists;
+            }
+            final int count = labels.length;
+            final byte[] newLabels = new byte[count + 1];
+            final Node[] newChildren = new Node[count + 1];
+            if (count > 0) {
+                System.arraycopy(labels, 0, newLabels, 0, count);
+                System.arraycopy(children, 0, newChildren, 0, count);
+            }
+            final Node child = new Node();
+            newLabels[count] = label;
+            newChildren[count] = child;
+            this.labels = newLabels;
+            this.children = newChildren;
+            return child;
+        }
+    }
+}
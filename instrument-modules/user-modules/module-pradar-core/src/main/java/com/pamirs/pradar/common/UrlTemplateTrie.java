@@ -0,0 +1,297 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.common;
+
+/**
+ * 按 path 段组织的 url 模板前缀树
+ * <p>
+ * 模板以 / 分隔成段，形如 {xxx} 的整段是变量，可以匹配任意一段，其他段按字面值匹配，
+ * 开头的一个 / 可有可无。每个模板可以带一个请求方法，方法忽略大小写比较，方法为 null 时匹配任意方法。
+ * <p>
+ * 匹配时字面值分支优先于变量分支，字面值分支走不通时再回退到变量分支，所以 /user/list 和 /user/{id}
+ * 同时存在时 /user/list 总是命中前者。匹配过程直接在原字符串上按下标切段，不会产生新的对象，
+ * 耗时只与 path 的段数相关，与模板数量无关。
+ * <p>
+ * 规则变更时重新构建一棵树，构建完成后只读，可以被多个线程同时匹配；构建过程非线程安全
+ *
+ * @param <V> 模板对应的值
+ */
+public final class UrlTemplateTrie<V> {
+
+    private final Node<V> root = new Node<V>();
+    private int size;
+
+    /**
+     * 添加模板，同一个模板和方法重复添加时保留先添加的值
+     *
+     * @param template 模板 path，不能包含 schema、域名和参数
+     * @param method   请求方法，null 表示匹配任意方法
+     * @param value    命中时返回的值
+     * @return 是否添加成功
+     */
+    public boolean put(String template, String method, V value) {
+        if (template == null || value == null) {
+            return false;
+        }
+        Node<V> node = root;
+        final int end = template.length();
+        int pos = firstSegment(template, 0, end);
+        while (pos <= end) {
+            final int segmentEnd = segmentEnd(template, pos, end);
+            if (isVariable(template, pos, segmentEnd)) {
+                if (node.variable == null) {
+                    node.variable = new Node<V>();
+                }
+                node = node.variable;
+            } else {
+                node = node.putLiteral(template.substring(pos, segmentEnd));
+            }
+            pos = segmentEnd + 1;
+        }
+        if (node.putValue(method, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 匹配 path
+     *
+     * @param path   path
+     * @param method 请求方法
+     * @return 命中的值，未命中返回 null
+     */
+    public V match(String path, String method) {
+        if (path == null) {
+            return null;
+        }
+        return match(path, 0, path.length(), method);
+    }
+
+    /**
+     * 匹配 path 中 [start, end) 的部分，调用方不需要先截取子串
+     *
+     * @param path   path
+     * @param start  开始位置
+     * @param end    结束位置
+     * @param method 请求方法
+     * @return 命中的值，未命中返回 null
+     */
+    public V match(String path, int start, int end, String method) {
+        if (path == null || size == 0) {
+            return null;
+        }
+        return find(root, path, firstSegment(path, start, end), end, method);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 判断一段是否是 {xxx} 形式的变量，变量名中不能再包含 { 或 }
+     *
+     * @param path  path
+     * @param start 段开始位置
+     * @param end   段结束位置
+     * @return 是否是变量
+     */
+    public static boolean isVariable(String path, int start, int end) {
+        if (end - start < 2 || path.charAt(start) != '{' || path.charAt(end - 1) != '}') {
+            return false;
+        }
+        for (int i = start + 1; i < end - 1; i++) {
+            final char c = path.charAt(i);
+            if (c == '{' || c == '}') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 第一段的开始位置，跳过开头的 /，没有任何段时返回 end + 1
+     */
+    private static int firstSegment(String path, int start, int end) {
+        if (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        return start < end ? start : end + 1;
+    }
+
+    private static int segmentEnd(String path, int pos, int end) {
+        while (pos < end && path.charAt(pos) != '/') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static <V> V find(Node<V> node, String path, int pos, int end, String method) {
+        if (pos > end) {
+            return node.getValue(method);
+        }
+        final int segmentEnd = segmentEnd(path, pos, end);
+        final Node<V> literal = node.getLiteral(path, pos, segmentEnd);
+        if (literal != null) {
+            final V value = find(literal, path, segmentEnd + 1, end, method);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (node.variable != null) {
+            return find(node.variable, path, segmentEnd + 1, end, method);
+        }
+        return null;
+    }
+
+    private static final class Node<V> {
+        private static final String[] EMPTY_KEYS = new String[0];
+
+        /**
+         * 字面值子节点，开放寻址的散列表，容量为 2 的幂
+         */
+        private String[] keys = EMPTY_KEYS;
+        private Node<V>[] children;
+        private int literalCount;
+
+        private Node<V> variable;
+
+        private String[] methods;
+        private Object[] values;
+        private int valueCount;
+
+        Node<V> getLiteral(String path, int start, int end) {
+            if (literalCount == 0) {
+                return null;
+            }
+            final String[] keys = this.keys;
+            final int mask = keys.length - 1;
+            final int len = end - start;
+            int index = spread(hash(path, start, end)) & mask;
+            String key;
+            while ((key = keys[index]) != null) {
+                if (key.length() == len && key.regionMatches(0, path, start, len)) {
+                    return children[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        Node<V> putLiteral(String segment) {
+            final Node<V> exists = getLiteral(segment, 0, segment.length());
+            if (exists != null) {
+                return exists;
+            }
+            if ((literalCount + 1) << 1 > keys.length) {
+                resize();
+            }
+            final Node<V> child = new Node<V>();
+            insert(keys, children, segment, child);
+            literalCount++;
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            final int capacity = keys.length == 0 ? 4 : keys.length << 1;
+            final String[] newKeys = new String[capacity];
+            final Node<V>[] newChildren = new Node[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    insert(newKeys, newChildren, keys[i], children[i]);
+                }
+            }
+            this.keys = newKeys;
+            this.children = newChildren;
+        }
+
+        private static <V> void insert(String[] keys, Node<V>[] children, String key, Node<V> child) {
+            final int mask = keys.length - 1;
+            int index = spread(key.hashCode()) & mask;
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            children[index] = child;
+        }
+
+        /**
+         * 先找方法完全一致的，再找不限方法的
+         */
+        @SuppressWarnings("unchecked")
+        V getValue(String method) {
+            if (valueCount == 0) {
+                return null;
+            }
+            if (method != null) {
+                for (int i = 0; i < valueCount; i++) {
+                    if (methods[i] != null && methods[i].equalsIgnoreCase(method)) {
+                        return (V) values[i];
+                    }
+                }
+            }
+            for (int i = 0; i < valueCount; i++) {
+                if (methods[i] == null) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        boolean putValue(String method, V value) {
+            for (int i = 0; i < valueCount; i++) {
+                if (method == null ? methods[i] == null : method.equalsIgnoreCase(methods[i])) {
+                    return false;
+                }
+            }
+            if (methods == null) {
+                methods = new String[1];
+                values = new Object[1];
+            } else if (valueCount == methods.length) {
+                final String[] newMethods = new String[valueCount << 1];
+                final Object[] newValues = new Object[valueCount << 1];
+                System.arraycopy(methods, 0, newMethods, 0, valueCount);
+                System.arraycopy(values, 0, newValues, 0, valueCount);
+                methods = newMethods;
+                values = newValues;
+            }
+            methods[valueCount] = method;
+            values[valueCount] = value;
+            valueCount++;
+            return true;
+        }
+
+        /**
+         * 与 {@link String#hashCode()} 的算法一致，省掉截取子串
+         */
+        private static int hash(String path, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + path.charAt(i);
+            }
+            return h;
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -232,7 +232,7 @@ abstract class AfterTraceInterceptor extends BaseInterceptor {
             if (response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -297,7 +297,7 @@ abstract class AfterTraceInterceptor extends BaseInterceptor {
             if (response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -475,7 +475,7 @@ abstract class AfterTraceInterceptor extends BaseInterceptor {
             if (response != null && response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -43,10 +43,13 @@ abstract class BaseInterceptor extends AdviceListener {
     protected InterceptorScope interceptorScope;
     protected boolean costEnabled;
     protected double minInterceptorCost;
+    protected boolean metricsEnabled;
+    private InterceptorCost interceptorCost;
 
     public BaseInterceptor() {
         this.costEnabled = Pradar.isInterceptorCostEnabled();
         this.minInterceptorCost = Pradar.getMinInterceptorCost();
+        this.metricsEnabled = Pradar.isInterceptorMetricsEnabled();
     }
 
     public void setInterceptorScope(InterceptorScope interceptorScope) {
@@ -55,10 +58,8 @@ abstract class BaseInterceptor extends AdviceListener {
 
     @Override
     public void before(Advice advice) throws Throwable {
-        long start = 0L;
-        if (costEnabled) {
-            start = System.nanoTime();
-        }
+        final boolean measure = costEnabled || metricsEnabled;
+        final long start = measure ? System.nanoTime() : 0L;
         Throwable e = null;
         try {
             doBefore(advice);
@@ -69,14 +70,8 @@ abstract class BaseInterceptor extends AdviceListener {
             e = t;
             throw t;
         } finally {
-            if (costEnabled) {
-                long end = System.nanoTime();
-                double cost = (end - start) / 1000000.0;
-                if (cost > minInterceptorCost) {
-                    String name = (this instanceof ScopedInterceptor) ?
-                        ((ScopedInterceptor)this).getUnderWrap().getClass().getName() : getClass().getName();
-                    TIME_CONSUMING_LOGGER.info("interceptor execute before cost interceptor={}, cost={}ms", name, cost);
-                }
+            if (measure) {
+                recordCost(InterceptorCost.BEFORE, "before", System.nanoTime() - start);
             }
         }
     }
@@ -104,10 +99,8 @@ abstract class BaseInterceptor extends AdviceListener {
 
     @Override
     public void afterReturning(Advice advice) throws Throwable {
-        long start = 0L;
-        if (costEnabled) {
-            start = System.nanoTime();
-        }
+        final boolean measure = costEnabled || metricsEnabled;
+        final long start = measure ? System.nanoTime() : 0L;
         Throwable throwable = null;
         try {
             doAfter(advice);
@@ -121,24 +114,16 @@ abstract class BaseInterceptor extends AdviceListener {
             throwable = e;
             throw e;
         } finally {
-            if (costEnabled) {
-                long end = System.nanoTime();
-                double cost = (end - start) / 1000000.0;
-                if (cost > minInterceptorCost) {
-                    String name = (this instanceof ScopedInterceptor) ?
-                        ((ScopedInterceptor)this).getUnderWrap().getClass().getName() : getClass().getName();
-                    TIME_CONSUMING_LOGGER.info("interceptor execute after cost interceptor={}, cost={}ms", name, cost);
-                }
+            if (measure) {
+                recordCost(InterceptorCost.AFTER, "after", System.nanoTime() - start);
             }
         }
     }
 
     @Override
     public void afterThrowing(Advice advice) throws Throwable {
-        long start = 0L;
-        if (costEnabled) {
-            start = System.nanoTime();
-        }
+        final boolean measure = costEnabled || metricsEnabled;
+        final long start = measure ? System.nanoTime() : 0L;
         boolean isDebug = Pradar.isDebug();
         Throwable throwable = null;
         try {
@@ -149,19 +134,36 @@ abstract class BaseInterceptor extends AdviceListener {
             throwable = t;
             throw t;
         } finally {
-            if (costEnabled) {
-                long end = System.nanoTime();
-                double cost = (end - start) / 1000000.0;
-                if (cost > minInterceptorCost) {
-                    String name = (this instanceof ScopedInterceptor) ?
-                        ((ScopedInterceptor)this).getUnderWrap().getClass().getName() : getClass().getName();
-                    TIME_CONSUMING_LOGGER.info("interceptor execute exception cost interceptor={}, cost={}ms", name,
-                        cost);
-                }
+            if (measure) {
+                recordCost(InterceptorCost.EXCEPTION, "exception", System.nanoTime() - start);
             }
         }
     }
 
+    /**
+     * 记录一次阶段耗时，开启耗时日志时超过阈值的调用同时打印日志
+     */
+    private void recordCost(int phase, String phaseName, long nanos) {
+        if (metricsEnabled) {
+            InterceptorCost interceptorCost = this.interceptorCost;
+            if (interceptorCost == null) {
+                interceptorCost = this.interceptorCost = InterceptorCost.of(getInterceptorName());
+            }
+            interceptorCost.record(phase, nanos);
+        }
+        if (costEnabled) {
+            double cost = nanos / 1000000.0;
+            if (cost > minInterceptorCost) {
+                TIME_CONSUMING_LOGGER.info("interceptor execute {} cost interceptor={}, cost={}ms", phaseName, getInterceptorName(), cost);
+            }
+        }
+    }
+
+    private String getInterceptorName() {
+        return (this instanceof ScopedInterceptor) ?
+            ((ScopedInterceptor)this).getUnderWrap().getClass().getName() : getClass().getName();
+    }
+
     /**
      * 方法调用开始
      *
@@ -284,7 +284,7 @@ abstract class BeforeTraceInterceptor extends BaseInterceptor {
         if (record.getClusterTest() != null) {
             invokeContext.setClusterTest(record.getClusterTest());
         }
-        if (Pradar.isRequestOn()) {
+        if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
             invokeContext.setRequest(record.getRequest());
         }
         advice.mark(BEFORE_TRACE_SUCCESS);
@@ -352,7 +352,7 @@ abstract class BeforeTraceInterceptor extends BaseInterceptor {
                 invokeContext.setRequestSize(record.getRequestSize());
             }
 
-            if (Pradar.isRequestOn()) {
+            if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setRequest(record.getRequest());
             }
 
@@ -383,10 +383,7 @@ abstract class BeforeTraceInterceptor extends BaseInterceptor {
                 try {
                     ContextTransfer contextTransfer = getContextTransfer(advice);
                     if (contextTransfer != null) {
-                        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-                        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-                            contextTransfer.transfer(entry.getKey(), entry.getValue());
-                        }
+                        Pradar.transferInvokeContext(contextTransfer);
                     }
                 } catch (Throwable e) {
                     if (Pradar.isClusterTest()){
@@ -509,7 +506,7 @@ abstract class BeforeTraceInterceptor extends BaseInterceptor {
             if (response != null && response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
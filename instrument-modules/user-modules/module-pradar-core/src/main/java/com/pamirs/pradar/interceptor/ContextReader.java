@@ -0,0 +1,35 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import com.pamirs.pradar.Pradar;
+
+/**
+ * 上下文读取接口，与 {@link ContextTransfer} 对应
+ * <p>
+ * 服务端直接按 key 从 rpc 附件、请求头或者消息头中读取上游传递的上下文，不需要先复制到 Map 中。
+ * 可以作为 {@link SpanRecord#setContext(Object)} 以及 {@link Pradar#startServerInvoke(String, String, String, Object)}
+ * 的上下文对象，只会读取 {@link Pradar#getInvokeContextTransformKeys()} 中的字段
+ */
+public interface ContextReader {
+
+    /**
+     * 读取上下文字段
+     *
+     * @param key 字段名
+     * @return 字段值，不存在时返回 null
+     */
+    String read(String key);
+}
@@ -15,8 +15,17 @@
 package com.pamirs.pradar.interceptor;
 
 /**
+ * 上下文写出接口，客户端通过 {@link com.pamirs.pradar.Pradar#transferInvokeContext(ContextTransfer)}
+ * 把需要远程传输的上下文字段逐个写入 rpc 附件、请求头或者消息头
+ * <p>
  * Created by xiaobin on 2017/2/21.
  */
 public interface ContextTransfer {
+    /**
+     * 写出一个上下文字段
+     *
+     * @param key   字段名
+     * @param value 字段值
+     */
     void transfer(String key, String value);
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个拦截器的耗时统计，按拦截器类名汇总 before、after、exception 三个阶段的耗时分布
+ * <p>
+ * 每个拦截器实例第一次记录时取得对应的统计对象并缓存下来，之后的记录只操作计数器；
+ * 某个阶段第一次执行时才创建该阶段的耗时分布
+ */
+public final class InterceptorCost {
+
+    static final int BEFORE = 0;
+    static final int AFTER = 1;
+    static final int EXCEPTION = 2;
+
+    private static final ConcurrentMap<String, InterceptorCost> COSTS = new ConcurrentHashMap<String, InterceptorCost>();
+
+    private final String interceptor;
+    private final AtomicReferenceArray<InterceptorLatency> phases = new AtomicReferenceArray<InterceptorLatency>(3);
+
+    private InterceptorCost(String interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * 获取拦截器对应的统计对象，不存在时创建
+     *
+     * @param interceptor 拦截器类名
+     * @return 统计对象
+     */
+    static InterceptorCost of(String interceptor) {
+        InterceptorCost cost = COSTS.get(interceptor);
+        if (cost == null) {
+            cost = new InterceptorCost(interceptor);
+            InterceptorCost old = COSTS.putIfAbsent(interceptor, cost);
+            if (old != null) {
+                cost = old;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param phase 阶段，{@link #BEFORE}、{@link #AFTER} 或 {@link #EXCEPTION}
+     * @param nanos 耗时，单位纳秒
+     */
+    void record(int phase, long nanos) {
+        InterceptorLatency latency = phases.get(phase);
+        if (latency == null) {
+            phases.compareAndSet(phase, null, new InterceptorLatency());
+            latency = phases.get(phase);
+        }
+        latency.record(nanos);
+    }
+
+    private long totalNanos() {
+        long total = 0;
+        for (int i = 0; i < phases.length(); i++) {
+            InterceptorLatency latency = phases.get(i);
+            if (latency != null) {
+                total += latency.totalNanos();
+            }
+        }
+        return total;
+    }
+
+    private InterceptorCostMetrics metrics() {
+        InterceptorCostMetrics metrics = new InterceptorCostMetrics();
+        metrics.setInterceptor(interceptor);
+        metrics.setBefore(metrics(BEFORE));
+        metrics.setAfter(metrics(AFTER));
+        metrics.setException(metrics(EXCEPTION));
+        double totalMicros = 0;
+        for (InterceptorLatencyMetrics latency : new InterceptorLatencyMetrics[]{metrics.getBefore(), metrics.getAfter(), metrics.getException()}) {
+            if (latency != null) {
+                totalMicros += latency.getTotalMicros();
+            }
+        }
+        metrics.setTotalMicros(totalMicros);
+        return metrics;
+    }
+
+    private InterceptorLatencyMetrics metrics(int phase) {
+        InterceptorLatency latency = phases.get(phase);
+        return latency == null ? null : latency.metrics();
+    }
+
+    /**
+     * 获取所有拦截器的耗时统计，按累计耗时从高到低排序
+     *
+     * @param limit 最多返回的拦截器数量，小于等于 0 时返回全部
+     * @return 耗时统计
+     */
+    public static List<InterceptorCostMetrics> getMetrics(int limit) {
+        List<Total> totals = new ArrayList<Total>(COSTS.size());
+        for (InterceptorCost cost : COSTS.values()) {
+            totals.add(new Total(cost, cost.totalNanos()));
+        }
+        Collections.sort(totals, new Comparator<Total>() {
+            @Override
+            public int compare(Total o1, Total o2) {
+                return o1.nanos < o2.nanos ? 1 : (o1.nanos == o2.nanos ? 0 : -1);
+            }
+        });
+        final int size = limit <= 0 ? totals.size() : Math.min(limit, totals.size());
+        List<InterceptorCostMetrics> result = new ArrayList<InterceptorCostMetrics>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(totals.get(i).cost.metrics());
+        }
+        return result;
+    }
+
+    /**
+     * 排序时使用的累计耗时快照，避免排序过程中耗时变化
+     */
+    private static final class Total {
+        private final InterceptorCost cost;
+        private final long nanos;
+
+        Total(InterceptorCost cost, long nanos) {
+            this.cost = cost;
+            this.nanos = nanos;
+        }
+    }
+}
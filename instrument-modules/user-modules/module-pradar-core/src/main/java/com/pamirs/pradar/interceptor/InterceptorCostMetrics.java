@@ -0,0 +1,89 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.io.Serializable;
+
+/**
+ * 单个拦截器的耗时统计
+ */
+public class InterceptorCostMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 拦截器类名
+     */
+    private String interceptor;
+
+    /**
+     * 三个阶段的累计耗时，单位微秒
+     */
+    private double totalMicros;
+
+    /**
+     * before 阶段耗时，未执行过时为空
+     */
+    private InterceptorLatencyMetrics before;
+
+    /**
+     * after 阶段耗时，未执行过时为空
+     */
+    private InterceptorLatencyMetrics after;
+
+    /**
+     * exception 阶段耗时，未执行过时为空
+     */
+    private InterceptorLatencyMetrics exception;
+
+    public String getInterceptor() {
+        return interceptor;
+    }
+
+    public void setInterceptor(String interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    public double getTotalMicros() {
+        return totalMicros;
+    }
+
+    public void setTotalMicros(double totalMicros) {
+        this.totalMicros = totalMicros;
+    }
+
+    public InterceptorLatencyMetrics getBefore() {
+        return before;
+    }
+
+    public void setBefore(InterceptorLatencyMetrics before) {
+        this.before = before;
+    }
+
+    public InterceptorLatencyMetrics getAfter() {
+        return after;
+    }
+
+    public void setAfter(InterceptorLatencyMetrics after) {
+        this.after = after;
+    }
+
+    public InterceptorLatencyMetrics getException() {
+        return exception;
+    }
+
+    public void setException(InterceptorLatencyMetrics exception) {
+        this.exception = exception;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 拦截器单个阶段的耗时分布
+ * <p>
+ * 按纳秒记录的对数线性桶：小于 8 纳秒时每纳秒一个桶，之后每个 2 的幂区间再平均分成 4 个桶，
+ * 百分位取所在桶的上界，相对误差在 25% 以内，超过 2^36 纳秒的耗时都记在最后一个桶。
+ * <p>
+ * 桶计数和总耗时按线程 id 分散到多组计数器上，避免多个线程同时执行同一个拦截器时争用同一个计数器，
+ * 读取时再把各组相加，记录时不加锁、不分配对象
+ */
+final class InterceptorLatency {
+
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 35;
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB_BUCKETS;
+    /**
+     * 每组计数器的最后一位记录总耗时
+     */
+    private static final int TOTAL = BUCKETS;
+
+    private static final int STRIPES = stripes();
+    private static final int STRIPE_MASK = STRIPES - 1;
+
+    private final AtomicLongArray[] stripes;
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    InterceptorLatency() {
+        this.stripes = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        final AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & STRIPE_MASK];
+        stripe.incrementAndGet(index(nanos));
+        stripe.addAndGet(TOTAL, nanos);
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    long totalNanos() {
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            total += stripe.get(TOTAL);
+        }
+        return total;
+    }
+
+    InterceptorLatencyMetrics metrics() {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        long totalNanos = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                final long c = stripe.get(i);
+                counts[i] += c;
+                count += c;
+            }
+            totalNanos += stripe.get(TOTAL);
+        }
+        final long maxNanos = this.maxNanos.get();
+        InterceptorLatencyMetrics metrics = new InterceptorLatencyMetrics();
+        metrics.setCount(count);
+        metrics.setTotalMicros(toMicros(totalNanos));
+        metrics.setAvgMicros(count == 0 ? 0 : toMicros(totalNanos) / count);
+        metrics.setMaxMicros(toMicros(maxNanos));
+        metrics.setP50Micros(toMicros(percentile(counts, count, 0.50, maxNanos)));
+        metrics.setP90Micros(toMicros(percentile(counts, count, 0.90, maxNanos)));
+        metrics.setP99Micros(toMicros(percentile(counts, count, 0.99, maxNanos)));
+        return metrics;
+    }
+
+    /**
+     * 耗时所在的桶
+     */
+    static int index(long nanos) {
+        if (nanos < (SUB_BUCKETS << 1)) {
+            return (int) nanos;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        final int sub = (int) (nanos >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶的上界(不含)，单位纳秒
+     */
+    static long upperBound(int index) {
+        if (index < (SUB_BUCKETS << 1)) {
+            return index + 1;
+        }
+        final int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = index & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS);
+    }
+
+    /**
+     * 百分位所在桶的上界，不超过记录到的最大值，单位纳秒
+     */
+    private static long percentile(long[] counts, long total, double percent, long maxNanos) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(total * percent);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    private static double toMicros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /**
+     * 计数器组数，取不小于 cpu 核数的 2 的幂，最多 4 组
+     */
+    private static int stripes() {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus && stripes < 4) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
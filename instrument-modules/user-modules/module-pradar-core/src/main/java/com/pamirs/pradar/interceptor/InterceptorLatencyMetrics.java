@@ -0,0 +1,115 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.io.Serializable;
+
+/**
+ * 拦截器单个阶段的耗时统计，百分位为近似值
+ */
+public class InterceptorLatencyMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 执行次数
+     */
+    private long count;
+
+    /**
+     * 累计耗时，单位微秒
+     */
+    private double totalMicros;
+
+    /**
+     * 平均耗时，单位微秒
+     */
+    private double avgMicros;
+
+    /**
+     * 50 分位耗时，单位微秒
+     */
+    private double p50Micros;
+
+    /**
+     * 90 分位耗时，单位微秒
+     */
+    private double p90Micros;
+
+    /**
+     * 99 分位耗时，单位微秒
+     */
+    private double p99Micros;
+
+    /**
+     * 最大耗时，单位微秒
+     */
+    private double maxMicros;
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getTotalMicros() {
+        return totalMicros;
+    }
+
+    public void setTotalMicros(double totalMicros) {
+        this.totalMicros = totalMicros;
+    }
+
+    public double getAvgMicros() {
+        return avgMicros;
+    }
+
+    public void setAvgMicros(double avgMicros) {
+        this.avgMicros = avgMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public void setP50Micros(double p50Micros) {
+        this.p50Micros = p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public void setP90Micros(double p90Micros) {
+        this.p90Micros = p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public void setP99Micros(double p99Micros) {
+        this.p99Micros = p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    public void setMaxMicros(double maxMicros) {
+        this.maxMicros = maxMicros;
+    }
+}
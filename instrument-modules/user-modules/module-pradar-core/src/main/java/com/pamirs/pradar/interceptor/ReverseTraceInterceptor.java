@@ -28,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Resource;
-import java.util.Map;
 
 /**
  * 实例方法埋点的环绕拦截器抽象实现,可实现追踪埋点与压测增强的混合逻辑
@@ -247,10 +246,10 @@ abstract class ReverseTraceInterceptor extends BaseInterceptor {
         if (record.getClusterTest() != null) {
             invokeContext.setClusterTest(record.getClusterTest());
         }
-        if (Pradar.isRequestOn()) {
+        if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
             invokeContext.setRequest(record.getRequest());
         }
-        if (Pradar.isResponseOn()) {
+        if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
             if (record.getResponse() != null) {
                 invokeContext.setResponse(record.getResponse());
             }
@@ -297,7 +296,7 @@ abstract class ReverseTraceInterceptor extends BaseInterceptor {
             if (record.getRequestSize() != 0) {
                 invokeContext.setRequestSize(record.getRequestSize());
             }
-            if (Pradar.isRequestOn()) {
+            if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setRequest(record.getRequest());
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -326,10 +325,7 @@ abstract class ReverseTraceInterceptor extends BaseInterceptor {
                 try {
                     ContextTransfer contextTransfer = getContextTransfer(advice);
                     if (contextTransfer != null) {
-                        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-                        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-                            contextTransfer.transfer(entry.getKey(), entry.getValue());
-                        }
+                        Pradar.transferInvokeContext(contextTransfer);
                     }
                 } catch (Throwable e) {
                     LOGGER.error("AGENT: {} trace context transfer err, trace context may be lost.", getClass().getName(), e);
@@ -367,7 +363,7 @@ abstract class ReverseTraceInterceptor extends BaseInterceptor {
                 if (response instanceof Throwable) {
                     advice.attach(response);
                 }
-                if (Pradar.isResponseOn()) {
+                if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                     invokeContext.setResponse(response);
                 }
             }
@@ -429,7 +425,7 @@ abstract class ReverseTraceInterceptor extends BaseInterceptor {
             if (response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -27,7 +27,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Resource;
-import java.util.Map;
 
 import static com.pamirs.pradar.interceptor.TraceInterceptorAdaptor.BEFORE_TRACE_SUCCESS;
 
@@ -324,7 +323,7 @@ abstract class TraceInterceptor extends BaseInterceptor {
         if (record.getClusterTest() != null) {
             invokeContext.setClusterTest(record.getClusterTest());
         }
-        if (Pradar.isRequestOn()) {
+        if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
             invokeContext.setRequest(record.getRequest());
         }
         advice.mark(BEFORE_TRACE_SUCCESS);
@@ -376,7 +375,7 @@ abstract class TraceInterceptor extends BaseInterceptor {
             if (record.getRequestSize() != 0) {
                 invokeContext.setRequestSize(record.getRequestSize());
             }
-            if (Pradar.isRequestOn()) {
+            if (Pradar.isRequestOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setRequest(record.getRequest());
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -402,10 +401,7 @@ abstract class TraceInterceptor extends BaseInterceptor {
                 try {
                     ContextTransfer contextTransfer = getContextTransfer(advice);
                     if (contextTransfer != null) {
-                        Map<String, String> contextMap = Pradar.getInvokeContextTransformMap();
-                        for (Map.Entry<String, String> entry : contextMap.entrySet()) {
-                            contextTransfer.transfer(entry.getKey(), entry.getValue());
-                        }
+                        Pradar.transferInvokeContext(contextTransfer);
                     }
                 } catch (Throwable e) {
                     LOGGER.error("AGENT: {} trace context transfer err, trace context may be lost.", getClass().getName(), e);
@@ -445,14 +441,14 @@ abstract class TraceInterceptor extends BaseInterceptor {
             if (response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             //重复设置请求体，httpClient请求体在afterTrace中获取
             if (record.getRequestSize() != 0) {
                 invokeContext.setRequestSize(record.getRequestSize());
             }
-            if (Pradar.isRequestOn() && record.getRequest() != null) {
+            if (Pradar.isRequestOn() && invokeContext.isTraceSampled() && record.getRequest() != null) {
                 invokeContext.setRequest(record.getRequest());
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -562,14 +558,14 @@ abstract class TraceInterceptor extends BaseInterceptor {
             if (response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             //重复设置请求体，httpClient请求体在afterTrace中获取
             if (record.getRequestSize() != 0) {
                 invokeContext.setRequestSize(record.getRequestSize());
             }
-            if (Pradar.isRequestOn() && record.getRequest() != null) {
+            if (Pradar.isRequestOn() && invokeContext.isTraceSampled() && record.getRequest() != null) {
                 invokeContext.setRequest(record.getRequest());
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
@@ -755,7 +751,7 @@ abstract class TraceInterceptor extends BaseInterceptor {
             if (response != null && response instanceof Throwable) {
                 advice.attach(response);
             }
-            if (Pradar.isResponseOn()) {
+            if (Pradar.isResponseOn() && invokeContext.isTraceSampled()) {
                 invokeContext.setResponse(response);
             }
             if (StringUtils.isNotBlank(record.getRemoteIp())) {
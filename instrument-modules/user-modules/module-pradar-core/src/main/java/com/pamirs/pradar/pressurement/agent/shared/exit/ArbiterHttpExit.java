@@ -48,15 +48,9 @@ public class ArbiterHttpExit implements Exit {
                     new CacheLoader<String, MatchConfig>() {
                         @Override
                         public MatchConfig load(String name) throws Exception {
-                            Set<MatchConfig> urlWhiteList = GlobalConfig.getInstance().getUrlWhiteList();
-                            if (urlWhiteList != null) {
-                                for (MatchConfig matchConfig : urlWhiteList) {
-                                    /*   MatchConfig matching = matching(name, matchConfig);*/
-                                    MatchConfig matching = match(name, matchConfig);
-                                    if (null != matching && matching.isSuccess()) {
-                                        return matching;
-                                    }
-                                }
+                            MatchConfig matching = getCompiledUrlWhiteList().match(name, matcher);
+                            if (null != matching) {
+                                return matching;
                             }
                             return failure();
                         }
@@ -83,7 +77,24 @@ public class ArbiterHttpExit implements Exit {
                     }
             );
 
+    /**
+     * 编译后的 url 白名单，白名单的配置版本变化后第一次使用时重新编译
+     */
+    private static volatile CompiledHttpWhiteList compiledUrlWhiteList;
+
+    static CompiledHttpWhiteList getCompiledUrlWhiteList() {
+        final GlobalConfig config = GlobalConfig.getInstance();
+        final int version = config.getUrlWhiteListVersion();
+        CompiledHttpWhiteList compiled = compiledUrlWhiteList;
+        if (compiled == null || compiled.getVersion() != version) {
+            compiled = new CompiledHttpWhiteList(config.getUrlWhiteList(), version);
+            compiledUrlWhiteList = compiled;
+        }
+        return compiled;
+    }
+
     public static void release() {
+        compiledUrlWhiteList = null;
         patternCache.invalidateAll();
         httpMatchResult.invalidateAll();
         rpcMatchResult.invalidateAll();
@@ -94,6 +105,7 @@ public class ArbiterHttpExit implements Exit {
     }
 
     public static void clearHttpMatch() {
+        compiledUrlWhiteList = null;
         httpMatchResult.invalidateAll();
         patternCache.invalidateAll();
     }
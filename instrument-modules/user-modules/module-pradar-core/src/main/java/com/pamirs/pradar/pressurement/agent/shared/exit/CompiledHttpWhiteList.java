@@ -0,0 +1,168 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.exit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.pamirs.pradar.common.UrlTemplateTrie;
+import com.pamirs.pradar.internal.config.MatchConfig;
+
+/**
+ * 编译后的 http 白名单
+ * <p>
+ * 普通 path 和由整段 {xxx} 变量组成的 restful 模板编译进 {@link UrlTemplateTrie}，匹配结果与
+ * {@link HttpMatcher} 一致，字面值优先于变量。{@link HttpMatcher} 中的特殊情况仍然逐条交给它处理：
+ * 段内部带 { 或 } 的表达式、包含空段的表达式、全部由变量组成的表达式(只能等值匹配)，
+ * 以及带 schema、空段或首尾空白的 url。
+ * <p>
+ * 白名单的配置版本变化后重新编译，编译后只读
+ */
+final class CompiledHttpWhiteList {
+
+    private final int version;
+    private final UrlTemplateTrie<MatchConfig> templates = new UrlTemplateTrie<MatchConfig>();
+    private final List<MatchConfig> fallback = new ArrayList<MatchConfig>();
+    private final List<MatchConfig> all = new ArrayList<MatchConfig>();
+
+    CompiledHttpWhiteList(Set<MatchConfig> source, int version) {
+        this.version = version;
+        if (source == null) {
+            return;
+        }
+        for (MatchConfig matchConfig : source) {
+            if (matchConfig == null) {
+                continue;
+            }
+            all.add(matchConfig);
+            final String url = matchConfig.getUrl();
+            if (url == null || url.trim().length() == 0) {
+                continue;
+            }
+            final String expression = format(url.trim());
+            if (!isCompilable(expression) || !templates.put(expression, null, matchConfig)) {
+                fallback.add(matchConfig);
+            }
+        }
+    }
+
+    /**
+     * 编译时白名单的配置版本
+     *
+     * @return 版本
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * 匹配 path
+     *
+     * @param url     path
+     * @param matcher 逐条匹配使用的 matcher
+     * @return 命中的配置，未命中返回 null
+     */
+    MatchConfig match(String url, Matcher matcher) {
+        if (url == null || url.length() == 0) {
+            return null;
+        }
+        if (!isCleanUrl(url)) {
+            return match(all, url, matcher);
+        }
+        int end = url.length();
+        if (end > 1 && url.charAt(end - 1) == '/') {
+            end--;
+        }
+        final MatchConfig matchConfig = templates.match(url, 0, end, null);
+        if (matchConfig != null) {
+            if (matchConfig.isSuccess()) {
+                return matchConfig;
+            }
+            // 命中的配置本身不是成功状态，和原来一样逐条匹配，继续找其他成功的配置
+            return match(all, url, matcher);
+        }
+        return fallback.isEmpty() ? null : match(fallback, url, matcher);
+    }
+
+    private static MatchConfig match(List<MatchConfig> matchConfigs, String url, Matcher matcher) {
+        for (int i = 0, size = matchConfigs.size(); i < size; i++) {
+            final MatchConfig matching = matcher.match(url, matchConfigs.get(i));
+            if (null != matching && matching.isSuccess()) {
+                return matching;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 与 {@link HttpMatcher} 的格式化保持一致：确保首位是 /，长度大于 1 时去掉末尾的 /
+     */
+    private static String format(String url) {
+        if (url.charAt(0) != '/') {
+            url = '/' + url;
+        }
+        if (url.length() > 1 && url.charAt(url.length() - 1) == '/') {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+
+    /**
+     * 表达式是否能编译进模板树：每段要么是字面值，要么是整段的 {xxx} 变量，没有空段，且不全是变量
+     */
+    private static boolean isCompilable(String expression) {
+        final int end = expression.length();
+        int pos = 1;
+        if (pos >= end) {
+            return true;
+        }
+        int segments = 0;
+        int variables = 0;
+        while (pos <= end) {
+            int segmentEnd = expression.indexOf('/', pos);
+            if (segmentEnd == -1) {
+                segmentEnd = end;
+            }
+            if (segmentEnd == pos) {
+                return false;
+            }
+            segments++;
+            if (UrlTemplateTrie.isVariable(expression, pos, segmentEnd)) {
+                variables++;
+            } else {
+                for (int i = pos; i < segmentEnd; i++) {
+                    final char c = expression.charAt(i);
+                    if (c == '{' || c == '}') {
+                        return false;
+                    }
+                }
+            }
+            pos = segmentEnd + 1;
+        }
+        return variables < segments;
+    }
+
+    /**
+     * url 是否可以直接在模板树中匹配：首尾没有空白，格式化后没有空段(也就不会带 schema)
+     */
+    private static boolean isCleanUrl(String url) {
+        final int length = url.length();
+        if (url.charAt(0) <= ' ' || url.charAt(length - 1) <= ' ') {
+            return false;
+        }
+        return url.indexOf("//") == -1;
+    }
+}
@@ -19,8 +19,10 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.PradarRuntimeConfig;
 import com.pamirs.pradar.internal.adapter.JobAdapter;
 import com.pamirs.pradar.internal.config.MatchConfig;
 import com.pamirs.pradar.internal.config.MockConfig;
@@ -48,6 +50,10 @@ public final class GlobalConfig {
      * war name list
      */
     private Set<MatchConfig> urlWhiteList = new HashSet<MatchConfig>();
+    /**
+     * url 白名单的版本，替换或清空时递增，编译好的白名单按版本判断是否需要重新编译
+     */
+    private final AtomicInteger urlWhiteListVersion = new AtomicInteger();
 
     /**
      * rpc name list，包含 dubbo、grpc 等
@@ -68,6 +74,10 @@ public final class GlobalConfig {
      * redis key list
      */
     private Set<String> cacheKeyWhiteList = new HashSet<String>();
+    /**
+     * redis key 白名单的版本，替换或清空时递增，编译好的白名单按版本判断是否需要重新编译
+     */
+    private final AtomicInteger cacheKeyWhiteListVersion = new AtomicInteger();
 
     /**
      * mq 白名单
@@ -83,11 +93,15 @@ public final class GlobalConfig {
      * 所有的入口规则
      */
     private Set<String> traceRules = new HashSet<String>();
+    /**
+     * 入口规则的版本，替换或清空时递增，编译好的规则按版本判断是否需要重新编译
+     */
+    private final AtomicInteger traceRulesVersion = new AtomicInteger();
 
     /**
      * 探针动态参数
      */
-    private SimulatorDynamicConfig simulatorDynamicConfig = new SimulatorDynamicConfig(new HashMap<String, String>(1, 1));
+    private volatile SimulatorDynamicConfig simulatorDynamicConfig = new SimulatorDynamicConfig(new HashMap<String, String>(1, 1));
     /**
      * 影子库表的配置
      * key: 不带参数的url#username
@@ -145,12 +159,15 @@ public final class GlobalConfig {
     public void release() {
         wrongSqlDetail.clear();
         urlWhiteList.clear();
+        urlWhiteListVersion.incrementAndGet();
         rpcNameWhiteList.clear();
         contextPathBlockList.clear();
         searchWhiteList.clear();
         cacheKeyWhiteList.clear();
+        cacheKeyWhiteListVersion.incrementAndGet();
         mqWhiteList.clear();
         traceRules.clear();
+        traceRulesVersion.incrementAndGet();
         shadowDatabaseConfigs.clear();
         shadowRedisConfigs.clear();
         shadowEsServerConfigs.clear();
@@ -324,6 +341,11 @@ public final class GlobalConfig {
 
     public void setTraceRules(Set<String> traceRules) {
         this.traceRules = traceRules;
+        traceRulesVersion.incrementAndGet();
+    }
+
+    public int getTraceRulesVersion() {
+        return traceRulesVersion.get();
     }
 
     /**
@@ -345,6 +367,11 @@ public final class GlobalConfig {
 
     public void setCacheKeyWhiteList(Set<String> cacheKeyWhiteList) {
         this.cacheKeyWhiteList = cacheKeyWhiteList;
+        cacheKeyWhiteListVersion.incrementAndGet();
+    }
+
+    public int getCacheKeyWhiteListVersion() {
+        return cacheKeyWhiteListVersion.get();
     }
 
     public Set<String> getMqWhiteList() {
@@ -377,6 +404,11 @@ public final class GlobalConfig {
 
     public void setUrlWhiteList(Set<MatchConfig> urlWhiteList) {
         this.urlWhiteList = urlWhiteList;
+        urlWhiteListVersion.incrementAndGet();
+    }
+
+    public int getUrlWhiteListVersion() {
+        return urlWhiteListVersion.get();
     }
 
     public Set<MatchConfig> getRpcNameWhiteList() {
@@ -464,12 +496,10 @@ public final class GlobalConfig {
 
     public void setSimulatorDynamicConfig(SimulatorDynamicConfig simulatorDynamicConfig) {
         this.simulatorDynamicConfig = simulatorDynamicConfig;
+        PradarRuntimeConfig.refresh();
     }
 
     public boolean allowTraceRequestResponse() {
-        return (Pradar.isClusterTest() &&
-                GlobalConfig.getInstance().getSimulatorDynamicConfig().isShadowRequestResponseDataAllowTrace())
-                || (!Pradar.isClusterTest() && GlobalConfig.getInstance().getSimulatorDynamicConfig()
-                .isBusRequestResponseDataAllowTrace());
+        return PradarRuntimeConfig.get().allowTraceRequestResponse(Pradar.isClusterTest());
     }
 }
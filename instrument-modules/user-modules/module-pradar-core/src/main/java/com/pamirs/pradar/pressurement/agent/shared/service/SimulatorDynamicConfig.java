@@ -87,6 +87,52 @@ public class SimulatorDynamicConfig {
 
     private final boolean closeKafkaPollReport;
 
+    /**
+     * sql 解析缓存，单个缓存允许的最大权重，权重按 sql 及改写结果的字符数计算
+     */
+    private static final String SQL_PARSER_CACHE_MAX_WEIGHT = "pradar.sql.parser.cache.max.weight";
+    public static final long DEFAULT_SQL_PARSER_CACHE_MAX_WEIGHT = 2 * 1024 * 1024;
+
+    /**
+     * sql 解析缓存的过期时间，单位秒，超过该时间没有访问的 sql 会被移除
+     */
+    private static final String SQL_PARSER_CACHE_EXPIRE_SECONDS = "pradar.sql.parser.cache.expire.seconds";
+    public static final long DEFAULT_SQL_PARSER_CACHE_EXPIRE_SECONDS = 5 * 60;
+
+    /**
+     * 是否在启动时用上一次运行记录的 sql 预热解析缓存
+     */
+    private static final String SQL_PARSER_CACHE_WARMUP = "pradar.sql.parser.cache.warmup";
+
+    /**
+     * 首次出现的 sql 在独立的线程池中解析，线程数及等待队列长度
+     */
+    private static final String SQL_PARSER_THREADS = "pradar.sql.parser.threads";
+    public static final long DEFAULT_SQL_PARSER_THREADS = 2;
+    private static final String SQL_PARSER_QUEUE_SIZE = "pradar.sql.parser.queue.size";
+    public static final long DEFAULT_SQL_PARSER_QUEUE_SIZE = 1024;
+
+    /**
+     * 等待解析结果的超时时间，单位毫秒
+     */
+    private static final String SQL_PARSER_TIMEOUT_MILLIS = "pradar.sql.parser.timeout.millis";
+    public static final long DEFAULT_SQL_PARSER_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 解析超时或者线程池已满时的处理方式，fail: 直接让本次压测请求失败，wait: 一直等待解析完成，线程池已满时在当前线程解析
+     */
+    private static final String SQL_PARSER_TIMEOUT_POLICY = "pradar.sql.parser.timeout.policy";
+    public static final String SQL_PARSER_TIMEOUT_POLICY_FAIL = "fail";
+    public static final String SQL_PARSER_TIMEOUT_POLICY_WAIT = "wait";
+
+    private final long sqlParserCacheMaxWeight;
+    private final long sqlParserCacheExpireSeconds;
+    private final boolean sqlParserCacheWarmUp;
+    private final int sqlParserThreads;
+    private final int sqlParserQueueSize;
+    private final long sqlParserTimeoutMillis;
+    private final String sqlParserTimeoutPolicy;
+
     /**
      * 动态切点配置
      */
@@ -192,6 +238,41 @@ public class SimulatorDynamicConfig {
         this.closeKafkaPollReport = getCloseKafkaPollReport(config);
         this.isSingleSilenceSwitchOn = getSingleSilenceSwitchStatus(config);
         this.cusTraceConfig = getCusTraceConfig(config);
+        this.sqlParserCacheMaxWeight = getLongConfig(config, SQL_PARSER_CACHE_MAX_WEIGHT, DEFAULT_SQL_PARSER_CACHE_MAX_WEIGHT);
+        this.sqlParserCacheExpireSeconds = getLongConfig(config, SQL_PARSER_CACHE_EXPIRE_SECONDS, DEFAULT_SQL_PARSER_CACHE_EXPIRE_SECONDS);
+        this.sqlParserCacheWarmUp = getSqlParserCacheWarmUp(config);
+        this.sqlParserThreads = (int) Math.min(getLongConfig(config, SQL_PARSER_THREADS, DEFAULT_SQL_PARSER_THREADS), 64);
+        this.sqlParserQueueSize = (int) Math.min(getLongConfig(config, SQL_PARSER_QUEUE_SIZE, DEFAULT_SQL_PARSER_QUEUE_SIZE), Integer.MAX_VALUE);
+        this.sqlParserTimeoutMillis = getLongConfig(config, SQL_PARSER_TIMEOUT_MILLIS, DEFAULT_SQL_PARSER_TIMEOUT_MILLIS);
+        this.sqlParserTimeoutPolicy = getSqlParserTimeoutPolicy(config);
+    }
+
+    public long getSqlParserCacheMaxWeight() {
+        return sqlParserCacheMaxWeight;
+    }
+
+    public long getSqlParserCacheExpireSeconds() {
+        return sqlParserCacheExpireSeconds;
+    }
+
+    public boolean isSqlParserCacheWarmUp() {
+        return sqlParserCacheWarmUp;
+    }
+
+    public int getSqlParserThreads() {
+        return sqlParserThreads;
+    }
+
+    public int getSqlParserQueueSize() {
+        return sqlParserQueueSize;
+    }
+
+    public long getSqlParserTimeoutMillis() {
+        return sqlParserTimeoutMillis;
+    }
+
+    public String getSqlParserTimeoutPolicy() {
+        return sqlParserTimeoutPolicy;
     }
 
     public String shadowDatasourceAccountPrefix() {
@@ -671,6 +752,58 @@ public class SimulatorDynamicConfig {
         }
     }
 
+    /**
+     * 读取正整数配置，没有配置或者配置不合法时使用默认值
+     */
+    private long getLongConfig(Map<String, String> config, String key, long defaultValue) {
+        try {
+            if (config == null) {
+                return defaultValue;
+            }
+            String data = getConfig(config, key);
+            if (data == null) {
+                return defaultValue;
+            }
+            long value = Long.parseLong(data.trim());
+            return value > 0 ? value : defaultValue;
+        } catch (Exception e) {
+            LOGGER.error("get config {} error , use default {}.", key, defaultValue, e);
+            return defaultValue;
+        }
+    }
+
+    private String getSqlParserTimeoutPolicy(Map<String, String> config) {
+        try {
+            if (config == null) {
+                return SQL_PARSER_TIMEOUT_POLICY_FAIL;
+            }
+            String data = getConfig(config, SQL_PARSER_TIMEOUT_POLICY);
+            if (SQL_PARSER_TIMEOUT_POLICY_WAIT.equalsIgnoreCase(data)) {
+                return SQL_PARSER_TIMEOUT_POLICY_WAIT;
+            }
+            return SQL_PARSER_TIMEOUT_POLICY_FAIL;
+        } catch (Exception e) {
+            LOGGER.error("getSqlParserTimeoutPolicy error , use default fail.", e);
+            return SQL_PARSER_TIMEOUT_POLICY_FAIL;
+        }
+    }
+
+    private boolean getSqlParserCacheWarmUp(Map<String, String> config) {
+        try {
+            if (config == null) {
+                return false;
+            }
+            String data = getConfig(config, SQL_PARSER_CACHE_WARMUP);
+            if (data == null) {
+                return false;
+            }
+            return Boolean.parseBoolean(data);
+        } catch (Exception e) {
+            LOGGER.error("getSqlParserCacheWarmUp error , use default false.", e);
+            return false;
+        }
+    }
+
     private String getCusTraceConfig(Map<String, String> config) {
         try {
             if (config == null) {
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.util;
+
+import java.util.Set;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.common.BytePrefixTrie;
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+
+/**
+ * 缓存 key 的压测标改写，供 jedis、lettuce、redisson 等缓存插件共用
+ * <p>
+ * 压测标加在前缀还是后缀与 {@link Pradar#isClusterTestByConfig(String)}、
+ * {@link Pradar#addClusterTestByConfig(String)} 一致，在类加载时确定一次，与 {@link Pradar#CLUSTER_TEST_PREFIX}
+ * 相同不会再变化。byte[] 类型的 key 直接在字节上判断压测标并用一次数组拷贝加上压测标，
+ * 不再经过 String 的解码和编码；压测标包含非 ASCII 字符时字节无法按大小写比较，退回字符串方式处理。
+ * <p>
+ * key 白名单按默认字符集编码后编译成 {@link BytePrefixTrie}，白名单的配置版本变化后重新编译
+ */
+public final class CacheKeyRewriter {
+
+    private static final boolean PREFIX = Pradar.getClusterTestPrefixOrSuffix();
+    private static final String MARK = PREFIX ? Pradar.CLUSTER_TEST_PREFIX : Pradar.CLUSTER_TEST_SUFFIX;
+
+    /**
+     * 压测标的字节，压测标不是 ASCII 时为 null
+     */
+    private static final byte[] MARK_BYTES = toAsciiBytes(MARK);
+
+    private static volatile CompiledWhiteList compiled;
+
+    private CacheKeyRewriter() {
+    }
+
+    /**
+     * 判断 key 是否命中缓存 key 白名单，即是否以白名单中任意一项开头
+     *
+     * @param key key
+     * @return 是否命中
+     */
+    public static boolean isWhiteListed(String key) {
+        if (key == null) {
+            return false;
+        }
+        final BytePrefixTrie trie = getWhiteList();
+        if (trie.isEmpty()) {
+            return false;
+        }
+        final Boolean matched = trie.matchesAscii(key);
+        if (matched != null) {
+            return matched;
+        }
+        return trie.matches(key.getBytes());
+    }
+
+    /**
+     * 判断 key 是否命中缓存 key 白名单，即是否以白名单中任意一项开头
+     *
+     * @param key key
+     * @return 是否命中
+     */
+    public static boolean isWhiteListed(byte[] key) {
+        if (key == null) {
+            return false;
+        }
+        return getWhiteList().matches(key);
+    }
+
+    /**
+     * 判断 key 是否已经带有压测标，忽略大小写，与 {@link Pradar#isClusterTestByConfig(String)} 一致
+     *
+     * @param key key
+     * @return 是否带有压测标
+     */
+    public static boolean isClusterTestKey(byte[] key) {
+        if (key == null) {
+            return false;
+        }
+        final byte[] mark = MARK_BYTES;
+        if (mark == null) {
+            return Pradar.isClusterTestByConfig(new String(key));
+        }
+        if (key.length < mark.length) {
+            return false;
+        }
+        final int offset = PREFIX ? 0 : key.length - mark.length;
+        for (int i = 0; i < mark.length; i++) {
+            if (toLowerCase(key[offset + i]) != toLowerCase(mark[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 给 key 加上压测标，不判断 key 是否已经带有压测标
+     *
+     * @param key key
+     * @return 加上压测标后的新数组
+     */
+    public static byte[] addClusterTest(byte[] key) {
+        final byte[] mark = MARK_BYTES;
+        if (mark == null) {
+            return Pradar.addClusterTestByConfig(new String(key)).getBytes();
+        }
+        final byte[] result = new byte[key.length + mark.length];
+        if (PREFIX) {
+            System.arraycopy(mark, 0, result, 0, mark.length);
+            System.arraycopy(key, 0, result, mark.length, key.length);
+        } else {
+            System.arraycopy(key, 0, result, 0, key.length);
+            System.arraycopy(mark, 0, result, key.length, mark.length);
+        }
+        return result;
+    }
+
+    /**
+     * 转换成压测 key
+     *
+     * @param key            key
+     * @param matchWhiteList 是否匹配白名单，命中白名单的 key 不做转换
+     * @return 压测 key，不需要转换时返回原数组
+     */
+    public static byte[] toClusterTestKey(byte[] key, boolean matchWhiteList) {
+        if (key == null) {
+            return null;
+        }
+        if (matchWhiteList && isWhiteListed(key)) {
+            return key;
+        }
+        if (isClusterTestKey(key)) {
+            return key;
+        }
+        return addClusterTest(key);
+    }
+
+    /**
+     * 转换成压测 key
+     *
+     * @param key            key
+     * @param matchWhiteList 是否匹配白名单，命中白名单的 key 不做转换
+     * @return 压测 key，不需要转换时返回原 key
+     */
+    public static String toClusterTestKey(String key, boolean matchWhiteList) {
+        if (key == null) {
+            return null;
+        }
+        if (matchWhiteList && isWhiteListed(key)) {
+            return key;
+        }
+        if (Pradar.isClusterTestByConfig(key)) {
+            return key;
+        }
+        return Pradar.addClusterTestByConfig(key);
+    }
+
+    private static BytePrefixTrie getWhiteList() {
+        final GlobalConfig config = GlobalConfig.getInstance();
+        // 先取版本再取集合，取完之后集合再变化时版本一定不同，下次会重新编译
+        final int version = config.getCacheKeyWhiteListVersion();
+        CompiledWhiteList current = compiled;
+        if (current == null || current.version != version) {
+            current = new CompiledWhiteList(config.getCacheKeyWhiteList(), version);
+            compiled = current;
+        }
+        return current.trie;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] toAsciiBytes(String value) {
+        final byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    private static final class CompiledWhiteList {
+        private final int version;
+        private final BytePrefixTrie trie = new BytePrefixTrie();
+
+        CompiledWhiteList(Set<String> source, int version) {
+            this.version = version;
+            if (source == null) {
+                return;
+            }
+            for (String white : source) {
+                if (white != null) {
+                    trie.add(white.getBytes());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+/**
+ * sql 解析缓存的 key，由 sql、数据源 key、数据库类型、中间件类型组成，
+ * 不再把各部分拼接成一个字符串再在加载时拆开。不需要的部分为 null
+ */
+final class SqlCacheKey {
+    private final String sql;
+    private final String key;
+    private final String dbType;
+    private final String midType;
+    private final int hash;
+
+    SqlCacheKey(String sql, String key, String dbType, String midType) {
+        this.sql = sql;
+        this.key = key;
+        this.dbType = dbType;
+        this.midType = midType;
+        int h = hash(sql);
+        h = 31 * h + hash(key);
+        h = 31 * h + hash(dbType);
+        h = 31 * h + hash(midType);
+        this.hash = h;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getDbType() {
+        return dbType;
+    }
+
+    String getMidType() {
+        return midType;
+    }
+
+    /**
+     * 缓存权重，按 key 中字符串的字符数计算
+     */
+    int weight() {
+        return length(sql) + length(key) + length(dbType) + length(midType);
+    }
+
+    private static int hash(String value) {
+        return value == null ? 0 : value.hashCode();
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SqlCacheKey)) {
+            return false;
+        }
+        SqlCacheKey that = (SqlCacheKey) o;
+        return hash == that.hash
+                && equals(sql, that.sql)
+                && equals(key, that.key)
+                && equals(dbType, that.dbType)
+                && equals(midType, that.midType);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlCacheKey{" +
+                "sql='" + sql + '\'' +
+                ", key='" + key + '\'' +
+                ", dbType='" + dbType + '\'' +
+                ", midType='" + midType + '\'' +
+                '}';
+    }
+}
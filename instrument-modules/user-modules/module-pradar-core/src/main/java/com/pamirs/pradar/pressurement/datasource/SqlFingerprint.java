@@ -0,0 +1,301 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * sql 指纹
+ * <p>
+ * 在词法层面扫描 sql：字符串和数字常量替换成 ?，只包含常量的 IN 列表合并成 IN (?)，连续的空白合并成一个空格，
+ * 其他内容原样保留。常量不同但结构相同的 sql 得到相同的指纹，可以共用同一个影子表改写模板。
+ * <p>
+ * 同时记录 sql 中所有的名称(标识符以及用 . 连接的限定名)的位置，供模板按序号替换表名。
+ * 为了保证指纹相同的 sql 结构一定相同，遇到注释、反斜杠转义、$ 引用、[ ] 引用等不能可靠切分的写法时不生成指纹
+ */
+final class SqlFingerprint {
+
+    private final String sql;
+    private final String fingerprint;
+    private final List<Name> names;
+
+    private SqlFingerprint(String sql, String fingerprint, List<Name> names) {
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.names = names;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    List<Name> getNames() {
+        return names;
+    }
+
+    /**
+     * 生成 sql 指纹
+     *
+     * @param sql sql
+     * @return 指纹，sql 中没有常量或者无法可靠切分时返回 null
+     */
+    static SqlFingerprint of(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        final int length = sql.length();
+        final StringBuilder builder = new StringBuilder(length);
+        final List<Name> names = new ArrayList<Name>();
+        /**
+         * 可能开始 IN 列表的位置：IN 之后的 ( 在 builder 中的位置，以及列表中是否只有常量
+         */
+        int inListStart = -1;
+        boolean afterIn = false;
+        boolean inListOnlyLiterals = false;
+        int literals = 0;
+        Name name = null;
+        boolean expectNamePart = false;
+        int i = 0;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                builder.append(' ');
+                name = null;
+                expectNamePart = false;
+                continue;
+            }
+            if (c == '\'') {
+                final int end = skipQuoted(sql, i, '\'');
+                if (end == -1) {
+                    return null;
+                }
+                i = end;
+                builder.append('?');
+                literals++;
+                name = null;
+                expectNamePart = false;
+                continue;
+            }
+            if (c == '"' || c == '`') {
+                final int end = skipQuoted(sql, i, c);
+                if (end == -1) {
+                    return null;
+                }
+                name = appendNamePart(names, name, expectNamePart, i, end);
+                expectNamePart = false;
+                builder.append(sql, i, end);
+                i = end;
+                afterIn = false;
+                inListOnlyLiterals = false;
+                continue;
+            }
+            if (isWordChar(c)) {
+                int end = i + 1;
+                boolean digits = c >= '0' && c <= '9';
+                while (end < length && isWordChar(sql.charAt(end))) {
+                    if (sql.charAt(end) < '0' || sql.charAt(end) > '9') {
+                        digits = false;
+                    }
+                    end++;
+                }
+                if (digits && !expectNamePart) {
+                    /**
+                     * 数字常量，小数部分单独作为一个数字处理
+                     */
+                    if (end + 1 < length && sql.charAt(end) == '.' && isDigit(sql.charAt(end + 1))) {
+                        end++;
+                        while (end < length && isWordChar(sql.charAt(end))) {
+                            if (!isDigit(sql.charAt(end))) {
+                                return null;
+                            }
+                            end++;
+                        }
+                    }
+                    builder.append('?');
+                    literals++;
+                    name = null;
+                    i = end;
+                    continue;
+                }
+                if (end - i == 2 && !expectNamePart && (sql.charAt(i) == 'i' || sql.charAt(i) == 'I')
+                        && (sql.charAt(i + 1) == 'n' || sql.charAt(i + 1) == 'N')) {
+                    afterIn = true;
+                    builder.append(sql, i, end);
+                    name = null;
+                    i = end;
+                    continue;
+                }
+                name = appendNamePart(names, name, expectNamePart, i, end);
+                expectNamePart = false;
+                builder.append(sql, i, end);
+                i = end;
+                afterIn = false;
+                inListOnlyLiterals = false;
+                continue;
+            }
+            switch (c) {
+                case '#':
+                case '$':
+                case '[':
+                case ']':
+                case '\\':
+                case '{':
+                case '}':
+                    return null;
+                case '-':
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        return null;
+                    }
+                    break;
+                case '/':
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        return null;
+                    }
+                    break;
+                case '<':
+                    if (sql.startsWith("<  >", i)) {
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (c == '.' && name != null) {
+                expectNamePart = true;
+                builder.append(c);
+                i++;
+                continue;
+            }
+            name = null;
+            expectNamePart = false;
+            if (c == '(') {
+                if (afterIn) {
+                    inListStart = builder.length();
+                    inListOnlyLiterals = true;
+                } else {
+                    inListStart = -1;
+                }
+            } else if (c == ')') {
+                if (inListStart != -1 && inListOnlyLiterals) {
+                    /**
+                     * IN 列表中只有常量时合并成一个，列表长度不同的 sql 共用指纹
+                     */
+                    builder.setLength(inListStart);
+                    builder.append("(?)");
+                    inListStart = -1;
+                    afterIn = false;
+                    i++;
+                    continue;
+                }
+                inListStart = -1;
+            } else if (c != ',' && c != '?') {
+                inListOnlyLiterals = false;
+            }
+            afterIn = false;
+            builder.append(c);
+            i++;
+        }
+        if (literals == 0) {
+            return null;
+        }
+        return new SqlFingerprint(sql, builder.toString(), names);
+    }
+
+    private static Name appendNamePart(List<Name> names, Name name, boolean expectNamePart, int start, int end) {
+        if (expectNamePart && name != null) {
+            name.addPart(start, end);
+            return name;
+        }
+        final Name newName = new Name(start, end);
+        names.add(newName);
+        return newName;
+    }
+
+    /**
+     * 跳过引号包围的内容，两个连续的引号表示转义，内容中出现反斜杠时不处理
+     *
+     * @return 结束引号之后的位置，无法处理时返回 -1
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        final int length = sql.length();
+        int i = start + 1;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (c == '\\') {
+                return -1;
+            }
+            if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_' || c >= 0x80;
+    }
+
+    /**
+     * sql 中的一个名称，可能是单个标识符，也可能是 schema.table、table.column 这样的限定名，每一段记录开始和结束位置
+     */
+    static final class Name {
+        private int[] bounds = new int[4];
+        private int parts;
+
+        Name(int start, int end) {
+            addPart(start, end);
+        }
+
+        void addPart(int start, int end) {
+            if (parts * 2 == bounds.length) {
+                int[] newBounds = new int[bounds.length * 2];
+                System.arraycopy(bounds, 0, newBounds, 0, bounds.length);
+                bounds = newBounds;
+            }
+            bounds[parts * 2] = start;
+            bounds[parts * 2 + 1] = end;
+            parts++;
+        }
+
+        int parts() {
+            return parts;
+        }
+
+        int start(int part) {
+            return bounds[part * 2];
+        }
+
+        int end(int part) {
+            return bounds[part * 2 + 1];
+        }
+    }
+}
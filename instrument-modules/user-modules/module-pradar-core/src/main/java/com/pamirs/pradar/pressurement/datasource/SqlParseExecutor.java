@@ -0,0 +1,288 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 首次出现的 sql 的解析线程池
+ * <p>
+ * 压测流量上首次出现的 sql 需要完整的 AST 解析，同一时刻大量不同字面值的同构 sql 涌入时，
+ * 每个业务线程各自解析会同时占满 CPU。这里按 key 合并同时发起的解析，只有一个线程真正解析，
+ * 其他线程等待它的结果；解析在固定大小的线程池中执行，排队数有上限。
+ * <p>
+ * 等待超过超时时间或者线程池已满时，按 {@link SimulatorDynamicConfig#getSqlParserTimeoutPolicy()} 处理：
+ * fail 直接让本次压测请求失败，不阻塞业务线程，已经提交的解析继续执行，结果仍然会进入缓存；
+ * wait 一直等待解析完成，线程池已满时在当前线程中解析。
+ * <p>
+ * debug 流量在当前线程中解析，保证 debug 信息能关联到请求的 trace
+ */
+final class SqlParseExecutor {
+
+    private static final String UNKNOWN_DB_TYPE = "unknown";
+
+    private final int threads;
+    private final int queueSize;
+    private final long timeoutMillis;
+    private final String timeoutPolicy;
+    private final boolean failOnTimeout;
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, SqlParseLatency> latencies = new ConcurrentHashMap<String, SqlParseLatency>();
+    private final AtomicLong joinCount;
+    private final AtomicLong timeoutCount;
+    private final AtomicLong rejectedCount;
+
+    SqlParseExecutor(int threads, int queueSize, long timeoutMillis, String timeoutPolicy, SqlParseExecutor previous) {
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.timeoutMillis = timeoutMillis;
+        this.timeoutPolicy = timeoutPolicy;
+        this.failOnTimeout = !SimulatorDynamicConfig.SQL_PARSER_TIMEOUT_POLICY_WAIT.equals(timeoutPolicy);
+        if (previous != null && previous.threads == threads && previous.queueSize == queueSize
+                && !previous.executor.isShutdown()) {
+            /**
+             * 线程池配置没有变化，继续使用原来的线程池
+             */
+            this.executor = previous.executor;
+        } else {
+            this.executor = newExecutor(threads, queueSize);
+            if (previous != null) {
+                /**
+                 * 已经排队的任务执行完后旧线程池退出
+                 */
+                previous.executor.shutdown();
+            }
+        }
+        if (previous != null) {
+            this.latencies.putAll(previous.latencies);
+            this.joinCount = previous.joinCount;
+            this.timeoutCount = previous.timeoutCount;
+            this.rejectedCount = previous.rejectedCount;
+        } else {
+            this.joinCount = new AtomicLong();
+            this.timeoutCount = new AtomicLong();
+            this.rejectedCount = new AtomicLong();
+        }
+    }
+
+    /**
+     * 线程池是否仍在运行且与给定的配置一致
+     */
+    boolean isConfiguredWith(int threads, int queueSize, long timeoutMillis, String timeoutPolicy) {
+        return this.threads == threads && this.queueSize == queueSize && this.timeoutMillis == timeoutMillis
+                && this.timeoutPolicy.equals(timeoutPolicy) && !executor.isShutdown();
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, int queueSize) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Pradar-SqlParser-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 执行解析，同一个 flights 中相同 key 同时只会有一个解析在执行
+     *
+     * @param flights   正在执行的解析
+     * @param flightKey 合并解析使用的 key
+     * @param source    要解析的 sql
+     * @param task      解析任务
+     * @param deadline  等待的截止时间，{@link System#nanoTime()}
+     * @return 本次执行或者合并到的解析，合并到的解析解析的可能是另外一条 sql，见 {@link Flight#getSource()}
+     * @throws SQLException 解析失败、等待超时或者线程池已满
+     */
+    Flight execute(ConcurrentMap<SqlCacheKey, Flight> flights, SqlCacheKey flightKey, SqlCacheKey source,
+                   Callable<String> task, long deadline) throws SQLException {
+        final SqlParseLatency latency = latency(source.getDbType());
+        if (Pradar.isDebug() || executor.isShutdown()) {
+            Flight flight = new Flight(flightKey, source, null, latency, task);
+            flight.run();
+            return await(flight, deadline);
+        }
+        final Flight flight = new Flight(flightKey, source, flights, latency, task);
+        final Flight exists = flights.putIfAbsent(flightKey, flight);
+        if (exists != null) {
+            joinCount.incrementAndGet();
+            return await(exists, deadline);
+        }
+        try {
+            executor.execute(flight);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            if (failOnTimeout) {
+                /**
+                 * 取消后会从 flights 中移除，已经合并到该解析的线程同样失败
+                 */
+                flight.cancel(false);
+                throw new SQLException("sql parser is busy, threads=" + threads + ", queueSize=" + queueSize
+                        + ", sql=" + source.getSql());
+            }
+            flight.run();
+        }
+        return await(flight, deadline);
+    }
+
+    /**
+     * 计算等待的截止时间
+     *
+     * @return 截止时间，{@link System#nanoTime()}
+     */
+    long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    private Flight await(Flight flight, long deadline) throws SQLException {
+        try {
+            if (failOnTimeout) {
+                flight.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } else {
+                flight.get();
+            }
+            return flight;
+        } catch (TimeoutException e) {
+            timeoutCount.incrementAndGet();
+            throw new SQLException("parse sql timeout, timeout=" + timeoutMillis + "ms, sql=" + flight.getSource().getSql());
+        } catch (CancellationException e) {
+            throw new SQLException("sql parser is busy, threads=" + threads + ", queueSize=" + queueSize
+                    + ", sql=" + flight.getSource().getSql());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("parse sql interrupted, sql=" + flight.getSource().getSql(), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private SqlParseLatency latency(String dbType) {
+        final String name = dbType == null ? UNKNOWN_DB_TYPE : dbType;
+        SqlParseLatency latency = latencies.get(name);
+        if (latency == null) {
+            latency = new SqlParseLatency(name);
+            final SqlParseLatency exists = latencies.putIfAbsent(name, latency);
+            if (exists != null) {
+                latency = exists;
+            }
+        }
+        return latency;
+    }
+
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    SqlParseMetrics metrics(int inFlight) {
+        SqlParseMetrics metrics = new SqlParseMetrics();
+        metrics.setThreads(threads);
+        metrics.setQueueSize(queueSize);
+        metrics.setQueueDepth(executor.getQueue().size());
+        metrics.setInFlight(inFlight);
+        metrics.setTimeoutMillis(timeoutMillis);
+        metrics.setTimeoutPolicy(timeoutPolicy);
+        metrics.setJoinCount(joinCount.get());
+        metrics.setTimeoutCount(timeoutCount.get());
+        metrics.setRejectedCount(rejectedCount.get());
+        List<SqlParseLatencyMetrics> list = new ArrayList<SqlParseLatencyMetrics>(latencies.size());
+        for (SqlParseLatency latency : latencies.values()) {
+            list.add(latency.metrics());
+        }
+        metrics.setLatencies(list);
+        return metrics;
+    }
+
+    /**
+     * 一次解析，完成或者取消后从 flights 中移除
+     */
+    static final class Flight extends FutureTask<String> {
+        private final SqlCacheKey flightKey;
+        private final SqlCacheKey source;
+        private final ConcurrentMap<SqlCacheKey, Flight> flights;
+
+        Flight(SqlCacheKey flightKey, SqlCacheKey source, ConcurrentMap<SqlCacheKey, Flight> flights,
+               final SqlParseLatency latency, final Callable<String> task) {
+            super(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    final long start = System.nanoTime();
+                    try {
+                        return task.call();
+                    } finally {
+                        latency.record(System.nanoTime() - start);
+                    }
+                }
+            });
+            this.flightKey = flightKey;
+            this.source = source;
+            this.flights = flights;
+        }
+
+        /**
+         * 真正解析的 sql
+         */
+        SqlCacheKey getSource() {
+            return source;
+        }
+
+        /**
+         * 解析结果，只有 {@link #getSource()} 与自己要解析的 sql 相同时才能直接使用
+         */
+        String result() throws SQLException {
+            try {
+                return get();
+            } catch (Exception e) {
+                throw new SQLException(e);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (flights != null) {
+                flights.remove(flightKey, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * sql 解析耗时分布
+ * <p>
+ * 按 2 的幂划分的微秒级桶计数，第 i 个桶记录 [2^(i-1), 2^i) 微秒的耗时，百分位取所在桶的上界，
+ * 误差在一倍以内，记录时不加锁、不分配对象
+ */
+final class SqlParseLatency {
+
+    private static final int BUCKETS = 32;
+
+    private final String dbType;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    SqlParseLatency(String dbType) {
+        this.dbType = dbType;
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        final int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    SqlParseLatencyMetrics metrics() {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        SqlParseLatencyMetrics metrics = new SqlParseLatencyMetrics();
+        metrics.setDbType(dbType);
+        metrics.setCount(total);
+        metrics.setAvgMillis(total == 0 ? 0 : totalNanos.get() / (double) count.get() / TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.setMaxMillis(maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.setP50Millis(percentile(counts, total, 0.50));
+        metrics.setP90Millis(percentile(counts, total, 0.90));
+        metrics.setP99Millis(percentile(counts, total, 0.99));
+        return metrics;
+    }
+
+    /**
+     * 百分位所在桶的上界，单位毫秒
+     */
+    private static double percentile(long[] counts, long total, double percent) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(total * percent);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (counts.length - 1)) / 1000.0;
+    }
+}
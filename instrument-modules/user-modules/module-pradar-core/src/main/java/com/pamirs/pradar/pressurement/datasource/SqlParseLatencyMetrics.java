@@ -0,0 +1,128 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.Serializable;
+
+/**
+ * 单个数据库类型的 sql 解析耗时统计，百分位为近似值
+ */
+public class SqlParseLatencyMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 数据库类型
+     */
+    private String dbType;
+
+    /**
+     * 解析次数
+     */
+    private long count;
+
+    /**
+     * 平均耗时，单位毫秒
+     */
+    private double avgMillis;
+
+    /**
+     * 50 分位耗时，单位毫秒
+     */
+    private double p50Millis;
+
+    /**
+     * 90 分位耗时，单位毫秒
+     */
+    private double p90Millis;
+
+    /**
+     * 99 分位耗时，单位毫秒
+     */
+    private double p99Millis;
+
+    /**
+     * 最大耗时，单位毫秒
+     */
+    private double maxMillis;
+
+    public String getDbType() {
+        return dbType;
+    }
+
+    public void setDbType(String dbType) {
+        this.dbType = dbType;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getAvgMillis() {
+        return avgMillis;
+    }
+
+    public void setAvgMillis(double avgMillis) {
+        this.avgMillis = avgMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public void setP50Millis(double p50Millis) {
+        this.p50Millis = p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public void setP90Millis(double p90Millis) {
+        this.p90Millis = p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public void setP99Millis(double p99Millis) {
+        this.p99Millis = p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(double maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlParseLatencyMetrics{" +
+                "dbType='" + dbType + '\'' +
+                ", count=" + count +
+                ", avgMillis=" + avgMillis +
+                ", p50Millis=" + p50Millis +
+                ", p90Millis=" + p90Millis +
+                ", p99Millis=" + p99Millis +
+                ", maxMillis=" + maxMillis +
+                '}';
+    }
+}
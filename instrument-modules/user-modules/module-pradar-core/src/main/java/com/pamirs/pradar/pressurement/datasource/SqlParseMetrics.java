@@ -0,0 +1,171 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * sql 解析线程池的统计信息
+ */
+public class SqlParseMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 解析线程数
+     */
+    private int threads;
+
+    /**
+     * 等待队列容量
+     */
+    private int queueSize;
+
+    /**
+     * 当前排队的解析任务数
+     */
+    private int queueDepth;
+
+    /**
+     * 当前正在解析或者排队的 sql 数
+     */
+    private int inFlight;
+
+    /**
+     * 等待超时时间，单位毫秒
+     */
+    private long timeoutMillis;
+
+    /**
+     * 超时或者线程池已满时的处理方式
+     */
+    private String timeoutPolicy;
+
+    /**
+     * 累计复用其他线程正在进行的解析的次数
+     */
+    private long joinCount;
+
+    /**
+     * 累计等待超时次数
+     */
+    private long timeoutCount;
+
+    /**
+     * 累计因线程池已满被拒绝的次数
+     */
+    private long rejectedCount;
+
+    /**
+     * 按数据库类型统计的解析耗时
+     */
+    private List<SqlParseLatencyMetrics> latencies;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public String getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    public void setTimeoutPolicy(String timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    public long getJoinCount() {
+        return joinCount;
+    }
+
+    public void setJoinCount(long joinCount) {
+        this.joinCount = joinCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public void setTimeoutCount(long timeoutCount) {
+        this.timeoutCount = timeoutCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(long rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public List<SqlParseLatencyMetrics> getLatencies() {
+        return latencies;
+    }
+
+    public void setLatencies(List<SqlParseLatencyMetrics> latencies) {
+        this.latencies = latencies;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlParseMetrics{" +
+                "threads=" + threads +
+                ", queueSize=" + queueSize +
+                ", queueDepth=" + queueDepth +
+                ", inFlight=" + inFlight +
+                ", timeoutMillis=" + timeoutMillis +
+                ", timeoutPolicy='" + timeoutPolicy + '\'' +
+                ", joinCount=" + joinCount +
+                ", timeoutCount=" + timeoutCount +
+                ", rejectedCount=" + rejectedCount +
+                ", latencies=" + latencies +
+                '}';
+    }
+}
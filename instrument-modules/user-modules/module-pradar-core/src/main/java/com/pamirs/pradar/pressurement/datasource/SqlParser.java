@@ -14,9 +14,12 @@
  */
 package com.pamirs.pradar.pressurement.datasource;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.pamirs.pradar.ConfigNames;
 import com.pamirs.pradar.ErrorTypeEnum;
 import com.pamirs.pradar.Pradar;
@@ -26,6 +29,7 @@ import com.pamirs.pradar.internal.config.ShadowDatabaseConfig;
 import com.pamirs.pradar.json.ResultSerializer;
 import com.pamirs.pradar.pressurement.agent.shared.service.ErrorReporter;
 import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
 import com.shulie.druid.DbType;
 import com.shulie.druid.sql.SQLUtils;
 import com.shulie.druid.sql.ast.SQLStatement;
@@ -41,10 +45,20 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -56,81 +70,188 @@ import java.util.concurrent.TimeUnit;
 public class SqlParser {
     private final static Logger LOGGER = LoggerFactory.getLogger(SqlParser.class);
     public static String lowerCase;
-    private static LoadingCache<String, TableParserResult> cacheSqlTablesBuilder = CacheBuilder.newBuilder()
-            .maximumSize(300).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
 
-                    new CacheLoader<String, TableParserResult>() {
-                        @Override
-                        public TableParserResult load(String name) throws Exception {
-                            try {
-                                String[] args = StringUtils.splitByWholeSeparator(name, "$$$$");
-                                String sql = args[0];
-                                String dbType = args[1];
-                                if ("null".equals(dbType)) {
-                                    dbType = null;
-                                }
-                                return parseTables(sql, dbType);
-                            } catch (SQLException e) {
-                                return TableParserResult.EMPTY;
-                            }
-                        }
-                    }
+    /**
+     * 预热文件中最多记录的 sql 条数
+     */
+    private static final int MAX_WARM_UP_SQL_COUNT = 5000;
+    /**
+     * 超过该长度的 sql 不记录到预热文件中
+     */
+    private static final int MAX_WARM_UP_SQL_LENGTH = 16 * 1024;
+    private static final String WARM_UP_FILE = Pradar.PRADAR_LOG_DIR + "sql-parser-warmup.dat";
 
-            );
-    private static LoadingCache<String, String> cacheTableModeBuilder = CacheBuilder.newBuilder()
-            .maximumSize(300).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
+    /**
+     * 正在执行的影子表/影子库改写解析，按 sql 指纹合并
+     */
+    private static final ConcurrentMap<SqlCacheKey, SqlParseExecutor.Flight> TABLE_FLIGHTS = new ConcurrentHashMap<SqlCacheKey, SqlParseExecutor.Flight>();
+    private static final ConcurrentMap<SqlCacheKey, SqlParseExecutor.Flight> SCHEMA_FLIGHTS = new ConcurrentHashMap<SqlCacheKey, SqlParseExecutor.Flight>();
 
-                    new CacheLoader<String, String>() {
-                        @Override
-                        public String load(String name) throws Exception {
-                            String[] args = StringUtils.splitByWholeSeparator(name, "$$$$");
-                            String sql = args[0];
-                            String key = args[1];
-                            String dbType = args[2];
-                            if ("null".equals(dbType)) {
-                                dbType = null;
-                            }
-                            String midType = args[3];
-                            return parseAndReplaceTableNames(sql, key, dbType, midType);
-                        }
-                    }
+    private static volatile SqlParserCaches caches = new SqlParserCaches(null, null);
 
-            );
-    private static LoadingCache<String, String> cacheSchemaModeBuilder = CacheBuilder.newBuilder()
-            .maximumSize(300).expireAfterAccess(5 * 60, TimeUnit.SECONDS).build(
+    /**
+     * 获取当前的缓存，动态配置中 sql 解析相关的配置值变化时重建缓存，已有的结果迁移到新缓存中。
+     * 动态配置的其他项变化时只记下新的配置对象，不重建
+     */
+    static SqlParserCaches caches() {
+        SqlParserCaches current = caches;
+        SimulatorDynamicConfig config = GlobalConfig.getInstance().getSimulatorDynamicConfig();
+        if (current.config == config) {
+            return current;
+        }
+        if (current.isBuiltFrom(config)) {
+            current.config = config;
+            return current;
+        }
+        synchronized (SqlParser.class) {
+            current = caches;
+            if (current.config != config && !current.isBuiltFrom(config)) {
+                current = new SqlParserCaches(config, current);
+                caches = current;
+            }
+            return current;
+        }
+    }
 
-                    new CacheLoader<String, String>() {
-                        @Override
-                        public String load(String name) throws Exception {
-                            String[] args = StringUtils.splitByWholeSeparator(name, "$$$$");
-                            String sql = args[0];
-                            String key = args[1];
-                            String dbType = args[2];
-                            if ("null".equals(dbType)) {
-                                dbType = null;
-                            }
-                            return parseAndReplaceSchema(sql, key, dbType);
+    public static void clear() {
+        SqlParserCaches current = caches;
+        current.schemaMode.invalidateAll();
+        current.tableMode.invalidateAll();
+        current.schemaTemplates.invalidateAll();
+        current.tableTemplates.invalidateAll();
+    }
+
+    public static void release() {
+        SqlParserCaches current = caches;
+        if (GlobalConfig.getInstance().getSimulatorDynamicConfig().isSqlParserCacheWarmUp()) {
+            saveWarmUpSql(current);
+        }
+        current.schemaMode.invalidateAll();
+        current.tableMode.invalidateAll();
+        current.tables.invalidateAll();
+        current.schemaTemplates.invalidateAll();
+        current.tableTemplates.invalidateAll();
+        current.parseExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取 sql 解析线程池的统计信息
+     *
+     * @return 统计信息
+     */
+    public static SqlParseMetrics getParseMetrics() {
+        return caches.parseExecutor.metrics(TABLE_FLIGHTS.size() + SCHEMA_FLIGHTS.size());
+    }
+
+    /**
+     * 获取 sql 解析缓存的统计信息
+     *
+     * @return 统计信息
+     */
+    public static List<SqlParserCacheMetrics> getCacheMetrics() {
+        SqlParserCaches current = caches;
+        List<SqlParserCacheMetrics> metrics = new ArrayList<SqlParserCacheMetrics>(5);
+        metrics.add(current.metrics("tables", current.tables, current.tablesBaseStats));
+        metrics.add(current.metrics("tableMode", current.tableMode, current.tableModeBaseStats));
+        metrics.add(current.metrics("schemaMode", current.schemaMode, current.schemaModeBaseStats));
+        metrics.add(current.metrics("tableTemplate", current.tableTemplates, current.tableTemplatesBaseStats));
+        metrics.add(current.metrics("schemaTemplate", current.schemaTemplates, current.schemaTemplatesBaseStats));
+        return metrics;
+    }
+
+    /**
+     * 用上一次运行记录下来的 sql 预热表名解析缓存，在后台线程中执行。
+     * 表名/库名的改写依赖影子库配置，不做预热
+     */
+    public static void warmUp() {
+        final File file = new File(WARM_UP_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                int count = 0;
+                DataInputStream in = null;
+                try {
+                    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    int size = Math.min(in.readInt(), MAX_WARM_UP_SQL_COUNT);
+                    for (int i = 0; i < size; i++) {
+                        String dbType = in.readUTF();
+                        String sql = in.readUTF();
+                        try {
+                            caches().tables.get(new SqlCacheKey(sql, null, dbType.length() == 0 ? null : dbType, null));
+                            count++;
+                        } catch (Throwable e) {
+                            //单条 sql 解析失败不影响后续的预热
                         }
                     }
+                } catch (Throwable e) {
+                    LOGGER.warn("warm up sql parser cache from {} failed.", WARM_UP_FILE, e);
+                } finally {
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                        }
+                    }
+                }
+                LOGGER.info("warm up sql parser cache with {} sql, cost {}ms.", count, System.currentTimeMillis() - start);
+            }
+        }, "Pradar-SqlParser-WarmUp");
+        t.setDaemon(true);
+        t.start();
+    }
 
-            );
-
-    public static void clear() {
-        cacheSchemaModeBuilder.invalidateAll();
-        cacheTableModeBuilder.invalidateAll();
+    /**
+     * 记录当前缓存中的 sql，供下次启动时预热
+     */
+    private static void saveWarmUpSql(SqlParserCaches current) {
+        Set<SqlCacheKey> keys = new LinkedHashSet<SqlCacheKey>();
+        collectWarmUpKeys(keys, current.tables.asMap().keySet());
+        collectWarmUpKeys(keys, current.tableMode.asMap().keySet());
+        collectWarmUpKeys(keys, current.schemaMode.asMap().keySet());
+        if (keys.isEmpty()) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(WARM_UP_FILE)));
+            out.writeInt(keys.size());
+            for (SqlCacheKey key : keys) {
+                out.writeUTF(key.getDbType() == null ? "" : key.getDbType());
+                out.writeUTF(key.getSql());
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("save sql parser warm up file {} failed.", WARM_UP_FILE, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
     }
 
-    public static void release() {
-        cacheSchemaModeBuilder.invalidateAll();
-        cacheTableModeBuilder.invalidateAll();
-        cacheSqlTablesBuilder.invalidateAll();
+    private static void collectWarmUpKeys(Set<SqlCacheKey> keys, Set<SqlCacheKey> source) {
+        for (SqlCacheKey key : source) {
+            if (keys.size() >= MAX_WARM_UP_SQL_COUNT) {
+                return;
+            }
+            if (key.getSql() == null || key.getSql().length() > MAX_WARM_UP_SQL_LENGTH) {
+                continue;
+            }
+            keys.add(new SqlCacheKey(key.getSql(), null, key.getDbType(), null));
+        }
     }
 
     public static TableParserResult getTables(String sql, String dbType) {
         String innerDbtype = dbType;
         //影子表压测
         try {
-            return cacheSqlTablesBuilder.get(sql + "$$$$" + innerDbtype);
+            return caches().tables.get(new SqlCacheKey(sql, null, innerDbtype, null));
         } catch (Throwable e) {
             LOGGER.error("parse sql tables error. sql={}, dbType={} ", sql, dbType, e);
             return TableParserResult.EMPTY;
@@ -199,7 +320,7 @@ public class SqlParser {
         String innerDbtype = dbType;
         //影子表压测
         try {
-            return cacheTableModeBuilder.get(sql + "$$$$" + key + "$$$$" + innerDbtype + "$$$$" + midType);
+            return caches().tableMode.get(new SqlCacheKey(sql, key, innerDbtype, midType));
         } catch (Throwable e) {
             LOGGER.error("replace table to shadow table error. sql={}, key={}, dbType={}", sql, dbConnectionKey, dbType,
                     e);
@@ -227,7 +348,7 @@ public class SqlParser {
         String innerDbtype = dbType;
         //影子表压测
         try {
-            return cacheSchemaModeBuilder.get(sql + "$$$$" + key + "$$$$" + innerDbtype);
+            return caches().schemaMode.get(new SqlCacheKey(sql, key, innerDbtype, null));
         } catch (Throwable e) {
             LOGGER.error("replace schema to shadow schema error. sql={}, key={}, dbType={}", sql, dbConnectionKey,
                     dbType, e);
@@ -362,6 +483,13 @@ public class SqlParser {
      * @throws SQLException
      */
     public static String parseAndReplaceSchema(String sql, String key, String dbTypeName) throws SQLException {
+        return parseAndReplaceSchema(sql, key, dbTypeName, null);
+    }
+
+    /**
+     * @param mappings 不为 null 时记录每条语句改写使用的表名映射
+     */
+    private static String parseAndReplaceSchema(String sql, String key, String dbTypeName, List<Map<String, String>> mappings) throws SQLException {
         sql = sql.replaceAll("<  >", "<>");
         ShadowDatabaseConfig config = GlobalConfig.getInstance().getShadowDatabaseConfig(key);
         if (config == null) {
@@ -415,6 +543,9 @@ public class SqlParser {
                         map.put(schema, shadowSchema);
                     }
                 }
+                if (mappings != null) {
+                    mappings.add(map);
+                }
                 visitor.setTableMapping(map);
                 sqlStatement.accept(visitor);
             }
@@ -430,6 +561,14 @@ public class SqlParser {
     }
 
     public static String parseAndReplaceTableNames(String sql, String key, String dbTypeName, String midType) throws SQLException {
+        return parseAndReplaceTableNames(sql, key, dbTypeName, midType, null);
+    }
+
+    /**
+     * @param mappings 不为 null 时记录每条语句改写使用的表名映射
+     */
+    private static String parseAndReplaceTableNames(String sql, String key, String dbTypeName, String midType,
+                                                    List<Map<String, String>> mappings) throws SQLException {
 
         sql = sql.replaceAll("<  >", "<>");
         DbType dbType = DbType.of(dbTypeName);
@@ -526,6 +665,9 @@ public class SqlParser {
                     mappingTable.putAll(additionalTableNames);
                 }
 
+                if (mappings != null) {
+                    mappings.add(new HashMap<String, String>(mappingTable));
+                }
                 visitor.setTableMapping(mappingTable);
                 sqlStatement.accept(visitor);
             }
@@ -647,4 +789,241 @@ public class SqlParser {
 
         System.out.println(parseAndReplaceTableNames(sql, gbase8tKey, "gbase8t", "druid"));
     }
+
+    /**
+     * sql 解析缓存及改写模板缓存，按 sql 等字符串的长度计算权重，大小和过期时间取自 {@link SimulatorDynamicConfig}，
+     * 改写时首次出现的 sql 交给 {@link SqlParseExecutor} 解析
+     */
+    static final class SqlParserCaches {
+        /**
+         * 最近一次确认过配置值一致的动态配置
+         */
+        private volatile SimulatorDynamicConfig config;
+        private final long maxWeight;
+        private final long expireSeconds;
+        private final LoadingCache<SqlCacheKey, TableParserResult> tables;
+        private final LoadingCache<SqlCacheKey, String> tableMode;
+        private final LoadingCache<SqlCacheKey, String> schemaMode;
+        /**
+         * 按 sql 指纹缓存的改写模板
+         */
+        private final Cache<SqlCacheKey, SqlTemplate> tableTemplates;
+        private final Cache<SqlCacheKey, SqlTemplate> schemaTemplates;
+        /**
+         * 缓存重建之前累计的统计
+         */
+        private final CacheStats tablesBaseStats;
+        private final CacheStats tableModeBaseStats;
+        private final CacheStats schemaModeBaseStats;
+        private final CacheStats tableTemplatesBaseStats;
+        private final CacheStats schemaTemplatesBaseStats;
+        private final SqlParseExecutor parseExecutor;
+
+        SqlParserCaches(SimulatorDynamicConfig config, SqlParserCaches previous) {
+            this.config = config;
+            this.parseExecutor = new SqlParseExecutor(
+                    config == null ? (int) SimulatorDynamicConfig.DEFAULT_SQL_PARSER_THREADS : config.getSqlParserThreads(),
+                    config == null ? (int) SimulatorDynamicConfig.DEFAULT_SQL_PARSER_QUEUE_SIZE : config.getSqlParserQueueSize(),
+                    config == null ? SimulatorDynamicConfig.DEFAULT_SQL_PARSER_TIMEOUT_MILLIS : config.getSqlParserTimeoutMillis(),
+                    config == null ? SimulatorDynamicConfig.SQL_PARSER_TIMEOUT_POLICY_FAIL : config.getSqlParserTimeoutPolicy(),
+                    previous == null ? null : previous.parseExecutor);
+            this.maxWeight = config == null ? SimulatorDynamicConfig.DEFAULT_SQL_PARSER_CACHE_MAX_WEIGHT : config.getSqlParserCacheMaxWeight();
+            this.expireSeconds = config == null ? SimulatorDynamicConfig.DEFAULT_SQL_PARSER_CACHE_EXPIRE_SECONDS : config.getSqlParserCacheExpireSeconds();
+            if (previous != null && previous.maxWeight == maxWeight && previous.expireSeconds == expireSeconds) {
+                /**
+                 * 配置没有变化，继续使用原来的缓存
+                 */
+                this.tables = previous.tables;
+                this.tableMode = previous.tableMode;
+                this.schemaMode = previous.schemaMode;
+                this.tablesBaseStats = previous.tablesBaseStats;
+                this.tableModeBaseStats = previous.tableModeBaseStats;
+                this.schemaModeBaseStats = previous.schemaModeBaseStats;
+                this.tableTemplates = previous.tableTemplates;
+                this.schemaTemplates = previous.schemaTemplates;
+                this.tableTemplatesBaseStats = previous.tableTemplatesBaseStats;
+                this.schemaTemplatesBaseStats = previous.schemaTemplatesBaseStats;
+                return;
+            }
+            this.tableTemplates = newBuilder().build();
+            this.schemaTemplates = newBuilder().build();
+            this.tables = newBuilder().build(new CacheLoader<SqlCacheKey, TableParserResult>() {
+                @Override
+                public TableParserResult load(SqlCacheKey key) throws Exception {
+                    try {
+                        return parseTables(key.getSql(), key.getDbType());
+                    } catch (SQLException e) {
+                        return TableParserResult.EMPTY;
+                    }
+                }
+            });
+            this.tableMode = newBuilder().build(new CacheLoader<SqlCacheKey, String>() {
+                @Override
+                public String load(SqlCacheKey key) throws Exception {
+                    return replaceWithTemplate(key, tableTemplates, true);
+                }
+            });
+            this.schemaMode = newBuilder().build(new CacheLoader<SqlCacheKey, String>() {
+                @Override
+                public String load(SqlCacheKey key) throws Exception {
+                    return replaceWithTemplate(key, schemaTemplates, false);
+                }
+            });
+            if (previous == null) {
+                this.tablesBaseStats = new CacheStats(0, 0, 0, 0, 0, 0);
+                this.tableModeBaseStats = tablesBaseStats;
+                this.schemaModeBaseStats = tablesBaseStats;
+                this.tableTemplatesBaseStats = tablesBaseStats;
+                this.schemaTemplatesBaseStats = tablesBaseStats;
+            } else {
+                this.tables.putAll(previous.tables.asMap());
+                this.tableMode.putAll(previous.tableMode.asMap());
+                this.schemaMode.putAll(previous.schemaMode.asMap());
+                this.tablesBaseStats = previous.tablesBaseStats.plus(previous.tables.stats());
+                this.tableModeBaseStats = previous.tableModeBaseStats.plus(previous.tableMode.stats());
+                this.schemaModeBaseStats = previous.schemaModeBaseStats.plus(previous.schemaMode.stats());
+                this.tableTemplates.putAll(previous.tableTemplates.asMap());
+                this.schemaTemplates.putAll(previous.schemaTemplates.asMap());
+                this.tableTemplatesBaseStats = previous.tableTemplatesBaseStats.plus(previous.tableTemplates.stats());
+                this.schemaTemplatesBaseStats = previous.schemaTemplatesBaseStats.plus(previous.schemaTemplates.stats());
+                previous.tables.invalidateAll();
+                previous.tableMode.invalidateAll();
+                previous.schemaMode.invalidateAll();
+                previous.tableTemplates.invalidateAll();
+                previous.schemaTemplates.invalidateAll();
+            }
+        }
+
+        /**
+         * 缓存和解析线程池是否按给定配置中的值创建
+         */
+        private boolean isBuiltFrom(SimulatorDynamicConfig config) {
+            if (config == null) {
+                return this.config == null;
+            }
+            return maxWeight == config.getSqlParserCacheMaxWeight()
+                    && expireSeconds == config.getSqlParserCacheExpireSeconds()
+                    && parseExecutor.isConfiguredWith(config.getSqlParserThreads(), config.getSqlParserQueueSize(),
+                    config.getSqlParserTimeoutMillis(), config.getSqlParserTimeoutPolicy());
+        }
+
+        /**
+         * 改写 sql，指纹相同的 sql 已经有模板时直接按模板替换表名，否则走完整的 AST 解析并创建模板。
+         * 完整解析在 {@link SqlParseExecutor} 中执行，指纹相同的 sql 同时只解析一条，其他的等待模板创建完成后直接套用
+         *
+         * @param key       缓存 key
+         * @param templates 模板缓存
+         * @param tableMode true 为影子表改写，false 为影子库改写
+         * @return 改写后的 sql
+         */
+        private String replaceWithTemplate(final SqlCacheKey key, final Cache<SqlCacheKey, SqlTemplate> templates,
+                                           final boolean tableMode) throws SQLException {
+            final ConcurrentMap<SqlCacheKey, SqlParseExecutor.Flight> flights = tableMode ? TABLE_FLIGHTS : SCHEMA_FLIGHTS;
+            final long deadline = parseExecutor.deadline();
+            final SqlFingerprint fingerprint = SqlFingerprint.of(key.getSql());
+            if (fingerprint == null) {
+                return parse(flights, key, tableMode, deadline);
+            }
+            final SqlCacheKey templateKey = new SqlCacheKey(fingerprint.getFingerprint(), key.getKey(), key.getDbType(), key.getMidType());
+            SqlTemplate template = templates.getIfPresent(templateKey);
+            if (template == null) {
+                final SqlParseExecutor.Flight flight = parseExecutor.execute(flights, templateKey, key, new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return replaceAndBuildTemplate(key, fingerprint, templateKey, templates, tableMode);
+                    }
+                }, deadline);
+                if (flight.getSource().equals(key)) {
+                    return flight.result();
+                }
+                /**
+                 * 合并到了同指纹的另一条 sql 的解析，模板已经创建
+                 */
+                template = templates.getIfPresent(templateKey);
+            }
+            if (template != null && template.isSpliceable()) {
+                return template.apply(fingerprint);
+            }
+            return parse(flights, key, tableMode, deadline);
+        }
+
+        private String replaceAndBuildTemplate(SqlCacheKey key, SqlFingerprint fingerprint, SqlCacheKey templateKey,
+                                               Cache<SqlCacheKey, SqlTemplate> templates, boolean tableMode) throws SQLException {
+            final List<Map<String, String>> mappings = new ArrayList<Map<String, String>>(1);
+            final String result = replace(key, tableMode, mappings);
+            SqlTemplate newTemplate = SqlTemplate.NOT_SPLICEABLE;
+            if (mappings.size() == 1) {
+                try {
+                    newTemplate = SqlTemplate.build(fingerprint, mappings.get(0), result, key.getDbType());
+                } catch (Throwable e) {
+                    LOGGER.warn("build sql template error. sql={}", key.getSql(), e);
+                }
+            }
+            templates.put(templateKey, newTemplate);
+            return result;
+        }
+
+        /**
+         * 不使用模板，完整解析这条 sql
+         */
+        private String parse(ConcurrentMap<SqlCacheKey, SqlParseExecutor.Flight> flights, final SqlCacheKey key,
+                             final boolean tableMode, long deadline) throws SQLException {
+            final SqlParseExecutor.Flight flight = parseExecutor.execute(flights, key, key, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return replace(key, tableMode, null);
+                }
+            }, deadline);
+            if (flight.getSource().equals(key)) {
+                return flight.result();
+            }
+            /**
+             * 与另一条 sql 的指纹恰好相同，在当前线程中解析
+             */
+            return replace(key, tableMode, null);
+        }
+
+        private String replace(SqlCacheKey key, boolean tableMode, List<Map<String, String>> mappings) throws SQLException {
+            if (tableMode) {
+                return parseAndReplaceTableNames(key.getSql(), key.getKey(), key.getDbType(), key.getMidType(), mappings);
+            }
+            return parseAndReplaceSchema(key.getSql(), key.getKey(), key.getDbType(), mappings);
+        }
+
+        private CacheBuilder<SqlCacheKey, Object> newBuilder() {
+            return CacheBuilder.newBuilder()
+                    .maximumWeight(maxWeight)
+                    .weigher(new Weigher<SqlCacheKey, Object>() {
+                        @Override
+                        public int weigh(SqlCacheKey key, Object value) {
+                            int weight = key.weight();
+                            if (value instanceof String) {
+                                weight += ((String) value).length();
+                            } else if (value instanceof SqlTemplate) {
+                                weight += ((SqlTemplate) value).weight();
+                            }
+                            return Math.max(weight, 1);
+                        }
+                    })
+                    .expireAfterAccess(expireSeconds, TimeUnit.SECONDS)
+                    .recordStats();
+        }
+
+        private SqlParserCacheMetrics metrics(String name, Cache<SqlCacheKey, ?> cache, CacheStats baseStats) {
+            CacheStats stats = baseStats.plus(cache.stats());
+            SqlParserCacheMetrics metrics = new SqlParserCacheMetrics();
+            metrics.setName(name);
+            metrics.setMaxWeight(maxWeight);
+            metrics.setSize(cache.size());
+            metrics.setHitCount(stats.hitCount());
+            metrics.setMissCount(stats.missCount());
+            metrics.setHitRate(stats.hitRate());
+            metrics.setLoadSuccessCount(stats.loadSuccessCount());
+            metrics.setLoadExceptionCount(stats.loadExceptionCount());
+            metrics.setTotalLoadTimeMillis(TimeUnit.NANOSECONDS.toMillis(stats.totalLoadTime()));
+            metrics.setAverageLoadMillis(stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1));
+            metrics.setEvictionCount(stats.evictionCount());
+            return metrics;
+        }
+    }
 }
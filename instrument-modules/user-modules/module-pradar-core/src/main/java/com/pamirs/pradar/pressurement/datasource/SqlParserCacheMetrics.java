@@ -0,0 +1,184 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.Serializable;
+
+/**
+ * sql 解析缓存的统计信息
+ */
+public class SqlParserCacheMetrics implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 缓存名称
+     */
+    private String name;
+
+    /**
+     * 最大权重
+     */
+    private long maxWeight;
+
+    /**
+     * 当前缓存的条数
+     */
+    private long size;
+
+    /**
+     * 累计命中次数
+     */
+    private long hitCount;
+
+    /**
+     * 累计未命中次数
+     */
+    private long missCount;
+
+    /**
+     * 命中率
+     */
+    private double hitRate;
+
+    /**
+     * 累计解析成功次数
+     */
+    private long loadSuccessCount;
+
+    /**
+     * 累计解析失败次数
+     */
+    private long loadExceptionCount;
+
+    /**
+     * 累计解析耗时，单位毫秒
+     */
+    private long totalLoadTimeMillis;
+
+    /**
+     * 平均每次解析耗时，单位毫秒
+     */
+    private double averageLoadMillis;
+
+    /**
+     * 累计被移除的条数
+     */
+    private long evictionCount;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public void setMissCount(long missCount) {
+        this.missCount = missCount;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    public void setHitRate(double hitRate) {
+        this.hitRate = hitRate;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public void setLoadSuccessCount(long loadSuccessCount) {
+        this.loadSuccessCount = loadSuccessCount;
+    }
+
+    public long getLoadExceptionCount() {
+        return loadExceptionCount;
+    }
+
+    public void setLoadExceptionCount(long loadExceptionCount) {
+        this.loadExceptionCount = loadExceptionCount;
+    }
+
+    public long getTotalLoadTimeMillis() {
+        return totalLoadTimeMillis;
+    }
+
+    public void setTotalLoadTimeMillis(long totalLoadTimeMillis) {
+        this.totalLoadTimeMillis = totalLoadTimeMillis;
+    }
+
+    public double getAverageLoadMillis() {
+        return averageLoadMillis;
+    }
+
+    public void setAverageLoadMillis(double averageLoadMillis) {
+        this.averageLoadMillis = averageLoadMillis;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public void setEvictionCount(long evictionCount) {
+        this.evictionCount = evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlParserCacheMetrics{" +
+                "name='" + name + '\'' +
+                ", maxWeight=" + maxWeight +
+                ", size=" + size +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", hitRate=" + hitRate +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadExceptionCount=" + loadExceptionCount +
+                ", totalLoadTimeMillis=" + totalLoadTimeMillis +
+                ", averageLoadMillis=" + averageLoadMillis +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+}
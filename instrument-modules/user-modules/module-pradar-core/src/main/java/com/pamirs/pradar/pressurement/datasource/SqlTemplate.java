@@ -0,0 +1,243 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.shulie.druid.DbType;
+import com.shulie.druid.sql.SQLUtils;
+import com.shulie.druid.sql.ast.SQLStatement;
+import com.shulie.druid.sql.parser.SQLParserUtils;
+import com.shulie.druid.sql.parser.SQLStatementParser;
+
+/**
+ * 影子表/影子库改写模板
+ * <p>
+ * 同一个指纹的 sql 第一次改写时仍然走完整的 AST 解析，同时根据这次解析用到的表名映射，在 sql 的名称中找出被替换的位置，
+ * 记录成按名称序号的替换列表。替换后的 sql 要再解析一次，和 AST 改写的结果输出一致才认为模板有效。
+ * 之后指纹相同的 sql 只需要按序号把对应位置的名称替换掉，不再做 AST 解析。
+ * <p>
+ * 模板创建后只读
+ */
+final class SqlTemplate {
+
+    /**
+     * 无法通过替换得到与 AST 改写一致的结果，指纹相同的 sql 继续走完整解析
+     */
+    static final SqlTemplate NOT_SPLICEABLE = new SqlTemplate(new int[0], new String[0]);
+
+    private static final String[] TABLE_KEYWORDS = {"FROM", "JOIN", "UPDATE", "INTO", "TABLE"};
+
+    /**
+     * 候选的替换方式，按顺序尝试，第一个通过校验的作为模板
+     */
+    private static final int ALL_NAMES = 0;
+    private static final int TABLE_OR_LIST_POSITIONS = 1;
+    private static final int TABLE_POSITIONS_WITH_OWNERS = 2;
+    private static final int TABLE_POSITIONS = 3;
+
+    /**
+     * 每个替换占 3 个 int：名称序号、开始段、结束段(不包含)
+     */
+    private final int[] operations;
+    private final String[] replacements;
+
+    private SqlTemplate(int[] operations, String[] replacements) {
+        this.operations = operations;
+        this.replacements = replacements;
+    }
+
+    boolean isSpliceable() {
+        return this != NOT_SPLICEABLE;
+    }
+
+    int weight() {
+        int weight = operations.length;
+        for (String replacement : replacements) {
+            weight += replacement.length();
+        }
+        return weight;
+    }
+
+    /**
+     * 对指纹相同的 sql 应用模板
+     *
+     * @param fingerprint sql 指纹
+     * @return 改写后的 sql
+     */
+    String apply(SqlFingerprint fingerprint) {
+        final String sql = fingerprint.getSql();
+        if (replacements.length == 0) {
+            return sql;
+        }
+        final List<SqlFingerprint.Name> names = fingerprint.getNames();
+        final StringBuilder builder = new StringBuilder(sql.length() + 16 * replacements.length);
+        int last = 0;
+        for (int i = 0; i < replacements.length; i++) {
+            final SqlFingerprint.Name name = names.get(operations[i * 3]);
+            final int start = name.start(operations[i * 3 + 1]);
+            final int end = name.end(operations[i * 3 + 2] - 1);
+            builder.append(sql, last, start).append(replacements[i]);
+            last = end;
+        }
+        builder.append(sql, last, sql.length());
+        return builder.toString();
+    }
+
+    /**
+     * 根据一次 AST 改写的结果创建模板
+     *
+     * @param fingerprint sql 指纹
+     * @param mapping     AST 改写时使用的表名映射
+     * @param expected    AST 改写的结果
+     * @param dbTypeName  数据库类型
+     * @return 模板，无法得到一致结果时返回 {@link #NOT_SPLICEABLE}
+     */
+    static SqlTemplate build(SqlFingerprint fingerprint, Map<String, String> mapping, String expected, String dbTypeName) {
+        String tried = null;
+        for (int mode = ALL_NAMES; mode <= TABLE_POSITIONS; mode++) {
+            final SqlTemplate template = candidate(fingerprint, mapping, mode);
+            final String sql = template.apply(fingerprint);
+            if (sql.equals(tried)) {
+                continue;
+            }
+            tried = sql;
+            try {
+                if (expected.equals(format(sql, dbTypeName))) {
+                    return template;
+                }
+            } catch (Throwable e) {
+                //替换后无法解析，尝试下一种替换方式
+            }
+        }
+        return NOT_SPLICEABLE;
+    }
+
+    private static SqlTemplate candidate(SqlFingerprint fingerprint, Map<String, String> mapping, int mode) {
+        final String sql = fingerprint.getSql();
+        final List<SqlFingerprint.Name> names = fingerprint.getNames();
+        final List<Integer> operations = new ArrayList<Integer>();
+        final List<String> replacements = new ArrayList<String>();
+        for (int i = 0, size = names.size(); i < size; i++) {
+            final SqlFingerprint.Name name = names.get(i);
+            final int parts = name.parts();
+            if (mode == ALL_NAMES || isTablePosition(sql, name.start(0), mode == TABLE_OR_LIST_POSITIONS)) {
+                /**
+                 * 先按完整的限定名查找，再按最后一段查找
+                 */
+                String replacement = mapping.get(text(sql, name, 0, parts));
+                if (replacement != null) {
+                    add(operations, replacements, i, 0, parts, replacement);
+                    continue;
+                }
+                if (parts > 1) {
+                    replacement = mapping.get(text(sql, name, parts - 1, parts));
+                    if (replacement != null) {
+                        add(operations, replacements, i, parts - 1, parts, replacement);
+                        continue;
+                    }
+                }
+            }
+            if (parts > 1 && mode != TABLE_POSITIONS) {
+                /**
+                 * 列引用 table.column、schema.table.column 中的表名
+                 */
+                String replacement = mapping.get(text(sql, name, 0, parts - 1));
+                if (replacement != null) {
+                    add(operations, replacements, i, 0, parts - 1, replacement);
+                } else if (parts > 2 && (replacement = mapping.get(text(sql, name, parts - 2, parts - 1))) != null) {
+                    add(operations, replacements, i, parts - 2, parts - 1, replacement);
+                }
+            }
+        }
+        final int[] ops = new int[operations.size()];
+        for (int i = 0; i < ops.length; i++) {
+            ops[i] = operations.get(i);
+        }
+        return new SqlTemplate(ops, replacements.toArray(new String[replacements.size()]));
+    }
+
+    private static void add(List<Integer> operations, List<String> replacements, int name, int from, int to, String replacement) {
+        operations.add(name);
+        operations.add(from);
+        operations.add(to);
+        replacements.add(replacement);
+    }
+
+    /**
+     * 名称中 [from, to) 段去掉引号后用 . 连接的文本
+     */
+    private static String text(String sql, SqlFingerprint.Name name, int from, int to) {
+        final StringBuilder builder = new StringBuilder();
+        for (int part = from; part < to; part++) {
+            if (part > from) {
+                builder.append('.');
+            }
+            int start = name.start(part);
+            int end = name.end(part);
+            final char c = sql.charAt(start);
+            if ((c == '`' || c == '"') && end - start >= 2) {
+                start++;
+                end--;
+            }
+            builder.append(sql, start, end);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 名称前面是否是 FROM、JOIN 等后面跟表名的关键字，includeComma 为 true 时前面是逗号也算
+     */
+    private static boolean isTablePosition(String sql, int start, boolean includeComma) {
+        int i = start - 1;
+        while (i >= 0 && Character.isWhitespace(sql.charAt(i))) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        if (sql.charAt(i) == ',') {
+            return includeComma;
+        }
+        final int end = i + 1;
+        while (i >= 0 && Character.isLetter(sql.charAt(i))) {
+            i--;
+        }
+        final int length = end - i - 1;
+        for (String keyword : TABLE_KEYWORDS) {
+            if (keyword.length() == length && sql.regionMatches(true, i + 1, keyword, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用和 AST 改写相同的方式输出 sql，用于校验替换结果
+     */
+    private static String format(String sql, String dbTypeName) {
+        final SQLStatementParser parser = SQLParserUtils.createSQLStatementParser(sql, dbTypeName);
+        final List<SQLStatement> statements = parser.parseStatementList();
+        final StringWriter val = new StringWriter();
+        final DbType dbType = DbType.of(dbTypeName);
+        for (SQLStatement statement : statements) {
+            statement.accept(SQLUtils.createOutputVisitor(val, dbType));
+        }
+        return val.toString();
+    }
+}
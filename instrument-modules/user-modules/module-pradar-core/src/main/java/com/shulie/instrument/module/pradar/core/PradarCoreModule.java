@@ -15,6 +15,7 @@
 package com.shulie.instrument.module.pradar.core;
 
 import com.pamirs.pradar.Pradar;
+import com.pamirs.pradar.PradarRuntimeConfig;
 import com.pamirs.pradar.PradarService;
 import com.pamirs.pradar.PradarSwitcher;
 import com.pamirs.pradar.common.ClassUtils;
@@ -107,6 +108,8 @@ public class PradarCoreModule extends ModuleLifecycleAdapter implements Extensio
         if (aborted) {
             System.setProperty("poll.app.config.failed.aborted", aborted.toString());
         }
+        // plugin 相关的系统属性已经更新，重新发布运行时配置快照
+        PradarRuntimeConfig.refresh();
 
         PradarService.registerPradarService(new DefaultPradarService());
         PradarInternalService.registerService(new DefaultPradarInternalService());
@@ -131,6 +134,10 @@ public class PradarCoreModule extends ModuleLifecycleAdapter implements Extensio
             Messager.registerExecutionTagSupplier(new DefaultExecutionTagSupplier());
         }
 
+        if (GlobalConfig.getInstance().getSimulatorDynamicConfig().isSqlParserCacheWarmUp()) {
+            SqlParser.warmUp();
+        }
+
         monitorCollector = MonitorCollector.getInstance(simulatorConfig);
         monitorCollector.start();
 
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncAppenderTest {
+
+    @Test
+    public void fullQueueDiscardsWithoutBlocking() {
+        AsyncAppender appender = new AsyncAppender(4, 0, AsyncAppender.WaitStrategy.PARK);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(appender.append((Object)("log" + i)));
+        }
+        Assert.assertFalse(appender.append((Object)"log4"));
+
+        AsyncAppenderMetrics metrics = appender.getMetrics();
+        Assert.assertEquals(4, metrics.getQueueSize());
+        Assert.assertEquals(4, metrics.getQueueDepth());
+        Assert.assertEquals(1, metrics.getDiscardCount());
+    }
+
+    @Test
+    public void concurrentProducersKeepPerProducerOrder() throws Exception {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final AsyncAppender appender = new AsyncAppender(1024, 5000, AsyncAppender.WaitStrategy.PARK);
+        final CollectingAppender target = new CollectingAppender();
+        appender.start(target, null, "test");
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < perProducer; i++) {
+                            appender.append(producer + ":" + i);
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            waitFor(target, producers * perProducer);
+
+            int[] next = new int[producers];
+            for (String log : target.snapshot()) {
+                int split = log.indexOf(':');
+                int producer = Integer.parseInt(log.substring(0, split));
+                Assert.assertEquals(next[producer], Integer.parseInt(log.substring(split + 1)));
+                next[producer]++;
+            }
+            for (int p = 0; p < producers; p++) {
+                Assert.assertEquals(perProducer, next[p]);
+            }
+            AsyncAppenderMetrics metrics = appender.getMetrics();
+            Assert.assertEquals(0, metrics.getDiscardCount());
+            Assert.assertTrue(metrics.getDrainCount() > 0);
+            Assert.assertTrue(metrics.getMaxDrainBatchSize() <= 512);
+        } finally {
+            appender.close();
+        }
+    }
+
+    @Test
+    public void failedWriteDoesNotDropTheRestOfTheBatch() throws Exception {
+        final AsyncAppender appender = new AsyncAppender(64, 0, AsyncAppender.WaitStrategy.PARK);
+        final CollectingAppender target = new CollectingAppender() {
+            @Override
+            public void append(String log) {
+                if ("bad".equals(log)) {
+                    throw new IllegalStateException("write failed");
+                }
+                super.append(log);
+            }
+        };
+        // 先放入日志再启动消费者，保证这些日志在同一批中被取出
+        appender.append((Object)"a");
+        appender.append((Object)"bad");
+        appender.append((Object)"b");
+        appender.start(target, null, "test");
+        try {
+            waitFor(target, 2);
+            Assert.assertEquals(Arrays.asList("a", "b"), target.snapshot());
+            Assert.assertEquals(1, appender.getMetrics().getFailCount());
+        } finally {
+            appender.close();
+        }
+    }
+
+    @Test
+    public void waitStrategyFallsBackToPark() {
+        Assert.assertEquals(AsyncAppender.WaitStrategy.BUSY_SPIN, AsyncAppender.WaitStrategy.of(" busy-spin "));
+        Assert.assertEquals(AsyncAppender.WaitStrategy.YIELD, AsyncAppender.WaitStrategy.of("yield"));
+        Assert.assertEquals(AsyncAppender.WaitStrategy.PARK, AsyncAppender.WaitStrategy.of("unknown"));
+        Assert.assertEquals(AsyncAppender.WaitStrategy.PARK, AsyncAppender.WaitStrategy.of(null));
+    }
+
+    private static void waitFor(CollectingAppender target, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (target.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, target.size());
+    }
+
+    private static class CollectingAppender extends PradarAppender {
+        private final List<String> logs = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void append(String log) {
+            logs.add(log);
+        }
+
+        int size() {
+            return logs.size();
+        }
+
+        List<String> snapshot() {
+            synchronized (logs) {
+                return new ArrayList<String>(logs);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void rollOver() {
+        }
+
+        @Override
+        public void reload() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvokeContextTest {
+
+    @After
+    public void tearDown() {
+        GlobalConfig.getInstance().setTraceRules(new HashSet<String>());
+    }
+
+    @Test
+    public void traceRulesMergeMatchingUrls() {
+        GlobalConfig.getInstance().setTraceRules(Collections.singleton("/user/{id}#GET"));
+
+        Assert.assertEquals(nodeId("http://host/user/1"), nodeId("http://host/user/2"));
+        Assert.assertFalse(nodeId("http://host/order/1").equals(nodeId("http://host/order/2")));
+    }
+
+    @Test
+    public void sameSetRefilledAfterReleaseIsRecompiled() {
+        Set<String> traceRules = new HashSet<String>(Collections.singleton("/user/{id}#GET"));
+        GlobalConfig.getInstance().setTraceRules(traceRules);
+        Assert.assertEquals(nodeId("http://host/user/1"), nodeId("http://host/user/2"));
+
+        // 清空后原地填入同样数量的新规则，集合的引用和大小都没有变化
+        GlobalConfig.getInstance().release();
+        traceRules.add("/order/{id}#GET");
+        GlobalConfig.getInstance().setTraceRules(traceRules);
+
+        Assert.assertFalse(nodeId("http://host/user/1").equals(nodeId("http://host/user/2")));
+        Assert.assertEquals(nodeId("http://host/order/1"), nodeId("http://host/order/2"));
+    }
+
+    private static String nodeId(String serviceName) {
+        return new InvokeContext("trace", "test", "0").generateNodeId(null, serviceName, "GET", "http");
+    }
+}
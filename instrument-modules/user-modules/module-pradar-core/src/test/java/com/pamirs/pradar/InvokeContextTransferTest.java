@@ -0,0 +1,130 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.pamirs.pradar.interceptor.ContextReader;
+import com.pamirs.pradar.interceptor.ContextTransfer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvokeContextTransferTest {
+
+    @After
+    public void tearDown() {
+        InvokeContext.set(null);
+    }
+
+    @Test
+    public void writerEmitsTheFilteredContextMap() {
+        final InvokeContext context = new InvokeContext("0a00000117000000000000009d1234", "upstream-app", "0.1");
+        context.setClusterTest(true);
+        context.putUserData("tenant", "t1");
+        context.setRemoteIp("10.0.0.9");
+        context.setServiceName("com.demo.OrderService");
+        InvokeContext.set(context);
+
+        final List<String> keys = new ArrayList<String>();
+        final Map<String, String> written = new HashMap<String, String>();
+        Pradar.transferInvokeContext(new ContextTransfer() {
+            @Override
+            public void transfer(String key, String value) {
+                keys.add(key);
+                written.put(key, value);
+            }
+        });
+
+        Assert.assertEquals(filtered(Pradar.getInvokeContextMap()), written);
+        Assert.assertEquals(written, Pradar.getInvokeContextTransformMap());
+        Assert.assertEquals("每个字段只写出一次", new HashSet<String>(keys).size(), keys.size());
+        Assert.assertEquals(Pradar.PRADAR_CLUSTER_TEST_ON, written.get(PradarService.PRADAR_CLUSTER_TEST_KEY));
+    }
+
+    @Test
+    public void writerEmitsNothingWithoutContextOrFlags() {
+        final Map<String, String> written = Pradar.getInvokeContextTransformMap();
+
+        Assert.assertTrue(written.isEmpty());
+        Assert.assertEquals(filtered(Pradar.getInvokeContextMap()), written);
+    }
+
+    @Test
+    public void readerOnlyReadsTransformKeys() {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put(PradarService.PRADAR_TRACE_ID_KEY, "0a00000117000000000000009d1234");
+        headers.put(PradarService.PRADAR_INVOKE_ID_KEY, "0.1.2");
+        headers.put(PradarService.PRADAR_CLUSTER_TEST_KEY, Pradar.PRADAR_CLUSTER_TEST_ON);
+        headers.put(PradarService.PRADAR_REMOTE_IP, "10.0.0.9");
+        headers.put(PradarService.PRADAR_SERVICE_NAME, "com.demo.OrderService");
+        headers.put("User-Agent", "okhttp");
+        final List<String> read = new ArrayList<String>();
+
+        final InvokeContext context = InvokeContext.fromReader(new ContextReader() {
+            @Override
+            public String read(String key) {
+                read.add(key);
+                return headers.get(key);
+            }
+        }, null);
+
+        Assert.assertTrue(read.toString(), Pradar.getInvokeContextTransformKeys().containsAll(read));
+        Assert.assertEquals("0a00000117000000000000009d1234", context.getTraceId());
+        Assert.assertEquals("0.1.2", context.getInvokeId());
+        Assert.assertTrue(context.isClusterTest());
+        Assert.assertEquals("10.0.0.9", context.getRemoteIp());
+        // 本地传递的字段只有从 Map 还原时才读取
+        Assert.assertFalse("com.demo.OrderService".equals(context.getServiceName()));
+        Assert.assertEquals("com.demo.OrderService", InvokeContext.fromMap(headers, null).getServiceName());
+    }
+
+    @Test
+    public void writtenContextIsReadBackDownstream() {
+        final InvokeContext upstream = new InvokeContext("0a00000117000000000000009d1234", "upstream-app", "0.1");
+        upstream.setDebug(true);
+        upstream.putUserData("tenant", "t1");
+        InvokeContext.set(upstream);
+        final Map<String, String> headers = Pradar.getInvokeContextTransformMap();
+        InvokeContext.set(null);
+
+        final InvokeContext downstream = InvokeContext.fromReader(new ContextReader() {
+            @Override
+            public String read(String key) {
+                return headers.get(key);
+            }
+        }, null);
+
+        Assert.assertEquals(upstream.getTraceId(), downstream.getTraceId());
+        Assert.assertEquals(upstream.getInvokeId(), downstream.getInvokeId());
+        Assert.assertTrue(downstream.isDebug());
+        Assert.assertFalse(downstream.isClusterTest());
+        Assert.assertEquals("t1", downstream.getUserData("tenant"));
+    }
+
+    private static Map<String, String> filtered(Map<String, String> context) {
+        final Map<String, String> result = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            if (Pradar.getInvokeContextTransformKeys().contains(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PradarRuntimeConfigTest {
+
+    private final List<PradarRuntimeConfig> changes = new ArrayList<PradarRuntimeConfig>();
+    private final PradarRuntimeConfig.Listener listener = new PradarRuntimeConfig.Listener() {
+        @Override
+        public void onChange(PradarRuntimeConfig previous, PradarRuntimeConfig current) {
+            changes.add(current);
+        }
+    };
+    private SimulatorDynamicConfig original;
+
+    @Before
+    public void setUp() {
+        original = GlobalConfig.getInstance().getSimulatorDynamicConfig();
+        PradarRuntimeConfig.addListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        PradarRuntimeConfig.removeListener(listener);
+        System.clearProperty("plugin.request.size");
+        System.clearProperty("plugin.response.on");
+        System.clearProperty("trace.samplingInterval");
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(original);
+        PradarRuntimeConfig.refresh();
+    }
+
+    @Test
+    public void snapshotIsRepublishedOnlyWhenAValueChanges() {
+        final PradarRuntimeConfig before = PradarRuntimeConfig.get();
+        PradarRuntimeConfig.refresh();
+        Assert.assertSame(before, PradarRuntimeConfig.get());
+        Assert.assertTrue(changes.isEmpty());
+
+        System.setProperty("plugin.request.size", "2048");
+        System.setProperty("plugin.response.on", "false");
+        // 修改系统属性后需要刷新才会生效
+        Assert.assertSame(before, PradarRuntimeConfig.get());
+        PradarRuntimeConfig.refresh();
+
+        final PradarRuntimeConfig after = PradarRuntimeConfig.get();
+        Assert.assertEquals(Integer.valueOf(2048), after.getPluginRequestSize());
+        Assert.assertFalse(after.isResponseOn());
+        Assert.assertEquals(Collections.singletonList(after), changes);
+        // 快照本身不会变化
+        Assert.assertEquals(Integer.valueOf(1000), before.getPluginRequestSize());
+        Assert.assertTrue(before.isResponseOn());
+    }
+
+    @Test
+    public void dynamicConfigReplacementRefreshesTheSnapshot() {
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(new SimulatorDynamicConfig(
+                Collections.singletonMap("trace.samplingInterval", "20")));
+
+        Assert.assertEquals(20, PradarRuntimeConfig.get().getTraceSamplingInterval());
+        Assert.assertEquals(20, PradarSwitcher.getSamplingInterval());
+        Assert.assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void failingListenerDoesNotBlockOthers() {
+        PradarRuntimeConfig.removeListener(listener);
+        PradarRuntimeConfig.addListener(new PradarRuntimeConfig.Listener() {
+            @Override
+            public void onChange(PradarRuntimeConfig previous, PradarRuntimeConfig current) {
+                PradarRuntimeConfig.removeListener(this);
+                throw new IllegalStateException("broken listener");
+            }
+        });
+        PradarRuntimeConfig.addListener(listener);
+
+        System.setProperty("plugin.request.size", "10");
+        PradarRuntimeConfig.refresh();
+
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(Integer.valueOf(10), PradarRuntimeConfig.get().getPluginRequestSize());
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TailSamplingBufferTest {
+
+    @Test
+    public void rootDropsUninterestingTrace() {
+        TailSamplingBuffer buffer = newBuffer(100, 60000L);
+        InvokeContext root = span("t1", null);
+        buffer.offer(span("t1", root));
+        buffer.offer(span("t1", root));
+        Assert.assertEquals(2, buffer.getMetrics().getHeldSpans());
+
+        buffer.offer(root);
+
+        TailSamplingMetrics metrics = buffer.getMetrics();
+        Assert.assertEquals(0, metrics.getHeldTraces());
+        Assert.assertEquals(0, metrics.getHeldSpans());
+        Assert.assertEquals(1, metrics.getDroppedTraces());
+        Assert.assertEquals(3, metrics.getDroppedSpans());
+    }
+
+    @Test
+    public void spansBeyondMaxSpansAreDropped() {
+        TailSamplingBuffer buffer = newBuffer(2, 60000L);
+        buffer.offer(span("t1", span("t1", null)));
+        buffer.offer(span("t2", span("t2", null)));
+        buffer.offer(span("t3", span("t3", null)));
+
+        TailSamplingMetrics metrics = buffer.getMetrics();
+        Assert.assertEquals(2, metrics.getHeldSpans());
+        Assert.assertEquals(1, metrics.getDroppedSpans());
+    }
+
+    @Test
+    public void evictTimedOutTraces() {
+        TailSamplingBuffer buffer = newBuffer(100, 1000L);
+        buffer.offer(span("t1", span("t1", null)));
+
+        buffer.evict(System.currentTimeMillis());
+        Assert.assertEquals(1, buffer.getMetrics().getHeldTraces());
+
+        buffer.evict(System.currentTimeMillis() + 2000L);
+        TailSamplingMetrics metrics = buffer.getMetrics();
+        Assert.assertEquals(0, metrics.getHeldTraces());
+        Assert.assertEquals(0, metrics.getHeldSpans());
+        Assert.assertEquals(1, metrics.getEvictedTraces());
+        Assert.assertEquals(1, metrics.getDroppedSpans());
+    }
+
+    @Test
+    public void evictOldestTraceWhenFull() {
+        TailSamplingBuffer buffer = newBuffer(2, 60000L);
+        InvokeContext root = span("t2", null);
+        buffer.offer(span("t1", span("t1", null)));
+        buffer.offer(span("t2", root));
+
+        buffer.evict(System.currentTimeMillis());
+        TailSamplingMetrics metrics = buffer.getMetrics();
+        Assert.assertEquals(1, metrics.getHeldTraces());
+        Assert.assertEquals(1, metrics.getEvictedTraces());
+
+        buffer.offer(root);
+        metrics = buffer.getMetrics();
+        Assert.assertEquals(0, metrics.getHeldSpans());
+        Assert.assertEquals(2, metrics.getDroppedTraces());
+        Assert.assertEquals(3, metrics.getDroppedSpans());
+    }
+
+    @Test
+    public void concurrentOffersKeepCountsConsistent() throws Exception {
+        final TailSamplingBuffer buffer = newBuffer(100000, 60000L);
+        final int threads = 8;
+        final int tracesPerThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < tracesPerThread; j++) {
+                        // 所有线程共用同一批 traceId，根 span 和子 span 交错提交
+                        String traceId = "t" + j;
+                        buffer.offer(span(traceId, span(traceId, null)));
+                        if (j % 2 == 0) {
+                            buffer.offer(span(traceId, null));
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        buffer.evict(System.currentTimeMillis() + 120000L);
+
+        TailSamplingMetrics metrics = buffer.getMetrics();
+        Assert.assertEquals(0, metrics.getHeldTraces());
+        Assert.assertEquals(0, metrics.getHeldSpans());
+        Assert.assertEquals(threads * tracesPerThread + threads * tracesPerThread / 2, metrics.getDroppedSpans());
+    }
+
+    private static TailSamplingBuffer newBuffer(int maxSpans, long timeout) {
+        return new TailSamplingBuffer(1000L, maxSpans, 200, timeout, TailSamplingBuffer.EVICT_POLICY_DROP);
+    }
+
+    private static InvokeContext span(String traceId, InvokeContext parent) {
+        InvokeContext ctx = new InvokeContext(traceId, "test", parent == null ? "0" : "0.1", parent);
+        long now = System.currentTimeMillis();
+        ctx.setStartTime(now);
+        ctx.setLogTime(now);
+        return ctx;
+    }
+}
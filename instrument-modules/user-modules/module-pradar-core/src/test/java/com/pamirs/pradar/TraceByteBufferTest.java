@@ -0,0 +1,84 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceByteBufferTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset GBK = Charset.forName("GBK");
+
+    @Test
+    public void numbersMatchStringValueOf() {
+        long[] values = {0L, 7L, -7L, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            TraceByteBuffer buffer = new TraceByteBuffer(UTF8, 4);
+            buffer.append(value);
+            Assert.assertEquals(String.valueOf(value), text(buffer, UTF8));
+        }
+    }
+
+    @Test
+    public void safeTextMatchesMakeLogSafe() {
+        String[] values = {"", "plain", "a|b\r\nc\nd\re", "\r\r\n", "中文|混合\r\n文本", "尾部中文", "€"};
+        for (Charset charset : new Charset[] {UTF8, GBK}) {
+            for (String value : values) {
+                TraceByteBuffer buffer = new TraceByteBuffer(charset, 2);
+                buffer.appendSafe(value);
+                Assert.assertArrayEquals(value, PradarCoreUtils.makeLogSafe(value).getBytes(charset), bytes(buffer));
+            }
+        }
+    }
+
+    @Test
+    public void rawTextIsNotEscapedAndNullIsWrittenAsNull() {
+        TraceByteBuffer buffer = new TraceByteBuffer(UTF8, 2);
+        buffer.append("a|b\n").append('|').append((String)null).append(true).append(false);
+        Assert.assertEquals("a|b\n|nulltruefalse", text(buffer, UTF8));
+    }
+
+    @Test
+    public void clearKeepsWritingFromTheStart() {
+        TraceByteBuffer buffer = new TraceByteBuffer(UTF8, 8);
+        char[] longLine = new char[100 * 1024];
+        Arrays.fill(longLine, 'x');
+        buffer.append(new String(longLine));
+        Assert.assertEquals(longLine.length, buffer.length());
+
+        buffer.clear();
+        buffer.append("next");
+        Assert.assertEquals("next", text(buffer, UTF8));
+    }
+
+    @Test
+    public void asciiCompatibleCharsets() {
+        Assert.assertTrue(TraceByteBuffer.isAsciiCompatible(UTF8));
+        Assert.assertTrue(TraceByteBuffer.isAsciiCompatible(GBK));
+        Assert.assertFalse(TraceByteBuffer.isAsciiCompatible(Charset.forName("UTF-16")));
+    }
+
+    private static byte[] bytes(TraceByteBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.length());
+    }
+
+    private static String text(TraceByteBuffer buffer, Charset charset) {
+        return new String(buffer.array(), 0, buffer.length(), charset);
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceInvokeContextByteEncoderTest {
+
+    @Test
+    public void byteEncoderWritesTheSameLineAsStringEncoder() throws Exception {
+        for (String charsetName : new String[] {"UTF-8", "GBK"}) {
+            Charset charset = Charset.forName(charsetName);
+            byte[] expected = encode(new TraceInvokeContextEncoder(), context(), charset);
+            byte[] actual = encode(new TraceInvokeContextByteEncoder(charset), context(), charset);
+            Assert.assertEquals(new String(expected, charset), new String(actual, charset));
+            Assert.assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void bufferIsReusedAcrossLines() throws Exception {
+        Charset charset = Charset.forName("UTF-8");
+        TraceInvokeContextByteEncoder encoder = new TraceInvokeContextByteEncoder(charset);
+        BytesAppender appender = new BytesAppender(charset);
+        InvokeContext first = context();
+        first.setServiceName(longText(4096));
+        encoder.encode(first, appender);
+        encoder.encode(context(), appender);
+
+        String[] lines = new String(appender.bytes(), charset).split(PradarCoreUtils.NEWLINE);
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals(new String(encode(new TraceInvokeContextEncoder(), context(), charset), charset),
+            lines[1] + PradarCoreUtils.NEWLINE);
+    }
+
+    private static byte[] encode(TraceEncoder encoder, InvokeContext ctx, Charset charset) throws Exception {
+        BytesAppender appender = new BytesAppender(charset);
+        encoder.encode(ctx, appender);
+        return appender.bytes();
+    }
+
+    private static InvokeContext context() {
+        InvokeContext ctx = new InvokeContext("0a0b0c0d1234", "test-app", "0.1");
+        ctx.setStartTime(1000L);
+        ctx.setLogTime(1025L);
+        ctx.setInvokeType(1);
+        ctx.setMiddlewareName("mysql");
+        ctx.setServiceName("订单库|orders\r\nshadow");
+        ctx.setMethodName("select");
+        ctx.setRequest("select * from t where a = '中文'\n");
+        ctx.setResponse("ok|1");
+        ctx.setCallBackMsg("回调\nmsg");
+        ctx.setRemoteIp("127.0.0.1");
+        ctx.setPort("3306");
+        ctx.setRequestSize(12L);
+        ctx.setResponseSize(-3L);
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        attributes.put("user", "值|1");
+        ctx.attributes = attributes;
+        Map<String, String> localAttributes = new LinkedHashMap<String, String>();
+        localAttributes.put("local", "v\r\n2");
+        ctx.localAttributes = localAttributes;
+        return ctx;
+    }
+
+    private static String longText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(i % 2 == 0 ? 'a' : '长');
+        }
+        return builder.toString();
+    }
+
+    private static class BytesAppender extends PradarAppender {
+        private final Charset charset;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BytesAppender(Charset charset) {
+            this.charset = charset;
+        }
+
+        @Override
+        public void append(String log) {
+            byte[] bytes = log.getBytes(charset);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void append(byte[] bytes, int offset, int length) {
+            out.write(bytes, offset, length);
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void rollOver() {
+        }
+
+        @Override
+        public void reload() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraceSampledTest {
+
+    /**
+     * traceId 第 21-24 位是序号，序号 10 在 1/3 采样下不会被采样，序号 9 会被采样
+     */
+    private static final String UNSAMPLED_TRACE_ID = traceId("0010");
+    private static final String SAMPLED_TRACE_ID = traceId("0009");
+
+    private SimulatorDynamicConfig original;
+
+    @Before
+    public void setUp() {
+        original = GlobalConfig.getInstance().getSimulatorDynamicConfig();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("trace.samplingInterval");
+        System.clearProperty("trace.ct.samplingInterval");
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(original);
+    }
+
+    @Test
+    public void verdictFollowsTheTraceIdSequence() {
+        samplingInterval(3, 1);
+
+        Assert.assertFalse(context(UNSAMPLED_TRACE_ID).isTraceSampled());
+        Assert.assertTrue(context(SAMPLED_TRACE_ID).isTraceSampled());
+        // 序号为 0 的 traceId 不做过滤
+        Assert.assertTrue(context(traceId("0000")).isTraceSampled());
+        Assert.assertFalse(context(null).isTraceSampled());
+    }
+
+    @Test
+    public void verdictIsDecidedOncePerContext() {
+        samplingInterval(3, 1);
+        final InvokeContext context = context(UNSAMPLED_TRACE_ID);
+        Assert.assertFalse(context.isTraceSampled());
+
+        samplingInterval(1, 1);
+        Assert.assertFalse(context.isTraceSampled());
+        Assert.assertTrue(context(UNSAMPLED_TRACE_ID).isTraceSampled());
+    }
+
+    @Test
+    public void businessAndClusterTestVerdictsAreSeparate() {
+        samplingInterval(3, 1);
+        final InvokeContext context = context(UNSAMPLED_TRACE_ID);
+        Assert.assertFalse(context.isTraceSampled());
+
+        context.setClusterTest(true);
+        Assert.assertTrue(context.isTraceSampled());
+
+        context.setClusterTest(false);
+        context.setDebug(true);
+        Assert.assertTrue(context.isTraceSampled());
+    }
+
+    @Test
+    public void verdictIsInheritedWithinTheSameTrace() {
+        samplingInterval(3, 1);
+        final InvokeContext context = context(UNSAMPLED_TRACE_ID);
+        Assert.assertFalse(context.isTraceSampled());
+
+        samplingInterval(1, 1);
+        Assert.assertFalse(context.createChildInvoke().isTraceSampled());
+        Assert.assertFalse(context.cloneInstance().isTraceSampled());
+    }
+
+    private static InvokeContext context(String traceId) {
+        return new InvokeContext(traceId, "test", "0");
+    }
+
+    private static void samplingInterval(int business, int clusterTest) {
+        final Map<String, String> config = new HashMap<String, String>();
+        config.put("trace.samplingInterval", String.valueOf(business));
+        config.put("trace.ct.samplingInterval", String.valueOf(clusterTest));
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(new SimulatorDynamicConfig(config));
+    }
+
+    private static String traceId(String sequence) {
+        return "0a000001" + "1700000000000" + sequence + "d" + "1234";
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlTemplateTrieTest {
+
+    @Test
+    public void literalSegmentWinsOverVariableAndBacktracks() {
+        UrlTemplateTrie<String> trie = new UrlTemplateTrie<String>();
+        trie.put("/user/{id}/orders", null, "orders");
+        trie.put("/user/list/all", null, "all");
+        trie.put("/user/list", null, "list");
+        trie.put("/user/{id}", null, "user");
+
+        Assert.assertEquals("list", trie.match("/user/list", null));
+        Assert.assertEquals("user", trie.match("/user/1", null));
+        Assert.assertEquals("all", trie.match("/user/list/all", null));
+        // 字面值分支 list 下没有 orders，回退到变量分支
+        Assert.assertEquals("orders", trie.match("/user/list/orders", null));
+        Assert.assertNull(trie.match("/user", null));
+        Assert.assertNull(trie.match("/user/1/2", null));
+    }
+
+    @Test
+    public void methodIsMatchedIgnoringCaseAndNullMatchesAny() {
+        UrlTemplateTrie<String> trie = new UrlTemplateTrie<String>();
+        trie.put("/user/{id}", "GET", "get");
+        trie.put("/user/{id}", null, "any");
+
+        Assert.assertEquals("get", trie.match("/user/1", "get"));
+        Assert.assertEquals("any", trie.match("/user/1", "POST"));
+        Assert.assertEquals("any", trie.match("/user/1", null));
+    }
+
+    @Test
+    public void duplicateTemplateKeepsFirstValue() {
+        UrlTemplateTrie<String> trie = new UrlTemplateTrie<String>();
+        Assert.assertTrue(trie.put("/a/{x}", "GET", "first"));
+        Assert.assertFalse(trie.put("a/{y}", "get", "second"));
+        Assert.assertEquals(1, trie.size());
+        Assert.assertEquals("first", trie.match("a/b", "GET"));
+    }
+
+    @Test
+    public void matchesRangeWithoutCopying() {
+        UrlTemplateTrie<String> trie = new UrlTemplateTrie<String>();
+        trie.put("/user/{id}", null, "user");
+        String url = "http://host/user/1?name=a";
+        Assert.assertEquals("user", trie.match(url, url.indexOf("/user"), url.indexOf('?'), null));
+        Assert.assertNull(trie.match(url, 0, url.indexOf('?'), null));
+    }
+
+    @Test
+    public void manyLiteralChildren() {
+        UrlTemplateTrie<Integer> trie = new UrlTemplateTrie<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            trie.put("/api/v" + i, null, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(Integer.valueOf(i), trie.match("/api/v" + i, null));
+        }
+        Assert.assertNull(trie.match("/api/v1000", null));
+        Assert.assertTrue(new UrlTemplateTrie<String>().isEmpty());
+    }
+
+    @Test
+    public void variableMustBeWholeSegment() {
+        Assert.assertTrue(UrlTemplateTrie.isVariable("{id}", 0, 4));
+        Assert.assertFalse(UrlTemplateTrie.isVariable("pre{id}", 0, 7));
+        Assert.assertFalse(UrlTemplateTrie.isVariable("{a}{b}", 0, 6));
+        Assert.assertFalse(UrlTemplateTrie.isVariable("{", 0, 1));
+    }
+}
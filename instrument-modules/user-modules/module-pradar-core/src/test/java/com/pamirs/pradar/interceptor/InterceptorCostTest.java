@@ -0,0 +1,88 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shulie.instrument.simulator.api.listener.ext.Advice;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InterceptorCostTest {
+
+    @Test
+    public void phasesAreCreatedOnFirstUse() {
+        final InterceptorCost cost = InterceptorCost.of("test.PhaseInterceptor");
+        Assert.assertSame(cost, InterceptorCost.of("test.PhaseInterceptor"));
+        cost.record(InterceptorCost.BEFORE, 2000);
+        cost.record(InterceptorCost.BEFORE, 4000);
+
+        final InterceptorCostMetrics metrics = find("test.PhaseInterceptor");
+        Assert.assertEquals(2, metrics.getBefore().getCount());
+        Assert.assertNull(metrics.getAfter());
+        Assert.assertNull(metrics.getException());
+        Assert.assertEquals(6, metrics.getTotalMicros(), 0.001);
+    }
+
+    @Test
+    public void metricsAreSortedByTotalTimeAndLimited() {
+        InterceptorCost.of("test.SortSlow").record(InterceptorCost.AFTER, 900000000L);
+        InterceptorCost.of("test.SortFast").record(InterceptorCost.BEFORE, 700000000L);
+        InterceptorCost.of("test.SortMiddle").record(InterceptorCost.EXCEPTION, 800000000L);
+
+        final List<String> names = new ArrayList<String>();
+        for (InterceptorCostMetrics metrics : InterceptorCost.getMetrics(0)) {
+            if (metrics.getInterceptor().startsWith("test.Sort")) {
+                names.add(metrics.getInterceptor());
+            }
+        }
+        Assert.assertEquals("[test.SortSlow, test.SortMiddle, test.SortFast]", names.toString());
+        Assert.assertEquals(1, InterceptorCost.getMetrics(1).size());
+    }
+
+    @Test
+    public void baseInterceptorRecordsEachPhase() throws Throwable {
+        final RecordingInterceptor interceptor = new RecordingInterceptor();
+        interceptor.before(null);
+        interceptor.before(null);
+        try {
+            interceptor.afterThrowing(null);
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        final InterceptorCostMetrics metrics = find(RecordingInterceptor.class.getName());
+        Assert.assertEquals(2, metrics.getBefore().getCount());
+        Assert.assertEquals(1, metrics.getException().getCount());
+        Assert.assertNull(metrics.getAfter());
+    }
+
+    private static InterceptorCostMetrics find(String interceptor) {
+        for (InterceptorCostMetrics metrics : InterceptorCost.getMetrics(0)) {
+            if (metrics.getInterceptor().equals(interceptor)) {
+                return metrics;
+            }
+        }
+        throw new AssertionError(interceptor + " not recorded");
+    }
+
+    private static class RecordingInterceptor extends BaseInterceptor {
+        @Override
+        public void doException(Advice advice) {
+            throw new IllegalStateException("failed in exception phase");
+        }
+    }
+}
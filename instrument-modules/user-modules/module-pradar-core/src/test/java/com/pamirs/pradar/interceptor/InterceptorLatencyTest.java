@@ -0,0 +1,96 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.interceptor;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InterceptorLatencyTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinAQuarter() {
+        int previous = -1;
+        for (long nanos = 0; nanos < (1L << 40); nanos = nanos < 64 ? nanos + 1 : nanos + nanos / 7) {
+            final int index = InterceptorLatency.index(nanos);
+            Assert.assertTrue(index >= previous);
+            previous = index;
+            if (nanos >= (1L << 36)) {
+                continue;
+            }
+            final long upper = InterceptorLatency.upperBound(index);
+            final long lower = index == 0 ? 0 : InterceptorLatency.upperBound(index - 1);
+            Assert.assertTrue(nanos + " < " + upper, nanos < upper);
+            Assert.assertTrue(nanos + " >= " + lower, nanos >= lower);
+            Assert.assertTrue(nanos + " in [" + lower + ", " + upper + ")", upper - lower <= Math.max(1, lower / 4));
+        }
+        Assert.assertEquals(InterceptorLatency.index(1L << 40), InterceptorLatency.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void metricsSummarizeRecordedLatencies() {
+        final InterceptorLatency latency = new InterceptorLatency();
+        for (int micros = 1; micros <= 100; micros++) {
+            latency.record(micros * 1000L);
+        }
+        latency.record(-5);
+
+        final InterceptorLatencyMetrics metrics = latency.metrics();
+        Assert.assertEquals(101, metrics.getCount());
+        Assert.assertEquals(5050, metrics.getTotalMicros(), 0.001);
+        Assert.assertEquals(100, metrics.getMaxMicros(), 0.001);
+        Assert.assertEquals(5050.0 / 101, metrics.getAvgMicros(), 0.001);
+        assertWithinQuarter(50, metrics.getP50Micros());
+        assertWithinQuarter(90, metrics.getP90Micros());
+        assertWithinQuarter(99, metrics.getP99Micros());
+        Assert.assertTrue(metrics.getP99Micros() <= metrics.getMaxMicros());
+    }
+
+    @Test
+    public void emptyLatencyReportsZero() {
+        final InterceptorLatencyMetrics metrics = new InterceptorLatency().metrics();
+        Assert.assertEquals(0, metrics.getCount());
+        Assert.assertEquals(0, metrics.getP99Micros(), 0);
+        Assert.assertEquals(0, metrics.getAvgMicros(), 0);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final InterceptorLatency latency = new InterceptorLatency();
+        final int threads = 8;
+        final int records = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < records; j++) {
+                        latency.record(1000);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        Assert.assertEquals(threads * records, latency.metrics().getCount());
+        Assert.assertEquals(threads * records * 1000L, latency.totalNanos());
+    }
+
+    private static void assertWithinQuarter(double expected, double actual) {
+        Assert.assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected * 1.25);
+    }
+}
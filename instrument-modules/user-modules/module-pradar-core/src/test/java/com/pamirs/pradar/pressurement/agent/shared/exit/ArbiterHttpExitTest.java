@@ -0,0 +1,97 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.exit;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.pamirs.pradar.internal.config.MatchConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.mock.WhiteListStrategy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArbiterHttpExitTest {
+
+    private final HttpMatcher matcher = new HttpMatcher();
+
+    @After
+    public void tearDown() {
+        GlobalConfig.getInstance().setUrlWhiteList(new HashSet<MatchConfig>());
+    }
+
+    @Test
+    public void compiledWhiteListIsReusedUntilConfigChanges() {
+        GlobalConfig.getInstance().setUrlWhiteList(whiteList("/user/{id}"));
+        CompiledHttpWhiteList compiled = ArbiterHttpExit.getCompiledUrlWhiteList();
+        Assert.assertSame(compiled, ArbiterHttpExit.getCompiledUrlWhiteList());
+        Assert.assertNotNull(compiled.match("/user/1", matcher));
+
+        GlobalConfig.getInstance().setUrlWhiteList(whiteList("/order/{id}"));
+        compiled = ArbiterHttpExit.getCompiledUrlWhiteList();
+        Assert.assertNull(compiled.match("/user/1", matcher));
+        Assert.assertNotNull(compiled.match("/order/1", matcher));
+    }
+
+    @Test
+    public void sameSetRefilledAfterReleaseIsRecompiled() {
+        Set<MatchConfig> urlWhiteList = whiteList("/user/{id}");
+        GlobalConfig.getInstance().setUrlWhiteList(urlWhiteList);
+        Assert.assertNotNull(ArbiterHttpExit.getCompiledUrlWhiteList().match("/user/1", matcher));
+
+        // 清空后原地填入同样数量的新配置，集合的引用和大小都没有变化
+        GlobalConfig.getInstance().release();
+        urlWhiteList.addAll(whiteList("/order/{id}"));
+        GlobalConfig.getInstance().setUrlWhiteList(urlWhiteList);
+
+        CompiledHttpWhiteList compiled = ArbiterHttpExit.getCompiledUrlWhiteList();
+        Assert.assertNull(compiled.match("/user/1", matcher));
+        Assert.assertNotNull(compiled.match("/order/1", matcher));
+    }
+
+    @Test
+    public void compiledWhiteListMatchesLikeHttpMatcher() {
+        String[] expressions = {"/user/{id}", "/user/{id}/orders", "/order/", "a/{x}/c", "{p}", "/weird/pre{x}",
+            "/two/{a}/{b}", " /trim "};
+        String[] urls = {"/user/1", "/user/list", "/user/1/orders", "/user/1/2", "/order", "/order/", "user/2",
+            "/a/b/c", "/a/b", "/x", "/weird/pre1", "/weird/post", "/two/1/2", "/two/1", "/trim", " /user/1",
+            "http://host/user/1", "/user//1", "/"};
+        Set<MatchConfig> whiteList = new HashSet<MatchConfig>();
+        for (String expression : expressions) {
+            whiteList.addAll(whiteList(expression));
+        }
+        CompiledHttpWhiteList compiled = new CompiledHttpWhiteList(whiteList, 0);
+        for (String url : urls) {
+            MatchConfig expected = null;
+            for (MatchConfig matchConfig : whiteList) {
+                MatchConfig matching = matcher.match(url, matchConfig);
+                if (matching != null && matching.isSuccess()) {
+                    expected = matching;
+                    break;
+                }
+            }
+            Assert.assertEquals(url, expected != null, compiled.match(url, matcher) != null);
+        }
+    }
+
+    private static Set<MatchConfig> whiteList(String url) {
+        MatchConfig matchConfig = MatchConfig.success(new WhiteListStrategy());
+        matchConfig.setUrl(url);
+        Set<MatchConfig> whiteList = new HashSet<MatchConfig>();
+        whiteList.add(matchConfig);
+        return whiteList;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.agent.shared.util;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheKeyRewriterTest {
+
+    @After
+    public void tearDown() {
+        GlobalConfig.getInstance().setCacheKeyWhiteList(new HashSet<String>());
+    }
+
+    @Test
+    public void replacedWhiteListIsRecompiled() {
+        GlobalConfig.getInstance().setCacheKeyWhiteList(Collections.singleton("user:"));
+        Assert.assertTrue(CacheKeyRewriter.isWhiteListed("user:1"));
+
+        GlobalConfig.getInstance().setCacheKeyWhiteList(Collections.singleton("order:"));
+        Assert.assertFalse(CacheKeyRewriter.isWhiteListed("user:1"));
+        Assert.assertTrue(CacheKeyRewriter.isWhiteListed("order:1"));
+    }
+
+    @Test
+    public void releaseClearsCompiledWhiteList() {
+        GlobalConfig.getInstance().setCacheKeyWhiteList(new HashSet<String>(Collections.singleton("user:")));
+        Assert.assertTrue(CacheKeyRewriter.isWhiteListed("user:1"));
+
+        GlobalConfig.getInstance().release();
+        Assert.assertFalse(CacheKeyRewriter.isWhiteListed("user:1"));
+    }
+
+    @Test
+    public void sameSetRefilledAfterReleaseIsRecompiled() {
+        Set<String> whiteList = new HashSet<String>(Collections.singleton("user:"));
+        GlobalConfig.getInstance().setCacheKeyWhiteList(whiteList);
+        Assert.assertTrue(CacheKeyRewriter.isWhiteListed("user:1"));
+
+        // 清空后原地填入同样数量的新配置，集合的引用和大小都没有变化
+        GlobalConfig.getInstance().release();
+        whiteList.add("order:");
+        GlobalConfig.getInstance().setCacheKeyWhiteList(whiteList);
+
+        Assert.assertFalse(CacheKeyRewriter.isWhiteListed("user:1"));
+        Assert.assertTrue(CacheKeyRewriter.isWhiteListed("order:1"));
+    }
+
+    @Test
+    public void clusterTestKeyIsNotRewrittenTwice() {
+        String key = CacheKeyRewriter.toClusterTestKey("user:1", true);
+        Assert.assertNotEquals("user:1", key);
+        Assert.assertEquals(key, CacheKeyRewriter.toClusterTestKey(key, true));
+    }
+}
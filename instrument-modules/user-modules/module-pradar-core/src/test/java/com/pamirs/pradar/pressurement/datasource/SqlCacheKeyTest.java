@@ -0,0 +1,47 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlCacheKeyTest {
+
+    @Test
+    public void equalKeysHaveEqualHashes() {
+        SqlCacheKey key = new SqlCacheKey("select 1", "jdbc:mysql://db|user", "mysql", "druid");
+        SqlCacheKey same = new SqlCacheKey(new String("select 1"), "jdbc:mysql://db|user", "mysql", "druid");
+        Assert.assertEquals(key, same);
+        Assert.assertEquals(key.hashCode(), same.hashCode());
+    }
+
+    @Test
+    public void everyPartTakesPartInEquality() {
+        SqlCacheKey key = new SqlCacheKey("select 1", "k", "mysql", "druid");
+        Assert.assertFalse(key.equals(new SqlCacheKey("select 2", "k", "mysql", "druid")));
+        Assert.assertFalse(key.equals(new SqlCacheKey("select 1", "k2", "mysql", "druid")));
+        Assert.assertFalse(key.equals(new SqlCacheKey("select 1", "k", "oracle", "druid")));
+        Assert.assertFalse(key.equals(new SqlCacheKey("select 1", "k", "mysql", null)));
+        // 拼接字符串时 "a$$$$" + "b" 与 "a" + "$$$$b" 会冲突，组合 key 不会
+        Assert.assertFalse(new SqlCacheKey("a$$$$", "b", null, null).equals(new SqlCacheKey("a", "$$$$b", null, null)));
+    }
+
+    @Test
+    public void nullPartsAreAllowed() {
+        SqlCacheKey key = new SqlCacheKey("select 1", null, "mysql", null);
+        Assert.assertEquals(key, new SqlCacheKey("select 1", null, "mysql", null));
+        Assert.assertEquals("select 1".length() + "mysql".length(), key.weight());
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlFingerprintTest {
+
+    @Test
+    public void literalsAndWhitespaceAreNormalized() {
+        SqlFingerprint fingerprint = SqlFingerprint.of("select  name from user where id = 12 and name = 'a''b'\n and rate = 1.5");
+        Assert.assertEquals("select name from user where id = ? and name = ? and rate = ?", fingerprint.getFingerprint());
+    }
+
+    @Test
+    public void statementsDifferingOnlyInLiteralsShareFingerprint() {
+        Assert.assertEquals(SqlFingerprint.of("select * from t where a = 1 and b in (1, 2, 3)").getFingerprint(),
+            SqlFingerprint.of("select * from t where a = 99 and b in ('x')").getFingerprint());
+        Assert.assertFalse(SqlFingerprint.of("select * from t where a = 1").getFingerprint()
+            .equals(SqlFingerprint.of("select * from t2 where a = 1").getFingerprint()));
+    }
+
+    @Test
+    public void inListWithNonLiteralsIsKept() {
+        Assert.assertEquals("select * from t where a in (b, ?)",
+            SqlFingerprint.of("select * from t where a in (b, 1)").getFingerprint());
+        Assert.assertEquals("select * from t where a in (?)",
+            SqlFingerprint.of("select * from t where a in (?, ?, 3)").getFingerprint());
+    }
+
+    @Test
+    public void qualifiedNamesAreRecordedWithTheirParts() {
+        String sql = "select u.id from db.`user` u where u.id = 1";
+        SqlFingerprint fingerprint = SqlFingerprint.of(sql);
+        SqlFingerprint.Name name = null;
+        for (SqlFingerprint.Name candidate : fingerprint.getNames()) {
+            if (candidate.parts() == 2 && "db".equals(sql.substring(candidate.start(0), candidate.end(0)))) {
+                name = candidate;
+            }
+        }
+        Assert.assertNotNull(name);
+        Assert.assertEquals("`user`", sql.substring(name.start(1), name.end(1)));
+    }
+
+    @Test
+    public void unreliableStatementsHaveNoFingerprint() {
+        Assert.assertNull(SqlFingerprint.of("select * from t where a = 1 -- comment"));
+        Assert.assertNull(SqlFingerprint.of("select * from t /* c */ where a = 1"));
+        Assert.assertNull(SqlFingerprint.of("select * from t where a = 'it\\'s'"));
+        Assert.assertNull(SqlFingerprint.of("select * from [t] where a = 1"));
+        Assert.assertNull(SqlFingerprint.of("select * from t where a = $1"));
+        Assert.assertNull(SqlFingerprint.of("select * from t where a = 'unterminated"));
+        // 没有常量时没有可以共用的结构
+        Assert.assertNull(SqlFingerprint.of("select * from t"));
+        Assert.assertNull(SqlFingerprint.of(null));
+    }
+}
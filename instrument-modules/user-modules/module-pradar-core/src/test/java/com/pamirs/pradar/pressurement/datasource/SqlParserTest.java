@@ -0,0 +1,103 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.service.SimulatorDynamicConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlParserTest {
+
+    @After
+    public void tearDown() {
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(new SimulatorDynamicConfig(new HashMap<String, String>()));
+    }
+
+    @Test
+    public void unrelatedConfigChangeKeepsCaches() {
+        setConfig("pradar.sql.parser.cache.max.weight", "1048576");
+        SqlParser.SqlParserCaches caches = SqlParser.caches();
+
+        // 只有其他配置项变化，动态配置对象被替换
+        setConfig("pradar.sql.parser.cache.max.weight", "1048576", "pradar.sql.parser.cache.warmup", "true");
+        Assert.assertSame(caches, SqlParser.caches());
+    }
+
+    @Test
+    public void sqlParserConfigChangeRebuildsCaches() {
+        setConfig("pradar.sql.parser.cache.max.weight", "1048576");
+        SqlParser.SqlParserCaches caches = SqlParser.caches();
+
+        setConfig("pradar.sql.parser.cache.max.weight", "4194304");
+        SqlParser.SqlParserCaches rebuilt = SqlParser.caches();
+        Assert.assertNotSame(caches, rebuilt);
+        Assert.assertSame(rebuilt, SqlParser.caches());
+    }
+
+    @Test
+    public void parsedTablesAreCachedAndCounted() {
+        setConfig("pradar.sql.parser.cache.max.weight", "1048577");
+        String sql = "select id from user_a where id = 1";
+        SqlParserCacheMetrics before = tablesMetrics();
+        Assert.assertEquals(Arrays.asList("user_a"), SqlParser.getTables(sql, "mysql").getTables());
+        Assert.assertEquals(Arrays.asList("user_a"), SqlParser.getTables(sql, "mysql").getTables());
+
+        // 缓存重建时会迁移已有的结果和统计，只比较增量
+        SqlParserCacheMetrics after = tablesMetrics();
+        Assert.assertEquals(before.getSize() + 1, after.getSize());
+        Assert.assertEquals(before.getLoadSuccessCount() + 1, after.getLoadSuccessCount());
+        Assert.assertEquals(before.getHitCount() + 1, after.getHitCount());
+    }
+
+    @Test
+    public void rebuiltCachesKeepEntriesAndStatistics() {
+        setConfig("pradar.sql.parser.cache.max.weight", "1048578");
+        String sql = "select id from user_b where id = 1";
+        SqlParser.getTables(sql, "mysql");
+        SqlParser.getTables(sql, "mysql");
+        SqlParserCacheMetrics before = tablesMetrics();
+
+        setConfig("pradar.sql.parser.cache.max.weight", "2097152");
+        SqlParser.getTables(sql, "mysql");
+        SqlParserCacheMetrics after = tablesMetrics();
+        Assert.assertEquals(2097152, after.getMaxWeight());
+        Assert.assertEquals(before.getSize(), after.getSize());
+        Assert.assertEquals(before.getLoadSuccessCount(), after.getLoadSuccessCount());
+        Assert.assertEquals(before.getHitCount() + 1, after.getHitCount());
+    }
+
+    private static SqlParserCacheMetrics tablesMetrics() {
+        for (SqlParserCacheMetrics metrics : SqlParser.getCacheMetrics()) {
+            if ("tables".equals(metrics.getName())) {
+                return metrics;
+            }
+        }
+        throw new AssertionError("no tables cache metrics");
+    }
+
+    private static void setConfig(String... keyValues) {
+        Map<String, String> config = new HashMap<String, String>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            config.put(keyValues[i], keyValues[i + 1]);
+        }
+        GlobalConfig.getInstance().setSimulatorDynamicConfig(new SimulatorDynamicConfig(config));
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pamirs.pradar.pressurement.datasource;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.shulie.druid.DbType;
+import com.shulie.druid.sql.SQLUtils;
+import com.shulie.druid.sql.ast.SQLStatement;
+import com.shulie.druid.sql.parser.SQLParserUtils;
+import com.shulie.druid.sql.visitor.SQLASTOutputVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlTemplateTest {
+
+    @Test
+    public void templateReplacesTablesForOtherLiterals() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("user", "pt_user");
+        mapping.put("orders", "pt_orders");
+        String first = "select u.name, o.id from user u join orders o on u.id = o.user_id where u.id = 1 and o.state in (1, 2)";
+        String second = "select u.name, o.id from user u join orders o on u.id = o.user_id where u.id = 7 and o.state in (3)";
+
+        SqlFingerprint fingerprint = SqlFingerprint.of(first);
+        SqlTemplate template = SqlTemplate.build(fingerprint, mapping, rewrite(first, mapping), "mysql");
+        Assert.assertTrue(template.isSpliceable());
+
+        SqlFingerprint other = SqlFingerprint.of(second);
+        Assert.assertEquals(fingerprint.getFingerprint(), other.getFingerprint());
+        String spliced = template.apply(other);
+        Assert.assertTrue(spliced, spliced.contains("from pt_user u join pt_orders o"));
+        Assert.assertTrue(spliced, spliced.contains("u.id = 7"));
+        Assert.assertEquals(rewrite(second, mapping), rewrite(spliced, new HashMap<String, String>()));
+    }
+
+    @Test
+    public void qualifiedTableKeepsSchema() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("user", "pt_user");
+        mapping.put("db.user", "db.pt_user");
+        String sql = "update db.user set name = 'a' where id = 1";
+
+        SqlTemplate template = SqlTemplate.build(SqlFingerprint.of(sql), mapping, rewrite(sql, mapping), "mysql");
+        Assert.assertTrue(template.isSpliceable());
+        Assert.assertEquals("update db.pt_user set name = 'b' where id = 2",
+            template.apply(SqlFingerprint.of("update db.user set name = 'b' where id = 2")));
+    }
+
+    @Test
+    public void noMappingLeavesSqlUntouched() {
+        String sql = "select * from t where a = 1";
+        SqlTemplate template = SqlTemplate.build(SqlFingerprint.of(sql), new HashMap<String, String>(),
+            rewrite(sql, new HashMap<String, String>()), "mysql");
+        Assert.assertTrue(template.isSpliceable());
+        Assert.assertEquals("select * from t where a = 2", template.apply(SqlFingerprint.of("select * from t where a = 2")));
+    }
+
+    @Test
+    public void mismatchingRewriteIsNotSpliceable() {
+        Map<String, String> mapping = new HashMap<String, String>();
+        mapping.put("user", "pt_user");
+        String sql = "select * from user where id = 1";
+        // AST 改写的结果与任何替换方式都对不上时，不能生成模板
+        SqlTemplate template = SqlTemplate.build(SqlFingerprint.of(sql), mapping, "SELECT 1", "mysql");
+        Assert.assertFalse(template.isSpliceable());
+        Assert.assertSame(SqlTemplate.NOT_SPLICEABLE, template);
+    }
+
+    /**
+     * 与 SqlParser 改写影子表时的输出方式一致
+     */
+    private static String rewrite(String sql, Map<String, String> mapping) {
+        StringWriter val = new StringWriter();
+        for (SQLStatement statement : SQLParserUtils.createSQLStatementParser(sql, "mysql").parseStatementList()) {
+            SQLASTOutputVisitor visitor = SQLUtils.createOutputVisitor(val, DbType.mysql);
+            visitor.setTableMapping(new HashMap<String, String>(mapping));
+            statement.accept(visitor);
+        }
+        return val.toString();
+    }
+}
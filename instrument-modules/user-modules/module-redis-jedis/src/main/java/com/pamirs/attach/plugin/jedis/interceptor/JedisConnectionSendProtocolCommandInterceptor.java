@@ -5,12 +5,10 @@ import com.pamirs.attach.plugin.jedis.destroy.JedisDestroyed;
 import com.pamirs.attach.plugin.jedis.util.RedisUtils;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 
-import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -59,7 +57,6 @@ public class JedisConnectionSendProtocolCommandInterceptor extends MJedisInterce
             return args;
         }
 
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         boolean canMatchWhiteList = false;
         if (readMethod.contains(methodName)) {
             canMatchWhiteList = true;
@@ -78,17 +75,17 @@ public class JedisConnectionSendProtocolCommandInterceptor extends MJedisInterce
         args = args1;
 
         if (RedisUtils.EVAL_METHOD_NAME.contains(methodName)) {
-            args = processEvalMethodName(args, whiteList, canMatchWhiteList);
+            args = processEvalMethodName(args, canMatchWhiteList);
         } else if (RedisUtils.METHOD_MORE_KEYS.containsKey(methodName)) {
-            args = processMoreKeys(methodName, args, whiteList, canMatchWhiteList);
+            args = processMoreKeys(methodName, args, canMatchWhiteList);
         } else if ("xread".equals(methodName)) {
-            args = processXRead(args, whiteList);
+            args = processXRead(args);
         } else if ("xreadGroup".equals(methodName)) {
-            args = processXReadGroup(args, whiteList);
+            args = processXReadGroup(args);
         } else if ("mset".equals(methodName) || "msetnx".equals(methodName)) {
-            args = processMset(args, whiteList, canMatchWhiteList);
+            args = processMset(args, canMatchWhiteList);
         } else {
-            args = process(args, whiteList, canMatchWhiteList);
+            args = process(args, canMatchWhiteList);
         }
 
         Object[] values = new Object[3];
@@ -21,7 +21,7 @@ import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -86,19 +86,18 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             return args;
         }
 
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         boolean canMatchWhiteList = false;
         if (readMethod.contains(methodName)) {
             canMatchWhiteList = true;
         }
 
         if (RedisUtils.EVAL_METHOD_NAME.contains(methodName)) {
-            return processEvalMethodName(args, whiteList, canMatchWhiteList);
+            return processEvalMethodName(args, canMatchWhiteList);
         }
 
         //String methodSign = getMethodSign(methodName,args);
         if (RedisUtils.METHOD_MORE_KEYS.containsKey(methodName)) {
-            return processMoreKeys(methodName, args, whiteList, canMatchWhiteList);
+            return processMoreKeys(methodName, args, canMatchWhiteList);
         }
 
         //jedis db非0时候选择不做处理
@@ -107,38 +106,37 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         }
 
         if ("xread".equals(advice.getBehaviorName())) {
-            return processXRead(args, whiteList);
+            return processXRead(args);
         }
 
         if ("xreadGroup".equals(advice.getBehaviorName())) {
-            return processXReadGroup(args, whiteList);
+            return processXReadGroup(args);
         }
 
         if ("mset".equals(advice.getBehaviorName()) || "msetnx".equals(advice.getBehaviorName())) {
-            return processMset(args, whiteList, canMatchWhiteList);
+            return processMset(args, canMatchWhiteList);
         }
 
-        return process(args, whiteList, canMatchWhiteList);
+        return process(args, canMatchWhiteList);
     }
 
-    protected Object[] processMset(Object[] args, Collection<String> whiteList, boolean canMatchWhiteList) {
+    protected Object[] processMset(Object[] args, boolean canMatchWhiteList) {
         Object params = args[0];
         if (params instanceof String[]) {
             String[] data = (String[]) params;
             for (int i = 0; i < data.length; i = i + 2) {
-                data[i] = fetchKeyString(data[i], whiteList, canMatchWhiteList);
+                data[i] = fetchKeyString(data[i], canMatchWhiteList);
             }
             return args;
         } else if (params instanceof byte[][]) {
             byte[][] data = (byte[][]) params;
             for (int i = 0; i < data.length; i = i + 2) {
-                String key = fetchKeyString(new String(data[i]), whiteList, canMatchWhiteList);
-                data[i] = key.getBytes();
+                data[i] = CacheKeyRewriter.toClusterTestKey(data[i], canMatchWhiteList);
             }
             return args;
         } else if (params instanceof byte[]) {
             byte[] data = (byte[]) params;
-            String key = fetchKeyString(new String(data), whiteList, canMatchWhiteList);
+            String key = fetchKeyString(new String(data), canMatchWhiteList);
             data = key.getBytes();
             return args;
         }
@@ -146,7 +144,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         throw new PressureMeasureError("Jedis not support mset key deserialize !");
     }
 
-    protected Object[] processXRead(Object[] args, Collection<String> whiteList) {
+    protected Object[] processXRead(Object[] args) {
         if (args.length != 3) {
             return args;
         }
@@ -190,7 +188,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    protected Object[] processXReadGroup(Object[] args, Collection<String> whiteList) {
+    protected Object[] processXReadGroup(Object[] args) {
         if (args.length != 6) {
             return args;
         }
@@ -234,38 +232,38 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    protected Object[] process(Object[] args, Collection<String> whiteList, boolean canMatchWhiteList) {
+    protected Object[] process(Object[] args, boolean canMatchWhiteList) {
         //遍历顺序获取一下几个类型值
         for (int i = 0; i < args.length; i++) {
             if (args[i] instanceof String) {
-                return processKeyString(args, whiteList, i, canMatchWhiteList);
+                return processKeyString(args, i, canMatchWhiteList);
             } else if (args[i] instanceof String[]) {
-                return processKeyStringArray(args, whiteList, i, canMatchWhiteList);
+                return processKeyStringArray(args, i, canMatchWhiteList);
             } else if (args[i] instanceof byte[]) {
-                return processKeyByte(args, whiteList, i, canMatchWhiteList);
+                return processKeyByte(args, i, canMatchWhiteList);
             } else if (args[i] instanceof byte[][]) {
-                return processKeyByteArray(args, whiteList, i, canMatchWhiteList);
+                return processKeyByteArray(args, i, canMatchWhiteList);
             }
         }
 
         throw new PressureMeasureError("Jedis not support key deserialize !, mjedisInterceptor");
     }
 
-    private Object[] processIndex(Object[] args, Collection<String> whiteList, int keyIndex, boolean canMatchWhiteList) {
+    private Object[] processIndex(Object[] args, int keyIndex, boolean canMatchWhiteList) {
         if (args[keyIndex] instanceof String) {
-            return processKeyString(args, whiteList, keyIndex, canMatchWhiteList);
+            return processKeyString(args, keyIndex, canMatchWhiteList);
         } else if (args[keyIndex] instanceof String[]) {
-            return processKeyStringArray(args, whiteList, keyIndex, canMatchWhiteList);
+            return processKeyStringArray(args, keyIndex, canMatchWhiteList);
         } else if (args[keyIndex] instanceof byte[]) {
-            return processKeyByte(args, whiteList, keyIndex, canMatchWhiteList);
+            return processKeyByte(args, keyIndex, canMatchWhiteList);
         } else if (args[keyIndex] instanceof byte[][]) {
-            return processKeyByteArray(args, whiteList, keyIndex, canMatchWhiteList);
+            return processKeyByteArray(args, keyIndex, canMatchWhiteList);
         } else {
             throw new PressureMeasureError("Jedis not support key deserialize !");
         }
     }
 
-    private Object[] processKeyStringArray(Object[] args, Collection<String> whiteList, int keyIndex, boolean canMatchWhiteList) {
+    private Object[] processKeyStringArray(Object[] args, int keyIndex, boolean canMatchWhiteList) {
         int keysIndex = keyIndex;
         String[] keys = (String[]) args[keysIndex];
         for (int i = 0; i < keys.length; i++) {
@@ -276,7 +274,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             }
 
             //白名单 忽略
-            if (canMatchWhiteList && whiteListValidate(whiteList, key)) {
+            if (canMatchWhiteList && whiteListValidate(key)) {
                 continue;
             }
             if (!Pradar.isClusterTestByConfig(key)) {
@@ -297,48 +295,52 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return false;
     }
 
-    protected Object[] processMoreKeys(String methodName, Object[] args, Collection<String> whiteList, boolean canMatchWhiteList) {
+    /**
+     * 与 {@link #isNumeric(String)} 一致，全是 ASCII 数字时直接判断，带非 ASCII 字节时才解码
+     */
+    private boolean isNumeric(byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            byte b = key[i];
+            if (b < 0) {
+                return isNumeric(new String(key));
+            }
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Object[] processMoreKeys(String methodName, Object[] args, boolean canMatchWhiteList) {
         List<Integer> keyIndexes = RedisUtils.METHOD_MORE_KEYS.get(methodName);
         //如果出现枚举的值比方法参数数量大的，则进行判断单个key逻辑处理
         for (int i = 0; i < keyIndexes.size(); i++) {
             if (args.length < (keyIndexes.get(i) + 1)) {
-                return process(args, whiteList, canMatchWhiteList);
+                return process(args, canMatchWhiteList);
             }
         }
 
         for (int i = 0; i < keyIndexes.size(); i++) {
-            processIndex(args, whiteList, keyIndexes.get(i), canMatchWhiteList);
+            processIndex(args, keyIndexes.get(i), canMatchWhiteList);
         }
         return args;
     }
 
-    private Object[] processKeyString(Object[] args, Collection<String> whiteList, int keyIndex, boolean canMatchWhiteList) {
+    private Object[] processKeyString(Object[] args, int keyIndex, boolean canMatchWhiteList) {
         String key = (String) args[keyIndex];
-        args[keyIndex] = fetchKeyString(key, whiteList, canMatchWhiteList);
+        args[keyIndex] = fetchKeyString(key, canMatchWhiteList);
         return args;
     }
 
-    private String fetchKeyString(String key, Collection<String> whiteList, boolean canMatchWhiteList) {
-        if (canMatchWhiteList && whiteListValidate(whiteList, key)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestByConfig(key)) {
-            return Pradar.addClusterTestByConfig(key);
-        }
-        return key;
+    private String fetchKeyString(String key, boolean canMatchWhiteList) {
+        return CacheKeyRewriter.toClusterTestKey(key, canMatchWhiteList);
     }
 
-    private boolean whiteListValidate(Collection<String> whiteList, String key) {
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean whiteListValidate(String key) {
+        return CacheKeyRewriter.isWhiteListed(key);
     }
 
-    protected Object[] processEvalMethodName(Object[] args, Collection<String> whiteList, boolean canMatchWhiteList) {
+    protected Object[] processEvalMethodName(Object[] args, boolean canMatchWhiteList) {
         if (args.length != 3) {
             return args;
         }
@@ -349,37 +351,19 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             if (keyCount <= params.length) {
                 for (int i = 0; i < keyCount; i++) {
                     Object data = params[i];
-                    String key;
                     if (data instanceof String) {
-                        key = (String) data;
+                        String key = (String) data;
+                        if (RedisUtils.IGNORE_NAME.contains(key)) {
+                            continue;
+                        }
+                        params[i] = CacheKeyRewriter.toClusterTestKey(key, canMatchWhiteList);
                     } else if (data instanceof byte[]) {
-                        key = new String((byte[]) data);
-                    } else {
-                        throw new PressureMeasureError("redis lua not support type " + data.getClass().getName());
-                    }
-                    if (RedisUtils.IGNORE_NAME.contains(key)) {
-                        continue;
-                    }
-                    boolean contains = false;
-                    if (canMatchWhiteList) {
-                        for (String white : whiteList) {
-                            if (key.startsWith(white)) {
-                                contains = true;
-                                break;
-                            }
+                        if (RedisUtils.IGNORE_NAME.contains(new String((byte[]) data))) {
+                            continue;
                         }
-                    }
-
-                    if (contains) {
-                        continue;
-                    }
-                    if (Pradar.isClusterTestByConfig(key)) {
-                        continue;
-                    }
-                    if (params[i] instanceof String) {
-                        params[i] = Pradar.addClusterTestByConfig(key);
+                        params[i] = CacheKeyRewriter.toClusterTestKey((byte[]) data, canMatchWhiteList);
                     } else {
-                        params[i] = (Pradar.addClusterTestByConfig(key)).getBytes();
+                        throw new PressureMeasureError("redis lua not support type " + data.getClass().getName());
                     }
                 }
             }
@@ -394,27 +378,10 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
             if (keyCount <= params.length) {
                 for (int i = 0; i < keyCount; i++) {
                     byte[] data = params[i];
-                    String key = new String((byte[]) data);
-                    if (RedisUtils.IGNORE_NAME.contains(key)) {
+                    if (RedisUtils.IGNORE_NAME.contains(new String(data))) {
                         continue;
                     }
-                    boolean contains = false;
-                    if (canMatchWhiteList) {
-                        for (String white : whiteList) {
-                            if (key.startsWith(white)) {
-                                contains = true;
-                                break;
-                            }
-                        }
-                    }
-
-                    if (contains) {
-                        continue;
-                    }
-                    if (Pradar.isClusterTestByConfig(key)) {
-                        continue;
-                    }
-                    params[i] = (Pradar.addClusterTestByConfig(key)).getBytes();
+                    params[i] = CacheKeyRewriter.toClusterTestKey(data, canMatchWhiteList);
                 }
             }
         } else if (args[1] instanceof java.util.List) {
@@ -431,12 +398,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
                         ptList.add(key);
                     }
                 } else if (o instanceof byte[]) {
-                    key = new String((byte[]) o);
-                    if (!Pradar.isClusterTestByConfig(key)) {
-                        ptList.add((Pradar.addClusterTestByConfig(key)).getBytes());
-                    } else {
-                        ptList.add(key.getBytes());
-                    }
+                    ptList.add(CacheKeyRewriter.toClusterTestKey((byte[]) o, false));
                 } else {
                     throw new PressureMeasureError("redis lua not support type " + o.getClass().getName());
                 }
@@ -446,43 +408,20 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         return args;
     }
 
-    private Object[] processKeyByte(Object[] args, Collection<String> whiteList, int keyIndex, boolean canMatchWhiteList) {
-        int keysIndex = keyIndex;
-        String key = new String((byte[]) args[keysIndex]);
-
-        //白名单 忽略
-        if (canMatchWhiteList && ignore(whiteList, key)) {
-            return args;
-        }
-
-        if (!Pradar.isClusterTestByConfig(key)) {
-            key = Pradar.addClusterTestByConfig(key);
-            args[keysIndex] = key.getBytes();
-            return args;
-        }
-
+    private Object[] processKeyByte(Object[] args, int keyIndex, boolean canMatchWhiteList) {
+        args[keyIndex] = CacheKeyRewriter.toClusterTestKey((byte[]) args[keyIndex], canMatchWhiteList);
         return args;
     }
 
-    private Object[] processKeyByteArray(Object[] args, Collection<String> whiteList, int keyIndex, boolean canMatchWhiteList) {
+    private Object[] processKeyByteArray(Object[] args, int keyIndex, boolean canMatchWhiteList) {
         int keysIndex = keyIndex;
         byte[][] keyBytes = (byte[][]) args[keysIndex];
 
         for (int i = 0; i < keyBytes.length; i++) {
-            String key = new String(keyBytes[i]);
-
-            if (isNumeric(key)) {
+            if (isNumeric(keyBytes[i])) {
                 continue;
             }
-
-            //白名单 忽略
-            if (canMatchWhiteList && whiteListValidate(whiteList, key)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestByConfig(key)) {
-                key = Pradar.addClusterTestByConfig(key);
-                keyBytes[i] = key.getBytes();
-            }
+            keyBytes[i] = CacheKeyRewriter.toClusterTestKey(keyBytes[i], canMatchWhiteList);
         }
 
         args[keysIndex] = keyBytes;
@@ -571,8 +510,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         }
 
         String str = key.toString();
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return str;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -583,8 +521,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
     }
 
     private String getString(String key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, key)) {
+        if (ignore(key)) {
             return key;
         }
         String str = key;
@@ -598,8 +535,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
         char[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
             String str = new String(datas[i]);
-            Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-            if (ignore(whiteList, str)) {
+            if (ignore(str)) {
                 continue;
             }
             if (!Pradar.isClusterTestByConfig(str)) {
@@ -612,8 +548,7 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
 
     private char[] getChars(char[] key) {
         String str = new String(key);
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return key;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -623,42 +558,19 @@ public class MJedisInterceptor extends ParametersWrapperInterceptorAdaptor {
     }
 
     private byte[][] getBytesArray(byte[][] key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         byte[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
-            String str = new String(datas[i]);
-            if (ignore(whiteList, str)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestByConfig(str)) {
-                str = Pradar.addClusterTestByConfig(str);
-            }
-            datas[i] = str.getBytes();
+            datas[i] = CacheKeyRewriter.toClusterTestKey(datas[i], true);
         }
         return datas;
     }
 
-    private boolean ignore(Collection<String> whiteList, String key) {
+    private boolean ignore(String key) {
         //白名单 忽略
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+        return CacheKeyRewriter.isWhiteListed(key);
     }
 
     private byte[] getBytes(byte[] key) {
-        String str = new String(key);
-
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestByConfig(str)) {
-            str = Pradar.addClusterTestByConfig(str);
-        }
-        return str.getBytes();
+        return CacheKeyRewriter.toClusterTestKey(key, true);
     }
 }
@@ -20,7 +20,7 @@ import com.pamirs.attach.plugin.jedis.util.RedisUtils;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.AroundInterceptor;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.annotation.ListenerBehavior;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
@@ -59,24 +59,23 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
             return;
         }
 
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         List<String> keys = null;
 
         if (RedisUtils.EVAL_METHOD_NAME.contains(methodName)) {
-            keys = processEvalMethodName(args, whiteList);
+            keys = processEvalMethodName(args);
         } else if (RedisUtils.METHOD_MORE_KEYS.containsKey(methodName)) {
-            keys = processMoreKeys(methodName, whiteList, args);
+            keys = processMoreKeys(methodName, args);
         } else if ("mset".equals(advice.getBehaviorName()) || "msetnx".equals(advice.getBehaviorName())) {
-            keys = processMset(args, whiteList);
+            keys = processMset(args);
         } else {
-            keys = process(args, whiteList);
+            keys = process(args);
         }
         if (keys != null) {
             validateKeys(keys, methodName);
         }
     }
 
-    private List<String> processMset(Object[] args, Collection<String> whiteList) {
+    private List<String> processMset(Object[] args) {
         ArrayList<String> keyList = new ArrayList<String>();
         Object params = args[0];
         if (params instanceof String[]) {
@@ -106,22 +105,22 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
         }
     }
 
-    private List<String> process(Object[] args, Collection<String> whiteList) {
+    private List<String> process(Object[] args) {
         int nullNum = 0;
         for (int i = 0; i < args.length; i++) {
             if (args[i] == null) {
                 nullNum++;
             }
             if (args[i] instanceof String) {
-                return processKeyString(args, whiteList, i);
+                return processKeyString(args, i);
             } else if (args[i] instanceof String[]) {
-                return processKeyStringArray(args, whiteList, i);
+                return processKeyStringArray(args, i);
             } else if (args[i] instanceof byte[]) {
-                return processKeyByte(args, whiteList, i);
+                return processKeyByte(args, i);
             } else if (args[i] instanceof byte[][]) {
-                return processKeyByteArray(args, whiteList, i);
+                return processKeyByteArray(args, i);
             } else if (args[i] instanceof Map.Entry[]) {
-                return processKeyMapEntry(args, whiteList, i);
+                return processKeyMapEntry(args, i);
             }
         }
         if (nullNum == args.length) {
@@ -147,7 +146,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
         }
     }
 
-    private List<String> processKeyMapEntry(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private List<String> processKeyMapEntry(Object[] args, int keyIndex) {
         List<String> returnKeys = new ArrayList<String>();
         int keysIndex = keyIndex;
         Map.Entry[] keyBytes = (Map.Entry[])args[keysIndex];
@@ -158,7 +157,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
                 continue;
             }
             //白名单 忽略
-            if (whiteListValidate(args, whiteList, key)) {
+            if (whiteListValidate(args, key)) {
                 continue;
             }
             returnKeys.add(key);
@@ -166,7 +165,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
         return returnKeys;
     }
 
-    private List<String> processKeyByteArray(Object[] args, Collection<String> whiteList,
+    private List<String> processKeyByteArray(Object[] args,
         int keyIndex) {
         List<String> returnKeys = new ArrayList<String>();
         int keysIndex = keyIndex;
@@ -179,7 +178,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
                 continue;
             }
             //白名单 忽略
-            if (whiteListValidate(args, whiteList, key)) {
+            if (whiteListValidate(args, key)) {
                 continue;
             }
             returnKeys.add(key);
@@ -187,17 +186,17 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
         return returnKeys;
     }
 
-    private List<String> processKeyByte(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private List<String> processKeyByte(Object[] args, int keyIndex) {
         int keysIndex = keyIndex;
         String key = new String((byte[])args[keysIndex]);
         //白名单 忽略
-        if (whiteListValidate(args, whiteList, key)) {
+        if (whiteListValidate(args, key)) {
             return Collections.emptyList();
         }
         return Collections.singletonList(key);
     }
 
-    private List<String> processKeyStringArray(Object[] args, Collection<String> whiteList,
+    private List<String> processKeyStringArray(Object[] args,
         int keyIndex) {
 
         List<String> returnKeys = new ArrayList<String>();
@@ -209,7 +208,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
                 continue;
             }
             //白名单 忽略
-            if (whiteListValidate(args, whiteList, key)) {
+            if (whiteListValidate(args, key)) {
                 continue;
             }
             returnKeys.add(key);
@@ -225,56 +224,51 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
         return false;
     }
 
-    private List<String> processMoreKeys(String methodName, Collection<String> whiteList, Object[] args) {
+    private List<String> processMoreKeys(String methodName, Object[] args) {
         List<Integer> keyIndexes = RedisUtils.METHOD_MORE_KEYS.get(methodName);
         //如果出现枚举的值比方法参数数量大的，则进行判断单个key逻辑处理
         for (int i = 0; i < keyIndexes.size(); i++) {
             if (args.length < (keyIndexes.get(i) + 1)) {
-                return process(args, whiteList);
+                return process(args);
             }
         }
 
         List<String> keys = new ArrayList<String>();
         for (int i = 0; i < keyIndexes.size(); i++) {
-            List<String> strings = processIndex(args, whiteList, keyIndexes.get(i));
+            List<String> strings = processIndex(args, keyIndexes.get(i));
             keys.addAll(strings);
         }
 
         return keys;
     }
 
-    private List<String> processIndex(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private List<String> processIndex(Object[] args, int keyIndex) {
         if (args[keyIndex] instanceof String) {
-            return processKeyString(args, whiteList, keyIndex);
+            return processKeyString(args, keyIndex);
         } else if (args[keyIndex] instanceof String[]) {
-            return processKeyStringArray(args, whiteList, keyIndex);
+            return processKeyStringArray(args, keyIndex);
         } else if (args[keyIndex] instanceof byte[]) {
-            return processKeyByte(args, whiteList, keyIndex);
+            return processKeyByte(args, keyIndex);
         } else if (args[keyIndex] instanceof byte[][]) {
-            return processKeyByteArray(args, whiteList, keyIndex);
+            return processKeyByteArray(args, keyIndex);
         } else {
             throw new PressureMeasureError("Jedis not support key deserialize !");
         }
     }
 
-    private List<String> processKeyString(Object[] args, Collection<String> whiteList, int keyIndex) {
+    private List<String> processKeyString(Object[] args, int keyIndex) {
         String key = (String)args[keyIndex];
-        if (whiteListValidate(args, whiteList, key)) {
+        if (whiteListValidate(args, key)) {
             return Collections.emptyList();
         }
         return Collections.singletonList(key);
     }
 
-    private boolean whiteListValidate(Object[] args, Collection<String> whiteList, String key) {
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+    private boolean whiteListValidate(Object[] args, String key) {
+        return CacheKeyRewriter.isWhiteListed(key);
     }
 
-    private List<String> processEvalMethodName(Object[] args, Collection<String> whiteList) {
+    private List<String> processEvalMethodName(Object[] args) {
 
         List<String> keys = new ArrayList<String>();
         if (args.length != 3) {
@@ -298,14 +292,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
                         continue;
                     }
 
-                    boolean contains = false;
-                    for (String white : whiteList) {
-                        if (key.startsWith(white)) {
-                            contains = true;
-                            break;
-                        }
-                    }
-                    if (contains) {
+                    if (CacheKeyRewriter.isWhiteListed(key)) {
                         continue;
                     }
                     if (Pradar.isClusterTestByConfig(key)) {
@@ -329,14 +316,7 @@ public class RedisDataCheckInterceptor extends AroundInterceptor {
                     if (RedisUtils.IGNORE_NAME.contains(key)) {
                         continue;
                     }
-                    boolean contains = false;
-                    for (String white : whiteList) {
-                        if (key.startsWith(white)) {
-                            contains = true;
-                            break;
-                        }
-                    }
-                    if (contains) {
+                    if (CacheKeyRewriter.isWhiteListed(key)) {
                         continue;
                     }
                     if (Pradar.isClusterTestByConfig(key)) {
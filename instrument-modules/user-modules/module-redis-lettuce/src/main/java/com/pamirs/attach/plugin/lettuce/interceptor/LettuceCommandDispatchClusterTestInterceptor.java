@@ -6,7 +6,7 @@ import com.pamirs.attach.plugin.lettuce.LettucePlugin;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import io.lettuce.core.protocol.ProtocolKeyword;
 
@@ -81,33 +81,10 @@ public class LettuceCommandDispatchClusterTestInterceptor extends ParametersWrap
         List singularArguments = ReflectionUtils.get(args[2],"singularArguments");
         Object keyArgument = singularArguments.get(0);
         byte[] bytes = ReflectionUtils.get(keyArgument,"key");
-        String rawKey = new String(bytes);
-        String processedKey = processKey(rawKey);
-        if (!rawKey.equals(processedKey)) {
-            ReflectionUtils.set(keyArgument, "key", processedKey.getBytes());
+        byte[] processedKey = CacheKeyRewriter.toClusterTestKey(bytes, true);
+        if (processedKey != bytes) {
+            ReflectionUtils.set(keyArgument, "key", processedKey);
         }
         return args;
     }
-
-    private String processKey(String key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, key)) {
-            return key;
-        }
-        String str = key;
-        if (!Pradar.isClusterTestByConfig(str)) {
-            str = Pradar.addClusterTestByConfig(str);
-        }
-        return str;
-    }
-
-    private boolean ignore(Collection<String> whiteList, String key) {
-        //白名单 忽略
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
@@ -20,7 +20,7 @@ import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.exception.PressureMeasureError;
 import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import io.lettuce.core.output.KeyStreamingChannel;
@@ -183,8 +183,7 @@ public abstract class LettuceMethodClusterTestInterceptor extends ParametersWrap
         }
 
         String str = key.toString();
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return str;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -195,8 +194,7 @@ public abstract class LettuceMethodClusterTestInterceptor extends ParametersWrap
     }
 
     private String getString(String key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, key)) {
+        if (ignore(key)) {
             return key;
         }
         String str = key;
@@ -210,8 +208,7 @@ public abstract class LettuceMethodClusterTestInterceptor extends ParametersWrap
         char[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
             String str = new String(datas[i]);
-            Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-            if (ignore(whiteList, str)) {
+            if (ignore(str)) {
                 continue;
             }
             if (!Pradar.isClusterTestByConfig(str)) {
@@ -224,8 +221,7 @@ public abstract class LettuceMethodClusterTestInterceptor extends ParametersWrap
 
     private char[] getChars(char[] key) {
         String str = new String(key);
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return key;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -235,42 +231,19 @@ public abstract class LettuceMethodClusterTestInterceptor extends ParametersWrap
     }
 
     private byte[][] getBytesArray(byte[][] key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         byte[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
-            String str = new String(datas[i]);
-            if (ignore(whiteList, str)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestByConfig(str)) {
-                str = Pradar.addClusterTestByConfig(str);
-            }
-            datas[i] = str.getBytes();
+            datas[i] = CacheKeyRewriter.toClusterTestKey(datas[i], true);
         }
         return datas;
     }
 
-    private boolean ignore(Collection<String> whiteList, String key) {
+    private boolean ignore(String key) {
         //白名单 忽略
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+        return CacheKeyRewriter.isWhiteListed(key);
     }
 
     private byte[] getBytes(byte[] key) {
-        String str = new String(key);
-
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestByConfig(str)) {
-            str = Pradar.addClusterTestByConfig(str);
-        }
-        return str.getBytes();
+        return CacheKeyRewriter.toClusterTestKey(key, true);
     }
 }
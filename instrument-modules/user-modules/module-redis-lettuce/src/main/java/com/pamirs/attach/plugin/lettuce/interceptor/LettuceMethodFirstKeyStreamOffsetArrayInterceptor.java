@@ -19,7 +19,7 @@ import com.pamirs.attach.plugin.lettuce.destroy.LettuceDestroy;
 import com.pamirs.pradar.Pradar;
 import com.pamirs.pradar.interceptor.ParametersWrapperInterceptorAdaptor;
 import com.pamirs.pradar.pressurement.ClusterTestUtils;
-import com.pamirs.pradar.pressurement.agent.shared.service.GlobalConfig;
+import com.pamirs.pradar.pressurement.agent.shared.util.CacheKeyRewriter;
 import com.shulie.instrument.simulator.api.annotation.Destroyable;
 import com.shulie.instrument.simulator.api.listener.ext.Advice;
 import io.lettuce.core.XReadArgs;
@@ -184,8 +184,7 @@ public class LettuceMethodFirstKeyStreamOffsetArrayInterceptor extends Parameter
         }
 
         String str = key.toString();
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return str;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -196,8 +195,7 @@ public class LettuceMethodFirstKeyStreamOffsetArrayInterceptor extends Parameter
     }
 
     private String getString(String key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, key)) {
+        if (ignore(key)) {
             return key;
         }
         String str = key;
@@ -211,8 +209,7 @@ public class LettuceMethodFirstKeyStreamOffsetArrayInterceptor extends Parameter
         char[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
             String str = new String(datas[i]);
-            Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-            if (ignore(whiteList, str)) {
+            if (ignore(str)) {
                 continue;
             }
             if (!Pradar.isClusterTestByConfig(str)) {
@@ -225,8 +222,7 @@ public class LettuceMethodFirstKeyStreamOffsetArrayInterceptor extends Parameter
 
     private char[] getChars(char[] key) {
         String str = new String(key);
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
+        if (ignore(str)) {
             return key;
         }
         if (!Pradar.isClusterTestByConfig(str)) {
@@ -236,42 +232,19 @@ public class LettuceMethodFirstKeyStreamOffsetArrayInterceptor extends Parameter
     }
 
     private byte[][] getBytesArray(byte[][] key) {
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
         byte[][] datas = key;
         for (int i = 0, len = datas.length; i < len; i++) {
-            String str = new String(datas[i]);
-            if (ignore(whiteList, str)) {
-                continue;
-            }
-            if (!Pradar.isClusterTestByConfig(str)) {
-                str = Pradar.addClusterTestByConfig(str);
-            }
-            datas[i] = str.getBytes();
+            datas[i] = CacheKeyRewriter.toClusterTestKey(datas[i], true);
         }
         return datas;
     }
 
-    private boolean ignore(Collection<String> whiteList, String key) {
+    private boolean ignore(String key) {
         //白名单 忽略
-        for (String white : whiteList) {
-            if (key.startsWith(white)) {
-                return true;
-            }
-        }
-        return false;
+        return CacheKeyRewriter.isWhiteListed(key);
     }
 
     private byte[] getBytes(byte[] key) {
-        String str = new String(key);
-
-        Collection<String> whiteList = GlobalConfig.getInstance().getCacheKeyWhiteList();
-        if (ignore(whiteList, str)) {
-            return key;
-        }
-
-        if (!Pradar.isClusterTestByConfig(str)) {
-            str = Pradar.addClusterTestByConfig(str);
-        }
-        return str.getBytes();
+        return CacheKeyRewriter.toClusterTestKey(key, true);
     }
 }
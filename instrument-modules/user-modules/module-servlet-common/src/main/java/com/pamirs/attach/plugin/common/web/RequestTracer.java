@@ -423,12 +423,13 @@ public abstract class RequestTracer<REQ, RESP> {
          * 这个放在后面是防止我们获取参数时使用默认编码导致在业务中使用自定义编码时会出现乱码
          * 但是这可能会导致我们获取到的参数是乱码
          */
-        if (Pradar.isRequestOn()) {
+        final boolean sampled = Pradar.isTraceSampled();
+        if (Pradar.isRequestOn() && sampled) {
             String params = getParams(request);
             Pradar.request(params);
         }
 
-        if (Pradar.isResponseOn()) {
+        if (Pradar.isResponseOn() && sampled) {
             String result = getResponse(response);
             if (throwable != null) {
                 Pradar.response(throwable);
@@ -14,6 +14,7 @@
  */
 package com.pamirs.attach.plugin.common.web;
 
+import com.pamirs.pradar.PradarRuntimeConfig;
 import com.shulie.instrument.simulator.api.ExtensionModule;
 import com.shulie.instrument.simulator.api.ModuleInfo;
 import com.shulie.instrument.simulator.api.ModuleLifecycleAdapter;
@@ -53,6 +54,7 @@ public class ServletCommonModule extends ModuleLifecycleAdapter implements Exten
         if (responseOn != null) {
             System.setProperty("plugin.response.on", String.valueOf(responseOn));
         }
+        PradarRuntimeConfig.refresh();
         return true;
     }
 }
@@ -89,6 +89,42 @@ public class BeforeEvent extends InvokeEvent {
         this.argumentArray = argumentArray;
     }
 
+    /**
+     * 事件池复用时重新填充事件内容
+     * ClassLoader 未发生变化时复用原有的 WeakReference，避免额外的对象分配
+     */
+    void reuse(final int processId,
+               final int invokeId,
+               final ClassLoader javaClassLoader,
+               final Class clazz,
+               final String javaMethodName,
+               final String javaMethodDesc,
+               final Object target,
+               final Object[] argumentArray) {
+        reset(processId, invokeId);
+        if (javaClassLoader == null) {
+            this.javaClassLoader = null;
+        } else if (this.javaClassLoader == null || this.javaClassLoader.get() != javaClassLoader) {
+            this.javaClassLoader = new WeakReference<ClassLoader>(javaClassLoader);
+        }
+        this.clazz = clazz;
+        this.javaMethodName = javaMethodName;
+        this.javaMethodDesc = javaMethodDesc;
+        this.target = target;
+        this.argumentArray = argumentArray;
+    }
+
+    /**
+     * 回收到事件池前清空引用，防止持有业务对象
+     */
+    void clear() {
+        this.clazz = null;
+        this.javaMethodName = null;
+        this.javaMethodDesc = null;
+        this.target = null;
+        this.argumentArray = null;
+    }
+
     /**
      * 改变方法入参
      *
@@ -32,6 +32,11 @@ public abstract class Event {
      */
     private final int type;
 
+    /**
+     * 是否被监听器保留，保留的事件不会被 {@link EventPool} 回收复用
+     */
+    private boolean retained;
+
     /**
      * 构造调用事件
      *
@@ -44,4 +49,27 @@ public abstract class Event {
     public int getType() {
         return type;
     }
+
+    /**
+     * 声明需要在 onEvent 返回之后继续持有该事件
+     * <p>
+     * 开启事件池后事件对象会在当前事件处理结束后被回收复用，如果监听器需要
+     * 在事件处理周期外引用该事件，必须在 onEvent 中调用此方法，被保留的事件
+     * 不会再被回收，内容也不会被清空
+     *
+     * @return this
+     */
+    public Event retain() {
+        this.retained = true;
+        return this;
+    }
+
+    /**
+     * 事件是否已经被保留
+     *
+     * @return TRUE:已保留；FALSE：未保留
+     */
+    public boolean isRetained() {
+        return retained;
+    }
 }
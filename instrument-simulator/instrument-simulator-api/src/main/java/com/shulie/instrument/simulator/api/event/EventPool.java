@@ -0,0 +1,170 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.event;
+
+/**
+ * 线程级事件池
+ * <p>
+ * 用于复用 BEFORE、RETURN、THROWS 事件对象，事件的借出与归还在同一线程内按照
+ * 方法调用的嵌套顺序进行，所以每个线程只需要一个按类型区分的简单空闲栈即可。
+ * 监听器如果需要在 onEvent 之外继续持有事件，需要调用 {@link Event#retain()}，
+ * 被保留的事件在归还时直接丢弃，由 GC 回收
+ */
+public final class EventPool {
+
+    /**
+     * 每种事件类型在单个线程中缓存的最大数量，超过嵌套深度的事件直接丢弃
+     */
+    private final static int DEFAULT_POOL_SIZE = 32;
+
+    private final static ThreadLocal<EventPool> POOL_REF = new ThreadLocal<EventPool>() {
+        @Override
+        protected EventPool initialValue() {
+            return new EventPool(DEFAULT_POOL_SIZE);
+        }
+    };
+
+    private final BeforeEvent[] beforeEvents;
+    private int beforeIndex;
+
+    private final ReturnEvent[] returnEvents;
+    private int returnIndex;
+
+    private final ThrowsEvent[] throwsEvents;
+    private int throwsIndex;
+
+    private EventPool(int poolSize) {
+        this.beforeEvents = new BeforeEvent[poolSize];
+        this.returnEvents = new ReturnEvent[poolSize];
+        this.throwsEvents = new ThrowsEvent[poolSize];
+    }
+
+    /**
+     * 获取当前线程的事件池
+     *
+     * @return 事件池
+     */
+    public static EventPool get() {
+        return POOL_REF.get();
+    }
+
+    /**
+     * 清理当前线程的事件池
+     */
+    public static void remove() {
+        POOL_REF.remove();
+    }
+
+    /**
+     * 借出 BEFORE 事件
+     *
+     * @param processId       调用过程ID
+     * @param invokeId        调用ID
+     * @param javaClassLoader 触发调用事件的ClassLoader
+     * @param clazz           触发调用事件的类名称
+     * @param javaMethodName  触发调用事件的方法名称
+     * @param javaMethodDesc  触发调用事件的方法签名
+     * @param target          触发调用事件的对象(静态方法为null)
+     * @param argumentArray   触发调用事件的方法参数
+     * @return {@link BeforeEvent}
+     */
+    public BeforeEvent borrowBeforeEvent(final int processId,
+                                         final int invokeId,
+                                         final ClassLoader javaClassLoader,
+                                         final Class clazz,
+                                         final String javaMethodName,
+                                         final String javaMethodDesc,
+                                         final Object target,
+                                         final Object[] argumentArray) {
+        if (beforeIndex == 0) {
+            return new BeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
+        final BeforeEvent event = beforeEvents[--beforeIndex];
+        beforeEvents[beforeIndex] = null;
+        event.reuse(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        return event;
+    }
+
+    /**
+     * 借出 RETURN 事件
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     * @param returnObj 返回值
+     * @return {@link ReturnEvent}
+     */
+    public ReturnEvent borrowReturnEvent(final int processId,
+                                         final int invokeId,
+                                         final Object returnObj) {
+        if (returnIndex == 0) {
+            return new ReturnEvent(processId, invokeId, returnObj);
+        }
+        final ReturnEvent event = returnEvents[--returnIndex];
+        returnEvents[returnIndex] = null;
+        event.reuse(processId, invokeId, returnObj);
+        return event;
+    }
+
+    /**
+     * 借出 THROWS 事件
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     * @param throwable 抛出的异常
+     * @return {@link ThrowsEvent}
+     */
+    public ThrowsEvent borrowThrowsEvent(final int processId,
+                                         final int invokeId,
+                                         final Throwable throwable) {
+        if (throwsIndex == 0) {
+            return new ThrowsEvent(processId, invokeId, throwable);
+        }
+        final ThrowsEvent event = throwsEvents[--throwsIndex];
+        throwsEvents[throwsIndex] = null;
+        event.reuse(processId, invokeId, throwable);
+        return event;
+    }
+
+    /**
+     * 归还事件，只有从事件池借出的事件类型才会被回收，被保留的事件直接丢弃
+     *
+     * @param event 事件
+     */
+    public void release(final Event event) {
+        if (event == null || event.isRetained()) {
+            return;
+        }
+        final Class<?> eventClass = event.getClass();
+        if (eventClass == BeforeEvent.class) {
+            if (beforeIndex < beforeEvents.length) {
+                final BeforeEvent beforeEvent = (BeforeEvent) event;
+                beforeEvent.clear();
+                beforeEvents[beforeIndex++] = beforeEvent;
+            }
+        } else if (eventClass == ReturnEvent.class) {
+            if (returnIndex < returnEvents.length) {
+                final ReturnEvent returnEvent = (ReturnEvent) event;
+                returnEvent.clear();
+                returnEvents[returnIndex++] = returnEvent;
+            }
+        } else if (eventClass == ThrowsEvent.class) {
+            if (throwsIndex < throwsEvents.length) {
+                final ThrowsEvent throwsEvent = (ThrowsEvent) event;
+                throwsEvent.clear();
+                throwsEvents[throwsIndex++] = throwsEvent;
+            }
+        }
+    }
+}
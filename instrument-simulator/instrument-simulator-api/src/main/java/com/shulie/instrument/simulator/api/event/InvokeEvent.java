@@ -49,6 +49,17 @@ public abstract class InvokeEvent extends Event {
         this.invokeId = invokeId;
     }
 
+    /**
+     * 事件池复用时重置调用信息
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     */
+    void reset(int processId, int invokeId) {
+        this.processId = processId;
+        this.invokeId = invokeId;
+    }
+
     public int getProcessId() {
         return processId;
     }
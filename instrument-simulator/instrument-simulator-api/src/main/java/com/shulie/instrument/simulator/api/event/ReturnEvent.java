@@ -62,6 +62,23 @@ public class ReturnEvent extends InvokeEvent {
         this.returnObj = returnObj;
     }
 
+    /**
+     * 事件池复用时重新填充事件内容
+     */
+    void reuse(final int processId,
+               final int invokeId,
+               final Object returnObj) {
+        reset(processId, invokeId);
+        this.returnObj = returnObj;
+    }
+
+    /**
+     * 回收到事件池前清空引用
+     */
+    void clear() {
+        this.returnObj = null;
+    }
+
     public Object getReturnObj() {
         return returnObj;
     }
@@ -69,6 +69,23 @@ public class ThrowsEvent extends InvokeEvent {
 
     }
 
+    /**
+     * 事件池复用时重新填充事件内容
+     */
+    void reuse(final int processId,
+               final int invokeId,
+               final Throwable throwable) {
+        reset(processId, invokeId);
+        this.throwable = throwable;
+    }
+
+    /**
+     * 回收到事件池前清空引用
+     */
+    void clear() {
+        this.throwable = null;
+    }
+
     public Throwable getThrowable() {
         return throwable;
     }
@@ -22,6 +22,14 @@ public class ModuleLoadInfo {
     private String moduleId;
     private ModuleLoadStatusEnum status;
     private String errorMsg;
+    /**
+     * 模块准备耗时，包括打开模块包和创建类加载器，单位毫秒
+     */
+    private long prepareCost;
+    /**
+     * 模块加载耗时，包括 onLoad、onActive 等生命周期，单位毫秒
+     */
+    private long loadCost;
 
     public String getModuleId() {
         return moduleId;
@@ -49,4 +57,20 @@ public class ModuleLoadInfo {
         this.status = status;
         this.errorMsg = errorMsg;
     }
+
+    public long getPrepareCost() {
+        return prepareCost;
+    }
+
+    public void setPrepareCost(long prepareCost) {
+        this.prepareCost = prepareCost;
+    }
+
+    public long getLoadCost() {
+        return loadCost;
+    }
+
+    public void setLoadCost(long loadCost) {
+        this.loadCost = loadCost;
+    }
 }
@@ -138,6 +138,15 @@ public interface ModuleManager {
      */
     int getEffectMethodCount(String moduleId) throws ModuleException;
 
+    /**
+     * 获取模块重新增强类的耗时统计
+     *
+     * @param moduleId 模块ID
+     * @return 重新增强的耗时统计
+     * @throws ModuleException 模块不存在
+     */
+    ReTransformReport getReTransformReport(String moduleId) throws ModuleException;
+
     /**
      * 获取模块激活状态，判断当前模块是否已经被激活
      *
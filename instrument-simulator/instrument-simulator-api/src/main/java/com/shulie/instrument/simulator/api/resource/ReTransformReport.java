@@ -0,0 +1,198 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.resource;
+
+import java.io.Serializable;
+
+/**
+ * 模块重新增强类的耗时统计
+ */
+public class ReTransformReport implements Serializable {
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * 模块ID
+     */
+    private String moduleId;
+
+    /**
+     * 重新增强的次数
+     */
+    private long times;
+
+    /**
+     * 累计重新增强的类个数
+     */
+    private long classCount;
+
+    /**
+     * 累计重新增强失败的类个数
+     */
+    private long failedClassCount;
+
+    /**
+     * 累计提交的批次数
+     */
+    private long batchCount;
+
+    /**
+     * 批次失败后拆分重试的次数
+     */
+    private long bisectCount;
+
+    /**
+     * 累计并行准备类结构的耗时，单位毫秒
+     */
+    private long prepareMillis;
+
+    /**
+     * 累计调用 retransformClasses 的耗时，单位毫秒
+     */
+    private long reTransformMillis;
+
+    /**
+     * 最近一次重新增强的类个数
+     */
+    private int lastClassCount;
+
+    /**
+     * 最近一次并行准备类结构的耗时，单位毫秒
+     */
+    private long lastPrepareMillis;
+
+    /**
+     * 最近一次调用 retransformClasses 的耗时，单位毫秒
+     */
+    private long lastReTransformMillis;
+
+    /**
+     * 最近一次重新增强的时间
+     */
+    private long lastTime;
+
+    public String getModuleId() {
+        return moduleId;
+    }
+
+    public void setModuleId(String moduleId) {
+        this.moduleId = moduleId;
+    }
+
+    public long getTimes() {
+        return times;
+    }
+
+    public void setTimes(long times) {
+        this.times = times;
+    }
+
+    public long getClassCount() {
+        return classCount;
+    }
+
+    public void setClassCount(long classCount) {
+        this.classCount = classCount;
+    }
+
+    public long getFailedClassCount() {
+        return failedClassCount;
+    }
+
+    public void setFailedClassCount(long failedClassCount) {
+        this.failedClassCount = failedClassCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public void setBatchCount(long batchCount) {
+        this.batchCount = batchCount;
+    }
+
+    public long getBisectCount() {
+        return bisectCount;
+    }
+
+    public void setBisectCount(long bisectCount) {
+        this.bisectCount = bisectCount;
+    }
+
+    public long getPrepareMillis() {
+        return prepareMillis;
+    }
+
+    public void setPrepareMillis(long prepareMillis) {
+        this.prepareMillis = prepareMillis;
+    }
+
+    public long getReTransformMillis() {
+        return reTransformMillis;
+    }
+
+    public void setReTransformMillis(long reTransformMillis) {
+        this.reTransformMillis = reTransformMillis;
+    }
+
+    public int getLastClassCount() {
+        return lastClassCount;
+    }
+
+    public void setLastClassCount(int lastClassCount) {
+        this.lastClassCount = lastClassCount;
+    }
+
+    public long getLastPrepareMillis() {
+        return lastPrepareMillis;
+    }
+
+    public void setLastPrepareMillis(long lastPrepareMillis) {
+        this.lastPrepareMillis = lastPrepareMillis;
+    }
+
+    public long getLastReTransformMillis() {
+        return lastReTransformMillis;
+    }
+
+    public void setLastReTransformMillis(long lastReTransformMillis) {
+        this.lastReTransformMillis = lastReTransformMillis;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(long lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ReTransformReport{" +
+                "moduleId='" + moduleId + '\'' +
+                ", times=" + times +
+                ", classCount=" + classCount +
+                ", failedClassCount=" + failedClassCount +
+                ", batchCount=" + batchCount +
+                ", bisectCount=" + bisectCount +
+                ", prepareMillis=" + prepareMillis +
+                ", reTransformMillis=" + reTransformMillis +
+                ", lastClassCount=" + lastClassCount +
+                ", lastPrepareMillis=" + lastPrepareMillis +
+                ", lastReTransformMillis=" + lastReTransformMillis +
+                ", lastTime=" + lastTime +
+                '}';
+    }
+}
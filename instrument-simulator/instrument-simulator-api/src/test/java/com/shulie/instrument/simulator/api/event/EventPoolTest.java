@@ -0,0 +1,112 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.api.event;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventPoolTest {
+
+    private static final Object[] ARGS = new Object[0];
+
+    @After
+    public void tearDown() {
+        EventPool.remove();
+    }
+
+    @Test
+    public void releasedEventsAreReusedWithResetFields() {
+        final EventPool pool = EventPool.get();
+        final Object target = new Object();
+        final BeforeEvent before = pool.borrowBeforeEvent(1, 2, getClass().getClassLoader(), String.class, "a", "()V", target, ARGS);
+        pool.release(before);
+        assertNull(before.getTarget());
+        assertNull(before.getArgumentArray());
+
+        final BeforeEvent reused = pool.borrowBeforeEvent(3, 4, getClass().getClassLoader(), Integer.class, "b", "()I", null, ARGS);
+        assertSame(before, reused);
+        assertEquals(3, reused.getProcessId());
+        assertEquals(4, reused.getInvokeId());
+        assertSame(Integer.class, reused.getClazz());
+        assertEquals("b", reused.getJavaMethodName());
+
+        final ReturnEvent ret = pool.borrowReturnEvent(1, 2, "r");
+        pool.release(ret);
+        assertNull(ret.getReturnObj());
+        final ReturnEvent reusedReturn = pool.borrowReturnEvent(5, 6, "s");
+        assertSame(ret, reusedReturn);
+        assertEquals(5, reusedReturn.getProcessId());
+        assertEquals("s", reusedReturn.getReturnObj());
+    }
+
+    @Test
+    public void retainedEventsAreNotReused() {
+        final EventPool pool = EventPool.get();
+        final BeforeEvent before = pool.borrowBeforeEvent(1, 2, null, String.class, "a", "()V", null, ARGS);
+        before.retain();
+        pool.release(before);
+        assertEquals("a", before.getJavaMethodName());
+
+        final BeforeEvent next = pool.borrowBeforeEvent(3, 4, null, String.class, "b", "()V", null, ARGS);
+        assertNotSame(before, next);
+        assertEquals("a", before.getJavaMethodName());
+    }
+
+    /**
+     * 只覆盖事件池本身，稳态下借出并归还 BEFORE/RETURN 事件不再分配对象
+     */
+    @Test
+    public void steadyStateBorrowAndReleaseDoesNotAllocate() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        final EventPool pool = EventPool.get();
+        final ClassLoader loader = getClass().getClassLoader();
+        final Object target = new Object();
+        final Object returnObj = new Object();
+        cycle(pool, loader, target, returnObj, 200000);
+
+        final long threadId = Thread.currentThread().getId();
+        final long start = bean.getThreadAllocatedBytes(threadId);
+        cycle(pool, loader, target, returnObj, 100000);
+        final long allocated = bean.getThreadAllocatedBytes(threadId) - start;
+        // 每次循环只要分配一个对象就会超过 1MB，留出的余量只用来容忍测量本身的开销
+        assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+    }
+
+    private static void cycle(EventPool pool, ClassLoader loader, Object target, Object returnObj, int times) {
+        for (int i = 0; i < times; i++) {
+            final BeforeEvent before = pool.borrowBeforeEvent(i, i, loader, EventPoolTest.class, "cycle", "()V", target, ARGS);
+            final ReturnEvent ret = pool.borrowReturnEvent(i, i, returnObj);
+            pool.release(ret);
+            pool.release(before);
+        }
+    }
+}
@@ -247,6 +247,11 @@ public class ModuleSpec {
      */
     private Set<String> missingImportArtifactJar = new HashSet<String>();
 
+    /**
+     * 触发模块延迟激活的类名，开启延迟激活后，这些类中任意一个被加载时才加载模块
+     */
+    private Set<String> triggerClasses = Collections.EMPTY_SET;
+
     public void loadModuleInfo(ModuleInfo moduleInfo) {
         if (moduleInfo == null) {
             return;
@@ -561,6 +566,15 @@ public class ModuleSpec {
         return importExactlyResources;
     }
 
+    public Set<String> getTriggerClasses() {
+        return triggerClasses;
+    }
+
+    public ModuleSpec setTriggerClasses(Set<String> triggerClasses) {
+        this.triggerClasses = triggerClasses;
+        return this;
+    }
+
     public String getSyncFetchTarget() {
         return syncFetchTarget;
     }
@@ -755,6 +769,7 @@ public class ModuleSpec {
                 ", priority=" + priority +
                 ", importDependencyDir=" + importDependencyDir +
                 ", importArtifacts=" + importArtifacts +
+                ", triggerClasses=" + triggerClasses +
                 '}';
     }
 }
@@ -26,6 +26,7 @@ import com.shulie.instrument.simulator.core.classloader.ClassLoaderService;
 import com.shulie.instrument.simulator.core.inject.ClassInjector;
 import com.shulie.instrument.simulator.core.manager.CoreLoadedClassDataSource;
 import com.shulie.instrument.simulator.core.manager.CoreModuleManager;
+import com.shulie.instrument.simulator.core.manager.ReTransformStatistic;
 import com.shulie.instrument.simulator.core.manager.SimulatorClassFileTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +71,11 @@ public class CoreModule {
     private final Set<SimulatorClassFileTransformer> simulatorClassFileTransformers
             = new LinkedHashSet<SimulatorClassFileTransformer>();
 
+    /**
+     * 模块重新增强类的耗时统计
+     */
+    private final ReTransformStatistic reTransformStatistic = new ReTransformStatistic();
+
     /**
      * 模块所持有的可释放资源
      */
@@ -312,6 +318,15 @@ public class CoreModule {
         return simulatorClassFileTransformers;
     }
 
+    /**
+     * 获取模块重新增强类的耗时统计
+     *
+     * @return 重新增强的耗时统计
+     */
+    public ReTransformStatistic getReTransformStatistic() {
+        return reTransformStatistic;
+    }
+
     /**
      * 获取模块所编织的类个数
      *
@@ -0,0 +1,653 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance;
+
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增强后字节码的磁盘缓存
+ * <p>
+ * 应用频繁重启时，同一批类每次启动都要重新匹配和织入。开启后增强结果按
+ * 原始字节码、织入的监听器以及参与增强的模块版本计算摘要保存在仿真器目录下，
+ * 下次启动时命中缓存的类只需要计算一次摘要和读取一次文件。
+ * </p>
+ * <p>
+ * 织入的代码中带有监听器 ID，监听器 ID 每次启动都不一样，所以缓存中记录了织入时使用的监听器 ID，
+ * 命中时把常量池中对应的整型常量替换成本次启动的监听器 ID。无法安全替换的情况（监听器 ID 落在短整型范围内
+ * 不会进入常量池、原始类的常量池中已经存在相同的整型常量等）不使用缓存。
+ * </p>
+ * <p>
+ * 缓存文件启动时以只读方式映射到内存，新增的结果先保存在内存中，一段时间没有新增后整体重写缓存文件，
+ * 重写时丢弃模块版本已经变化的结果。多个进程共用同一个目录时以最后写入的为准
+ * </p>
+ */
+public class EnhancedByteCodeCache {
+    private final static Logger logger = LoggerFactory.getLogger(EnhancedByteCodeCache.class);
+
+    /**
+     * 是否开启增强字节码缓存，默认关闭
+     */
+    public static final String ENABLED = "simulator.enhance.cache.enabled";
+    /**
+     * 缓存目录，默认为仿真器目录下的 cache/enhanced
+     */
+    public static final String DIR = "simulator.enhance.cache.dir";
+    /**
+     * 缓存文件的最大大小，单位 MB，默认 64
+     */
+    public static final String MAX_SIZE = "simulator.enhance.cache.max.size";
+
+    private static final String FILE_NAME = "enhanced.cache";
+    private static final int MAGIC = 0x53454243;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    /**
+     * 没有新增结果超过该时间后写入文件
+     */
+    private static final long FLUSH_IDLE_MILLIS = 30 * 1000L;
+
+    private final File file;
+    private final long maxBytes;
+    private final String simulatorFingerprint;
+
+    private volatile Segment segment;
+    private final ConcurrentHashMap<Digest, Entry> pending = new ConcurrentHashMap<Digest, Entry>();
+    /**
+     * 本次启动中参与增强的模块，模块 ID 对应模块指纹，用于淘汰模块升级前的缓存
+     */
+    private final ConcurrentHashMap<String, String> moduleFingerprints = new ConcurrentHashMap<String, String>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile long latestPutTime;
+    private volatile boolean closed;
+
+    private EnhancedByteCodeCache(final File file, final long maxBytes, final String simulatorFingerprint) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.simulatorFingerprint = simulatorFingerprint;
+        this.segment = Segment.load(file);
+    }
+
+    /**
+     * 打开缓存
+     *
+     * @param simulatorConfig 仿真器配置
+     * @return 未开启或者打开失败时返回 null
+     */
+    public static EnhancedByteCodeCache open(final SimulatorConfig simulatorConfig) {
+        if (!simulatorConfig.getBooleanProperty(ENABLED, false)) {
+            return null;
+        }
+        try {
+            String dir = simulatorConfig.getProperty(DIR);
+            if (dir == null || dir.trim().length() == 0) {
+                dir = simulatorConfig.getSimulatorHome() + File.separator + "cache" + File.separator + "enhanced";
+            }
+            final File directory = new File(dir.trim());
+            if (!directory.exists() && !directory.mkdirs()) {
+                logger.warn("SIMULATOR: enhanced bytecode cache disabled, can't create cache dir {}.", directory);
+                return null;
+            }
+            final long maxBytes = simulatorConfig.getIntProperty(MAX_SIZE, 64) * 1024L * 1024L;
+            final long start = System.currentTimeMillis();
+            final EnhancedByteCodeCache cache = new EnhancedByteCodeCache(new File(directory, FILE_NAME), maxBytes,
+                    simulatorConfig.getSimulatorVersion() + ':' + simulatorConfig.getSimulatorMd5());
+            cache.startFlushThread();
+            logger.info("SIMULATOR: enhanced bytecode cache opened, file={}, entries={}, cost {}ms.",
+                    cache.file, cache.segment.index.size(), System.currentTimeMillis() - start);
+            return cache;
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: enhanced bytecode cache disabled, open failed.", e);
+            return null;
+        }
+    }
+
+    /**
+     * 计算缓存的 key
+     *
+     * @param loader             目标类加载器
+     * @param internalClassName  类名
+     * @param srcByteCodeArray   增强前的字节码
+     * @param moduleFingerprints 参与增强的模块指纹，模块 ID@版本:模块包信息
+     * @param signCodes          织入的行为和监听器，顺序与织入顺序一致
+     * @return 不能使用缓存时返回 null
+     */
+    public Key key(final ClassLoader loader,
+                   final String internalClassName,
+                   final byte[] srcByteCodeArray,
+                   final List<String> moduleFingerprints,
+                   final Map<String, Set<BuildingForListeners>> signCodes) {
+        if (closed) {
+            return null;
+        }
+        final MessageDigest digest = newDigest();
+        update(digest, simulatorFingerprint);
+        update(digest, loader == null ? "" : loader.getClass().getName());
+        update(digest, internalClassName);
+        digest.update(srcByteCodeArray);
+        final StringBuilder modules = new StringBuilder();
+        for (final String moduleFingerprint : moduleFingerprints) {
+            update(digest, moduleFingerprint);
+            if (modules.length() > 0) {
+                modules.append(';');
+            }
+            modules.append(moduleFingerprint);
+            this.moduleFingerprints.put(moduleId(moduleFingerprint), moduleFingerprint);
+        }
+        int count = 0;
+        for (final Set<BuildingForListeners> listeners : signCodes.values()) {
+            count += listeners.size();
+        }
+        final int[] listenerIds = new int[count];
+        int index = 0;
+        for (final Map.Entry<String, Set<BuildingForListeners>> entry : signCodes.entrySet()) {
+            update(digest, entry.getKey());
+            for (final BuildingForListeners buildingForListeners : entry.getValue()) {
+                final int listenerId = buildingForListeners.getListenerId();
+                // 短整型范围内的常量不会进入常量池，无法替换
+                if (listenerId >= Short.MIN_VALUE && listenerId <= Short.MAX_VALUE) {
+                    return null;
+                }
+                listenerIds[index++] = listenerId;
+                update(digest, buildingForListeners.getListeners().getClassName());
+                update(digest, buildingForListeners.getListeners().getListenersTag());
+                final int[] eventTypes = buildingForListeners.getEventTypes();
+                update(digest, eventTypes == null ? -1 : eventTypes.length);
+                if (eventTypes != null) {
+                    for (final int eventType : eventTypes) {
+                        update(digest, eventType);
+                    }
+                }
+            }
+        }
+        return new Key(new Digest(digest.digest()), listenerIds, modules.toString());
+    }
+
+    /**
+     * 获取增强后的字节码
+     *
+     * @param key 缓存 key
+     * @return 替换成本次监听器 ID 后的字节码，未命中时返回 null
+     */
+    public byte[] get(final Key key) {
+        if (closed) {
+            return null;
+        }
+        try {
+            final Entry pendingEntry = pending.get(key.digest);
+            if (pendingEntry != null) {
+                final byte[] result = hit(key, pendingEntry.listenerIds, pendingEntry.byteCodeArray.clone());
+                if (result != null) {
+                    return result;
+                }
+            } else {
+                final Segment segment = this.segment;
+                final Record record = segment.index.get(key.digest);
+                if (record != null) {
+                    final byte[] result = hit(key, record.listenerIds, segment.read(record));
+                    if (result != null) {
+                        record.hit = true;
+                        return result;
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: read enhanced bytecode cache failed.", e);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 缓存增强后的字节码
+     *
+     * @param key              缓存 key
+     * @param srcByteCodeArray 增强前的字节码
+     * @param byteCodeArray    增强后的字节码
+     */
+    public void put(final Key key, final byte[] srcByteCodeArray, final byte[] byteCodeArray) {
+        if (closed || pending.containsKey(key.digest) || segment.index.containsKey(key.digest)) {
+            return;
+        }
+        try {
+            final Set<Integer> distinct = new HashSet<Integer>();
+            for (final int listenerId : key.listenerIds) {
+                distinct.add(listenerId);
+            }
+            // 原始类中已经有相同的整型常量时，命中后无法区分哪些是监听器 ID
+            final int[] positions = new int[1];
+            if (visitIntegers(srcByteCodeArray, distinct, null, positions) < 0 || positions[0] > 0) {
+                return;
+            }
+            positions[0] = 0;
+            if (visitIntegers(byteCodeArray, distinct, null, positions) < 0 || positions[0] < distinct.size()) {
+                return;
+            }
+            pending.put(key.digest, new Entry(key.listenerIds, key.modules, byteCodeArray.clone()));
+            latestPutTime = System.currentTimeMillis();
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: put enhanced bytecode cache failed.", e);
+        }
+    }
+
+    /**
+     * 关闭缓存，写入未保存的结果
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flush();
+        logger.info("SIMULATOR: enhanced bytecode cache closed, hit={}, miss={}.", hitCount.get(), missCount.get());
+        pending.clear();
+    }
+
+    private void startFlushThread() {
+        final Thread thread = new Thread("[SIMULATOR_EnhancedByteCode_Cache]") {
+            @Override
+            public void run() {
+                while (!closed) {
+                    try {
+                        Thread.sleep(FLUSH_IDLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (!closed && !pending.isEmpty() && System.currentTimeMillis() - latestPutTime > FLUSH_IDLE_MILLIS) {
+                        flush();
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 重写缓存文件：本次新增的结果优先，其次是本次命中过的结果，最后是其他模块版本没有变化的结果
+     */
+    private synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Map<Digest, Entry> written = new HashMap<Digest, Entry>(pending);
+        final Segment segment = this.segment;
+        final File tmp = new File(file.getParentFile(), FILE_NAME + '.' + System.nanoTime() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            long size = 8;
+            int count = 0;
+            for (final Map.Entry<Digest, Entry> entry : written.entrySet()) {
+                final Entry value = entry.getValue();
+                size += write(out, entry.getKey(), value.listenerIds, value.modules, value.byteCodeArray);
+                count++;
+            }
+            final List<Map.Entry<Digest, Record>> records = new ArrayList<Map.Entry<Digest, Record>>(segment.index.entrySet());
+            for (int round = 0; round < 2 && size < maxBytes; round++) {
+                for (final Map.Entry<Digest, Record> entry : records) {
+                    final Record record = entry.getValue();
+                    if (record.hit != (round == 0) || written.containsKey(entry.getKey()) || isExpired(record.modules)) {
+                        continue;
+                    }
+                    if (size + record.length > maxBytes) {
+                        continue;
+                    }
+                    size += write(out, entry.getKey(), record.listenerIds, record.modules, segment.read(record));
+                    count++;
+                }
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("rename " + tmp + " to " + file + " failed");
+                }
+            }
+            this.segment = Segment.load(file);
+            for (final Digest digest : written.keySet()) {
+                pending.remove(digest);
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("SIMULATOR: enhanced bytecode cache flushed, file={}, entries={}, size={}.", file, count, size);
+            }
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: flush enhanced bytecode cache failed, file={}.", file, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * 结果中任意一个模块在本次启动中以其他版本参与过增强，说明模块已经升级
+     */
+    private boolean isExpired(final String modules) {
+        if (modules.length() == 0) {
+            return false;
+        }
+        for (final String moduleFingerprint : modules.split(";")) {
+            final String current = moduleFingerprints.get(moduleId(moduleFingerprint));
+            if (current != null && !current.equals(moduleFingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] hit(final Key key, final int[] cachedListenerIds, final byte[] byteCodeArray) {
+        if (cachedListenerIds.length != key.listenerIds.length) {
+            return null;
+        }
+        // 缓存中的监听器 ID 与本次的监听器 ID 必须一一对应
+        final Map<Integer, Integer> mapping = new HashMap<Integer, Integer>();
+        for (int i = 0; i < cachedListenerIds.length; i++) {
+            final Integer exists = mapping.put(cachedListenerIds[i], key.listenerIds[i]);
+            if (exists != null && exists != key.listenerIds[i]) {
+                return null;
+            }
+        }
+        final int[] replaced = new int[1];
+        if (visitIntegers(byteCodeArray, mapping.keySet(), mapping, replaced) < 0 || replaced[0] < mapping.size()) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return byteCodeArray;
+    }
+
+    /**
+     * 遍历常量池中的整型常量，统计值在 values 中的常量个数，mapping 不为空时同时替换这些常量
+     *
+     * @return 常量池结束的位置，解析失败时返回 -1
+     */
+    private static int visitIntegers(final byte[] classBytes, final Set<Integer> values,
+                                     final Map<Integer, Integer> mapping, final int[] matched) {
+        if (classBytes.length < 10) {
+            return -1;
+        }
+        final int count = readUnsignedShort(classBytes, 8);
+        int offset = 10;
+        for (int i = 1; i < count; i++) {
+            if (offset >= classBytes.length) {
+                return -1;
+            }
+            final int tag = classBytes[offset];
+            switch (tag) {
+                case 1:
+                    offset += 3 + readUnsignedShort(classBytes, offset + 1);
+                    break;
+                case CONSTANT_INTEGER:
+                    final int value = readInt(classBytes, offset + 1);
+                    if (values.contains(value)) {
+                        matched[0]++;
+                        if (mapping != null) {
+                            writeInt(classBytes, offset + 1, mapping.get(value));
+                        }
+                    }
+                    offset += 5;
+                    break;
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    offset += 5;
+                    break;
+                case 5:
+                case 6:
+                    offset += 9;
+                    i++;
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    offset += 3;
+                    break;
+                case 15:
+                    offset += 4;
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return offset;
+    }
+
+    private static int write(final DataOutputStream out, final Digest digest, final int[] listenerIds,
+                             final String modules, final byte[] byteCodeArray) throws IOException {
+        final byte[] moduleBytes = modules.getBytes("UTF-8");
+        out.write(digest.bytes);
+        out.writeInt(moduleBytes.length);
+        out.write(moduleBytes);
+        out.writeInt(listenerIds.length);
+        for (final int listenerId : listenerIds) {
+            out.writeInt(listenerId);
+        }
+        out.writeInt(byteCodeArray.length);
+        out.write(byteCodeArray);
+        return digest.bytes.length + 4 + moduleBytes.length + 4 + listenerIds.length * 4 + 4 + byteCodeArray.length;
+    }
+
+    private static String moduleId(final String moduleFingerprint) {
+        final int index = moduleFingerprint.indexOf('@');
+        return index == -1 ? moduleFingerprint : moduleFingerprint.substring(0, index);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        try {
+            final byte[] bytes = value == null ? new byte[0] : value.getBytes("UTF-8");
+            update(digest, bytes.length);
+            digest.update(bytes);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(final MessageDigest digest, final int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static int readUnsignedShort(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 缓存 key
+     */
+    public static final class Key {
+        private final Digest digest;
+        private final int[] listenerIds;
+        private final String modules;
+
+        private Key(final Digest digest, final int[] listenerIds, final String modules) {
+            this.digest = digest;
+            this.listenerIds = listenerIds;
+            this.modules = modules;
+        }
+    }
+
+    private static final class Digest {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private Digest(final byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Digest && Arrays.equals(bytes, ((Digest) o).bytes));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 本次启动新增的结果
+     */
+    private static final class Entry {
+        private final int[] listenerIds;
+        private final String modules;
+        private final byte[] byteCodeArray;
+
+        private Entry(final int[] listenerIds, final String modules, final byte[] byteCodeArray) {
+            this.listenerIds = listenerIds;
+            this.modules = modules;
+            this.byteCodeArray = byteCodeArray;
+        }
+    }
+
+    /**
+     * 缓存文件中的结果，字节码留在映射的文件中
+     */
+    private static final class Record {
+        private final int[] listenerIds;
+        private final String modules;
+        private final int offset;
+        private final int length;
+        private volatile boolean hit;
+
+        private Record(final int[] listenerIds, final String modules, final int offset, final int length) {
+            this.listenerIds = listenerIds;
+            this.modules = modules;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 映射到内存的缓存文件和它的索引，只读
+     */
+    private static final class Segment {
+        private static final Segment EMPTY = new Segment(null, Collections.<Digest, Record>emptyMap());
+
+        private final ByteBuffer buffer;
+        private final Map<Digest, Record> index;
+
+        private Segment(final ByteBuffer buffer, final Map<Digest, Record> index) {
+            this.buffer = buffer;
+            this.index = index;
+        }
+
+        byte[] read(final Record record) {
+            final ByteBuffer buffer = this.buffer.duplicate();
+            buffer.position(record.offset);
+            final byte[] bytes = new byte[record.length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        static Segment load(final File file) {
+            if (!file.isFile() || file.length() < 8 || file.length() > Integer.MAX_VALUE) {
+                return EMPTY;
+            }
+            RandomAccessFile randomAccessFile = null;
+            try {
+                randomAccessFile = new RandomAccessFile(file, "r");
+                final MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                    logger.info("SIMULATOR: ignore enhanced bytecode cache file {}, unknown format.", file);
+                    return EMPTY;
+                }
+                final Map<Digest, Record> index = new HashMap<Digest, Record>();
+                while (buffer.remaining() > 0) {
+                    final byte[] digest = new byte[20];
+                    buffer.get(digest);
+                    final byte[] moduleBytes = new byte[buffer.getInt()];
+                    buffer.get(moduleBytes);
+                    final int[] listenerIds = new int[buffer.getInt()];
+                    for (int i = 0; i < listenerIds.length; i++) {
+                        listenerIds[i] = buffer.getInt();
+                    }
+                    final int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    index.put(new Digest(digest), new Record(listenerIds, new String(moduleBytes, "UTF-8"), buffer.position(), length));
+                    buffer.position(buffer.position() + length);
+                }
+                return new Segment(buffer, index);
+            } catch (Throwable e) {
+                // 文件被截断或者损坏时丢弃整个文件，下次写入时重新生成
+                logger.warn("SIMULATOR: load enhanced bytecode cache file {} failed, ignore it.", file, e);
+                return EMPTY;
+            } finally {
+                if (randomAccessFile != null) {
+                    try {
+                        randomAccessFile.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,39 @@ import com.shulie.instrument.simulator.api.event.*;
  */
 class EventBuilderFactory {
 
+    /**
+     * 是否开启事件池，开启后 BEFORE、RETURN、THROWS 事件会从线程级事件池中借出并在处理完成后归还
+     */
+    private final boolean poolEnabled;
+
+    EventBuilderFactory() {
+        this(Boolean.parseBoolean(System.getProperty("simulator.event.pool.enabled", "false")));
+    }
+
+    EventBuilderFactory(final boolean poolEnabled) {
+        this.poolEnabled = poolEnabled;
+    }
+
+    /**
+     * 是否开启事件池
+     *
+     * @return TRUE:开启；FALSE：未开启
+     */
+    public boolean isPoolEnabled() {
+        return poolEnabled;
+    }
+
+    /**
+     * 归还事件，未开启事件池时不做任何处理
+     *
+     * @param event 事件
+     */
+    public void releaseEvent(final Event event) {
+        if (poolEnabled) {
+            EventPool.get().release(event);
+        }
+    }
+
     /**
      * 构建 BEFORE 事件
      *
@@ -44,7 +77,9 @@ class EventBuilderFactory {
                                         final String javaMethodDesc,
                                         final Object target,
                                         final Object[] argumentArray) {
-        //todo 减少new对象的次数
+        if (poolEnabled) {
+            return EventPool.get().borrowBeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
         BeforeEvent event = new BeforeEvent(processId, invokeId, javaClassLoader, clazz, javaMethodName, javaMethodDesc, target, argumentArray);
         return event;
     }
@@ -60,7 +95,9 @@ class EventBuilderFactory {
     public ReturnEvent buildReturnEvent(final int processId,
                                         final int invokeId,
                                         final Object returnObj) {
-        //todo 减少new对象的次数
+        if (poolEnabled) {
+            return EventPool.get().borrowReturnEvent(processId, invokeId, returnObj);
+        }
         ReturnEvent event = new ReturnEvent(processId, invokeId, returnObj);
         return event;
     }
@@ -92,6 +129,9 @@ class EventBuilderFactory {
     public ThrowsEvent buildThrowsEvent(final int processId,
                                         final int invokeId,
                                         final Throwable throwable) {
+        if (poolEnabled) {
+            return EventPool.get().borrowThrowsEvent(processId, invokeId, throwable);
+        }
         ThrowsEvent event = new ThrowsEvent(processId, invokeId, throwable);
         return event;
     }
@@ -14,8 +14,6 @@
  */
 package com.shulie.instrument.simulator.core.enhance.weaver;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -59,8 +57,8 @@ public class EventListenerHandler implements MessageHandler {
     private final AtomicInteger invokeIdSequencer = new AtomicInteger(1000);
 
     // 全局处理器ID:处理器映射集合
-    private final Map<Integer/*LISTENER_ID*/, InvokeProcessor> mappingOfEventProcessor
-        = new ConcurrentHashMap<Integer, InvokeProcessor>();
+    private final InvokeProcessorRegistry mappingOfEventProcessor
+        = new InvokeProcessorRegistry();
 
     /**
      * 事件工厂，一个流程有一个单独的事件工厂
@@ -518,6 +516,7 @@ public class EventListenerHandler implements MessageHandler {
                     return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
                 } finally {
                     BizClassLoaderHolder.clearBizClassLoader();
+                    eventFactory.releaseEvent(event);
                 }
             } finally {
                 processor.cleanIfEmpty();
@@ -561,8 +560,8 @@ public class EventListenerHandler implements MessageHandler {
 
     @Override
     public void destroy() {
-        for (Map.Entry<Integer, InvokeProcessor> entry : mappingOfEventProcessor.entrySet()) {
-            entry.getValue().clean();
+        for (InvokeProcessor processor : mappingOfEventProcessor.values()) {
+            processor.clean();
         }
         this.mappingOfEventProcessor.clear();
         AsmClassStructure.clear();
@@ -646,7 +645,11 @@ public class EventListenerHandler implements MessageHandler {
                 ? eventFactory.buildReturnEvent(processId, invokeId, object)
                 : eventFactory.buildThrowsEvent(processId, invokeId, (Throwable)object);
 
-            return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
+            try {
+                return handleEvent(listenerId, processId, invokeId, clazz, event, processor);
+            } finally {
+                eventFactory.releaseEvent(event);
+            }
         } finally {
             processor.cleanIfEmpty();
         }
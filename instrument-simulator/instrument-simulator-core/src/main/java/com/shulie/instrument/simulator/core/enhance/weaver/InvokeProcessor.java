@@ -14,9 +14,10 @@
  */
 package com.shulie.instrument.simulator.core.enhance.weaver;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.shulie.instrument.simulator.api.listener.EventListener;
-import com.shulie.instrument.simulator.api.util.SimulatorStack;
-import com.shulie.instrument.simulator.api.util.ThreadUnsafeSimulatorStack;
+import com.shulie.instrument.simulator.core.util.collection.ThreadUnsafeIntStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,11 +25,37 @@ import org.slf4j.LoggerFactory;
  * 调用流程处理器
  * <p>
  * 一个 Listener 会拥有一个独立的调用处理器来专门负责该 Listener 产生的各种事件的处理
+ * <p>
+ * 所有处理器共享一个线程级的 {@link InvokeProcessState}，每个处理器在其中占用一个槽位，
+ * 调用流程的获取只是一次数组访问，不会再为每个处理器单独创建和移除 ThreadLocal
  */
 class InvokeProcessor {
 
-    private final Logger logger = LoggerFactory.getLogger(InvokeProcessor.class);
-    private final boolean isDebugEnabled = logger.isDebugEnabled();
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvokeProcessor.class);
+    private static final boolean IS_DEBUG_ENABLED = LOGGER.isDebugEnabled();
+
+    /**
+     * 所有处理器共享的线程级调用流程状态
+     */
+    private static final ThreadLocal<InvokeProcessState> STATE_REF = new ThreadLocal<InvokeProcessState>() {
+        @Override
+        protected InvokeProcessState initialValue() {
+            return new InvokeProcessState();
+        }
+    };
+
+    /**
+     * 处理器实例序列，用于识别槽位被复用后残留在其他线程中的调用流程
+     */
+    private static final AtomicInteger GENERATION_SEQUENCER = new AtomicInteger();
+
+    /**
+     * 已释放、可被复用的槽位
+     */
+    private static int[] freeSlots = new int[16];
+    private static int freeSlotCount = 0;
+    private static int nextSlot = 0;
+
     /**
      * 事件监听器 ID
      */
@@ -43,9 +70,14 @@ class InvokeProcessor {
     final int[] eventEventTypes;
 
     /**
-     * 调用流程的 ThreadLocal，这个地方需要使用实例变量，因为需要根据按照线程和 {@link InvokeProcessor} 来隔离调用流程
+     * 处理器在线程级调用流程状态中的槽位
      */
-    private final ThreadLocal<InvokeProcess> processRef = new ThreadLocal<InvokeProcess>();
+    private final int slot;
+
+    /**
+     * 处理器实例代次，槽位复用后用来区分新旧处理器的调用流程
+     */
+    private final int generation;
 
     /**
      * 调用流程处理器的运行状态¬
@@ -66,6 +98,24 @@ class InvokeProcessor {
         this.listenerId = listenerId;
         this.eventEventTypes = eventEventTypes;
         this.listener = listener;
+        this.slot = allocateSlot();
+        this.generation = GENERATION_SEQUENCER.incrementAndGet();
+    }
+
+    private static synchronized int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        return nextSlot++;
+    }
+
+    private static synchronized void releaseSlot(int slot) {
+        if (freeSlotCount == freeSlots.length) {
+            final int[] newFreeSlots = new int[freeSlots.length << 1];
+            System.arraycopy(freeSlots, 0, newFreeSlots, 0, freeSlotCount);
+            freeSlots = newFreeSlots;
+        }
+        freeSlots[freeSlotCount++] = slot;
     }
 
     /**
@@ -86,24 +136,35 @@ class InvokeProcessor {
         }
         isRunning = false;
         listener.clean();
-        processRef.remove();
+        STATE_REF.get().remove(slot, generation);
+        releaseSlot(slot);
     }
 
+    /**
+     * 获取当前线程的调用流程，如果调用栈为空则说明上一次调用流程已经结束，
+     * 此时会重置流程的标记，等同于创建了一个新的调用流程
+     *
+     * @return 调用流程
+     */
     final InvokeProcess getOrCreate() {
-        InvokeProcess invokeProcess = processRef.get();
+        final InvokeProcessState state = STATE_REF.get();
+        InvokeProcess invokeProcess = state.get(slot, generation);
         if (invokeProcess == null) {
-            invokeProcess = new InvokeProcess();
-            processRef.set(invokeProcess);
+            invokeProcess = new InvokeProcess(listenerId, generation);
+            state.set(slot, invokeProcess);
+        } else if (invokeProcess.isEmptyStack()) {
+            invokeProcess.reset();
         }
         return invokeProcess;
     }
 
     final InvokeProcess get() {
-        return processRef.get();
+        return STATE_REF.get().get(slot, generation);
     }
 
     /**
      * clean if empty
+     * 调用流程对象会保留在线程状态中复用，调用栈清空时只重置流程标记
      */
     final void cleanIfEmpty() {
         InvokeProcess process = get();
@@ -111,7 +172,45 @@ class InvokeProcessor {
             return;
         }
         if (process.isEmptyStack()) {
-            processRef.remove();
+            process.reset();
+        }
+    }
+
+    /**
+     * 线程级调用流程状态，按处理器槽位保存该线程上所有处理器的调用流程
+     */
+    static final class InvokeProcessState {
+
+        private InvokeProcess[] processes = new InvokeProcess[16];
+
+        InvokeProcess get(int slot, int generation) {
+            if (slot >= processes.length) {
+                return null;
+            }
+            final InvokeProcess process = processes[slot];
+            if (process == null || process.generation != generation) {
+                return null;
+            }
+            return process;
+        }
+
+        void set(int slot, InvokeProcess process) {
+            if (slot >= processes.length) {
+                int newLength = processes.length;
+                while (newLength <= slot) {
+                    newLength <<= 1;
+                }
+                final InvokeProcess[] newProcesses = new InvokeProcess[newLength];
+                System.arraycopy(processes, 0, newProcesses, 0, processes.length);
+                processes = newProcesses;
+            }
+            processes[slot] = process;
+        }
+
+        void remove(int slot, int generation) {
+            if (get(slot, generation) != null) {
+                processes[slot] = null;
+            }
         }
     }
 
@@ -121,13 +220,22 @@ class InvokeProcessor {
      * 只有在方法结束(RETURN/THROWS 事件触发)时 invokeId 才会弹出，代表当前的方法调用已经结束
      * 当所有的栈被清空时表明当前的调用流程已经结束
      */
-    class InvokeProcess {
+    static final class InvokeProcess {
+
+        /**
+         * 事件监听器 ID
+         */
+        private final int listenerId;
+
+        /**
+         * 所属处理器的代次
+         */
+        private final int generation;
 
         /**
          * 一次方法调用流程的堆栈
          */
-        private final SimulatorStack<Integer> stack
-                = new ThreadUnsafeSimulatorStack<Integer>();
+        private final ThreadUnsafeIntStack stack = new ThreadUnsafeIntStack();
 
         /**
          * 是否需要忽略整个调用过程
@@ -140,6 +248,19 @@ class InvokeProcessor {
          */
         private boolean isExceptionFromImmediately = false;
 
+        InvokeProcess(int listenerId, int generation) {
+            this.listenerId = listenerId;
+            this.generation = generation;
+        }
+
+        /**
+         * 重置调用流程标记，开始一个新的调用流程
+         */
+        final void reset() {
+            isIgnoreProcess = false;
+            isExceptionFromImmediately = false;
+        }
+
         /**
          * 压入调用ID
          * 当压入的第一个调用 ID 即为流程 ID，在 BEFORE 事件中产生
@@ -148,8 +269,8 @@ class InvokeProcessor {
          */
         final void pushInvokeId(int invokeId) {
             stack.push(invokeId);
-            if (isDebugEnabled) {
-                logger.debug("SIMULATOR: push process-stack, process-id={};invoke-id={};deep={};listener={};",
+            if (IS_DEBUG_ENABLED) {
+                LOGGER.debug("SIMULATOR: push process-stack, process-id={};invoke-id={};deep={};listener={};",
                         stack.peekLast(),
                         invokeId,
                         stack.deep(),
@@ -165,10 +286,10 @@ class InvokeProcessor {
          */
         final int popInvokeId() {
             final int invokeId = stack.pop();
-            if (isDebugEnabled) {
+            if (IS_DEBUG_ENABLED) {
                 if (!stack.isEmpty()) {
                     final int processId = stack.peekLast();
-                    logger.debug("SIMULATOR: pop process-stack, process-id={};invoke-id={};deep={};listener={};",
+                    LOGGER.debug("SIMULATOR: pop process-stack, process-id={};invoke-id={};deep={};listener={};",
                             processId,
                             invokeId,
                             stack.deep(),
@@ -176,11 +297,8 @@ class InvokeProcessor {
                     );
                 }
             }
-            if (stack.isEmpty()) {
-                processRef.remove();
-                if (isDebugEnabled) {
-                    logger.debug("SIMULATOR: clean TLS: event-processor, listener={};", listenerId);
-                }
+            if (stack.isEmpty() && IS_DEBUG_ENABLED) {
+                LOGGER.debug("SIMULATOR: process-stack is empty, event-processor process finished, listener={};", listenerId);
             }
             return invokeId;
         }
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事件处理器注册表
+ * <p>
+ * 以监听器 ID 为 key 的开放寻址 int 映射表，采用写时复制：注册和注销时重建整张表
+ * 并通过 volatile 引用发布，事件分发时的查找不加锁、不装箱，也不产生任何对象。
+ * 注册与注销只发生在模块激活、冻结时，频率远低于事件分发
+ */
+class InvokeProcessorRegistry {
+
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * 当前发布的只读表
+     */
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    /**
+     * 根据监听器 ID 获取事件处理器
+     *
+     * @param listenerId 监听器 ID
+     * @return 事件处理器，不存在则返回 null
+     */
+    InvokeProcessor get(final int listenerId) {
+        return table.get(listenerId);
+    }
+
+    /**
+     * 注册事件处理器，如果已经存在则覆盖
+     *
+     * @param listenerId 监听器 ID
+     * @param processor  事件处理器
+     */
+    synchronized void put(final int listenerId, final InvokeProcessor processor) {
+        final Table current = table;
+        final int size = current.contains(listenerId) ? current.size : current.size + 1;
+        final Table newTable = new Table(capacityFor(size));
+        newTable.copyFrom(current, listenerId);
+        newTable.insert(listenerId, processor);
+        table = newTable;
+    }
+
+    /**
+     * 注销事件处理器
+     *
+     * @param listenerId 监听器 ID
+     * @return 被注销的事件处理器，不存在则返回 null
+     */
+    synchronized InvokeProcessor remove(final int listenerId) {
+        final Table current = table;
+        final InvokeProcessor processor = current.get(listenerId);
+        if (processor == null) {
+            return null;
+        }
+        final Table newTable = new Table(capacityFor(current.size - 1));
+        newTable.copyFrom(current, listenerId);
+        table = newTable;
+        return processor;
+    }
+
+    /**
+     * 获取所有已注册的事件处理器
+     *
+     * @return 事件处理器列表
+     */
+    List<InvokeProcessor> values() {
+        final Table current = table;
+        final List<InvokeProcessor> list = new ArrayList<InvokeProcessor>(current.size);
+        for (InvokeProcessor processor : current.values) {
+            if (processor != null) {
+                list.add(processor);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 清空注册表
+     */
+    synchronized void clear() {
+        table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * 负载因子不超过 0.5，保证线性探测的平均探测次数接近 1
+     */
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * 只读的开放寻址表，发布后不再修改
+     */
+    private static final class Table {
+        private final int mask;
+        private final int[] keys;
+        private final InvokeProcessor[] values;
+        private int size;
+
+        Table(int capacity) {
+            this.mask = capacity - 1;
+            this.keys = new int[capacity];
+            this.values = new InvokeProcessor[capacity];
+        }
+
+        private static int hash(int key) {
+            // 监听器 ID 是连续的序列，乘以黄金分割常数打散到整张表
+            final int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        InvokeProcessor get(int key) {
+            final int[] keys = this.keys;
+            final InvokeProcessor[] values = this.values;
+            int index = hash(key) & mask;
+            InvokeProcessor value;
+            while ((value = values[index]) != null) {
+                if (keys[index] == key) {
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        boolean contains(int key) {
+            return get(key) != null;
+        }
+
+        void insert(int key, InvokeProcessor value) {
+            int index = hash(key) & mask;
+            while (values[index] != null) {
+                if (keys[index] == key) {
+                    values[index] = value;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        void copyFrom(Table source, int excludeKey) {
+            for (int i = 0; i < source.values.length; i++) {
+                if (source.values[i] != null && source.keys[i] != excludeKey) {
+                    insert(source.keys[i], source.values[i]);
+                }
+            }
+        }
+    }
+}
@@ -36,6 +36,18 @@ public interface CoreLoadedClassDataSource extends LoadedClassDataSource {
      */
     List<Class<?>> findForReTransform(Matcher matcher);
 
+    /**
+     * 使用{@link Matcher}来完成类的检索，只检索给定类名的类
+     * <p>
+     * 用于增强范围已经限定在这些类名内的观察，不需要遍历所有已加载的类
+     * </p>
+     *
+     * @param matcher    类匹配
+     * @param classNames 类名称
+     * @return 匹配的类
+     */
+    List<Class<?>> findForReTransform(Matcher matcher, Collection<String> classNames);
+
     /**
      * 根据 className 来完成唯一类的检索
      *
@@ -59,4 +71,14 @@ public interface CoreLoadedClassDataSource extends LoadedClassDataSource {
      * @return
      */
     List<Class<?>> findForReTransform(Collection<String> classNames);
+
+    /**
+     * 开始记录新加载的类，之后按类名的检索走类名索引，不再每次遍历所有已加载的类
+     */
+    void startIndex();
+
+    /**
+     * 停止记录新加载的类并清空类名索引
+     */
+    void stopIndex();
 }
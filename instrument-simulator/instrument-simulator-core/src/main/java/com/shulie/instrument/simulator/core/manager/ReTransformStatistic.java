@@ -0,0 +1,86 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager;
+
+import com.shulie.instrument.simulator.api.resource.ReTransformReport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重新增强类的耗时统计器
+ * <p>
+ * 按模块累计每次重新增强的类个数、批次数以及准备和 retransformClasses 的耗时
+ * </p>
+ */
+public class ReTransformStatistic {
+
+    private long times;
+    private long classCount;
+    private long failedClassCount;
+    private long batchCount;
+    private long bisectCount;
+    private long prepareNanos;
+    private long reTransformNanos;
+    private int lastClassCount;
+    private long lastPrepareNanos;
+    private long lastReTransformNanos;
+    private long lastTime;
+
+    /**
+     * 记录一次重新增强
+     *
+     * @param classCount       类个数
+     * @param failedClassCount 失败的类个数
+     * @param batchCount       提交的批次数
+     * @param bisectCount      批次失败后拆分重试的次数
+     * @param prepareNanos     并行准备类结构的耗时
+     * @param reTransformNanos 调用 retransformClasses 的耗时
+     */
+    public synchronized void statistic(final int classCount,
+                                       final int failedClassCount,
+                                       final int batchCount,
+                                       final int bisectCount,
+                                       final long prepareNanos,
+                                       final long reTransformNanos) {
+        this.times++;
+        this.classCount += classCount;
+        this.failedClassCount += failedClassCount;
+        this.batchCount += batchCount;
+        this.bisectCount += bisectCount;
+        this.prepareNanos += prepareNanos;
+        this.reTransformNanos += reTransformNanos;
+        this.lastClassCount = classCount;
+        this.lastPrepareNanos = prepareNanos;
+        this.lastReTransformNanos = reTransformNanos;
+        this.lastTime = System.currentTimeMillis();
+    }
+
+    public synchronized ReTransformReport toReport(final String moduleId) {
+        final ReTransformReport report = new ReTransformReport();
+        report.setModuleId(moduleId);
+        report.setTimes(times);
+        report.setClassCount(classCount);
+        report.setFailedClassCount(failedClassCount);
+        report.setBatchCount(batchCount);
+        report.setBisectCount(bisectCount);
+        report.setPrepareMillis(TimeUnit.NANOSECONDS.toMillis(prepareNanos));
+        report.setReTransformMillis(TimeUnit.NANOSECONDS.toMillis(reTransformNanos));
+        report.setLastClassCount(lastClassCount);
+        report.setLastPrepareMillis(TimeUnit.NANOSECONDS.toMillis(lastPrepareNanos));
+        report.setLastReTransformMillis(TimeUnit.NANOSECONDS.toMillis(lastReTransformNanos));
+        report.setLastTime(lastTime);
+        return report;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
+import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
+import com.shulie.instrument.simulator.core.manager.ReTransformStatistic;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructureFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量重新增强类
+ * <p>
+ * 每批调用一次 {@link Instrumentation#retransformClasses(Class[])}，JVM 对一批类的重新增强是原子的，
+ * 一批失败时整批都不会生效，此时把这一批拆成两半分别重试，直到定位出失败的单个类。
+ * </p>
+ * <p>
+ * 提交每一批之前先在线程池中并行解析这一批类的类结构，JVM 回调形变器时直接取用解析好的类结构，
+ * 形变器中只剩下匹配和织入。
+ * </p>
+ */
+final class ClassReTransformer {
+    private final static Logger logger = LoggerFactory.getLogger(ClassReTransformer.class);
+
+    /**
+     * 每批重新增强的类个数
+     */
+    static final String BATCH_SIZE = "simulator.retransform.batch.size";
+    /**
+     * 并行解析类结构的线程数，小于等于 1 时在当前线程解析
+     */
+    static final String PREPARE_THREADS = "simulator.retransform.prepare.threads";
+
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    /**
+     * 一批中类个数小于该值时不值得提交到线程池
+     */
+    private static final int MIN_PARALLEL_PREPARE_SIZE = 8;
+
+    private final Instrumentation inst;
+    private final int batchSize;
+    private final int prepareThreads;
+    private final ExecutorService prepareExecutor;
+
+    ClassReTransformer(final Instrumentation inst, final SimulatorConfig simulatorConfig) {
+        this.inst = inst;
+        final int batchSize = simulatorConfig.getIntProperty(BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+        this.prepareThreads = simulatorConfig.getIntProperty(PREPARE_THREADS,
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        if (prepareThreads > 1) {
+            final AtomicInteger sequence = new AtomicInteger();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(prepareThreads, prepareThreads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "[SIMULATOR_ReTransform_Prepare-" + sequence.incrementAndGet() + "]");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            this.prepareExecutor = executor;
+        } else {
+            this.prepareExecutor = null;
+        }
+    }
+
+    /**
+     * 重新增强失败的回调
+     */
+    interface Callback {
+        /**
+         * 类重新增强失败
+         *
+         * @param clazz 失败的类
+         * @param index 类在待重新增强列表中的序号，从 1 开始
+         * @param cause 失败原因
+         */
+        void onFailed(Class<?> clazz, int index, Throwable cause);
+    }
+
+    /**
+     * 重新增强类，不可修改的类会被跳过
+     *
+     * @param classes   待重新增强的类
+     * @param statistic 耗时统计
+     * @param callback  失败回调
+     * @return 失败的类个数
+     */
+    int reTransform(final List<Class<?>> classes,
+                    final ReTransformStatistic statistic,
+                    final Callback callback) {
+        final List<Class<?>> modifiableClasses = new ArrayList<Class<?>>(classes.size());
+        final List<Integer> modifiableIndexes = new ArrayList<Integer>(classes.size());
+        int index = 0;
+        for (final Class<?> clazz : classes) {
+            index++;
+            if (!inst.isModifiableClass(clazz)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("SIMULATOR: reTransform {} class not supported, at index={};total={};",
+                            clazz, index - 1, classes.size());
+                }
+                continue;
+            }
+            modifiableClasses.add(clazz);
+            modifiableIndexes.add(index);
+        }
+
+        final Counter counter = new Counter();
+        long prepareNanos = 0L, reTransformNanos = 0L;
+        final int total = modifiableClasses.size();
+        for (int from = 0; from < total; from += batchSize) {
+            final int to = Math.min(from + batchSize, total);
+            final Class<?>[] batch = modifiableClasses.subList(from, to).toArray(new Class<?>[to - from]);
+            final int[] indexes = new int[batch.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = modifiableIndexes.get(from + i);
+            }
+
+            final long start = System.nanoTime();
+            prepare(batch);
+            final long prepared = System.nanoTime();
+            try {
+                counter.batchCount++;
+                reTransform(batch, indexes, 0, batch.length, counter, callback);
+            } finally {
+                for (final Class<?> clazz : batch) {
+                    TransformingClass.releasePrepared(clazz);
+                }
+            }
+            prepareNanos += prepared - start;
+            reTransformNanos += System.nanoTime() - prepared;
+        }
+        if (statistic != null) {
+            statistic.statistic(total, counter.failedCount, counter.batchCount, counter.bisectCount,
+                    prepareNanos, reTransformNanos);
+        }
+        return counter.failedCount;
+    }
+
+    /**
+     * 重新增强 [from, to) 范围内的类，失败时拆成两半分别重试
+     */
+    private void reTransform(final Class<?>[] batch, final int[] indexes,
+                             final int from, final int to,
+                             final Counter counter, final Callback callback) {
+        final Class<?>[] classes;
+        if (from == 0 && to == batch.length) {
+            classes = batch;
+        } else {
+            classes = new Class<?>[to - from];
+            System.arraycopy(batch, from, classes, 0, classes.length);
+        }
+        try {
+            inst.retransformClasses(classes);
+        } catch (Throwable cause) {
+            if (classes.length == 1) {
+                counter.failedCount++;
+                callback.onFailed(classes[0], indexes[from], cause);
+                return;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("SIMULATOR: reTransform batch of {} classes failed, split and retry.", classes.length, cause);
+            }
+            counter.bisectCount++;
+            final int middle = (from + to) >>> 1;
+            reTransform(batch, indexes, from, middle, counter, callback);
+            reTransform(batch, indexes, middle, to, counter, callback);
+        }
+    }
+
+    /**
+     * 解析一批类的类结构，解析失败的类由形变器回调时再解析
+     */
+    private void prepare(final Class<?>[] batch) {
+        if (prepareExecutor == null || batch.length < MIN_PARALLEL_PREPARE_SIZE) {
+            for (final Class<?> clazz : batch) {
+                prepare(clazz);
+            }
+            return;
+        }
+        final int chunks = Math.min(prepareThreads, batch.length);
+        final List<Future<?>> futures = new ArrayList<Future<?>>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int start = chunk;
+            try {
+                futures.add(prepareExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        SimulatorGuard.getInstance().enter();
+                        try {
+                            for (int i = start; i < batch.length; i += chunks) {
+                                prepare(batch[i]);
+                            }
+                        } finally {
+                            SimulatorGuard.getInstance().exit();
+                        }
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // 单个类解析失败已经在 prepare 中处理
+            }
+        }
+    }
+
+    private static void prepare(final Class<?> clazz) {
+        try {
+            final ClassStructure classStructure = ClassStructureFactory.createClassStructure(clazz);
+            // 匹配时一定会用到的部分提前解析
+            classStructure.getBehaviorStructures();
+            classStructure.getFamilyTypeClassStructures();
+            TransformingClass.prepared(clazz, classStructure);
+        } catch (Throwable e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("SIMULATOR: prepare class structure of {} failed.", clazz, e);
+            }
+        }
+    }
+
+    void shutdown() {
+        if (prepareExecutor != null) {
+            prepareExecutor.shutdownNow();
+        }
+    }
+
+    private static final class Counter {
+        private int batchCount;
+        private int bisectCount;
+        private int failedCount;
+    }
+}
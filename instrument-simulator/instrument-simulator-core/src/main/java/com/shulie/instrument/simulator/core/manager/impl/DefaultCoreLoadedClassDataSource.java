@@ -45,6 +45,8 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
     private final Instrumentation inst;
     private final boolean isEnableUnsafe;
     private final IgnoredTypesPredicate ignoredTypesPredicate;
+    private final LoadedClassIndex loadedClassIndex;
+    private volatile boolean isIndexStarted;
 
     public DefaultCoreLoadedClassDataSource(final Instrumentation inst,
                                             final boolean isEnableUnsafe,
@@ -52,6 +54,26 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
         this.inst = inst;
         this.isEnableUnsafe = isEnableUnsafe;
         this.ignoredTypesPredicate = ignoredTypesBuilder.buildTransformIgnoredPredicate();
+        this.loadedClassIndex = new LoadedClassIndex(inst);
+    }
+
+    @Override
+    public synchronized void startIndex() {
+        if (isIndexStarted) {
+            return;
+        }
+        inst.addTransformer(loadedClassIndex);
+        isIndexStarted = true;
+    }
+
+    @Override
+    public synchronized void stopIndex() {
+        if (!isIndexStarted) {
+            return;
+        }
+        isIndexStarted = false;
+        inst.removeTransformer(loadedClassIndex);
+        loadedClassIndex.clear();
     }
 
     @Override
@@ -99,31 +121,69 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
     }
 
     @Override
-    public List<Class<?>> findForReTransform(String className) {
+    public List<Class<?>> findForReTransform(final Matcher matcher, final Collection<String> classNames) {
+        if (!isIndexStarted || null == classNames) {
+            return find(matcher, true);
+        }
         SimulatorGuard.getInstance().enter();
         try {
-
             final List<Class<?>> classes = new ArrayList<Class<?>>();
-            if (null == className) {
+            if (null == matcher) {
                 return classes;
             }
-
-            for (Class<?> clazz : getAllForLoadedClasses()) {
-                // 过滤掉Simulator家族的类
-                if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
+            for (String className : classNames) {
+                if (null == className) {
                     continue;
                 }
-
-                try {
-                    if (clazz.getName().equals(className)) {
+                for (Class<?> clazz : loadedClassIndex.find(className)) {
+                    if (isMatchedForReTransform(matcher, clazz)) {
                         classes.add(clazz);
                     }
-                } catch (Throwable cause) {
-                    // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                    logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
                 }
             }
             return classes;
+        } finally {
+            SimulatorGuard.getInstance().exit();
+        }
+    }
+
+    /**
+     * 查找类名对应的所有类，开启索引后直接从索引中查找
+     *
+     * @param className 类名
+     * @param classes   查找结果
+     */
+    private void findByName(final String className, final List<Class<?>> classes) {
+        final Collection<Class<?>> candidates = isIndexStarted ? loadedClassIndex.find(className) : list();
+        for (Class<?> clazz : candidates) {
+            // 过滤掉Simulator家族的类
+            if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
+                continue;
+            }
+
+            try {
+                if (clazz.getName().equals(className)) {
+                    classes.add(clazz);
+                }
+            } catch (Throwable cause) {
+                // 当解析类出现异常的时候，直接认为根本没有这个类即可
+                logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
+            }
+        }
+    }
+
+    @Override
+    public List<Class<?>> findForReTransform(String className) {
+        SimulatorGuard.getInstance().enter();
+        try {
+
+            final List<Class<?>> classes = new ArrayList<Class<?>>();
+            if (null == className) {
+                return classes;
+            }
+
+            findByName(className, classes);
+            return classes;
 
         } finally {
             SimulatorGuard.getInstance().exit();
@@ -143,21 +203,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
                     return classes;
                 }
 
-                for (Class<?> clazz : getAllForLoadedClasses()) {
-                    // 过滤掉Simulator家族的类
-                    if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
-                        continue;
-                    }
-
-                    try {
-                        if (clazz.getName().equals(className)) {
-                            classes.add(clazz);
-                        }
-                    } catch (Throwable cause) {
-                        // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                        logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
-                    }
-                }
+                findByName(className, classes);
             }
             return classes;
 
@@ -179,21 +225,7 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
                     return classes;
                 }
 
-                for (Class<?> clazz : getAllForLoadedClasses()) {
-                    // 过滤掉Simulator家族的类
-                    if (SimulatorClassUtils.isComeFromSimulatorFamily(SimulatorStringUtils.toInternalClassName(clazz.getName()), clazz.getClassLoader())) {
-                        continue;
-                    }
-
-                    try {
-                        if (clazz.getName().equals(className)) {
-                            classes.add(clazz);
-                        }
-                    } catch (Throwable cause) {
-                        // 当解析类出现异常的时候，直接认为根本没有这个类即可
-                        logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
-                    }
-                }
+                findByName(className, classes);
             }
             return classes;
 
@@ -214,25 +246,19 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
             }
 
             for (Class<?> clazz : getAllForLoadedClasses()) {
-                // 过滤掉对于JVM认为不可修改的类
-                if (isRemoveUnsupported && !inst.isModifiableClass(clazz)) {
-                    logger.debug("SIMULATOR: remove from findForReTransform, because class:{} is unModifiable", clazz.getName());
+                if (isRemoveUnsupported) {
+                    if (isMatchedForReTransform(matcher, clazz)) {
+                        classes.add(clazz);
+                    }
                     continue;
                 }
                 try {
                     if (!ignoredTypesPredicate.test(clazz.getClassLoader(), clazz.getName())) {
                         continue;
                     }
-                    if (isRemoveUnsupported) {
-                        if (isMatchedUnsupported(matcher, clazz)) {
-                            classes.add(clazz);
-                        }
-                    } else {
-                        if (isMatched(matcher, clazz)) {
-                            classes.add(clazz);
-                        }
+                    if (isMatched(matcher, clazz)) {
+                        classes.add(clazz);
                     }
-
                 } catch (Throwable cause) {
                     // 当解析类出现异常的时候，直接认为根本没有这个类即可
                     logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
@@ -247,6 +273,31 @@ public class DefaultCoreLoadedClassDataSource implements CoreLoadedClassDataSour
     }
 
 
+    /**
+     * 判断类是否需要重新增强，过滤掉 JVM 认为不可修改的类和忽略增强的类
+     *
+     * @param matcher 匹配器
+     * @param clazz   目标类
+     * @return 是否需要重新增强
+     */
+    private boolean isMatchedForReTransform(final Matcher matcher, final Class<?> clazz) {
+        // 过滤掉对于JVM认为不可修改的类
+        if (!inst.isModifiableClass(clazz)) {
+            logger.debug("SIMULATOR: remove from findForReTransform, because class:{} is unModifiable", clazz.getName());
+            return false;
+        }
+        try {
+            if (!ignoredTypesPredicate.test(clazz.getClassLoader(), clazz.getName())) {
+                return false;
+            }
+            return isMatchedUnsupported(matcher, clazz);
+        } catch (Throwable cause) {
+            // 当解析类出现异常的时候，直接认为根本没有这个类即可
+            logger.warn("SIMULATOR: remove from findForReTransform, because loading class:{} occur an exception", clazz.getName(), cause);
+            return false;
+        }
+    }
+
     /**
      * 这个地方匹配在加载类时有可能因为目标类依赖的其他类不存在而导致获取构造函数或者方法会
      * 抛出 ClassNotFoundException 或者是 NoClassDefError
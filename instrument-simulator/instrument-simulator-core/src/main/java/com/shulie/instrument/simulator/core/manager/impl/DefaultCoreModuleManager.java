@@ -29,6 +29,7 @@ import com.shulie.instrument.simulator.core.CoreModule;
 import com.shulie.instrument.simulator.core.classloader.ClassLoaderFactory;
 import com.shulie.instrument.simulator.core.classloader.ClassLoaderService;
 import com.shulie.instrument.simulator.core.classloader.impl.ClassLoaderFactoryImpl;
+import com.shulie.instrument.simulator.core.enhance.EnhancedByteCodeCache;
 import com.shulie.instrument.simulator.core.enhance.weaver.EventListenerHandler;
 import com.shulie.instrument.simulator.core.extension.DefaultExtensionTemplate;
 import com.shulie.instrument.simulator.core.ignore.*;
@@ -77,6 +78,22 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
     protected CoreConfigure config;
     protected Instrumentation inst;
     protected ClassFileTransformer defaultClassFileTransformer;
+    /**
+     * 所有模块观察共用的类形变器
+     */
+    protected DispatchClassFileTransformer dispatchClassFileTransformer;
+    /**
+     * 所有模块共用的批量重新增强器
+     */
+    protected ClassReTransformer classReTransformer;
+    /**
+     * 增强字节码的磁盘缓存，未开启时为 null
+     */
+    protected EnhancedByteCodeCache enhancedByteCodeCache;
+    /**
+     * 模块的延迟激活，未开启时为 null
+     */
+    protected LazyModuleActivator lazyModuleActivator;
     protected ClassInjector classInjector;
     protected CoreLoadedClassDataSource classDataSource;
     protected ProviderManager providerManager;
@@ -175,11 +192,28 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
     @Override
     public void onStartup() {
         this.providerManager.onStart(simulatorConfig);
+        /**
+         * 开始记录新加载的类，之后模块激活时按类名查找需要重新增强的类不再遍历所有已加载的类
+         */
+        this.classDataSource.startIndex();
         /**
          * 针对需要开放给业务类加载器的类文件转换器，这个类文件转换器中负责对业务类加载器进行 jar 包的注入
          */
         this.defaultClassFileTransformer = new InternalClassFileTransformer(classInjector);
         this.inst.addTransformer(this.defaultClassFileTransformer);
+        this.enhancedByteCodeCache = EnhancedByteCodeCache.open(simulatorConfig);
+        this.dispatchClassFileTransformer = new DispatchClassFileTransformer(enhancedByteCodeCache);
+        this.inst.addTransformer(this.dispatchClassFileTransformer, true);
+        this.classReTransformer = new ClassReTransformer(inst, simulatorConfig);
+        if (simulatorConfig.getBooleanProperty(LazyModuleActivator.ENABLED, false)) {
+            this.lazyModuleActivator = new LazyModuleActivator(new LazyModuleActivator.Callback() {
+                @Override
+                public void activate(ModuleSpec moduleSpec) {
+                    activateLazyModule(moduleSpec);
+                }
+            });
+            this.inst.addTransformer(this.lazyModuleActivator);
+        }
 
         /**
          * 如果已经加载的类则直接执行注入操作
@@ -198,10 +232,24 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
     public void onShutdown() {
         this.providerManager.onShutdown(simulatorConfig);
         this.inst.removeTransformer(this.defaultClassFileTransformer);
+        this.inst.removeTransformer(this.dispatchClassFileTransformer);
+        this.classDataSource.stopIndex();
+        this.classReTransformer.shutdown();
+        if (this.lazyModuleActivator != null) {
+            this.inst.removeTransformer(this.lazyModuleActivator);
+            this.lazyModuleActivator.shutdown();
+        }
+        if (this.enhancedByteCodeCache != null) {
+            this.enhancedByteCodeCache.close();
+        }
         this.switcherManager.close();
         this.config = null;
         this.inst = null;
         this.defaultClassFileTransformer = null;
+        this.dispatchClassFileTransformer = null;
+        this.classReTransformer = null;
+        this.enhancedByteCodeCache = null;
+        this.lazyModuleActivator = null;
         this.classInjector.destroy();
         this.classInjector = null;
         this.classDataSource = null;
@@ -434,7 +482,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
                 new ReleaseResource<ModuleEventWatcher>(
                         SimulatorGuard.getInstance().doGuard(
                                 ModuleEventWatcher.class,
-                                new DefaultModuleEventWatcher(inst, classDataSource, coreModule, config.isEnableUnsafe(), eventListenerHandler)
+                                new DefaultModuleEventWatcher(inst, classDataSource, coreModule, config.isEnableUnsafe(), eventListenerHandler, dispatchClassFileTransformer, classReTransformer)
                         )
                 ) {
                     @Override
@@ -1156,6 +1204,17 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
      * @param action
      */
     private void loadModule(final ModuleSpec moduleSpec, String action) {
+        loadModule(moduleSpec, action, prepareModule(moduleSpec, action));
+    }
+
+    /**
+     * 模块加载前的准备：校验模块并创建模块的类加载器，不依赖模块管理器的锁，可以在其他线程中执行
+     *
+     * @param moduleSpec
+     * @param action
+     * @return 准备结果，模块不可用时返回 null
+     */
+    private PreparedModule prepareModule(final ModuleSpec moduleSpec, String action) {
         if (isInfoEnabled) {
             logger.info("SIMULATOR: prepare to load module {} ,file={}", moduleSpec.getModuleId(), moduleSpec.getFile().getAbsolutePath());
         }
@@ -1163,7 +1222,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             moduleSpec.setValid(false);
             logger.warn("SIMULATOR: {} modules[{}]: module-lib can not access, cause by file is not exists or can't read. module-lib={}, exists={}, canRead={}",
                     action, moduleSpec.getModuleId(), moduleSpec.getFile(), moduleSpec.getFile().exists(), moduleSpec.getFile().canRead());
-            return;
+            return null;
         }
 
         /**
@@ -1173,7 +1232,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             moduleSpec.setValid(false);
             logger.warn("SIMULATOR: {} modules[{}]: module is not enabled, cause by module version is not support simulator version, will be ignored. module-lib={}, simulator-version:{} module-support-version:{}-{}",
                     action, moduleSpec.getModuleId(), moduleSpec.getFile(), simulatorConfig.getSimulatorVersion(), moduleSpec.getSinceVersion(), moduleSpec.getUntilVersion());
-            return;
+            return null;
         }
 
         /**
@@ -1183,16 +1242,37 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
             if (disabledModules.contains(moduleSpec.getModuleId())) {
                 moduleSpec.setValid(false);
                 logger.warn("SIMULATOR: {} modules[{}]: module is disabled, will be ignored. module-lib={}", action, moduleSpec.getModuleId(), moduleSpec.getFile());
-                return;
+                return null;
             }
         }
 
         try {
-            final ClassLoaderFactory moduleClassLoader = new ClassLoaderFactoryImpl(classLoaderService, config, moduleSpec.getFile(), moduleSpec.getModuleId(), moduleSpec.isMiddlewareModule(), moduleSpec.getImportArtifacts());
-            classLoaderService.load(moduleSpec, moduleClassLoader);
+            return new PreparedModule(new ClassLoaderFactoryImpl(classLoaderService, config, moduleSpec.getFile(), moduleSpec.getModuleId(), moduleSpec.isMiddlewareModule(), moduleSpec.getImportArtifacts()));
         } catch (Throwable e) {
             logger.info("load module [{}] fail, set module invalid", moduleSpec.getModuleId(), e);
             moduleSpec.setValid(false);
+            return new PreparedModule(null);
+        }
+    }
+
+    /**
+     * 注册模块的类加载器并加载模块，需要按依赖顺序依次执行
+     *
+     * @param moduleSpec
+     * @param action
+     * @param prepared   准备结果
+     */
+    private void loadModule(final ModuleSpec moduleSpec, final String action, final PreparedModule prepared) {
+        if (prepared == null) {
+            return;
+        }
+        if (prepared.classLoaderFactory != null) {
+            try {
+                classLoaderService.load(moduleSpec, prepared.classLoaderFactory);
+            } catch (Throwable e) {
+                logger.info("load module [{}] fail, set module invalid", moduleSpec.getModuleId(), e);
+                moduleSpec.setValid(false);
+            }
         }
         if (isInfoEnabled) {
             logger.info("SIMULATOR: {} modules[{}]: load module success. module-lib={}", action, moduleSpec.getModuleId(), moduleSpec.getFile());
@@ -1237,9 +1317,88 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         }
     }
 
-    protected void loadModules(List<ModuleSpec> moduleSpecs, String action) {
+    protected void loadModules(List<ModuleSpec> moduleSpecs, final String action) {
+        if (lazyModuleActivator != null) {
+            moduleSpecs = deferLazyModules(moduleSpecs, action);
+        }
+        new ModuleLoadScheduler(
+                simulatorConfig.getIntProperty(ModuleLoadScheduler.THREADS, Math.min(4, Runtime.getRuntime().availableProcessors())),
+                simulatorConfig.getBooleanProperty(ModuleLoadScheduler.DETERMINISTIC, false)
+        ).schedule(moduleSpecs, action, new ModuleLoadScheduler.Callback<PreparedModule>() {
+            @Override
+            public PreparedModule prepare(ModuleSpec moduleSpec) {
+                return prepareModule(moduleSpec, action);
+            }
+
+            @Override
+            public void load(ModuleSpec moduleSpec, PreparedModule prepared) {
+                loadModule(moduleSpec, action, prepared);
+            }
+        });
+    }
+
+    /**
+     * 登记可以延迟激活的模块，触发类已经被加载过的模块仍然立即加载
+     *
+     * @param moduleSpecs 模块描述
+     * @param action      加载动作
+     * @return 需要立即加载的模块
+     */
+    private List<ModuleSpec> deferLazyModules(final List<ModuleSpec> moduleSpecs, final String action) {
+        final Set<String> dependencies = new HashSet<String>();
         for (ModuleSpec moduleSpec : moduleSpecs) {
-            loadModule(moduleSpec, action);
+            dependencies.addAll(moduleSpec.getDependencies());
+        }
+        final List<ModuleSpec> eagerModuleSpecs = new ArrayList<ModuleSpec>(moduleSpecs.size());
+        for (ModuleSpec moduleSpec : moduleSpecs) {
+            if (!LazyModuleActivator.isLazy(moduleSpec, dependencies)) {
+                eagerModuleSpecs.add(moduleSpec);
+                continue;
+            }
+            /**
+             * 先登记再检查触发类是否已经加载，避免检查之后、登记之前加载的触发类被漏掉
+             */
+            lazyModuleActivator.register(moduleSpec);
+            if (!classDataSource.findForReTransform(moduleSpec.getTriggerClasses()).isEmpty()) {
+                lazyModuleActivator.remove(moduleSpec);
+                eagerModuleSpecs.add(moduleSpec);
+                continue;
+            }
+            if (isInfoEnabled) {
+                logger.info("SIMULATOR: {} modules[{}]: module is deferred until one of {} is loaded.", action, moduleSpec.getModuleId(), moduleSpec.getTriggerClasses());
+            }
+        }
+        return eagerModuleSpecs;
+    }
+
+    /**
+     * 加载被触发的延迟激活模块
+     *
+     * @param moduleSpec 模块描述
+     */
+    private synchronized void activateLazyModule(final ModuleSpec moduleSpec) {
+        // 模块管理器已经关闭
+        if (config == null) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        loadModule(moduleSpec, "lazy-load");
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: lazy-load modules[{}]: finished in {}ms.", moduleSpec.getModuleId(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 模块的准备结果
+     */
+    private static final class PreparedModule {
+        /**
+         * 模块的类加载器工厂，创建失败时为 null
+         */
+        private final ClassLoaderFactory classLoaderFactory;
+
+        private PreparedModule(final ClassLoaderFactory classLoaderFactory) {
+            this.classLoaderFactory = classLoaderFactory;
         }
     }
 
@@ -1257,6 +1416,9 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         }
 
         waitLoadModules.clear();
+        if (lazyModuleActivator != null) {
+            lazyModuleActivator.clear();
+        }
 
         // 1. 强制卸载所有模块
         unloadAll();
@@ -1453,6 +1615,10 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
         for (final CoreModule coreModule : waitingUnloadCoreModules) {
             unload(coreModule, true);
         }
+        // 还未激活的模块随用户模块一起重新登记
+        if (lazyModuleActivator != null) {
+            lazyModuleActivator.clear();
+        }
 
         // 2. 加载模块
         // 用户模块加载目录，加载用户模块目录下的所有模块
@@ -55,6 +55,8 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     // 观察ID序列生成器
     private final Sequencer watchIdSequencer = new Sequencer();
     private EventListenerHandler eventListenerHandler;
+    private DispatchClassFileTransformer dispatchClassFileTransformer;
+    private ClassReTransformer classReTransformer;
     private final boolean isEnableReTransform = !"0".equals(System.getProperty("simulator.delay"));
 
 
@@ -62,12 +64,16 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                               final CoreLoadedClassDataSource classDataSource,
                               final CoreModule coreModule,
                               final boolean isEnableUnsafe,
-                              final EventListenerHandler eventListenerHandler) {
+                              final EventListenerHandler eventListenerHandler,
+                              final DispatchClassFileTransformer dispatchClassFileTransformer,
+                              final ClassReTransformer classReTransformer) {
         this.inst = inst;
         this.classDataSource = classDataSource;
         this.coreModule = coreModule;
         this.isEnableUnsafe = isEnableUnsafe;
         this.eventListenerHandler = eventListenerHandler;
+        this.dispatchClassFileTransformer = dispatchClassFileTransformer;
+        this.classReTransformer = classReTransformer;
     }
 
     // 开始进度
@@ -111,7 +117,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     private void reTransformClasses(
             final int watchId,
             final List<Class<?>> waitingReTransformClasses,
-            final Progress progress, boolean delete,
+            final Progress progress, final boolean delete,
             SimulatorClassFileTransformer transformer) {
         // 需要形变总数
         final int total = waitingReTransformClasses.size();
@@ -131,79 +137,50 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
         int index = 0;
         for (final Class<?> waitingReTransformClass : waitingReTransformClasses) {
             index++;
-            try {
-                if (null != progress) {
-                    try {
-                        progress.progressOnSuccess(waitingReTransformClass, index);
-                    } catch (Throwable cause) {
-                        // 在进行进度汇报的过程中抛出异常,直接进行忽略,因为不影响形变的主体流程
-                        // 仅仅只是一个汇报作用而已
-                        logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnSuccess occur exception at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
-                                index - 1, total,
-                                cause
-                        );
-                    }
-                }
-                if (!inst.isModifiableClass(waitingReTransformClass)) {
-                    logger.info("SIMULATOR: watch={} in module={} single reTransform {} class not supported, at index={};total={};",
+            if (null != progress) {
+                try {
+                    progress.progressOnSuccess(waitingReTransformClass, index);
+                } catch (Throwable cause) {
+                    // 在进行进度汇报的过程中抛出异常,直接进行忽略,因为不影响形变的主体流程
+                    // 仅仅只是一个汇报作用而已
+                    logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnSuccess occur exception at index={};total={};",
                             watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
+                            index - 1, total,
+                            cause
                     );
-                    continue;
                 }
-                if (isInfoEnabled) {
-                    logger.info("SIMULATOR: pre{} watch={} in module={} single reTransform {}, at index={};total={};",
-                            delete ? " delete reTransformClasses" : "",
-                            watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
-                    );
-                }
-                inst.retransformClasses(waitingReTransformClass);
-                if (isInfoEnabled) {
-                    logger.info("SIMULATOR: {}watch={} in module={} single reTransform {} success, at index={};total={};",
-                            delete ? "successful delete reTransformClasses " : "",
-                            watchId, coreModule.getModuleId(), waitingReTransformClass,
-                            index - 1, total
-                    );
-                }
-            } catch (UnsupportedOperationException e) {
-                logger.warn("SIMULATOR: watch={} in module={} single reTransform {} failed, at index={};total={}.",
-                        watchId, coreModule.getModuleId(), waitingReTransformClass,
-                        index - 1, total,
-                        e
-                );
-                if (null != progress) {
-                    try {
-                        progress.progressOnFailed(waitingReTransformClass, index, e);
-                    } catch (Throwable cause) {
-                        logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnFailed occur exception, at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
-                                index - 1, total,
-                                cause
-                        );
-                    }
-                }
-            } catch (Throwable causeOfReTransform) {
-                logger.warn("SIMULATOR: watch={} in module={} single reTransform {} failed, at index={};total={}. ignore this class.",
-                        watchId, coreModule.getModuleId(), waitingReTransformClass,
+            }
+        }
+
+        final long start = System.currentTimeMillis();
+        final int failedCount = classReTransformer.reTransform(waitingReTransformClasses, coreModule.getReTransformStatistic(), new ClassReTransformer.Callback() {
+            @Override
+            public void onFailed(Class<?> clazz, int index, Throwable cause) {
+                logger.warn("SIMULATOR: watch={} in module={} reTransform {} failed, at index={};total={}. ignore this class.",
+                        watchId, coreModule.getModuleId(), clazz,
                         index - 1, total,
-                        causeOfReTransform
+                        cause
                 );
                 if (null != progress) {
                     try {
-                        progress.progressOnFailed(waitingReTransformClass, index, causeOfReTransform);
-                    } catch (Throwable cause) {
+                        progress.progressOnFailed(clazz, index, cause);
+                    } catch (Throwable e) {
                         logger.warn("SIMULATOR: watch={} in module={} on {} report progressOnFailed occur exception, at index={};total={};",
-                                watchId, coreModule.getModuleId(), waitingReTransformClass,
+                                watchId, coreModule.getModuleId(), clazz,
                                 index - 1, total,
-                                cause
+                                e
                         );
                     }
                 }
-                //如果报错先忽略掉 TODO
             }
-        }//for
+        });
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: {}watch={} in module={} reTransform {} classes, failed={}, cost {}ms.",
+                    delete ? "delete " : "",
+                    watchId, coreModule.getModuleId(), total, failedCount,
+                    System.currentTimeMillis() - start
+            );
+        }
 
     }
 
@@ -286,7 +263,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
 
         final int watchId = watchIdSequencer.next();
         // 给对应的模块追加ClassFileTransformer
-        final SimulatorClassFileTransformer transformer = new DefaultSimulatorClassFileTransformer(
+        final DefaultSimulatorClassFileTransformer transformer = new DefaultSimulatorClassFileTransformer(
                 watchId, coreModule, matcher, isEnableUnsafe);
 
         Boolean costDumpEnable = simulatorConfig.getBooleanProperty(CostDumpTransformer.ENABLED_COST_DUMP, false);
@@ -295,14 +272,21 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
         // 注册到CoreModule中
         coreModule.getSimulatorClassFileTransformers().add(proxy);
 
-        //这里addTransformer后，接下来引起的类加载都会经过sandClassFileTransformer 每个enhanceTemplate.enhance都是单独的一个transformer
-        inst.addTransformer(proxy, true);
+        //这里注册后，接下来引起的类加载都会经过对应的transformer，未开启耗时统计时所有观察共用一个按类名分发的transformer
+        if (proxy == transformer && dispatchClassFileTransformer != null) {
+            dispatchClassFileTransformer.register(transformer);
+        } else {
+            inst.addTransformer(proxy, true);
+        }
 
 
         List<Class<?>> waitingReTransformClassesTemp = Collections.emptyList();
         if (isEnableReTransform || needReTransformer) {
-            // 查找需要渲染的类集合
-            waitingReTransformClassesTemp = classDataSource.findForReTransform(matcher);
+            // 查找需要渲染的类集合，观察限定了类名时只需要在这些类名中查找
+            final Set<String> listeningTypes = matcher.getAllListeningTypes();
+            waitingReTransformClassesTemp = listeningTypes.isEmpty()
+                    ? classDataSource.findForReTransform(matcher)
+                    : classDataSource.findForReTransform(matcher, listeningTypes);
             if (isInfoEnabled) {
                 logger.info("SIMULATOR: watch={} in module={} found {} classes for watch(ing).",
                         watchId,
@@ -351,6 +335,8 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
                        final Progress progress) {
 
         final Set<Matcher> waitingRemoveMatcherSet = new LinkedHashSet<Matcher>();
+        // 删除的观察都限定了类名时，只需要在这些类名中查找需要重新渲染的类
+        Set<String> waitingRemoveListeningTypes = new HashSet<String>();
 
         // 找出待删除的SimulatorClassFileTransformer
         final Iterator<SimulatorClassFileTransformer> it = coreModule.getSimulatorClassFileTransformers().iterator();
@@ -369,14 +355,25 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
 
 
                 // 在JVM中移除掉命中的ClassFileTransformer
-                inst.removeTransformer(simulatorClassFileTransformer);
+                if (dispatchClassFileTransformer == null || !dispatchClassFileTransformer.unregister(simulatorClassFileTransformer)) {
+                    inst.removeTransformer(simulatorClassFileTransformer);
+                }
 
                 // 计数
                 cCnt += simulatorClassFileTransformer.getAffectStatistic().getEffectClassCount();
                 mCnt += simulatorClassFileTransformer.getAffectStatistic().getEffectMethodCount();
 
                 // 追加到待删除过滤器集合
-                waitingRemoveMatcherSet.add((Matcher) simulatorClassFileTransformer.getMatcher());
+                final Matcher matcher = (Matcher) simulatorClassFileTransformer.getMatcher();
+                waitingRemoveMatcherSet.add(matcher);
+                if (waitingRemoveListeningTypes != null) {
+                    final Set<String> listeningTypes = matcher.getAllListeningTypes();
+                    if (simulatorClassFileTransformer instanceof DefaultSimulatorClassFileTransformer && !listeningTypes.isEmpty()) {
+                        waitingRemoveListeningTypes.addAll(listeningTypes);
+                    } else {
+                        waitingRemoveListeningTypes = null;
+                    }
+                }
 
                 // 清除掉该SimulatorClassFileTransformer
                 it.remove();
@@ -385,9 +382,10 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
         }
 
         // 查找需要删除后重新渲染的类集合
-        final List<Class<?>> waitingReTransformClasses = classDataSource.findForReTransform(
-                new GroupMatcher.Or(waitingRemoveMatcherSet.toArray(new Matcher[0]))
-        );
+        final Matcher waitingRemoveMatcher = new GroupMatcher.Or(waitingRemoveMatcherSet.toArray(new Matcher[0]));
+        final List<Class<?>> waitingReTransformClasses = waitingRemoveListeningTypes == null || waitingRemoveListeningTypes.isEmpty()
+                ? classDataSource.findForReTransform(waitingRemoveMatcher)
+                : classDataSource.findForReTransform(waitingRemoveMatcher, waitingRemoveListeningTypes);
         if (isInfoEnabled) {
             logger.info("SIMULATOR: watch={} in module={} found {} classes for delete.",
                     watcherId,
@@ -420,6 +418,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher {
     @Override
     public void close() {
         eventListenerHandler = null;
+        dispatchClassFileTransformer = null;
         inst = null;
         classDataSource = null;
         coreModule = null;
@@ -19,6 +19,7 @@ import com.shulie.instrument.simulator.api.ModuleException;
 import com.shulie.instrument.simulator.api.ModuleInfo;
 import com.shulie.instrument.simulator.api.ModuleSpec;
 import com.shulie.instrument.simulator.api.resource.ModuleManager;
+import com.shulie.instrument.simulator.api.resource.ReTransformReport;
 import com.shulie.instrument.simulator.core.CoreModule;
 import com.shulie.instrument.simulator.core.manager.CoreModuleManager;
 
@@ -124,6 +125,11 @@ public class DefaultModuleManager implements ModuleManager {
         return coreModuleManager.getThrowsExceptionIfNull(moduleId).getEffectMethodCount();
     }
 
+    @Override
+    public ReTransformReport getReTransformReport(String moduleId) throws ModuleException {
+        return coreModuleManager.getThrowsExceptionIfNull(moduleId).getReTransformStatistic().toReport(moduleId);
+    }
+
     @Override
     public boolean isActivated(String moduleId) throws ModuleException {
         return coreModuleManager.getThrowsExceptionIfNull(moduleId).isActivated();
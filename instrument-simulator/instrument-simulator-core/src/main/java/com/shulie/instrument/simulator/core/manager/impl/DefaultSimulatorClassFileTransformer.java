@@ -26,11 +26,10 @@ import com.shulie.instrument.simulator.core.util.SimulatorClassUtils;
 import com.shulie.instrument.simulator.core.util.matcher.Matcher;
 import com.shulie.instrument.simulator.core.util.matcher.MatchingResult;
 import com.shulie.instrument.simulator.core.util.matcher.UnsupportedMatcher;
-import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
-import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructureFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.security.ProtectionDomain;
 import java.util.*;
 
@@ -48,6 +47,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
 
     private final int watchId;
     private final String moduleId;
+    private final String moduleFingerprint;
     private final Matcher matcher;
     private final boolean isEnableUnsafe;
 
@@ -67,6 +67,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
                                          final boolean isEnableUnsafe) {
         this.watchId = watchId;
         this.moduleId = coreModule.getModuleId();
+        this.moduleFingerprint = toModuleFingerprint(coreModule);
         this.matcher = matcher;
         this.isEnableUnsafe = isEnableUnsafe;
         List<BuildingForListeners> listeners = matcher.getAllListeners();
@@ -91,15 +92,6 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
         return listeners;
     }
 
-    // 获取当前类结构
-    private ClassStructure getClassStructure(final ClassLoader loader,
-                                             final Class<?> classBeingRedefined,
-                                             final byte[] srcByteCodeArray) {
-        return null == classBeingRedefined
-                ? ClassStructureFactory.createClassStructure(srcByteCodeArray, loader)
-                : ClassStructureFactory.createClassStructure(classBeingRedefined);
-    }
-
     @Override
     public byte[] transform(final ClassLoader loader,
                             final String internalClassName,
@@ -112,22 +104,6 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             if (internalClassName == null) {
                 return null;
             }
-            // 排除已知的不需要增强的class
-            if (!typesPredicate.test(loader, internalClassName)) {
-                if (isDebugEnabled) {
-                    logger.debug("SIMULATOR: ignore class {} to being transformed. ", internalClassName);
-                }
-                return null;
-            }
-
-            // 确保只有对应的transformer能够被执行
-            if (!listeningTypes.isEmpty() && !listeningTypes.contains(internalClassName)) {
-                if (isDebugEnabled) {
-                    String className = matcher.getAllListeners().get(0).getListeners().getClassName();
-                    logger.debug("SIMULATOR: ignore apply transform for matcher className:{}", className);
-                }
-                return null;
-            }
 
             // 这里过滤掉Simulator所需要的类|来自SimulatorClassLoader所加载的类|来自ModuleJarClassLoader加载的类
             // 防止ClassCircularityError的发生
@@ -135,14 +111,12 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
                 return null;
             }
 
-            return _transform(
-                    loader,
-                    internalClassName,
-                    classBeingRedefined,
-                    srcByteCodeArray
-            );
-
-
+            final TransformingClass transformingClass = new TransformingClass(loader, internalClassName, classBeingRedefined, srcByteCodeArray);
+            final Map<String, Set<BuildingForListeners>> behaviorSignCodes = matching(transformingClass);
+            if (behaviorSignCodes == null) {
+                return null;
+            }
+            return enhance(transformingClass, srcByteCodeArray, behaviorSignCodes);
         } catch (Throwable cause) {
             logger.warn("SIMULATOR: simulator transform {} in loader={}; failed, module={} at watch={}, will ignore this transform.",
                     internalClassName,
@@ -157,10 +131,32 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
         }
     }
 
-    private byte[] _transform(final ClassLoader loader,
-                              String internalClassName,
-                              final Class<?> classBeingRedefined,
-                              byte[] srcByteCodeArray) {
+    /**
+     * 匹配需要增强的行为
+     *
+     * @param transformingClass 正在加载或者重新增强的类
+     * @return 行为签名对应的监听器，没有需要增强的行为时返回 null
+     */
+    Map<String, Set<BuildingForListeners>> matching(final TransformingClass transformingClass) {
+        final ClassLoader loader = transformingClass.getLoader();
+        final String internalClassName = transformingClass.getInternalClassName();
+        // 排除已知的不需要增强的class
+        if (!typesPredicate.test(loader, internalClassName)) {
+            if (isDebugEnabled) {
+                logger.debug("SIMULATOR: ignore class {} to being transformed. ", internalClassName);
+            }
+            return null;
+        }
+
+        // 确保只有对应的transformer能够被执行
+        if (!listeningTypes.isEmpty() && !listeningTypes.contains(internalClassName)) {
+            if (isDebugEnabled) {
+                String className = matcher.getAllListeners().get(0).getListeners().getClassName();
+                logger.debug("SIMULATOR: ignore apply transform for matcher className:{}", className);
+            }
+            return null;
+        }
+
         // 如果未开启unsafe开关，是不允许增强来自BootStrapClassLoader的类
         if (!isEnableUnsafe && null == loader) {
             if (isDebugEnabled) {
@@ -169,19 +165,15 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             return null;
         }
 
-        final ClassStructure classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
-        if (internalClassName == null) {
-            internalClassName = classStructure.getJavaClassName();
-        }
-
-        if (!matcher.preMatching(internalClassName.replace('/', '.'))) {
+        // 类名不匹配时不需要解析类结构
+        if (!matcher.preMatching(transformingClass.getJavaClassName())) {
             if (isDebugEnabled) {
                 logger.debug("SIMULATOR: transform ignore {}, classname is not matched!", internalClassName, loader);
             }
             return null;
         }
 
-        final MatchingResult matchingResult = new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(classStructure);
+        final MatchingResult matchingResult = new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(transformingClass.getClassStructure());
         final Map<String, Set<BuildingForListeners>> behaviorSignCodes = matchingResult.getBehaviorSignCodeMap();
 
         // 如果一个行为都没匹配上也不用继续了
@@ -191,13 +183,23 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
             }
             return null;
         }
+        return behaviorSignCodes;
+    }
 
-        /**
-         * ASM增强中使用到了 LDC 命令，LDC命令在 java5(49)才支持，所以当类版本低于此版本时，强制将类版本设置为 java5(49)
-         */
-        if (getClassMajorVersion(srcByteCodeArray) < CLASS_VERSION_15) {
-            srcByteCodeArray = resetClassVersionToJava5(srcByteCodeArray);
-        }
+    /**
+     * 按匹配到的行为增强字节码
+     *
+     * @param transformingClass 正在加载或者重新增强的类
+     * @param srcByteCodeArray  增强前的字节码
+     * @param behaviorSignCodes 行为签名对应的监听器
+     * @return 增强后的字节码，没有变化或者增强失败时返回 null
+     */
+    byte[] enhance(final TransformingClass transformingClass,
+                   byte[] srcByteCodeArray,
+                   final Map<String, Set<BuildingForListeners>> behaviorSignCodes) {
+        final ClassLoader loader = transformingClass.getLoader();
+        final String internalClassName = transformingClass.getInternalClassName();
+        srcByteCodeArray = toJava5IfNecessary(srcByteCodeArray);
 
         // 开始进行类匹配
         try {
@@ -213,12 +215,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
                 return null;
             }
 
-            // statistic affect
-            affectStatistic.statisticAffect(loader, internalClassName, behaviorSignCodes);
-
-            if (isInfoEnabled) {
-                logger.info("SIMULATOR: transform {} finished, by module={} in loader={}", internalClassName, moduleId, loader);
-            }
+            affected(transformingClass, behaviorSignCodes);
             return toByteCodeArray;
         } catch (Throwable cause) {
             logger.warn("SIMULATOR: transform {} failed, by module={} in loader={}", internalClassName, moduleId, loader, cause);
@@ -226,6 +223,68 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
         }
     }
 
+    /**
+     * 记录增强的影响统计
+     *
+     * @param transformingClass 增强的类
+     * @param behaviorSignCodes 增强的行为
+     */
+    void affected(final TransformingClass transformingClass, final Map<String, Set<BuildingForListeners>> behaviorSignCodes) {
+        // statistic affect
+        affectStatistic.statisticAffect(transformingClass.getLoader(), transformingClass.getInternalClassName(), behaviorSignCodes);
+
+        if (isInfoEnabled) {
+            logger.info("SIMULATOR: transform {} finished, by module={} in loader={}", transformingClass.getInternalClassName(), moduleId, transformingClass.getLoader());
+        }
+    }
+
+    /**
+     * ASM增强中使用到了 LDC 命令，LDC命令在 java5(49)才支持，所以当类版本低于此版本时，强制将类版本设置为 java5(49)
+     *
+     * @param srcByteCodeArray 字节码
+     * @return 字节码
+     */
+    static byte[] toJava5IfNecessary(byte[] srcByteCodeArray) {
+        if (getClassMajorVersion(srcByteCodeArray) < CLASS_VERSION_15) {
+            return resetClassVersionToJava5(srcByteCodeArray);
+        }
+        return srcByteCodeArray;
+    }
+
+    /**
+     * 需要增强的类名，内部类名格式，为空时表示按 {@link Matcher#preMatching(String)} 匹配任意类
+     *
+     * @return 类名集合
+     */
+    Set<String> getListeningTypes() {
+        return listeningTypes;
+    }
+
+    String getModuleId() {
+        return moduleId;
+    }
+
+    /**
+     * 模块指纹，模块升级或者模块包变化后指纹随之变化
+     *
+     * @return 模块 ID@版本:模块包大小:模块包修改时间
+     */
+    String getModuleFingerprint() {
+        return moduleFingerprint;
+    }
+
+    private static String toModuleFingerprint(final CoreModule coreModule) {
+        final StringBuilder builder = new StringBuilder(coreModule.getModuleId()).append('@');
+        if (coreModule.getModuleSpec() != null) {
+            builder.append(coreModule.getModuleSpec().getVersion());
+            final File moduleJarFile = coreModule.getModuleSpec().getFile();
+            if (moduleJarFile != null) {
+                builder.append(':').append(moduleJarFile.length()).append(':').append(moduleJarFile.lastModified());
+            }
+        }
+        return builder.toString();
+    }
+
     /**
      * 获取 class 的编译的平台版本号
      * 46 -> 1.2
@@ -239,7 +298,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
      * @param data
      * @return
      */
-    private int getClassMajorVersion(byte[] data) {
+    private static int getClassMajorVersion(byte[] data) {
         return (short) (((data[6] & 0xFF) << 8) | (data[6 + 1] & 0xFF));
     }
 
@@ -249,7 +308,7 @@ public class DefaultSimulatorClassFileTransformer extends SimulatorClassFileTran
      * @param data
      * @return
      */
-    private byte[] resetClassVersionToJava5(byte[] data) {
+    private static byte[] resetClassVersionToJava5(byte[] data) {
         data[6] = CLASS_VERSION_15_6;
         data[7] = CLASS_VERSION_15_7;
         return data;
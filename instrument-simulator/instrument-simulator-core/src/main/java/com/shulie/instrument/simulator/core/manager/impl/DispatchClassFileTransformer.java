@@ -0,0 +1,342 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.core.enhance.EnhancedByteCodeCache;
+import com.shulie.instrument.simulator.core.enhance.EventEnhancer;
+import com.shulie.instrument.simulator.core.manager.SimulatorClassFileTransformer;
+import com.shulie.instrument.simulator.core.util.SimulatorClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.*;
+
+/**
+ * 所有模块观察共用的类形变器
+ * <p>
+ * 每个观察不再单独注册到 {@link java.lang.instrument.Instrumentation}，而是注册到这里。按观察关注的类名
+ * 建立全局索引，类加载时只需要一次 hash 查找就能拿到关心这个类的观察，没有指定类名的观察先按类名预匹配，
+ * 命中后才解析类结构，类结构在所有观察之间共用。所有命中的观察的增强合并到一次 ASM 处理中完成，
+ * 合并增强失败时退回到逐个观察依次增强。
+ * <p>
+ * 观察按注册顺序生效，与逐个注册到 {@link java.lang.instrument.Instrumentation} 时的顺序一致。
+ * 索引在注册和移除时整体替换，类加载时不加锁
+ * <p>
+ * 开启了 {@link EnhancedByteCodeCache} 时，一次完成的增强结果会写入缓存，之后启动时直接使用缓存中的结果
+ */
+class DispatchClassFileTransformer implements ClassFileTransformer {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final Watch[] EMPTY_WATCHES = new Watch[0];
+
+    private volatile Index index = new Index(new HashMap<String, Watch[]>(), EMPTY_WATCHES);
+    private long sequence;
+    private final EnhancedByteCodeCache enhancedByteCodeCache;
+
+    /**
+     * @param enhancedByteCodeCache 增强字节码缓存，未开启时为 null
+     */
+    DispatchClassFileTransformer(final EnhancedByteCodeCache enhancedByteCodeCache) {
+        this.enhancedByteCodeCache = enhancedByteCodeCache;
+    }
+
+    /**
+     * 注册观察
+     *
+     * @param transformer 观察对应的类形变器
+     */
+    synchronized void register(final DefaultSimulatorClassFileTransformer transformer) {
+        final Watch watch = new Watch(++sequence, transformer);
+        final Index current = this.index;
+        final Set<String> listeningTypes = transformer.getListeningTypes();
+        if (listeningTypes.isEmpty()) {
+            this.index = new Index(current.watches, append(current.wildcards, watch));
+            return;
+        }
+        final Map<String, Watch[]> watches = new HashMap<String, Watch[]>(current.watches);
+        for (String listeningType : listeningTypes) {
+            final Watch[] exists = watches.get(listeningType);
+            watches.put(listeningType, exists == null ? new Watch[]{watch} : append(exists, watch));
+        }
+        this.index = new Index(watches, current.wildcards);
+    }
+
+    /**
+     * 移除观察
+     *
+     * @param transformer 观察对应的类形变器
+     * @return 是否是注册在这里的观察
+     */
+    synchronized boolean unregister(final SimulatorClassFileTransformer transformer) {
+        if (!(transformer instanceof DefaultSimulatorClassFileTransformer)) {
+            return false;
+        }
+        final Index current = this.index;
+        final Set<String> listeningTypes = ((DefaultSimulatorClassFileTransformer) transformer).getListeningTypes();
+        if (listeningTypes.isEmpty()) {
+            final Watch[] wildcards = remove(current.wildcards, transformer);
+            if (wildcards == current.wildcards) {
+                return false;
+            }
+            this.index = new Index(current.watches, wildcards);
+            return true;
+        }
+        final Map<String, Watch[]> watches = new HashMap<String, Watch[]>(current.watches);
+        boolean removed = false;
+        for (String listeningType : listeningTypes) {
+            final Watch[] exists = watches.get(listeningType);
+            if (exists == null) {
+                continue;
+            }
+            final Watch[] remains = remove(exists, transformer);
+            if (remains == exists) {
+                continue;
+            }
+            removed = true;
+            if (remains.length == 0) {
+                watches.remove(listeningType);
+            } else {
+                watches.put(listeningType, remains);
+            }
+        }
+        if (removed) {
+            this.index = new Index(watches, current.wildcards);
+        }
+        return removed;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] srcByteCodeArray) {
+        if (internalClassName == null) {
+            return null;
+        }
+        final Index index = this.index;
+        final Watch[] watches = index.watches.get(internalClassName);
+        final Watch[] wildcards = index.wildcards;
+        if (watches == null && wildcards.length == 0) {
+            return null;
+        }
+        SimulatorGuard.getInstance().enter();
+        try {
+            // 这里过滤掉Simulator所需要的类|来自SimulatorClassLoader所加载的类|来自ModuleJarClassLoader加载的类
+            // 防止ClassCircularityError的发生
+            if (SimulatorClassUtils.isComeFromSimulatorFamily(internalClassName, loader)) {
+                return null;
+            }
+            final TransformingClass transformingClass = new TransformingClass(loader, internalClassName, classBeingRedefined, srcByteCodeArray);
+            final List<DefaultSimulatorClassFileTransformer> matchedTransformers = new ArrayList<DefaultSimulatorClassFileTransformer>();
+            final List<Map<String, Set<BuildingForListeners>>> matchedSignCodes = new ArrayList<Map<String, Set<BuildingForListeners>>>();
+            // 两组观察各自按注册顺序排列，合并后依然按注册顺序匹配
+            final Watch[] exactWatches = watches == null ? EMPTY_WATCHES : watches;
+            int i = 0, j = 0;
+            while (i < exactWatches.length || j < wildcards.length) {
+                final Watch watch;
+                if (j >= wildcards.length || (i < exactWatches.length && exactWatches[i].sequence < wildcards[j].sequence)) {
+                    watch = exactWatches[i++];
+                } else {
+                    watch = wildcards[j++];
+                }
+                final Map<String, Set<BuildingForListeners>> signCodes = matching(watch.transformer, transformingClass);
+                if (signCodes != null) {
+                    matchedTransformers.add(watch.transformer);
+                    matchedSignCodes.add(signCodes);
+                }
+            }
+            if (matchedTransformers.isEmpty()) {
+                return null;
+            }
+            return enhance(transformingClass, srcByteCodeArray, matchedTransformers, matchedSignCodes);
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: simulator transform {} in loader={}; failed, will ignore this transform.",
+                    internalClassName, loader, cause);
+            return null;
+        } finally {
+            SimulatorGuard.getInstance().exit();
+        }
+    }
+
+    private Map<String, Set<BuildingForListeners>> matching(final DefaultSimulatorClassFileTransformer transformer,
+                                                            final TransformingClass transformingClass) {
+        try {
+            return transformer.matching(transformingClass);
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: simulator transform {} in loader={}; failed, module={} at watch={}, will ignore this transform.",
+                    transformingClass.getInternalClassName(),
+                    transformingClass.getLoader(),
+                    transformer.getModuleId(),
+                    transformer.getWatchId(),
+                    cause
+            );
+            return null;
+        }
+    }
+
+    private byte[] enhance(final TransformingClass transformingClass,
+                           final byte[] srcByteCodeArray,
+                           final List<DefaultSimulatorClassFileTransformer> transformers,
+                           final List<Map<String, Set<BuildingForListeners>>> signCodes) {
+        /**
+         * 同一个行为上的监听器按注册顺序排列，一次增强的织入结果与依次增强一致，后注册的观察在外层
+         */
+        final Map<String, Set<BuildingForListeners>> merged;
+        if (transformers.size() == 1) {
+            merged = signCodes.get(0);
+        } else {
+            merged = new LinkedHashMap<String, Set<BuildingForListeners>>();
+            for (Map<String, Set<BuildingForListeners>> behaviorSignCodes : signCodes) {
+                for (Map.Entry<String, Set<BuildingForListeners>> entry : behaviorSignCodes.entrySet()) {
+                    Set<BuildingForListeners> listeners = merged.get(entry.getKey());
+                    if (listeners == null) {
+                        listeners = new LinkedHashSet<BuildingForListeners>();
+                        merged.put(entry.getKey(), listeners);
+                    }
+                    listeners.addAll(entry.getValue());
+                }
+            }
+        }
+
+        // 缓存的 key 需要在字节码版本被修改之前计算
+        final EnhancedByteCodeCache.Key key = cacheKey(transformingClass, srcByteCodeArray, transformers, merged);
+        if (key != null) {
+            final byte[] cached = enhancedByteCodeCache.get(key);
+            if (cached != null) {
+                for (int i = 0; i < transformers.size(); i++) {
+                    transformers.get(i).affected(transformingClass, signCodes.get(i));
+                }
+                return cached;
+            }
+        }
+
+        if (transformers.size() == 1) {
+            final byte[] toByteCodeArray = transformers.get(0).enhance(transformingClass, srcByteCodeArray, merged);
+            if (key != null && toByteCodeArray != null) {
+                enhancedByteCodeCache.put(key, srcByteCodeArray, toByteCodeArray);
+            }
+            return toByteCodeArray;
+        }
+        final byte[] byteCodeArray = DefaultSimulatorClassFileTransformer.toJava5IfNecessary(srcByteCodeArray);
+        try {
+            final byte[] toByteCodeArray = new EventEnhancer().toByteCodeArray(
+                    transformingClass.getLoader(),
+                    byteCodeArray,
+                    merged
+            );
+            if (byteCodeArray == toByteCodeArray) {
+                return null;
+            }
+            for (int i = 0; i < transformers.size(); i++) {
+                transformers.get(i).affected(transformingClass, signCodes.get(i));
+            }
+            if (key != null) {
+                enhancedByteCodeCache.put(key, byteCodeArray, toByteCodeArray);
+            }
+            return toByteCodeArray;
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: transform {} with {} watches in one pass failed in loader={}, fallback to transform one by one.",
+                    transformingClass.getInternalClassName(), transformers.size(), transformingClass.getLoader(), cause);
+        }
+        // 逐个增强时可能只有部分观察生效，结果不写入缓存
+        byte[] current = byteCodeArray;
+        boolean changed = false;
+        for (int i = 0; i < transformers.size(); i++) {
+            final byte[] result = transformers.get(i).enhance(transformingClass, current, signCodes.get(i));
+            if (result != null) {
+                current = result;
+                changed = true;
+            }
+        }
+        return changed ? current : null;
+    }
+
+    private EnhancedByteCodeCache.Key cacheKey(final TransformingClass transformingClass,
+                                               final byte[] srcByteCodeArray,
+                                               final List<DefaultSimulatorClassFileTransformer> transformers,
+                                               final Map<String, Set<BuildingForListeners>> signCodes) {
+        if (enhancedByteCodeCache == null) {
+            return null;
+        }
+        try {
+            final List<String> moduleFingerprints = new ArrayList<String>(transformers.size());
+            for (final DefaultSimulatorClassFileTransformer transformer : transformers) {
+                if (!moduleFingerprints.contains(transformer.getModuleFingerprint())) {
+                    moduleFingerprints.add(transformer.getModuleFingerprint());
+                }
+            }
+            return enhancedByteCodeCache.key(transformingClass.getLoader(), transformingClass.getInternalClassName(),
+                    srcByteCodeArray, moduleFingerprints, signCodes);
+        } catch (Throwable cause) {
+            logger.warn("SIMULATOR: compute enhanced bytecode cache key of {} failed.", transformingClass.getInternalClassName(), cause);
+            return null;
+        }
+    }
+
+    private static Watch[] append(final Watch[] watches, final Watch watch) {
+        final Watch[] result = new Watch[watches.length + 1];
+        System.arraycopy(watches, 0, result, 0, watches.length);
+        result[watches.length] = watch;
+        return result;
+    }
+
+    private static Watch[] remove(final Watch[] watches, final SimulatorClassFileTransformer transformer) {
+        int index = -1;
+        for (int i = 0; i < watches.length; i++) {
+            if (watches[i].transformer == transformer) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            return watches;
+        }
+        final Watch[] result = new Watch[watches.length - 1];
+        System.arraycopy(watches, 0, result, 0, index);
+        System.arraycopy(watches, index + 1, result, index, watches.length - index - 1);
+        return result;
+    }
+
+    /**
+     * 注册的观察，sequence 为注册顺序
+     */
+    private static final class Watch {
+        private final long sequence;
+        private final DefaultSimulatorClassFileTransformer transformer;
+
+        Watch(final long sequence, final DefaultSimulatorClassFileTransformer transformer) {
+            this.sequence = sequence;
+            this.transformer = transformer;
+        }
+    }
+
+    /**
+     * 类名到观察的索引，创建后只读
+     */
+    private static final class Index {
+        private final Map<String, Watch[]> watches;
+        private final Watch[] wildcards;
+
+        Index(final Map<String, Watch[]> watches, final Watch[] wildcards) {
+            this.watches = watches;
+            this.wildcards = wildcards;
+        }
+    }
+}
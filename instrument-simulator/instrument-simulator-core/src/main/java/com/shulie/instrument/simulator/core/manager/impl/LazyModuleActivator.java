@@ -0,0 +1,212 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.*;
+
+/**
+ * 模块的延迟激活
+ * <p>
+ * 开启后，在 module.config 中通过 trigger-class 声明了触发类的中间件模块在启动时不加载，
+ * 只按类名登记触发器，业务第一次加载其中任意一个类时才加载整个模块
+ * (类加载器、监听器、配置订阅)，应用没有用到的中间件不再占用内存和启动时间。
+ * </p>
+ * <p>
+ * 模块在定义触发类的线程中同步加载，加载完成后才继续定义触发类。不支持重新转换的转换器先于
+ * 增强用的转换器执行，所以触发类本身在定义时就会被刚加载的模块增强，业务的第一次调用就会被拦截。
+ * 模块加载过程中又触发的其他模块在当前模块加载完成后依次加载，不嵌套加载。
+ * </p>
+ * <p>
+ * 影子库、影子缓存、影子消息等隔离模块不能声明触发类，这类模块必须在业务建立连接、创建消费者之前就绪，
+ * 否则已经建立的连接和消费者不会被隔离
+ * </p>
+ */
+final class LazyModuleActivator implements ClassFileTransformer {
+    private final static Logger logger = LoggerFactory.getLogger(LazyModuleActivator.class);
+
+    /**
+     * 是否开启模块延迟激活，默认关闭
+     */
+    static final String ENABLED = "simulator.module.lazy.enabled";
+
+    private static final ModuleSpec[] EMPTY_SPECS = new ModuleSpec[0];
+
+    /**
+     * 触发类的内部类名到等待激活的模块，变更时整体替换，类加载时不加锁
+     */
+    private volatile Map<String, ModuleSpec[]> triggers = Collections.emptyMap();
+    private final Callback callback;
+    /**
+     * 当前线程正在加载模块时，加载过程中被触发、等待依次加载的模块
+     */
+    private final ThreadLocal<List<ModuleSpec>> activating = new ThreadLocal<List<ModuleSpec>>();
+
+    LazyModuleActivator(final Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * 模块激活回调
+     */
+    interface Callback {
+        /**
+         * 激活模块，在定义触发类的线程中执行
+         *
+         * @param moduleSpec 模块描述
+         */
+        void activate(ModuleSpec moduleSpec);
+    }
+
+    /**
+     * 模块是否可以延迟激活：非系统模块、非必须模块，声明了触发类，并且没有被其他模块依赖
+     *
+     * @param moduleSpec   模块描述
+     * @param dependencies 所有模块的依赖
+     * @return 是否可以延迟激活
+     */
+    static boolean isLazy(final ModuleSpec moduleSpec, final Set<String> dependencies) {
+        return !moduleSpec.isSystemModule()
+                && !moduleSpec.isMustUse()
+                && moduleSpec.getTriggerClasses() != null
+                && !moduleSpec.getTriggerClasses().isEmpty()
+                && !dependencies.contains(moduleSpec.getModuleId());
+    }
+
+    /**
+     * 登记模块的触发类
+     *
+     * @param moduleSpec 模块描述
+     */
+    synchronized void register(final ModuleSpec moduleSpec) {
+        final Map<String, ModuleSpec[]> triggers = new HashMap<String, ModuleSpec[]>(this.triggers);
+        for (String triggerClass : moduleSpec.getTriggerClasses()) {
+            final String internalClassName = triggerClass.replace('.', '/');
+            final ModuleSpec[] exists = triggers.get(internalClassName);
+            if (exists == null) {
+                triggers.put(internalClassName, new ModuleSpec[]{moduleSpec});
+            } else {
+                final ModuleSpec[] moduleSpecs = new ModuleSpec[exists.length + 1];
+                System.arraycopy(exists, 0, moduleSpecs, 0, exists.length);
+                moduleSpecs[exists.length] = moduleSpec;
+                triggers.put(internalClassName, moduleSpecs);
+            }
+        }
+        this.triggers = triggers;
+    }
+
+    /**
+     * 移除模块的所有触发类
+     *
+     * @param moduleSpec 模块描述
+     * @return 模块是否仍在等待激活
+     */
+    synchronized boolean remove(final ModuleSpec moduleSpec) {
+        final Map<String, ModuleSpec[]> triggers = new HashMap<String, ModuleSpec[]>(this.triggers);
+        boolean removed = false;
+        for (String triggerClass : moduleSpec.getTriggerClasses()) {
+            final String internalClassName = triggerClass.replace('.', '/');
+            final ModuleSpec[] exists = triggers.get(internalClassName);
+            if (exists == null) {
+                continue;
+            }
+            final List<ModuleSpec> remains = new ArrayList<ModuleSpec>(exists.length);
+            for (ModuleSpec exist : exists) {
+                if (exist == moduleSpec) {
+                    removed = true;
+                } else {
+                    remains.add(exist);
+                }
+            }
+            if (remains.isEmpty()) {
+                triggers.remove(internalClassName);
+            } else {
+                triggers.put(internalClassName, remains.toArray(EMPTY_SPECS));
+            }
+        }
+        if (removed) {
+            this.triggers = triggers;
+        }
+        return removed;
+    }
+
+    /**
+     * 清除所有等待激活的模块
+     */
+    synchronized void clear() {
+        this.triggers = Collections.emptyMap();
+    }
+
+    /**
+     * 激活模块，模块已经激活过时忽略
+     *
+     * @param moduleSpec 模块描述
+     * @param reason     触发原因
+     */
+    void activate(final ModuleSpec moduleSpec, final String reason) {
+        if (!remove(moduleSpec)) {
+            return;
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("SIMULATOR: lazy module[{}] is triggered by {}, will be loaded.", moduleSpec.getModuleId(), reason);
+        }
+        final List<ModuleSpec> queued = activating.get();
+        if (queued != null) {
+            queued.add(moduleSpec);
+            return;
+        }
+        final List<ModuleSpec> moduleSpecs = new ArrayList<ModuleSpec>(1);
+        moduleSpecs.add(moduleSpec);
+        activating.set(moduleSpecs);
+        try {
+            for (int i = 0; i < moduleSpecs.size(); i++) {
+                try {
+                    callback.activate(moduleSpecs.get(i));
+                } catch (Throwable e) {
+                    logger.warn("SIMULATOR: activate lazy module[{}] failed.", moduleSpecs.get(i).getModuleId(), e);
+                }
+            }
+        } finally {
+            activating.remove();
+        }
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] classfileBuffer) {
+        if (internalClassName == null || classBeingRedefined != null) {
+            return null;
+        }
+        final ModuleSpec[] moduleSpecs = triggers.get(internalClassName);
+        if (moduleSpecs != null) {
+            for (ModuleSpec moduleSpec : moduleSpecs) {
+                activate(moduleSpec, internalClassName);
+            }
+        }
+        return null;
+    }
+
+    void shutdown() {
+        clear();
+    }
+}
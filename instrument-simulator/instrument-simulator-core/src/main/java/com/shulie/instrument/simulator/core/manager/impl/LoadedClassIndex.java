@@ -0,0 +1,217 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已加载类的类名索引
+ * <p>
+ * 第一次检索时遍历一次所有已加载的类建立索引，之后通过类形变器记录新定义的类名。
+ * 类形变器被调用时类还没有定义完成，拿不到 {@link Class} 对象，所以新定义的类名先记为待刷新，
+ * 检索到待刷新的类名时再遍历一次已加载的类，一次刷新所有待刷新的类名；检索其他类名直接命中索引。
+ * <p>
+ * 代理、lambda 等运行期生成的类会不断定义且不会被检索，待刷新的类名超过 {@link #MAX_PENDING} 个时直接丢弃，
+ * 把索引标记为过期，下一次检索时重新遍历一次已加载的类，同时清理已经卸载的类。
+ * <p>
+ * 索引对 {@link Class} 持弱引用，不影响类的卸载
+ */
+final class LoadedClassIndex implements ClassFileTransformer {
+
+    /**
+     * 待刷新类名的最大数量
+     */
+    static final int MAX_PENDING = 4096;
+
+    private final Instrumentation inst;
+
+    /**
+     * 类名 -> 该类名在各个类加载器中对应的类
+     */
+    private final ConcurrentHashMap<String, WeakReference<Class<?>>[]> classes = new ConcurrentHashMap<String, WeakReference<Class<?>>[]>();
+
+    /**
+     * 上一次遍历之后新定义的类，内部类名格式
+     */
+    private final Set<String> pendingClassNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private volatile boolean initialized;
+
+    /**
+     * 待刷新的类名超过上限后被丢弃，需要重新遍历
+     */
+    private volatile boolean overflow;
+
+    LoadedClassIndex(final Instrumentation inst) {
+        this.inst = inst;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] classfileBuffer) {
+        if (classBeingRedefined == null && internalClassName != null && !overflow) {
+            pendingClassNames.add(internalClassName);
+            if (pendingClassNames.size() > MAX_PENDING) {
+                overflow = true;
+                pendingClassNames.clear();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按类名检索已加载的类
+     *
+     * @param className 类名
+     * @return 所有类加载器中该类名对应的类
+     */
+    List<Class<?>> find(final String className) {
+        if (!initialized || overflow) {
+            init();
+        }
+        if (!pendingClassNames.isEmpty() && pendingClassNames.contains(className.replace('.', '/'))) {
+            refresh();
+        }
+        final WeakReference<Class<?>>[] refs = classes.get(className);
+        if (refs == null) {
+            return Collections.emptyList();
+        }
+        final List<Class<?>> result = new ArrayList<Class<?>>(refs.length);
+        for (WeakReference<Class<?>> ref : refs) {
+            final Class<?> clazz = ref.get();
+            if (clazz != null) {
+                result.add(clazz);
+            }
+        }
+        if (result.size() != refs.length) {
+            replace(className, refs, result);
+        }
+        return result;
+    }
+
+    /**
+     * 遍历所有已加载的类建立索引，遍历开始之后定义的类记为待刷新。
+     * 索引过期时重新遍历，同时移除已经被卸载的类
+     */
+    private synchronized void init() {
+        if (initialized && !overflow) {
+            return;
+        }
+        overflow = false;
+        final Set<String> internalClassNames = new HashSet<String>(pendingClassNames);
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            add(clazz);
+        }
+        pendingClassNames.removeAll(internalClassNames);
+        if (initialized) {
+            prune();
+        }
+        initialized = true;
+    }
+
+    /**
+     * 移除所有类都已经被卸载的类名
+     */
+    private void prune() {
+        for (Map.Entry<String, WeakReference<Class<?>>[]> entry : classes.entrySet()) {
+            boolean alive = false;
+            for (WeakReference<Class<?>> ref : entry.getValue()) {
+                if (ref.get() != null) {
+                    alive = true;
+                    break;
+                }
+            }
+            if (!alive) {
+                classes.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 遍历所有已加载的类，把待刷新的类名加入索引
+     */
+    private synchronized void refresh() {
+        if (pendingClassNames.isEmpty()) {
+            return;
+        }
+        final Set<String> internalClassNames = new HashSet<String>(pendingClassNames);
+        final Set<String> classNames = new HashSet<String>(internalClassNames.size() * 2);
+        for (String internalClassName : internalClassNames) {
+            classNames.add(internalClassName.replace('/', '.'));
+        }
+        for (Class<?> clazz : inst.getAllLoadedClasses()) {
+            if (classNames.contains(clazz.getName())) {
+                add(clazz);
+            }
+        }
+        pendingClassNames.removeAll(internalClassNames);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(final Class<?> clazz) {
+        final String className = clazz.getName();
+        final WeakReference<Class<?>>[] refs = classes.get(className);
+        if (refs == null) {
+            classes.put(className, new WeakReference[]{new WeakReference<Class<?>>(clazz)});
+            return;
+        }
+        final List<WeakReference<Class<?>>> alive = new ArrayList<WeakReference<Class<?>>>(refs.length + 1);
+        for (WeakReference<Class<?>> ref : refs) {
+            final Class<?> exists = ref.get();
+            if (exists == clazz) {
+                return;
+            }
+            if (exists != null) {
+                alive.add(ref);
+            }
+        }
+        alive.add(new WeakReference<Class<?>>(clazz));
+        classes.put(className, alive.toArray(new WeakReference[alive.size()]));
+    }
+
+    /**
+     * 移除已经被卸载的类
+     */
+    @SuppressWarnings("unchecked")
+    private void replace(final String className, final WeakReference<Class<?>>[] refs, final List<Class<?>> alive) {
+        if (alive.isEmpty()) {
+            classes.remove(className, refs);
+            return;
+        }
+        final WeakReference<Class<?>>[] newRefs = new WeakReference[alive.size()];
+        for (int i = 0; i < newRefs.length; i++) {
+            newRefs[i] = new WeakReference<Class<?>>(alive.get(i));
+        }
+        classes.replace(className, refs, newRefs);
+    }
+
+    /**
+     * 清空索引，下一次检索时重新遍历
+     */
+    synchronized void clear() {
+        initialized = false;
+        overflow = false;
+        classes.clear();
+        pendingClassNames.clear();
+    }
+}
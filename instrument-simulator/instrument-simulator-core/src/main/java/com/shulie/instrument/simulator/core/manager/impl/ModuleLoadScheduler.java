@@ -0,0 +1,241 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.api.guard.SimulatorGuard;
+import com.shulie.instrument.simulator.api.obj.ModuleLoadInfo;
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.core.util.DefaultModuleLoadInfoManagerUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模块加载调度
+ * <p>
+ * 模块按依赖关系排序，在优先级顺序的基础上保证被依赖的模块先加载，存在循环依赖的模块按原顺序排在最后。
+ * 模块的准备工作（校验、打开模块包、创建类加载器）提交到线程池中按排序后的顺序并行执行，
+ * 模块的加载（注册类加载器、onLoad、onActive 等生命周期）仍然按排序后的顺序在调用线程中依次执行，
+ * 前面模块的生命周期与后面模块的准备工作重叠进行。
+ * </p>
+ * <p>
+ * 开启确定性模式后不再排序和并行准备，按模块原顺序逐个准备和加载，与之前的加载行为完全一致，便于排查问题
+ * </p>
+ */
+final class ModuleLoadScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(ModuleLoadScheduler.class);
+
+    /**
+     * 并行准备模块的线程数，小于等于 1 时在调用线程中准备
+     */
+    static final String THREADS = "simulator.module.load.threads";
+    /**
+     * 是否按模块原顺序逐个加载，默认关闭
+     */
+    static final String DETERMINISTIC = "simulator.module.load.deterministic";
+
+    private final int threads;
+    private final boolean deterministic;
+
+    ModuleLoadScheduler(final int threads, final boolean deterministic) {
+        this.threads = threads;
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * 模块加载回调
+     *
+     * @param <T> 准备结果
+     */
+    interface Callback<T> {
+        /**
+         * 准备模块，可能在线程池中执行，不能依赖模块管理器的锁
+         *
+         * @param moduleSpec 模块描述
+         * @return 准备结果
+         */
+        T prepare(ModuleSpec moduleSpec);
+
+        /**
+         * 加载模块，在调用线程中按顺序执行
+         *
+         * @param moduleSpec 模块描述
+         * @param prepared   准备结果
+         */
+        void load(ModuleSpec moduleSpec, T prepared);
+    }
+
+    <T> void schedule(final List<ModuleSpec> moduleSpecs, final String action, final Callback<T> callback) {
+        if (moduleSpecs == null || moduleSpecs.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final List<ModuleSpec> orderedModuleSpecs = deterministic ? moduleSpecs : sort(moduleSpecs);
+        final ExecutorService executor = !deterministic && threads > 1 && orderedModuleSpecs.size() > 1
+                ? newExecutor(Math.min(threads, orderedModuleSpecs.size()))
+                : null;
+        try {
+            final List<Future<T>> futures = new ArrayList<Future<T>>(orderedModuleSpecs.size());
+            final long[] prepareCosts = new long[orderedModuleSpecs.size()];
+            if (executor != null) {
+                for (int i = 0; i < orderedModuleSpecs.size(); i++) {
+                    futures.add(executor.submit(prepareTask(orderedModuleSpecs.get(i), callback, prepareCosts, i)));
+                }
+            }
+            for (int i = 0; i < orderedModuleSpecs.size(); i++) {
+                final ModuleSpec moduleSpec = orderedModuleSpecs.get(i);
+                final long waitStart = System.currentTimeMillis();
+                final T prepared = executor == null
+                        ? prepare(moduleSpec, callback, prepareCosts, i)
+                        : get(futures.get(i), moduleSpec, callback, prepareCosts, i);
+                final long loadStart = System.currentTimeMillis();
+                callback.load(moduleSpec, prepared);
+                final long loadCost = System.currentTimeMillis() - loadStart;
+
+                final ModuleLoadInfo moduleLoadInfo = DefaultModuleLoadInfoManagerUtils.getDefaultModuleLoadInfoManager()
+                        .getModuleLoadInfos().get(moduleSpec.getModuleId());
+                if (moduleLoadInfo != null) {
+                    moduleLoadInfo.setPrepareCost(prepareCosts[i]);
+                    moduleLoadInfo.setLoadCost(loadCost);
+                }
+                if (logger.isInfoEnabled()) {
+                    logger.info("SIMULATOR: {} module {} finished, prepare {}ms, wait {}ms, load {}ms.",
+                            action, moduleSpec.getModuleId(), prepareCosts[i], loadStart - waitStart, loadCost);
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("SIMULATOR: {} {} modules finished, threads={}, deterministic={}, cost {}ms.",
+                    action, orderedModuleSpecs.size(), executor == null ? 1 : threads, deterministic,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private <T> Callable<T> prepareTask(final ModuleSpec moduleSpec, final Callback<T> callback,
+                                        final long[] prepareCosts, final int index) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                SimulatorGuard.getInstance().enter();
+                try {
+                    return prepare(moduleSpec, callback, prepareCosts, index);
+                } finally {
+                    SimulatorGuard.getInstance().exit();
+                }
+            }
+        };
+    }
+
+    private static <T> T prepare(final ModuleSpec moduleSpec, final Callback<T> callback,
+                                 final long[] prepareCosts, final int index) {
+        final long start = System.currentTimeMillis();
+        try {
+            return callback.prepare(moduleSpec);
+        } finally {
+            prepareCosts[index] = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * 等待准备完成，线程池中准备失败时在调用线程中重新准备
+     */
+    private static <T> T get(final Future<T> future, final ModuleSpec moduleSpec, final Callback<T> callback,
+                             final long[] prepareCosts, final int index) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            logger.warn("SIMULATOR: prepare module {} in parallel failed, retry in current thread.", moduleSpec.getModuleId(), e);
+        }
+        future.cancel(true);
+        return prepare(moduleSpec, callback, prepareCosts, index);
+    }
+
+    /**
+     * 按依赖关系排序，依赖都已经排好的模块中优先选择原顺序靠前的
+     *
+     * @param moduleSpecs 按优先级排好序的模块
+     * @return 排序后的模块
+     */
+    static List<ModuleSpec> sort(final List<ModuleSpec> moduleSpecs) {
+        final Map<String, Integer> unsorted = new HashMap<String, Integer>();
+        for (final ModuleSpec moduleSpec : moduleSpecs) {
+            final Integer count = unsorted.get(moduleSpec.getModuleId());
+            unsorted.put(moduleSpec.getModuleId(), count == null ? 1 : count + 1);
+        }
+        final List<ModuleSpec> result = new ArrayList<ModuleSpec>(moduleSpecs.size());
+        final boolean[] sorted = new boolean[moduleSpecs.size()];
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (int i = 0; i < moduleSpecs.size(); i++) {
+                if (sorted[i] || !isReady(moduleSpecs.get(i), unsorted)) {
+                    continue;
+                }
+                final ModuleSpec moduleSpec = moduleSpecs.get(i);
+                sorted[i] = true;
+                result.add(moduleSpec);
+                final int count = unsorted.get(moduleSpec.getModuleId()) - 1;
+                if (count == 0) {
+                    unsorted.remove(moduleSpec.getModuleId());
+                } else {
+                    unsorted.put(moduleSpec.getModuleId(), count);
+                }
+                found = true;
+                break;
+            }
+        }
+        // 循环依赖的模块按原顺序加载，由模块开关决定何时真正加载
+        for (int i = 0; i < moduleSpecs.size(); i++) {
+            if (!sorted[i]) {
+                result.add(moduleSpecs.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isReady(final ModuleSpec moduleSpec, final Map<String, Integer> unsorted) {
+        final Set<String> dependencies = moduleSpec.getDependencies();
+        if (dependencies == null) {
+            return true;
+        }
+        for (final String dependency : dependencies) {
+            if (!dependency.equals(moduleSpec.getModuleId()) && unsorted.containsKey(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ExecutorService newExecutor(final int threads) {
+        final AtomicInteger sequence = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "[SIMULATOR_Module_Loader-" + sequence.incrementAndGet() + "]");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+}
@@ -44,6 +44,9 @@ public class SyncModuleCoreModuleManager extends DefaultCoreModuleManager {
         }
 
         waitLoadModules.clear();
+        if (lazyModuleActivator != null) {
+            lazyModuleActivator.clear();
+        }
 
         // 1. 强制卸载所有模块
         unloadAll();
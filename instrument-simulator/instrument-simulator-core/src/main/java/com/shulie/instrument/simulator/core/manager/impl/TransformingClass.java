@@ -0,0 +1,88 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructureFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一次类加载或者重新增强中正在处理的类，类结构在第一次使用时才解析，
+ * 同一次处理中所有观察共用同一份类结构
+ */
+final class TransformingClass {
+    /**
+     * 批量重新增强前提前解析好的类结构，重新增强完成后移除
+     */
+    private static final ConcurrentHashMap<Class<?>, ClassStructure> PREPARED_CLASS_STRUCTURES = new ConcurrentHashMap<Class<?>, ClassStructure>();
+
+    private final ClassLoader loader;
+    private final String internalClassName;
+    private final Class<?> classBeingRedefined;
+    private final byte[] srcByteCodeArray;
+    private String javaClassName;
+    private ClassStructure classStructure;
+
+    TransformingClass(final ClassLoader loader,
+                      final String internalClassName,
+                      final Class<?> classBeingRedefined,
+                      final byte[] srcByteCodeArray) {
+        this.loader = loader;
+        this.internalClassName = internalClassName;
+        this.classBeingRedefined = classBeingRedefined;
+        this.srcByteCodeArray = srcByteCodeArray;
+    }
+
+    ClassLoader getLoader() {
+        return loader;
+    }
+
+    String getInternalClassName() {
+        return internalClassName;
+    }
+
+    String getJavaClassName() {
+        if (javaClassName == null) {
+            javaClassName = internalClassName.replace('/', '.');
+        }
+        return javaClassName;
+    }
+
+    /**
+     * 获取当前类结构
+     *
+     * @return 类结构
+     */
+    ClassStructure getClassStructure() {
+        if (classStructure == null) {
+            if (null == classBeingRedefined) {
+                classStructure = ClassStructureFactory.createClassStructure(srcByteCodeArray, loader);
+            } else {
+                final ClassStructure prepared = PREPARED_CLASS_STRUCTURES.get(classBeingRedefined);
+                classStructure = prepared != null ? prepared : ClassStructureFactory.createClassStructure(classBeingRedefined);
+            }
+        }
+        return classStructure;
+    }
+
+    static void prepared(final Class<?> clazz, final ClassStructure classStructure) {
+        PREPARED_CLASS_STRUCTURES.put(clazz, classStructure);
+    }
+
+    static void releasePrepared(final Class<?> clazz) {
+        PREPARED_CLASS_STRUCTURES.remove(clazz);
+    }
+}
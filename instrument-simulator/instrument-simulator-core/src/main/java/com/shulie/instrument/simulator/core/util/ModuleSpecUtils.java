@@ -169,6 +169,7 @@ public final class ModuleSpecUtils {
                         .setImportResources(StringUtils.trim(properties.getProperty("import-resource")))
                         .setImportDependencyDir(StringUtils.trim(properties.getProperty("import-dependency-dir")))
                         .setImportArtifacts(StringUtils.trim(properties.getProperty("import-artifacts")))
+                        .setTriggerClasses(splitAndTrim(properties.getProperty("trigger-class"), ","))
                         .setSinceVersion(sinceVersion)
                         .setUntilVersion(untilVersion)
                         .setAsync(async)
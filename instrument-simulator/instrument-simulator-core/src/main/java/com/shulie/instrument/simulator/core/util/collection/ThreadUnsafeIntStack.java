@@ -0,0 +1,97 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.util.collection;
+
+import java.util.NoSuchElementException;
+
+import static java.lang.System.arraycopy;
+
+/**
+ * 线程不安全的 int 堆栈实现
+ * 基于 int[] 存储，push/pop 不会产生装箱对象
+ */
+public class ThreadUnsafeIntStack {
+
+    private final static int EMPTY_INDEX = -1;
+    private final static int DEFAULT_STACK_DEEP = 12;
+
+    private int[] elementArray;
+    private int index = EMPTY_INDEX;
+
+    public ThreadUnsafeIntStack() {
+        this(DEFAULT_STACK_DEEP);
+    }
+
+    public ThreadUnsafeIntStack(int stackSize) {
+        this.elementArray = new int[stackSize];
+    }
+
+    /**
+     * 自动扩容
+     * 当前堆栈最大深度不满足期望时会自动扩容(1.5倍扩容)
+     *
+     * @param expectDeep 期望堆栈深度
+     */
+    private void ensureCapacityInternal(int expectDeep) {
+        if (elementArray.length <= expectDeep) {
+            final int oldCapacity = elementArray.length;
+            final int newCapacity = oldCapacity + (oldCapacity >> 1) + 1;
+            final int[] newElementArray = new int[newCapacity];
+            arraycopy(elementArray, 0, newElementArray, 0, oldCapacity);
+            this.elementArray = newElementArray;
+        }
+    }
+
+    private void checkForPopOrPeek() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    public int pop() {
+        checkForPopOrPeek();
+        return elementArray[index--];
+    }
+
+    public void push(int e) {
+        ensureCapacityInternal(index + 1);
+        elementArray[++index] = e;
+    }
+
+    public int peek() {
+        checkForPopOrPeek();
+        return elementArray[index];
+    }
+
+    public int peekLast() {
+        checkForPopOrPeek();
+        return elementArray[0];
+    }
+
+    public boolean isEmpty() {
+        return index == EMPTY_INDEX;
+    }
+
+    public int deep() {
+        return index + 1;
+    }
+
+    /**
+     * 清空堆栈
+     */
+    public void clear() {
+        index = EMPTY_INDEX;
+    }
+}
@@ -42,7 +42,10 @@ public class ClassStructureFactory {
      */
     private static long latestAccessTime = -1;
 
-    private static HashBasedTable<Object, Integer, ClassStructure> classStructureCache = HashBasedTable.create(8192, 1);
+    /**
+     * 批量重新增强时会在多个线程中并行解析类结构，读写缓存时需要对缓存加锁
+     */
+    private static final HashBasedTable<Object, Integer, ClassStructure> classStructureCache = HashBasedTable.create(8192, 1);
 
     static {
         Thread thread = new Thread("[SIMULATOR_ClassStructure_Cache]") {
@@ -53,7 +56,9 @@ public class ClassStructureFactory {
                     if (latestAccessTime > 0 && System.currentTimeMillis() - latestAccessTime > 5 * 60 * 1000) {
                         logger.info("[SIMULATOR] clear and forbidden ClassStructure Cache.");
                         enableCacheClassStructure = false;
-                        classStructureCache.clear();
+                        synchronized (classStructureCache) {
+                            classStructureCache.clear();
+                        }
                         IgnoredTypesPredicateImpl.clearIgnoredTypesCache();
                         break;
                     }
@@ -81,10 +86,15 @@ public class ClassStructureFactory {
         }
         ClassLoader loader = clazz.getClassLoader();
         int hashCode = loader == null ? 0 : loader.hashCode();
-        ClassStructure classStructure = classStructureCache.get(clazz, hashCode);
+        ClassStructure classStructure;
+        synchronized (classStructureCache) {
+            classStructure = classStructureCache.get(clazz, hashCode);
+        }
         if (classStructure == null) {
             classStructure = new JdkClassStructure(clazz);
-            classStructureCache.put(clazz, hashCode, classStructure);
+            synchronized (classStructureCache) {
+                classStructureCache.put(clazz, hashCode, classStructure);
+            }
         }
         return classStructure;
     }
@@ -103,10 +113,15 @@ public class ClassStructureFactory {
                 return new AsmClassStructure(classInputStream, loader);
             }
             int hashCode = loader == null ? 0 : loader.hashCode();
-            ClassStructure classStructure = classStructureCache.get(classInputStream, hashCode);
+            ClassStructure classStructure;
+            synchronized (classStructureCache) {
+                classStructure = classStructureCache.get(classInputStream, hashCode);
+            }
             if (classStructure == null) {
                 classStructure = new AsmClassStructure(classInputStream, loader);
-                classStructureCache.put(classInputStream, hashCode, classStructure);
+                synchronized (classStructureCache) {
+                    classStructureCache.put(classInputStream, hashCode, classStructure);
+                }
             }
             return classStructure;
         } catch (IOException cause) {
@@ -128,10 +143,15 @@ public class ClassStructureFactory {
             return new AsmClassStructure(classByteArray, loader);
         }
         int hashCode = loader == null ? 0 : loader.hashCode();
-        ClassStructure classStructure = classStructureCache.get(classByteArray, hashCode);
+        ClassStructure classStructure;
+        synchronized (classStructureCache) {
+            classStructure = classStructureCache.get(classByteArray, hashCode);
+        }
         if (classStructure == null) {
             classStructure = new AsmClassStructure(classByteArray, loader);
-            classStructureCache.put(classByteArray, hashCode, classStructure);
+            synchronized (classStructureCache) {
+                classStructureCache.put(classByteArray, hashCode, classStructure);
+            }
         }
         return classStructure;
     }
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.shulie.instrument.simulator.api.listener.Listeners;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+public class EnhancedByteCodeCacheTest {
+
+    private static final String CLASS_NAME = "cache/Target";
+    private static final String MODULE = "redis@1.0.0:1024:1";
+    private static final int LISTENER_ID = 100000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private EnhancedByteCodeCache cache;
+
+    @After
+    public void close() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void disabledByDefault() {
+        Assert.assertNull(EnhancedByteCodeCache.open(config(false)));
+    }
+
+    @Test
+    public void listenerIdsAreReplacedAfterRestart() throws Exception {
+        cache = EnhancedByteCodeCache.open(config(true));
+        final byte[] src = targetClass(null);
+        final EnhancedByteCodeCache.Key key = key(MODULE, LISTENER_ID, src);
+        Assert.assertNull(cache.get(key));
+        cache.put(key, src, targetClass(LISTENER_ID));
+        Assert.assertEquals(LISTENER_ID, idOf(cache.get(key)));
+        cache.close();
+
+        // 重启后监听器 ID 变了，命中后常量池中的监听器 ID 替换成本次的
+        cache = EnhancedByteCodeCache.open(config(true));
+        Assert.assertEquals(200000, idOf(cache.get(key(MODULE, 200000, src))));
+    }
+
+    @Test
+    public void otherClassBytesOrListenersMiss() {
+        cache = EnhancedByteCodeCache.open(config(true));
+        final byte[] src = targetClass(null);
+        cache.put(key(MODULE, LISTENER_ID, src), src, targetClass(LISTENER_ID));
+
+        final byte[] changed = Arrays.copyOf(src, src.length + 1);
+        Assert.assertNull(cache.get(key(MODULE, LISTENER_ID, changed)));
+        Assert.assertNull(cache.get(cache.key(null, CLASS_NAME, src, Collections.singletonList(MODULE),
+                signCodes(LISTENER_ID, 2))));
+    }
+
+    @Test
+    public void ambiguousListenerIdsAreNotCached() {
+        cache = EnhancedByteCodeCache.open(config(true));
+        // 短整型范围内的监听器 ID 不进入常量池
+        Assert.assertNull(key(MODULE, 1000, targetClass(null)));
+
+        // 原始类中已经有相同的整型常量
+        final byte[] src = targetClass(LISTENER_ID);
+        final EnhancedByteCodeCache.Key key = key(MODULE, LISTENER_ID, src);
+        cache.put(key, src, targetClass(LISTENER_ID));
+        Assert.assertNull(cache.get(key));
+    }
+
+    @Test
+    public void upgradedModuleEvictsItsEntries() throws Exception {
+        cache = EnhancedByteCodeCache.open(config(true));
+        final byte[] src = targetClass(null);
+        cache.put(key(MODULE, LISTENER_ID, src), src, targetClass(LISTENER_ID));
+        cache.close();
+
+        final String upgraded = "redis@1.0.1:2048:2";
+        cache = EnhancedByteCodeCache.open(config(true));
+        final EnhancedByteCodeCache.Key upgradedKey = key(upgraded, LISTENER_ID, src);
+        Assert.assertNull(cache.get(upgradedKey));
+        cache.put(upgradedKey, src, targetClass(LISTENER_ID));
+        cache.close();
+
+        cache = EnhancedByteCodeCache.open(config(true));
+        Assert.assertNull(cache.get(key(MODULE, LISTENER_ID, src)));
+        Assert.assertEquals(LISTENER_ID, idOf(cache.get(key(upgraded, LISTENER_ID, src))));
+    }
+
+    private EnhancedByteCodeCache.Key key(String module, int listenerId, byte[] src) {
+        return cache.key(null, CLASS_NAME, src, Collections.singletonList(module), signCodes(listenerId, 1));
+    }
+
+    private static Map<String, Set<BuildingForListeners>> signCodes(final int listenerId, int eventType) {
+        final Set<BuildingForListeners> listeners = new LinkedHashSet<BuildingForListeners>();
+        listeners.add(new BuildingForListeners(Listeners.of(Object.class), eventType) {
+            @Override
+            public int getListenerId() {
+                return listenerId;
+            }
+        });
+        final Map<String, Set<BuildingForListeners>> signCodes = new LinkedHashMap<String, Set<BuildingForListeners>>();
+        signCodes.put("cache.Target#id()", listeners);
+        return signCodes;
+    }
+
+    /**
+     * 生成只有一个静态方法 id() 的类，listenerId 为 null 时返回 0，否则返回 listenerId
+     */
+    private static byte[] targetClass(Integer listenerId) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, CLASS_NAME, null, "java/lang/Object", null);
+        final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "id", "()I", null, null);
+        mv.visitCode();
+        if (listenerId == null) {
+            mv.visitInsn(Opcodes.ICONST_0);
+        } else {
+            mv.visitLdcInsn(listenerId);
+        }
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static int idOf(final byte[] classBytes) throws Exception {
+        Assert.assertNotNull(classBytes);
+        final Class<?> clazz = new ClassLoader(EnhancedByteCodeCacheTest.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(CLASS_NAME.replace('/', '.'), classBytes, 0, classBytes.length);
+            }
+        }.define();
+        return (Integer) clazz.getMethod("id").invoke(null);
+    }
+
+    private SimulatorConfig config(final boolean enabled) {
+        final File dir = new File(folder.getRoot(), "enhanced");
+        return (SimulatorConfig) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SimulatorConfig.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        final String name = method.getName();
+                        if ("getBooleanProperty".equals(name)) {
+                            return EnhancedByteCodeCache.ENABLED.equals(args[0]) ? enabled : args[1];
+                        }
+                        if ("getProperty".equals(name)) {
+                            return EnhancedByteCodeCache.DIR.equals(args[0]) ? dir.getAbsolutePath() : null;
+                        }
+                        if ("getIntProperty".equals(name)) {
+                            return args[1];
+                        }
+                        if ("getSimulatorVersion".equals(name) || "getSimulatorMd5".equals(name)) {
+                            return "test";
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.shulie.instrument.simulator.api.listener.EventListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvokeProcessorRegistryTest {
+
+    @Test
+    public void putOverwritesAndRemoveReturnsPrevious() {
+        final InvokeProcessorRegistry registry = new InvokeProcessorRegistry();
+        final InvokeProcessor first = processor(7);
+        final InvokeProcessor second = processor(7);
+        registry.put(7, first);
+        Assert.assertSame(first, registry.get(7));
+        registry.put(7, second);
+        Assert.assertSame(second, registry.get(7));
+        Assert.assertEquals(1, registry.values().size());
+
+        Assert.assertSame(second, registry.remove(7));
+        Assert.assertNull(registry.get(7));
+        Assert.assertNull(registry.remove(7));
+        Assert.assertTrue(registry.values().isEmpty());
+    }
+
+    @Test
+    public void keepsEveryListenerAcrossGrowthAndRemoval() {
+        final InvokeProcessorRegistry registry = new InvokeProcessorRegistry();
+        final InvokeProcessor[] processors = new InvokeProcessor[200];
+        for (int i = 0; i < processors.length; i++) {
+            processors[i] = processor(i + 1);
+            registry.put(i + 1, processors[i]);
+        }
+        for (int i = 0; i < processors.length; i += 2) {
+            Assert.assertSame(processors[i], registry.remove(i + 1));
+        }
+        final Set<InvokeProcessor> expected = new HashSet<InvokeProcessor>();
+        for (int i = 0; i < processors.length; i++) {
+            if (i % 2 == 0) {
+                Assert.assertNull(registry.get(i + 1));
+            } else {
+                Assert.assertSame(processors[i], registry.get(i + 1));
+                expected.add(processors[i]);
+            }
+        }
+        Assert.assertEquals(expected, new HashSet<InvokeProcessor>(registry.values()));
+        Assert.assertNull(registry.get(100000));
+    }
+
+    @Test
+    public void clearDropsAllListeners() {
+        final InvokeProcessorRegistry registry = new InvokeProcessorRegistry();
+        registry.put(1, processor(1));
+        registry.put(2, processor(2));
+        registry.clear();
+        Assert.assertNull(registry.get(1));
+        Assert.assertNull(registry.get(2));
+        Assert.assertTrue(registry.values().isEmpty());
+    }
+
+    @Test
+    public void readerKeepsConsistentTableWhileWriterReplacesIt() throws Exception {
+        final InvokeProcessorRegistry registry = new InvokeProcessorRegistry();
+        final InvokeProcessor stable = processor(1);
+        registry.put(1, stable);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20000; i++) {
+                    final int listenerId = 2 + (i % 64);
+                    registry.put(listenerId, processor(listenerId));
+                    registry.remove(listenerId);
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            Assert.assertSame(stable, registry.get(1));
+        }
+        writer.join();
+        Assert.assertEquals(1, registry.values().size());
+    }
+
+    static InvokeProcessor processor(int listenerId) {
+        return new InvokeProcessor(listenerId, new EventListener() {
+        }, new int[0]);
+    }
+}
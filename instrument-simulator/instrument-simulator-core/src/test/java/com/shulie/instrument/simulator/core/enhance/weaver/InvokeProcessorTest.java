@@ -0,0 +1,133 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.enhance.weaver;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvokeProcessorTest {
+
+    @Test
+    public void nestedInvokesShareOneProcessUntilTheStackEmpties() {
+        final InvokeProcessor processor = InvokeProcessorRegistryTest.processor(1);
+        try {
+            final InvokeProcessor.InvokeProcess process = processor.getOrCreate();
+            process.pushInvokeId(10);
+            process.pushInvokeId(11);
+            Assert.assertSame(process, processor.getOrCreate());
+            Assert.assertEquals(10, process.getProcessId());
+            Assert.assertEquals(11, process.getInvokeId());
+            Assert.assertEquals(11, process.popInvokeId());
+            Assert.assertEquals(10, process.popInvokeId());
+            Assert.assertTrue(process.isEmptyStack());
+        } finally {
+            processor.clean();
+        }
+    }
+
+    @Test
+    public void emptyProcessIsResetOnNextInvoke() {
+        final InvokeProcessor processor = InvokeProcessorRegistryTest.processor(1);
+        try {
+            final InvokeProcessor.InvokeProcess process = processor.getOrCreate();
+            process.pushInvokeId(1);
+            process.markIgnoreProcess();
+            process.markExceptionFromImmediately();
+            process.popInvokeId();
+
+            final InvokeProcessor.InvokeProcess next = processor.getOrCreate();
+            Assert.assertSame(process, next);
+            Assert.assertFalse(next.isIgnoreProcess());
+            Assert.assertFalse(next.rollingIsExceptionFromImmediately());
+        } finally {
+            processor.clean();
+        }
+    }
+
+    @Test
+    public void processorsAndThreadsDoNotShareProcesses() throws Exception {
+        final InvokeProcessor first = InvokeProcessorRegistryTest.processor(1);
+        final InvokeProcessor second = InvokeProcessorRegistryTest.processor(2);
+        try {
+            final InvokeProcessor.InvokeProcess process = first.getOrCreate();
+            process.pushInvokeId(1);
+            Assert.assertNotSame(process, second.getOrCreate());
+            Assert.assertTrue(second.getOrCreate().isEmptyStack());
+
+            final AtomicReference<InvokeProcessor.InvokeProcess> other = new AtomicReference<InvokeProcessor.InvokeProcess>();
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    other.set(first.get());
+                }
+            });
+            thread.start();
+            thread.join();
+            Assert.assertNull(other.get());
+        } finally {
+            first.clean();
+            second.clean();
+        }
+    }
+
+    @Test
+    public void reusedSlotDoesNotSeeStaleProcessOnOtherThreads() throws Exception {
+        final InvokeProcessor old = InvokeProcessorRegistryTest.processor(1);
+        final AtomicReference<InvokeProcessor> current = new AtomicReference<InvokeProcessor>();
+        final AtomicReference<InvokeProcessor.InvokeProcess> seen = new AtomicReference<InvokeProcessor.InvokeProcess>();
+        final Object lock = new Object();
+        final boolean[] step = new boolean[2];
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // 在其他线程上留下旧处理器未出栈的调用流程
+                old.getOrCreate().pushInvokeId(1);
+                synchronized (lock) {
+                    step[0] = true;
+                    lock.notifyAll();
+                    while (!step[1]) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                seen.set(current.get().get());
+            }
+        });
+        thread.start();
+        synchronized (lock) {
+            while (!step[0]) {
+                lock.wait();
+            }
+        }
+        old.clean();
+        final InvokeProcessor reused = InvokeProcessorRegistryTest.processor(2);
+        try {
+            current.set(reused);
+            synchronized (lock) {
+                step[1] = true;
+                lock.notifyAll();
+            }
+            thread.join();
+            Assert.assertNull(seen.get());
+        } finally {
+            reused.clean();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.shulie.instrument.simulator.api.resource.ReTransformReport;
+import com.shulie.instrument.simulator.api.resource.SimulatorConfig;
+import com.shulie.instrument.simulator.core.manager.ReTransformStatistic;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructureFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassReTransformerTest {
+
+    private static final List<Class<?>> CLASSES = Arrays.<Class<?>>asList(
+            String.class, Integer.class, Long.class, Short.class, Byte.class,
+            Double.class, Float.class, Character.class, Boolean.class, StringBuilder.class);
+
+    private final Map<String, Integer> properties = new HashMap<String, Integer>();
+    private final Set<Class<?>> unmodifiable = new HashSet<Class<?>>();
+    private final Set<Class<?>> broken = new HashSet<Class<?>>();
+    private final List<List<Class<?>>> calls = new ArrayList<List<Class<?>>>();
+    private final Set<Class<?>> reTransformed = new HashSet<Class<?>>();
+    private final List<String> failures = new ArrayList<String>();
+    private final ReTransformStatistic statistic = new ReTransformStatistic();
+
+    @Test
+    public void classesAreReTransformedInBatches() {
+        properties.put(ClassReTransformer.BATCH_SIZE, 4);
+        properties.put(ClassReTransformer.PREPARE_THREADS, 1);
+        unmodifiable.add(Long.class);
+
+        Assert.assertEquals(0, reTransform(CLASSES));
+
+        Assert.assertEquals(Arrays.asList(4, 4, 1), callSizes());
+        Assert.assertFalse(reTransformed.contains(Long.class));
+        Assert.assertEquals(CLASSES.size() - 1, reTransformed.size());
+        final ReTransformReport report = statistic.toReport("test");
+        Assert.assertEquals(9, report.getClassCount());
+        Assert.assertEquals(3, report.getBatchCount());
+        Assert.assertEquals(0, report.getBisectCount());
+    }
+
+    @Test
+    public void failedBatchIsSplitUntilTheBrokenClassIsFound() {
+        properties.put(ClassReTransformer.BATCH_SIZE, 8);
+        properties.put(ClassReTransformer.PREPARE_THREADS, 1);
+        broken.add(Short.class);
+
+        Assert.assertEquals(1, reTransform(CLASSES));
+
+        // 序号从 1 开始，与逐个重新增强时上报的序号一致
+        Assert.assertEquals(Arrays.asList("java.lang.Short@4"), failures);
+        Assert.assertEquals(CLASSES.size() - 1, reTransformed.size());
+        final ReTransformReport report = statistic.toReport("test");
+        Assert.assertEquals(1, report.getFailedClassCount());
+        Assert.assertEquals(2, report.getBatchCount());
+        // 8 -> 4 -> 2 -> 1
+        Assert.assertEquals(3, report.getBisectCount());
+    }
+
+    @Test
+    public void classStructuresArePreparedForTheBatchOnly() {
+        properties.put(ClassReTransformer.BATCH_SIZE, 10);
+        properties.put(ClassReTransformer.PREPARE_THREADS, 4);
+        // 用 Object 的类结构占位，提前解析后会被这一批类自己的类结构覆盖
+        final ClassStructure placeholder = ClassStructureFactory.createClassStructure(Object.class);
+        for (Class<?> clazz : CLASSES) {
+            TransformingClass.prepared(clazz, placeholder);
+        }
+        final List<String> structuresDuringCallback = new ArrayList<String>();
+        final ClassReTransformer reTransformer = new ClassReTransformer(instrumentation(new Runnable() {
+            @Override
+            public void run() {
+                for (Class<?> clazz : CLASSES) {
+                    structuresDuringCallback.add(classStructure(clazz).getJavaClassName());
+                    TransformingClass.prepared(clazz, placeholder);
+                }
+            }
+        }), config());
+        try {
+            reTransformer.reTransform(CLASSES, statistic, callback());
+        } finally {
+            reTransformer.shutdown();
+        }
+
+        final List<String> classNames = new ArrayList<String>();
+        for (Class<?> clazz : CLASSES) {
+            classNames.add(clazz.getName());
+            // 重新增强完成后不再保留
+            Assert.assertEquals(clazz.getName(), classStructure(clazz).getJavaClassName());
+        }
+        Assert.assertEquals(classNames, structuresDuringCallback);
+    }
+
+    private static ClassStructure classStructure(Class<?> clazz) {
+        return new TransformingClass(null, clazz.getName().replace('.', '/'), clazz, null).getClassStructure();
+    }
+
+    private int reTransform(List<Class<?>> classes) {
+        final ClassReTransformer reTransformer = new ClassReTransformer(instrumentation(null), config());
+        try {
+            return reTransformer.reTransform(classes, statistic, callback());
+        } finally {
+            reTransformer.shutdown();
+        }
+    }
+
+    private List<Integer> callSizes() {
+        final List<Integer> sizes = new ArrayList<Integer>();
+        for (List<Class<?>> call : calls) {
+            sizes.add(call.size());
+        }
+        return sizes;
+    }
+
+    private ClassReTransformer.Callback callback() {
+        return new ClassReTransformer.Callback() {
+            @Override
+            public void onFailed(Class<?> clazz, int index, Throwable cause) {
+                failures.add(clazz.getName() + "@" + index);
+            }
+        };
+    }
+
+    private SimulatorConfig config() {
+        return (SimulatorConfig) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SimulatorConfig.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getIntProperty".equals(method.getName())) {
+                            final Integer value = properties.get(args[0]);
+                            return value != null ? value : args.length > 1 ? args[1] : null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private Instrumentation instrumentation(final Runnable onReTransform) {
+        return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Instrumentation.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("isModifiableClass".equals(method.getName())) {
+                            return !unmodifiable.contains(args[0]);
+                        }
+                        if ("retransformClasses".equals(method.getName())) {
+                            final List<Class<?>> classes = Arrays.asList((Class<?>[]) args[0]);
+                            calls.add(classes);
+                            if (onReTransform != null) {
+                                onReTransform.run();
+                            }
+                            for (Class<?> clazz : classes) {
+                                if (broken.contains(clazz)) {
+                                    throw new UnmodifiableClassException(clazz.getName());
+                                }
+                            }
+                            reTransformed.addAll(classes);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
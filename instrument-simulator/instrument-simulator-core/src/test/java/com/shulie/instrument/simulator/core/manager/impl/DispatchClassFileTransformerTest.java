@@ -0,0 +1,166 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import com.shulie.instrument.simulator.api.listener.ext.BuildingForListeners;
+import com.shulie.instrument.simulator.core.CoreModule;
+import com.shulie.instrument.simulator.core.ignore.IgnoredTypesBuilderImpl;
+import com.shulie.instrument.simulator.core.util.matcher.Matcher;
+import com.shulie.instrument.simulator.core.util.matcher.MatchingResult;
+import com.shulie.instrument.simulator.core.util.matcher.structure.ClassStructure;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DispatchClassFileTransformerTest {
+
+    private static final byte[] SOURCE = new byte[]{1};
+    private static final byte[] ENHANCED = new byte[]{2};
+
+    private final List<String> consulted = new ArrayList<String>();
+    private final Set<TransformingClass> transformingClasses = new HashSet<TransformingClass>();
+    private final DispatchClassFileTransformer dispatcher = new DispatchClassFileTransformer(null);
+
+    @Test
+    public void onlyWatchesListeningOnTheClassAreConsulted() {
+        dispatcher.register(watch("redis", "redis.clients.jedis.Jedis"));
+        dispatcher.register(watch("kafka", "org.apache.kafka.clients.producer.KafkaProducer"));
+
+        Assert.assertNull(dispatcher.transform(null, "a/Unrelated", null, null, SOURCE));
+        Assert.assertTrue(consulted.isEmpty());
+
+        dispatcher.transform(null, "redis/clients/jedis/Jedis", null, null, SOURCE);
+        Assert.assertEquals(Collections.singletonList("redis:redis/clients/jedis/Jedis"), consulted);
+    }
+
+    @Test
+    public void exactAndWildcardWatchesAreConsultedInRegistrationOrder() {
+        dispatcher.register(watch("first", "a.Target"));
+        dispatcher.register(watch("wildcard"));
+        dispatcher.register(watch("third", "a.Target"));
+
+        dispatcher.transform(null, "a/Target", null, null, SOURCE);
+        Assert.assertEquals(Arrays.asList("first:a/Target", "wildcard:a/Target", "third:a/Target"), consulted);
+        // 同一次类加载中所有观察共用同一个正在处理的类，类结构只解析一次
+        Assert.assertEquals(1, transformingClasses.size());
+
+        consulted.clear();
+        dispatcher.transform(null, "a/Other", null, null, SOURCE);
+        Assert.assertEquals(Collections.singletonList("wildcard:a/Other"), consulted);
+    }
+
+    @Test
+    public void unregisteredWatchIsNoLongerConsulted() {
+        final RecordingTransformer exact = watch("exact", "a.Target");
+        final RecordingTransformer wildcard = watch("wildcard");
+        dispatcher.register(exact);
+        dispatcher.register(wildcard);
+
+        Assert.assertTrue(dispatcher.unregister(exact));
+        Assert.assertFalse(dispatcher.unregister(exact));
+        dispatcher.transform(null, "a/Target", null, null, SOURCE);
+        Assert.assertEquals(Collections.singletonList("wildcard:a/Target"), consulted);
+
+        consulted.clear();
+        Assert.assertTrue(dispatcher.unregister(wildcard));
+        Assert.assertNull(dispatcher.transform(null, "a/Target", null, null, SOURCE));
+        Assert.assertTrue(consulted.isEmpty());
+    }
+
+    @Test
+    public void singleMatchedWatchEnhancesTheClass() {
+        final RecordingTransformer matched = watch("matched", "a.Target");
+        matched.matches = true;
+        dispatcher.register(watch("skipped", "a.Target"));
+        dispatcher.register(matched);
+
+        Assert.assertSame(ENHANCED, dispatcher.transform(null, "a/Target", null, null, SOURCE));
+        Assert.assertEquals(Arrays.asList("skipped:a/Target", "matched:a/Target"), consulted);
+    }
+
+    @Test
+    public void simulatorClassesAreNeverDispatched() {
+        dispatcher.register(watch("wildcard"));
+
+        Assert.assertNull(dispatcher.transform(null, "com/shulie/instrument/simulator/Foo", null, null, SOURCE));
+        Assert.assertTrue(consulted.isEmpty());
+    }
+
+    private RecordingTransformer watch(String moduleId, String... listeningTypes) {
+        final CoreModule coreModule = new CoreModule(new ModuleSpec().setModuleId(moduleId), null, null, null, null);
+        coreModule.setIgnoredTypesBuilder(new IgnoredTypesBuilderImpl());
+        return new RecordingTransformer(coreModule, new ListeningMatcher(listeningTypes));
+    }
+
+    private class RecordingTransformer extends DefaultSimulatorClassFileTransformer {
+        private boolean matches;
+
+        RecordingTransformer(CoreModule coreModule, Matcher matcher) {
+            super(0, coreModule, matcher, false);
+        }
+
+        @Override
+        Map<String, Set<BuildingForListeners>> matching(TransformingClass transformingClass) {
+            consulted.add(getModuleId() + ":" + transformingClass.getInternalClassName());
+            transformingClasses.add(transformingClass);
+            if (!matches) {
+                return null;
+            }
+            return Collections.singletonMap("behavior", Collections.<BuildingForListeners>emptySet());
+        }
+
+        @Override
+        byte[] enhance(TransformingClass transformingClass, byte[] srcByteCodeArray,
+                       Map<String, Set<BuildingForListeners>> behaviorSignCodes) {
+            return ENHANCED;
+        }
+    }
+
+    private static class ListeningMatcher implements Matcher {
+        private final Set<String> listeningTypes;
+
+        ListeningMatcher(String... listeningTypes) {
+            this.listeningTypes = new HashSet<String>(Arrays.asList(listeningTypes));
+        }
+
+        @Override
+        public List<BuildingForListeners> getAllListeners() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean preMatching(String javaClassName) {
+            return true;
+        }
+
+        @Override
+        public MatchingResult matching(ClassStructure classStructure) {
+            return new MatchingResult(false);
+        }
+
+        @Override
+        public Set<String> getAllListeningTypes() {
+            return listeningTypes;
+        }
+    }
+}
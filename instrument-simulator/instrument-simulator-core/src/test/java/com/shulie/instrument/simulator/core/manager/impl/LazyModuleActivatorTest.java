@@ -0,0 +1,103 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyModuleActivatorTest {
+
+    private final List<String> events = new ArrayList<String>();
+
+    @Test
+    public void triggerClassActivatesModuleBeforeTransformReturns() {
+        final ModuleSpec moduleSpec = moduleSpec("hystrix", "com.netflix.hystrix.AbstractCommand");
+        final LazyModuleActivator activator = new LazyModuleActivator(new LazyModuleActivator.Callback() {
+            @Override
+            public void activate(ModuleSpec activated) {
+                events.add(activated.getModuleId() + "@" + Thread.currentThread().getName());
+            }
+        });
+        activator.register(moduleSpec);
+
+        activator.transform(null, "com/netflix/hystrix/Unrelated", null, null, null);
+        Assert.assertTrue(events.isEmpty());
+
+        activator.transform(null, "com/netflix/hystrix/AbstractCommand", null, null, null);
+        Assert.assertEquals(Collections.singletonList("hystrix@" + Thread.currentThread().getName()), events);
+
+        activator.transform(null, "com/netflix/hystrix/AbstractCommand", null, null, null);
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void moduleTriggeredDuringActivationIsLoadedAfterward() {
+        final ModuleSpec outer = moduleSpec("outer", "a.Outer");
+        final ModuleSpec inner = moduleSpec("inner", "a.Inner");
+        final LazyModuleActivator[] activator = new LazyModuleActivator[1];
+        activator[0] = new LazyModuleActivator(new LazyModuleActivator.Callback() {
+            @Override
+            public void activate(ModuleSpec activated) {
+                events.add("start " + activated.getModuleId());
+                if (activated == outer) {
+                    // 加载模块时定义了另一个模块的触发类
+                    activator[0].transform(null, "a/Inner", null, null, null);
+                }
+                events.add("end " + activated.getModuleId());
+            }
+        });
+        activator[0].register(outer);
+        activator[0].register(inner);
+
+        activator[0].transform(null, "a/Outer", null, null, null);
+
+        Assert.assertEquals(new ArrayList<String>(Arrays.asList(
+                "start outer", "end outer", "start inner", "end inner")), events);
+    }
+
+    @Test
+    public void failedActivationDoesNotBreakClassDefinition() {
+        final LazyModuleActivator activator = new LazyModuleActivator(new LazyModuleActivator.Callback() {
+            @Override
+            public void activate(ModuleSpec activated) {
+                throw new IllegalStateException("broken module");
+            }
+        });
+        activator.register(moduleSpec("broken", "a.Broken"));
+
+        Assert.assertNull(activator.transform(null, "a/Broken", null, null, null));
+    }
+
+    @Test
+    public void onlyOptionalModulesWithTriggersAreLazy() {
+        final HashSet<String> dependencies = new HashSet<String>(Collections.singleton("depended"));
+        Assert.assertTrue(LazyModuleActivator.isLazy(moduleSpec("hystrix", "a.Trigger"), dependencies));
+        Assert.assertFalse(LazyModuleActivator.isLazy(moduleSpec("depended", "a.Trigger"), dependencies));
+        Assert.assertFalse(LazyModuleActivator.isLazy(moduleSpec("plain"), dependencies));
+        Assert.assertFalse(LazyModuleActivator.isLazy(moduleSpec("must", "a.Trigger").setMustUse(true), dependencies));
+    }
+
+    private static ModuleSpec moduleSpec(String moduleId, String... triggerClasses) {
+        return new ModuleSpec().setModuleId(moduleId)
+                .setTriggerClasses(new HashSet<String>(Arrays.asList(triggerClasses)));
+    }
+}
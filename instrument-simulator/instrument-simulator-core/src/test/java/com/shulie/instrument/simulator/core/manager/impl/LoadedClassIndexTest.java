@@ -0,0 +1,108 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadedClassIndexTest {
+
+    private final List<Class<?>> loadedClasses = new ArrayList<Class<?>>();
+    private int scans;
+    private final LoadedClassIndex index = new LoadedClassIndex(instrumentation());
+
+    @Test
+    public void indexIsBuiltOnceAndServesLaterLookups() {
+        loadedClasses.add(String.class);
+        loadedClasses.add(Integer.class);
+
+        Assert.assertEquals(Collections.<Class<?>>singletonList(String.class), index.find("java.lang.String"));
+        Assert.assertEquals(Collections.<Class<?>>singletonList(Integer.class), index.find("java.lang.Integer"));
+        Assert.assertTrue(index.find("java.lang.Long").isEmpty());
+        Assert.assertEquals(1, scans);
+    }
+
+    @Test
+    public void newlyDefinedClassIsFoundAfterOneRefresh() {
+        loadedClasses.add(String.class);
+        index.find("java.lang.String");
+
+        index.transform(null, "java/lang/Integer", null, null, null);
+        index.transform(null, "java/lang/Long", null, null, null);
+        loadedClasses.add(Integer.class);
+        loadedClasses.add(Long.class);
+
+        // 检索其他类名不需要遍历
+        Assert.assertEquals(Collections.<Class<?>>singletonList(String.class), index.find("java.lang.String"));
+        Assert.assertEquals(1, scans);
+
+        // 一次遍历刷新所有待刷新的类名
+        Assert.assertEquals(Collections.<Class<?>>singletonList(Integer.class), index.find("java.lang.Integer"));
+        Assert.assertEquals(Collections.<Class<?>>singletonList(Long.class), index.find("java.lang.Long"));
+        Assert.assertEquals(2, scans);
+    }
+
+    @Test
+    public void redefinedClassIsNotPending() {
+        loadedClasses.add(String.class);
+        index.find("java.lang.String");
+
+        index.transform(null, "java/lang/String", String.class, null, null);
+        index.find("java.lang.String");
+        Assert.assertEquals(1, scans);
+    }
+
+    @Test
+    public void pendingOverflowFallsBackToFullScan() {
+        index.find("java.lang.String");
+        Assert.assertEquals(1, scans);
+
+        for (int i = 0; i <= LoadedClassIndex.MAX_PENDING; i++) {
+            index.transform(null, "gen/Proxy$" + i, null, null, null);
+        }
+        loadedClasses.add(Integer.class);
+
+        // 待刷新的类名已经丢弃，下一次检索重新遍历
+        Assert.assertEquals(Collections.<Class<?>>singletonList(Integer.class), index.find("java.lang.Integer"));
+        Assert.assertEquals(2, scans);
+
+        // 丢弃后记录的类名只刷新一次
+        index.find("gen.Proxy$0");
+        index.find("java.lang.Integer");
+        Assert.assertEquals(2, scans);
+    }
+
+    private Instrumentation instrumentation() {
+        return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Instrumentation.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getAllLoadedClasses".equals(method.getName())) {
+                            scans++;
+                            return loadedClasses.toArray(new Class[loadedClasses.size()]);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shulie.instrument.simulator.api.ModuleSpec;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModuleLoadSchedulerTest {
+
+    private final String caller = Thread.currentThread().getName();
+    private final List<String> loaded = new ArrayList<String>();
+    private final List<String> preparedBy = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void dependenciesAreSortedBeforeTheirDependents() {
+        final List<ModuleSpec> sorted = ModuleLoadScheduler.sort(Arrays.asList(
+                module("dubbo", "pradar-core", "rpc"),
+                module("rpc", "pradar-core"),
+                module("jedis"),
+                module("pradar-core")));
+
+        Assert.assertEquals(Arrays.asList("jedis", "pradar-core", "rpc", "dubbo"), ids(sorted));
+    }
+
+    @Test
+    public void cyclesAndMissingDependenciesKeepTheOriginalOrder() {
+        final List<ModuleSpec> sorted = ModuleLoadScheduler.sort(Arrays.asList(
+                module("a", "b"),
+                module("b", "a"),
+                module("self", "self"),
+                module("orphan", "missing")));
+
+        Assert.assertEquals(Arrays.asList("self", "orphan", "a", "b"), ids(sorted));
+    }
+
+    @Test
+    public void modulesArePreparedInParallelAndLoadedInOrderOnTheCaller() {
+        new ModuleLoadScheduler(4, false).schedule(Arrays.asList(
+                module("dubbo", "pradar-core"),
+                module("jedis"),
+                module("pradar-core")), "load", recording());
+
+        Assert.assertEquals(Arrays.asList(
+                "jedis:prepared-jedis@" + caller,
+                "pradar-core:prepared-pradar-core@" + caller,
+                "dubbo:prepared-dubbo@" + caller), loaded);
+        Assert.assertEquals(3, preparedBy.size());
+        for (String thread : preparedBy) {
+            Assert.assertTrue(thread, thread.startsWith("[SIMULATOR_Module_Loader-"));
+        }
+    }
+
+    @Test
+    public void deterministicModeKeepsTheOriginalOrderOnTheCaller() {
+        new ModuleLoadScheduler(4, true).schedule(Arrays.asList(
+                module("dubbo", "pradar-core"),
+                module("pradar-core")), "load", recording());
+
+        Assert.assertEquals(Arrays.asList(
+                "dubbo:prepared-dubbo@" + caller,
+                "pradar-core:prepared-pradar-core@" + caller), loaded);
+        Assert.assertEquals(Arrays.asList(caller, caller), preparedBy);
+    }
+
+    @Test
+    public void failedParallelPrepareIsRetriedOnTheCaller() {
+        final AtomicInteger attempts = new AtomicInteger();
+        new ModuleLoadScheduler(4, false).schedule(Arrays.asList(module("flaky"), module("jedis")), "load",
+                new ModuleLoadScheduler.Callback<String>() {
+                    @Override
+                    public String prepare(ModuleSpec moduleSpec) {
+                        if ("flaky".equals(moduleSpec.getModuleId()) && attempts.incrementAndGet() == 1) {
+                            throw new IllegalStateException("first attempt");
+                        }
+                        return moduleSpec.getModuleId() + "@" + Thread.currentThread().getName();
+                    }
+
+                    @Override
+                    public void load(ModuleSpec moduleSpec, String prepared) {
+                        loaded.add(prepared);
+                    }
+                });
+
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals("flaky@" + caller, loaded.get(0));
+        Assert.assertEquals(2, loaded.size());
+    }
+
+    private ModuleLoadScheduler.Callback<String> recording() {
+        return new ModuleLoadScheduler.Callback<String>() {
+            @Override
+            public String prepare(ModuleSpec moduleSpec) {
+                preparedBy.add(Thread.currentThread().getName());
+                return "prepared-" + moduleSpec.getModuleId();
+            }
+
+            @Override
+            public void load(ModuleSpec moduleSpec, String prepared) {
+                loaded.add(moduleSpec.getModuleId() + ":" + prepared + "@" + Thread.currentThread().getName());
+            }
+        };
+    }
+
+    private static ModuleSpec module(String moduleId, String... dependencies) {
+        final ModuleSpec moduleSpec = new ModuleSpec().setModuleId(moduleId);
+        moduleSpec.setDependencies(new HashSet<String>(Arrays.asList(dependencies)));
+        return moduleSpec;
+    }
+
+    private static List<String> ids(List<ModuleSpec> moduleSpecs) {
+        final List<String> ids = new ArrayList<String>();
+        for (ModuleSpec moduleSpec : moduleSpecs) {
+            ids.add(moduleSpec.getModuleId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2021 Shulie Technology, Co.Ltd
+ * Email: shulie@shulie.io
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shulie.instrument.simulator.core.util.collection;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThreadUnsafeIntStackTest {
+
+    @Test
+    public void growsAndKeepsLastInFirstOutOrder() {
+        final ThreadUnsafeIntStack stack = new ThreadUnsafeIntStack(2);
+        for (int i = 0; i < 100; i++) {
+            stack.push(i);
+        }
+        Assert.assertEquals(100, stack.deep());
+        Assert.assertEquals(99, stack.peek());
+        Assert.assertEquals(0, stack.peekLast());
+        for (int i = 99; i >= 0; i--) {
+            Assert.assertEquals(i, stack.pop());
+        }
+        Assert.assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void clearEmptiesTheStack() {
+        final ThreadUnsafeIntStack stack = new ThreadUnsafeIntStack();
+        stack.push(1);
+        stack.push(2);
+        stack.clear();
+        Assert.assertTrue(stack.isEmpty());
+        Assert.assertEquals(0, stack.deep());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void popOnEmptyStackThrows() {
+        new ThreadUnsafeIntStack().pop();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void peekOnEmptyStackThrows() {
+        new ThreadUnsafeIntStack().peek();
+    }
+}
@@ -17,6 +17,7 @@ package com.shulie.instrument.simulator.module.mgr;
 import com.shulie.instrument.simulator.api.*;
 import com.shulie.instrument.simulator.api.annotation.Command;
 import com.shulie.instrument.simulator.api.resource.ModuleManager;
+import com.shulie.instrument.simulator.api.resource.ReTransformReport;
 import com.shulie.instrument.simulator.module.mgr.model.ModuleInf;
 import org.kohsuke.MetaInfServices;
 import org.slf4j.Logger;
@@ -288,6 +289,28 @@ public class ModuleManagementModule implements ExtensionModule {
 
     }
 
+    @Command(value = "retransform", description = "模块重新增强耗时统计")
+    public CommandResponse retransform(final Map<String, String> param) {
+        final String moduleId = getParamWithDefault(param, "moduleId", "*");
+        try {
+            final List<ReTransformReport> reports = new ArrayList<ReTransformReport>();
+            for (final ModuleSpec moduleSpec : searchByModuleId(moduleId)) {
+                try {
+                    reports.add(moduleManager.getReTransformReport(moduleSpec.getModuleId()));
+                } catch (ModuleException me) {
+                    // 未加载的模块没有统计
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("SIMULATOR: get module[id={};] retransform report occur error={}.", me.getModuleId(), me.getErrorCode());
+                    }
+                }
+            }
+            return CommandResponse.success(reports);
+        } catch (Throwable e) {
+            logger.error("SIMULATOR: module management retransform err. moduleId:{}", moduleId, e);
+            return CommandResponse.failure(e);
+        }
+    }
+
     private boolean isBlank(String str){
         return str == null || str.length() == 0;
     }